@@ -0,0 +1,12 @@
+package pt.ipsantarem.esgts.covid19tracker.server.benchmarks;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * The benchmarks of {@link QueryBenchmark}, on as many threads as there are cores, all of them querying the same
+ * records. Comparing the throughput of both shows how the queries scale across the cores, and where they contend (on
+ * shared allocations, the garbage collector or the metrics). Other thread counts can be measured with the -t option.
+ */
+@Threads(Threads.MAX)
+public class ConcurrentQueryBenchmark extends QueryBenchmark {
+}
@@ -0,0 +1,43 @@
+package pt.ipsantarem.esgts.covid19tracker.server.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DateUtils#parseIsoEpochDay}, which the parser calls for every row of a CSV file, against the
+ * {@link DateUtils#parseStringToDate} it replaced, on a cycle of different dates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class DateParseBenchmark {
+    private static final int DATES = 1024;
+
+    private final String[] dates = new String[DATES];
+    private int next;
+
+    @Setup
+    public void createDates() {
+        LocalDate date = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < DATES; i++) {
+            dates[i] = date.plusDays(i).toString();
+        }
+    }
+
+    @Benchmark
+    public int parseIsoEpochDay() {
+        return DateUtils.parseIsoEpochDay(dates[next++ & (DATES - 1)]);
+    }
+
+    @Benchmark
+    public Date parseStringToDate() throws ParseException {
+        return DateUtils.parseStringToDate("yyyy-MM-dd", dates[next++ & (DATES - 1)]);
+    }
+}
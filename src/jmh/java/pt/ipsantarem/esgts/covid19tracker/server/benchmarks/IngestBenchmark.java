@@ -0,0 +1,74 @@
+package pt.ipsantarem.esgts.covid19tracker.server.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ipsantarem.esgts.covid19tracker.server.parsers.WorldInDataCSVParser;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.SeriesIndexer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ingest of a downloaded CSV file: the parse (with the tree build) alone, and the whole ingest up to the
+ * records being ready to be served (the parse, the tree manager and the forecasts). Besides the operations per second,
+ * the rows and the bytes ingested per second are reported as the "rows" and "bytes" secondary results.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class IngestBenchmark {
+
+    @Param({IngestFixtures.SAMPLE, "synthetic-200x365"})
+    public String fixture;
+
+    private final WorldInDataCSVParser parser = new WorldInDataCSVParser();
+    private byte[] csv;
+    private long rows;
+
+    @Setup
+    public void loadFixture() {
+        csv = IngestFixtures.load(fixture);
+        rows = IngestFixtures.countRows(csv);
+    }
+
+    @Benchmark
+    public Map<String, List<AVLVirusStatsTree<?, ?>>> parse(IngestedAmount amount) {
+        Map<String, List<AVLVirusStatsTree<?, ?>>> records = parser.parse(csv);
+        amount.add(rows, csv.length);
+        return records;
+    }
+
+    @Benchmark
+    public AVLVirusStatsTreesManager ingest(IngestedAmount amount) {
+        AVLVirusStatsTreesManager treeManager = new AVLVirusStatsTreesManager(parser.parse(csv));
+        treeManager.setInordered(true);
+        SeriesIndexer.index(treeManager);
+        amount.add(rows, csv.length);
+        return treeManager;
+    }
+
+    /**
+     * The rows and bytes ingested, reported by JMH per second.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class IngestedAmount {
+        public long rows;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+            bytes = 0;
+        }
+
+        void add(long rows, long bytes) {
+            this.rows += rows;
+            this.bytes += bytes;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package pt.ipsantarem.esgts.covid19tracker.server.benchmarks;
+
+import pt.ipsantarem.esgts.covid19tracker.server.parsers.WorldInDataCSVParser;
+import pt.ipsantarem.esgts.covid19tracker.server.synthetic.SyntheticStatsGenerator;
+import pt.ipsantarem.esgts.covid19tracker.server.synthetic.ValueDistribution;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.SeriesIndexer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * The Our World in Data like CSV files the benchmarks run on, by name:
+ * <ul>
+ * <li>"sample", the checked-in fixtures/owid-sample.csv (12 locations, 150 days), which doesn't change when the
+ * synthetic stats generator does, so it's the one to compare across commits;</li>
+ * <li>"synthetic-[locations]x[days]", generated with the waves distribution and a fixed seed.</li>
+ * </ul>
+ */
+final class IngestFixtures {
+    static final String SAMPLE = "sample";
+
+    private static final String SYNTHETIC_PREFIX = "synthetic-";
+
+    private IngestFixtures() {
+    }
+
+    /**
+     * @param name The name of the fixture.
+     * @return The bytes of the CSV file of the fixture.
+     * @throws IllegalArgumentException If there's no fixture with the name.
+     */
+    static byte[] load(String name) {
+        try {
+            if (name.equals(SAMPLE)) {
+                return readResource("/fixtures/owid-sample.csv");
+            }
+
+            if (name.startsWith(SYNTHETIC_PREFIX)) {
+                String[] size = name.substring(SYNTHETIC_PREFIX.length()).split("x");
+                return generate(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        throw new IllegalArgumentException("Unknown fixture " + name + "!");
+    }
+
+    /**
+     * @param name The name of the fixture.
+     * @return The tree manager with the records of the fixture, set up as the server serves them: inordered and with
+     * the series and predictions of every country.
+     */
+    static AVLVirusStatsTreesManager loadTreeManager(String name) {
+        AVLVirusStatsTreesManager treeManager = new AVLVirusStatsTreesManager(new WorldInDataCSVParser().parse(load(name)));
+        treeManager.setInordered(true);
+        SeriesIndexer.index(treeManager);
+        return treeManager;
+    }
+
+    /**
+     * @param csv The bytes of a CSV file with a header.
+     * @return The number of rows of the CSV file, without the header.
+     */
+    static long countRows(byte[] csv) {
+        long lines = 0;
+        for (byte b : csv) {
+            if (b == '\n') lines++;
+        }
+
+        // the last line may not end with a new line.
+        if (csv.length > 0 && csv[csv.length - 1] != '\n') lines++;
+
+        return lines - 1;
+    }
+
+    private static byte[] readResource(String resource) throws IOException {
+        try (InputStream in = IngestFixtures.class.getResourceAsStream(resource)) {
+            if (in == null) throw new IOException("Missing fixture " + resource + "!");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] generate(int locations, int days) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            new SyntheticStatsGenerator(locations, days, LocalDate.of(2020, 1, 1), ValueDistribution.WAVES, 1000, 42)
+                    .generate(writer);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,46 @@
+package pt.ipsantarem.esgts.covid19tracker.server.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ipsantarem.esgts.covid19tracker.server.parsers.WorldInDataCSVParser;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ObjectPersistenceUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the write and the read of a records map with {@link ObjectPersistenceUtils}. The records are written as
+ * the ones of a "benchmark" stats source, so the records map of the server isn't touched.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+    private static final String SOURCE = "benchmark";
+
+    @Param({IngestFixtures.SAMPLE, "synthetic-200x365"})
+    public String fixture;
+
+    private Map<String, List<AVLVirusStatsTree<?, ?>>> records;
+
+    @Setup
+    public void parseFixture() {
+        records = new WorldInDataCSVParser().parse(IngestFixtures.load(fixture));
+
+        // the read benchmark needs the file to be there.
+        ObjectPersistenceUtils.writeSourceRecordsMap(SOURCE, records);
+    }
+
+    @Benchmark
+    public void write() {
+        ObjectPersistenceUtils.writeSourceRecordsMap(SOURCE, records);
+    }
+
+    @Benchmark
+    public Map<String, List<AVLVirusStatsTree<?, ?>>> read() {
+        return ObjectPersistenceUtils.readSourceRecordsMap(SOURCE);
+    }
+}
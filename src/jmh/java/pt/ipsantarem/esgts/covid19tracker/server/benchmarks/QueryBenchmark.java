@@ -0,0 +1,163 @@
+package pt.ipsantarem.esgts.covid19tracker.server.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.plugin.json.JavalinJackson;
+import org.openjdk.jmh.annotations.*;
+import pt.ipsantarem.esgts.covid19tracker.server.models.VirusStatistic;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.VirusStatsNode;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the queries that serve the requests, on one thread: the tree operations ({@link AVLVirusStatsTree#get},
+ * inorder, preorder and getBetweenDates), the lookups of the {@link AVLVirusStatsTreesManager} (which lower case the
+ * name of the country before looking it up), the next day prediction (precomputed at ingest, and computed from the
+ * stats as it used to be) and the Jackson serialization of the stats, with the object mapper Javalin uses. Each
+ * invocation queries a random country (and a random date of it). The same benchmarks run on every core at the same
+ * time in {@link ConcurrentQueryBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+public class QueryBenchmark {
+
+    // the number of days queried by getBetweenDates: a month.
+    private static final int INTERVAL_DAYS = 30;
+
+    private static final ObjectMapper OBJECT_MAPPER = JavalinJackson.getObjectMapper();
+
+    /**
+     * The records being queried: a realistic number of countries and days, and scaled up to ten years of days.
+     */
+    @State(Scope.Benchmark)
+    public static class Records {
+
+        @Param({IngestFixtures.SAMPLE, "synthetic-200x365", "synthetic-20x3650"})
+        public String fixture;
+
+        AVLVirusStatsTreesManager treeManager;
+
+        // the names of the countries as the clients write them (not lower cased), their new cases trees and the dates
+        // of their records, in epoch milliseconds.
+        String[] countries;
+        AVLVirusStatsTree<?, ?>[] newCasesTrees;
+        int[][] dates;
+
+        @Setup
+        public void load() {
+            treeManager = IngestFixtures.loadTreeManager(fixture);
+
+            int size = treeManager.getCountries().size();
+            countries = new String[size];
+            newCasesTrees = new AVLVirusStatsTree<?, ?>[size];
+            dates = new int[size][];
+
+            int i = 0;
+            for (String country : treeManager.getCountries()) {
+                newCasesTrees[i] = treeManager.getTrees(country).get(AVLVirusStatsTreesManager.NEW_CASES_TREE_IDX);
+                countries[i] = newCasesTrees[i].getRoot().getCountry();
+
+                List<? extends VirusStatsNode<?>> nodes = newCasesTrees[i].getNodes();
+                dates[i] = new int[nodes.size()];
+                for (int d = 0; d < nodes.size(); d++) {
+                    dates[i][d] = nodes.get(d).getEpochDay();
+                }
+                i++;
+            }
+        }
+    }
+
+    /**
+     * The country (and date) queried by the next invocation of a thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final Random random = new Random();
+        int country;
+        int day;
+
+        void next(Records records) {
+            country = random.nextInt(records.countries.length);
+            day = random.nextInt(records.dates[country].length);
+        }
+    }
+
+    // ----------------------------------- TREE OPERATIONS ----------------------------------- //
+
+    @Benchmark
+    public VirusStatistic<?> treeGet(Records records, Cursor cursor) {
+        cursor.next(records);
+        return records.newCasesTrees[cursor.country].get(records.dates[cursor.country][cursor.day]);
+    }
+
+    @Benchmark
+    public List<?> treeInorder(Records records, Cursor cursor) {
+        cursor.next(records);
+        return records.newCasesTrees[cursor.country].inorder();
+    }
+
+    @Benchmark
+    public List<?> treePreorder(Records records, Cursor cursor) {
+        cursor.next(records);
+        return records.newCasesTrees[cursor.country].preorder();
+    }
+
+    @Benchmark
+    public List<?> treeGetBetweenDates(Records records, Cursor cursor) {
+        cursor.next(records);
+        int[] dates = records.dates[cursor.country];
+        int firstDate = dates[Math.max(0, dates.length - INTERVAL_DAYS)];
+        return records.newCasesTrees[cursor.country].getBetweenDates(firstDate, dates[dates.length - 1]);
+    }
+
+    // ----------------------------------- TREE OPERATIONS ----------------------------------- //
+
+    // ---------------------------------- TREES MANAGER LOOKUPS ---------------------------------- //
+
+    @Benchmark
+    public VirusStatistic<Integer> managerGetInDate(Records records, Cursor cursor) {
+        cursor.next(records);
+        return records.treeManager.getNewCasesInDate(records.countries[cursor.country],
+                records.dates[cursor.country][cursor.day]);
+    }
+
+    @Benchmark
+    public List<VirusStatistic<Integer>> managerGetStats(Records records, Cursor cursor) {
+        cursor.next(records);
+        return records.treeManager.getNewCasesStats(records.countries[cursor.country]);
+    }
+
+    @Benchmark
+    public int managerGetPrediction(Records records, Cursor cursor) {
+        cursor.next(records);
+        return records.treeManager.getNewCasesPrediction(records.countries[cursor.country]);
+    }
+
+    @Benchmark
+    public int predictFromStats(Records records, Cursor cursor) {
+        cursor.next(records);
+        return VirusPredictionUtils.newStatCasesPredict(
+                records.treeManager.getTotalCasesStats(records.countries[cursor.country]));
+    }
+
+    // ---------------------------------- TREES MANAGER LOOKUPS ---------------------------------- //
+
+    // ------------------------------------- SERIALIZATION ------------------------------------- //
+
+    @Benchmark
+    public byte[] serializeStats(Records records, Cursor cursor) throws JsonProcessingException {
+        cursor.next(records);
+        return OBJECT_MAPPER.writeValueAsBytes(
+                records.treeManager.getNewCasesStats(records.countries[cursor.country]));
+    }
+
+    // ------------------------------------- SERIALIZATION ------------------------------------- //
+}
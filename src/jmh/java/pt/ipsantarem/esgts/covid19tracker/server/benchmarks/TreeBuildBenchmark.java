@@ -0,0 +1,71 @@
+package pt.ipsantarem.esgts.covid19tracker.server.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.CountryDictionary;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.NewCasesNode;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the build of trees through {@link AVLVirusStatsTree#add}, with the dates added in ascending order (as they
+ * are in the CSV files, which rebalances the tree the most) or shuffled. Since a node can only be in one tree, fresh
+ * nodes are created before each invocation, which builds the trees of {@link #TREES} countries so the setup doesn't
+ * dwarf the measured time. The reported time is per tree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class TreeBuildBenchmark {
+    private static final int TREES = 50;
+
+    @Param({"365", "1000"})
+    public int days;
+
+    @Param({"ascending", "shuffled"})
+    public String order;
+
+    private final Random random = new Random(42);
+    private List<List<NewCasesNode>> nodesByTree;
+
+    @Setup(Level.Invocation)
+    public void createNodes() {
+        nodesByTree = new ArrayList<>(TREES);
+
+        for (int t = 0; t < TREES; t++) {
+            List<NewCasesNode> nodes = new ArrayList<>(days);
+            LocalDate date = LocalDate.of(2020, 1, 1);
+            int countryId = CountryDictionary.idOf("country " + t);
+
+            for (int d = 0; d < days; d++) {
+                nodes.add(new NewCasesNode((int) date.plusDays(d).toEpochDay(), countryId, d));
+            }
+
+            if (order.equals("shuffled")) Collections.shuffle(nodes, random);
+            nodesByTree.add(nodes);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TREES)
+    public int add() {
+        int roots = 0;
+
+        for (List<NewCasesNode> nodes : nodesByTree) {
+            AVLVirusStatsTree<Integer, NewCasesNode> tree = new AVLVirusStatsTree<>(nodes.get(0));
+            for (int i = 1; i < nodes.size(); i++) {
+                tree.add(nodes.get(i));
+            }
+            roots += tree.getRoot().getNodeInformation();
+        }
+
+        return roots;
+    }
+}
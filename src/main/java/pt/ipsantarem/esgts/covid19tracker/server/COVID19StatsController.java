@@ -1,21 +1,265 @@
 package pt.ipsantarem.esgts.covid19tracker.server;
 
+import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
+import io.javalin.http.ForbiddenResponse;
+import io.javalin.http.HttpResponseExceptionMapper;
+import io.javalin.http.NotFoundResponse;
+import io.javalin.http.ServiceUnavailableResponse;
+import io.javalin.http.UnauthorizedResponse;
+import io.javalin.http.sse.SseClient;
 import io.javalin.plugin.openapi.annotations.*;
+import pt.ipsantarem.esgts.covid19tracker.server.diff.ChangeFeed;
+import pt.ipsantarem.esgts.covid19tracker.server.exceptions.NonExistentCountryException;
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.BacktestEngine;
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.Forecaster;
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.Forecasters;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+import pt.ipsantarem.esgts.covid19tracker.server.models.BacktestReport;
+import pt.ipsantarem.esgts.covid19tracker.server.models.ChangeFeedPage;
+import pt.ipsantarem.esgts.covid19tracker.server.models.Readiness;
+import pt.ipsantarem.esgts.covid19tracker.server.models.VirusCrossSection;
+import pt.ipsantarem.esgts.covid19tracker.server.models.VirusForecast;
+import pt.ipsantarem.esgts.covid19tracker.server.models.VirusRollingSeries;
 import pt.ipsantarem.esgts.covid19tracker.server.models.VirusStatistic;
 import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.SeriesIndexer;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
 
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager.*;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils.parseEpochDay;
 import static pt.ipsantarem.esgts.covid19tracker.server.utils.ObjectUtils.requireNonNullElse;
-import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.newStatCasesPredict;
-import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.totalStatCasesPredict;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.MAX_PREDICTION_HORIZON;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.MAX_PREDICTION_WINDOW;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.MIN_PREDICTION_WINDOW;
 
 /**
  * COVID 19 stats REST API main and only controller.
  */
 public class COVID19StatsController {
 
-    // the tree manager.
-    public static AVLVirusStatsTreesManager treeManager;
+    // the tree manager. volatile, since it gets replaced by the update thread when new records are available.
+    public static volatile AVLVirusStatsTreesManager treeManager;
+
+    // the feed of the changes of the records, appended to by the update thread.
+    public static final ChangeFeed changeFeed = new ChangeFeed();
+
+    // the readiness of the server, replaced together with the tree manager.
+    public static volatile Readiness readiness = Readiness.notReady();
+
+    // the paths that are served even before there are any records.
+    private static final String[] PATHS_SERVED_WHEN_NOT_READY = {
+            "/api/ready", "/api/metrics", "/api/changes", "/api/swagger"
+    };
+
+    // the maximum number of seconds a long poll of the change feed waits for a change.
+    private static final int MAX_CHANGES_TIMEOUT = 60;
+
+    // the maximum number of countries the autocomplete of the countries gets.
+    private static final int MAX_COUNTRIES_LIMIT = 100;
+
+    @OpenApi(
+            path = "/api/metrics",
+            method = HttpMethod.GET,
+            description = "Gets the server metrics: the duration of the ingest stages, the snapshot swaps, the duration of " +
+                    "each phase of the requests (lookup, traversal and serialization), the bytes allocated by the " +
+                    "requests and the garbage collector stats.",
+            summary = "Get the server metrics.",
+            responses = {
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = Map.class))
+            }
+    )
+    public static void getMetrics(Context ctx) {
+        ctx.json(ServerMetrics.snapshot());
+    }
+
+    @OpenApi(
+            path = "/api/ready",
+            method = HttpMethod.GET,
+            description = "Gets if the server is serving records yet, and how old the served records are. The server " +
+                    "starts serving the records saved by its previous run right away, while it checks for new stats " +
+                    "in the background, so the records may be stale for a while after it starts. Responds with 503 " +
+                    "while there are no records to serve.",
+            summary = "Get the readiness of the server and the age of the served records.",
+            responses = {
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = Readiness.class)),
+                    @OpenApiResponse(status = "503", content = @OpenApiContent(from = Readiness.class))
+            }
+    )
+    public static void getReady(Context ctx) {
+        Readiness readiness = COVID19StatsController.readiness;
+
+        ctx.status(readiness.isReady() ? 200 : 503);
+        ctx.json(readiness);
+    }
+
+    /**
+     * Refuses the requests for records while there are no records to serve yet, which only happens when the server
+     * started without a saved snapshot and the first download hasn't finished. Should be registered as a before
+     * handler.
+     *
+     * @param ctx The context of the request.
+     */
+    public static void requireRecords(Context ctx) {
+        if (treeManager != null) return;
+
+        for (String path : PATHS_SERVED_WHEN_NOT_READY) {
+            if (ctx.path().startsWith(path)) return;
+        }
+
+        ctx.header("Retry-After", "30");
+        throw new ServiceUnavailableResponse("The records are still being downloaded, try again later");
+    }
+
+    @OpenApi(
+            path = "/api/changes",
+            method = HttpMethod.GET,
+            description = "Gets the changes of the records (added days and revised values, by country and stat type) " +
+                    "after a sequence number. If there are no changes yet, it waits for the next change until the " +
+                    "timeout. If the changes after the sequence number are no longer available (or no sequence number " +
+                    "is supplied), resync is true and no changes are returned: the client should reload the records " +
+                    "and then ask for the changes after the returned sequence number. The same changes can be " +
+                    "streamed as server sent events from /api/changes/stream, resuming from the since query parameter " +
+                    "or from the Last-Event-ID header.",
+            summary = "Get the changes of the records after a sequence number.",
+            queryParams = {
+                    @OpenApiParam(name = "since", type = Long.class, description = "The sequence number of the last " +
+                            "change the client saw."),
+                    @OpenApiParam(name = "timeout", type = Integer.class, description = "For how many seconds to " +
+                            "wait for a change (30 by default, 60 at most, 0 to return immediately).")
+            },
+            responses = {
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = ChangeFeedPage.class))
+            }
+    )
+    public static void getChanges(Context ctx) {
+        int timeout = ctx.queryParam("timeout", Integer.class, "30")
+                .check(t -> t >= 0 && t <= MAX_CHANGES_TIMEOUT,
+                        "The timeout must be between 0 and " + MAX_CHANGES_TIMEOUT + " seconds")
+                .get();
+
+        ctx.json(changeFeed.poll(getSince(ctx), timeout));
+    }
+
+    public static void streamChanges(SseClient client) {
+        changeFeed.stream(client, getSince(client.ctx));
+    }
+
+    @OpenApi(
+            path = "/api/admin/backtest",
+            method = HttpMethod.GET,
+            description = "Backtests the prediction models on the records of every country: each model predicts the " +
+                    "next days from every day of the past, and the predictions are compared to the real stats. Gets " +
+                    "the mean absolute error and the mean absolute percentage error of each model, by country and " +
+                    "by horizon, and the number of predictions evaluated per second. Requires the admin token on the " +
+                    "X-Admin-Token header.",
+            summary = "Backtest the prediction models.",
+            headers = {
+                    @OpenApiParam(name = "X-Admin-Token", required = true, description = "The admin token.")
+            },
+            queryParams = {
+                    @OpenApiParam(name = "stat", description = "The stat to predict: newCases (the default), " +
+                            "totalCases, newDeaths or totalDeaths."),
+                    @OpenApiParam(name = "horizon", type = Integer.class, description = "The number of days to " +
+                            "predict (14 by default, 30 at most)."),
+                    @OpenApiParam(name = "window", type = Integer.class, description = "The number of latest days " +
+                            "the predictions are based on (the default window of each model by default, between " +
+                            MIN_PREDICTION_WINDOW + " and " + MAX_PREDICTION_WINDOW + ").")
+            },
+            responses = {
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = BacktestReport.class)),
+                    @OpenApiResponse(status = "401"),
+                    @OpenApiResponse(status = "403")
+            }
+    )
+    public static void getBacktest(Context ctx) {
+        requireAdmin(ctx);
+
+        String stat = requireNonNullElse(ctx.queryParam("stat"), "newCases");
+        int treeIdx = AVLVirusStatsTreesManager.getTreeIdx(stat);
+        if (treeIdx < 0) {
+            throw new BadRequestResponse("Unknown stat " + stat + ", the available stats are newCases, totalCases, " +
+                    "newDeaths and totalDeaths");
+        }
+
+        int horizon = ctx.queryParam("horizon", Integer.class, "14")
+                .check(h -> h >= 1 && h <= MAX_PREDICTION_HORIZON,
+                        "The horizon must be between 1 and " + MAX_PREDICTION_HORIZON + " days")
+                .get();
+        int window = ctx.queryParam("window", Integer.class, "0")
+                .check(w -> w == 0 || w >= MIN_PREDICTION_WINDOW && w <= MAX_PREDICTION_WINDOW,
+                        "The window must be between " + MIN_PREDICTION_WINDOW + " and " + MAX_PREDICTION_WINDOW +
+                                " days")
+                .get();
+
+        // the backtest takes a while, so it runs asynchronously instead of holding the request thread.
+        AVLVirusStatsTreesManager treeManager = COVID19StatsController.treeManager;
+        ctx.json(CompletableFuture.supplyAsync(() -> BacktestEngine.run(treeManager, treeIdx, horizon, window)));
+    }
+
+    @OpenApi(
+            path = "/api/countries",
+            method = HttpMethod.GET,
+            description = "Gets the names of the countries with records whose name, ISO code or alias starts with a " +
+                    "prefix, in any case. The country path parameter of the other endpoints accepts any of them, or " +
+                    "any prefix that only one country starts with, and responds with 404 if there's no such country.",
+            summary = "Autocomplete the names of the countries.",
+            queryParams = {
+                    @OpenApiParam(name = "prefix", description = "The prefix (every country by default)."),
+                    @OpenApiParam(name = "limit", type = Integer.class, description = "The maximum number of " +
+                            "countries (10 by default, " + MAX_COUNTRIES_LIMIT + " at most).")
+            },
+            responses = {
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = String.class, isArray = true))
+            }
+    )
+    public static void getCountries(Context ctx) {
+        int limit = ctx.queryParam("limit", Integer.class, "10")
+                .check(l -> l >= 1 && l <= MAX_COUNTRIES_LIMIT,
+                        "The limit must be between 1 and " + MAX_COUNTRIES_LIMIT + " countries")
+                .get();
+
+        ctx.json(treeManager.completeCountries(requireNonNullElse(ctx.queryParam("prefix"), ""), limit));
+    }
+
+    @OpenApi(
+            path = "/api/date/:date",
+            method = HttpMethod.GET,
+            description = "Gets the stats of every country (and region) that has a record of the date, in a single " +
+                    "scan of the stats of that date. The stats a country has no record of are left out.",
+            summary = "Get the COVID-19 stats of every country in a certain day.",
+            pathParams = {
+                    @OpenApiParam(name = "date", description = "The date to get the COVID-19 stats for, as yyyy-MM-dd or in milliseconds.")
+            },
+            queryParams = {
+                    @OpenApiParam(name = "stats", description = "The stats to get, separated by commas: newCases, " +
+                            "totalCases, newDeaths and/or totalDeaths (all of them by default).")
+            },
+            responses = {
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusCrossSection.class))
+            }
+    )
+    public static void getCrossSection(Context ctx) {
+        int epochDay = getEpochDay(ctx.pathParam("date"));
+        ctx.json(treeManager.getCrossSection(epochDay, getTreeIdxs(ctx.queryParam("stats"))));
+    }
+
+    /**
+     * Responds with 404 to the requests for a country that has no records, the same way as to the other missing
+     * resources. Should be registered as the exception handler of {@link NonExistentCountryException}.
+     *
+     * @param e   The exception.
+     * @param ctx The context of the request.
+     */
+    public static void onNonExistentCountry(NonExistentCountryException e, Context ctx) {
+        HttpResponseExceptionMapper.INSTANCE.handle(new NotFoundResponse(e.getMessage()), ctx);
+    }
 
     @OpenApi(
             path = "/api/:country/cases/new",
@@ -28,22 +272,34 @@ public class COVID19StatsController {
                     @OpenApiParam(name = "country", description = "The country to get the new COVID-19 cases for.")
             },
             queryParams = {
-                    @OpenApiParam(name = "startDate", type = Long.class, description = "Date, in milliseconds"),
-                    @OpenApiParam(name = "endDate", type = Long.class, description = "Date, in milliseconds")
+                    @OpenApiParam(name = "startDate", description = "Date, as yyyy-MM-dd or in milliseconds"),
+                    @OpenApiParam(name = "endDate", description = "Date, as yyyy-MM-dd or in milliseconds"),
+                    @OpenApiParam(name = "window", type = Integer.class, description = "The number of days of a " +
+                            "rolling window (7 or 14 by default): if supplied, it gets the sum, mean and maximum of " +
+                            "the new cases in the window ending at each day instead.")
             },
             responses = {
                     // responses with same status and content type will be auto-grouped to the oneOf composed scheme
-                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusStatistic.class, isArray = true))
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusStatistic.class, isArray = true)),
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusRollingSeries.class))
             }
     )
     public static void getNewCases(Context ctx) {
         String startDate = ctx.queryParam("startDate");
         String endDate = ctx.queryParam("endDate");
         String country = ctx.pathParam("country");
-        if (startDate == null || endDate == null) {
+        Integer window = getRollingWindow(ctx);
+        if (window != null) {
+            if (startDate == null || endDate == null) {
+                ctx.json(treeManager.getNewCasesRollingStats(country, window));
+            } else {
+                ctx.json(treeManager.getNewCasesRollingStatsBetweenDates(country, window, getEpochDay(startDate),
+                        getEpochDay(endDate)));
+            }
+        } else if (startDate == null || endDate == null) {
             ctx.json(treeManager.getNewCasesStats(country));
         } else {
-            ctx.json(treeManager.getNewCasesStatsBetweenDates(country, Long.parseLong(startDate), Long.parseLong(endDate)));
+            ctx.json(treeManager.getNewCasesStatsBetweenDates(country, getEpochDay(startDate), getEpochDay(endDate)));
         }
     }
 
@@ -58,21 +314,33 @@ public class COVID19StatsController {
                     @OpenApiParam(name = "country", description = "The country to get the total COVID-19 cases for.")
             },
             queryParams = {
-                    @OpenApiParam(name = "startDate", type = Long.class, description = "Date, in milliseconds"),
-                    @OpenApiParam(name = "endDate", type = Long.class, description = "Date, in milliseconds")
+                    @OpenApiParam(name = "startDate", description = "Date, as yyyy-MM-dd or in milliseconds"),
+                    @OpenApiParam(name = "endDate", description = "Date, as yyyy-MM-dd or in milliseconds"),
+                    @OpenApiParam(name = "window", type = Integer.class, description = "The number of days of a " +
+                            "rolling window (7 or 14 by default): if supplied, it gets the sum, mean and maximum of " +
+                            "the total cases in the window ending at each day instead.")
             },
             responses = {
-                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusStatistic.class, isArray = true))
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusStatistic.class, isArray = true)),
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusRollingSeries.class))
             }
     )
     public static void getTotalCases(Context ctx) {
         String startDate = ctx.queryParam("startDate");
         String endDate = ctx.queryParam("endDate");
         String country = ctx.pathParam("country");
-        if (startDate == null || endDate == null) {
+        Integer window = getRollingWindow(ctx);
+        if (window != null) {
+            if (startDate == null || endDate == null) {
+                ctx.json(treeManager.getTotalCasesRollingStats(country, window));
+            } else {
+                ctx.json(treeManager.getTotalCasesRollingStatsBetweenDates(country, window, getEpochDay(startDate),
+                        getEpochDay(endDate)));
+            }
+        } else if (startDate == null || endDate == null) {
             ctx.json(treeManager.getTotalCasesStats(country));
         } else {
-            ctx.json(treeManager.getTotalCasesStatsBetweenDates(country, Long.parseLong(startDate), Long.parseLong(endDate)));
+            ctx.json(treeManager.getTotalCasesStatsBetweenDates(country, getEpochDay(startDate), getEpochDay(endDate)));
         }
     }
 
@@ -87,21 +355,33 @@ public class COVID19StatsController {
                     @OpenApiParam(name = "country", description = "The country to get the new COVID-19 deaths for.")
             },
             queryParams = {
-                    @OpenApiParam(name = "startDate", type = Long.class, description = "Date, in milliseconds"),
-                    @OpenApiParam(name = "endDate", type = Long.class, description = "Date, in milliseconds")
+                    @OpenApiParam(name = "startDate", description = "Date, as yyyy-MM-dd or in milliseconds"),
+                    @OpenApiParam(name = "endDate", description = "Date, as yyyy-MM-dd or in milliseconds"),
+                    @OpenApiParam(name = "window", type = Integer.class, description = "The number of days of a " +
+                            "rolling window (7 or 14 by default): if supplied, it gets the sum, mean and maximum of " +
+                            "the new deaths in the window ending at each day instead.")
             },
             responses = {
-                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusStatistic.class, isArray = true))
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusStatistic.class, isArray = true)),
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusRollingSeries.class))
             }
     )
     public static void getNewDeaths(Context ctx) {
         String startDate = ctx.queryParam("startDate");
         String endDate = ctx.queryParam("endDate");
         String country = ctx.pathParam("country");
-        if (startDate == null || endDate == null) {
+        Integer window = getRollingWindow(ctx);
+        if (window != null) {
+            if (startDate == null || endDate == null) {
+                ctx.json(treeManager.getNewDeathsRollingStats(country, window));
+            } else {
+                ctx.json(treeManager.getNewDeathsRollingStatsBetweenDates(country, window, getEpochDay(startDate),
+                        getEpochDay(endDate)));
+            }
+        } else if (startDate == null || endDate == null) {
             ctx.json(treeManager.getNewDeathsStats(country));
         } else {
-            ctx.json(treeManager.getNewDeathsStatsBetweenDates(country, Long.parseLong(startDate), Long.parseLong(endDate)));
+            ctx.json(treeManager.getNewDeathsStatsBetweenDates(country, getEpochDay(startDate), getEpochDay(endDate)));
         }
     }
 
@@ -116,21 +396,33 @@ public class COVID19StatsController {
                     @OpenApiParam(name = "country", description = "The country to get the total COVID-19 deaths for.")
             },
             queryParams = {
-                    @OpenApiParam(name = "startDate", type = Long.class, description = "Date, in milliseconds"),
-                    @OpenApiParam(name = "endDate", type = Long.class, description = "Date, in milliseconds")
+                    @OpenApiParam(name = "startDate", description = "Date, as yyyy-MM-dd or in milliseconds"),
+                    @OpenApiParam(name = "endDate", description = "Date, as yyyy-MM-dd or in milliseconds"),
+                    @OpenApiParam(name = "window", type = Integer.class, description = "The number of days of a " +
+                            "rolling window (7 or 14 by default): if supplied, it gets the sum, mean and maximum of " +
+                            "the total deaths in the window ending at each day instead.")
             },
             responses = {
-                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusStatistic.class, isArray = true))
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusStatistic.class, isArray = true)),
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusRollingSeries.class))
             }
     )
     public static void getTotalDeaths(Context ctx) {
         String startDate = ctx.queryParam("startDate");
         String endDate = ctx.queryParam("endDate");
         String country = ctx.pathParam("country");
-        if (startDate == null || endDate == null) {
+        Integer window = getRollingWindow(ctx);
+        if (window != null) {
+            if (startDate == null || endDate == null) {
+                ctx.json(treeManager.getTotalDeathsRollingStats(country, window));
+            } else {
+                ctx.json(treeManager.getTotalDeathsRollingStatsBetweenDates(country, window, getEpochDay(startDate),
+                        getEpochDay(endDate)));
+            }
+        } else if (startDate == null || endDate == null) {
             ctx.json(treeManager.getTotalDeathsStats(country));
         } else {
-            ctx.json(treeManager.getTotalDeathsStatsBetweenDates(country, Long.parseLong(startDate), Long.parseLong(endDate)));
+            ctx.json(treeManager.getTotalDeathsStatsBetweenDates(country, getEpochDay(startDate), getEpochDay(endDate)));
         }
     }
 
@@ -139,18 +431,36 @@ public class COVID19StatsController {
             method = HttpMethod.GET,
             description = "Get a prediction of new COVID-19 cases for the next day in a certain country. This works by using " +
                     "a simple linear regression model to estimate the new cases for the next day, according to the trend of the " +
-                    "latest 15 days.",
+                    "latest 15 days. If the model, window or horizon query parameters are supplied, it gets the " +
+                    "predictions for the next days instead, each one with the bounds of its 95% prediction interval.",
             summary = "Get a prediction of new COVID-19 cases for the next day in a country.",
             pathParams = {
                     @OpenApiParam(name = "country", description = "The country to get a prediction for.")
             },
+            queryParams = {
+                    @OpenApiParam(name = "model", description = "The prediction model: regression (the default), " +
+                            "holt (Holt's linear trend) or holt-winters (Holt-Winters with weekly seasonality)."),
+                    @OpenApiParam(name = "window", type = Integer.class, description = "The number of latest days " +
+                            "the predictions are based on (15 by default for the regression, 28 for holt and 56 for " +
+                            "holt-winters, between " + MIN_PREDICTION_WINDOW + " and " + MAX_PREDICTION_WINDOW + ")."),
+                    @OpenApiParam(name = "horizon", type = Integer.class, description = "The number of days to " +
+                            "predict (1 by default, 30 at most).")
+            },
             responses = {
                     // responses with same status and content type will be auto-grouped to the oneOf composed scheme
-                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = Integer.class))
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = Integer.class)),
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusForecast.class))
             }
     )
     public static void getNewCasesPredict(Context ctx) {
-        ctx.json(newStatCasesPredict(treeManager.getTotalCasesStats(ctx.pathParam("country"))));
+        String country = ctx.pathParam("country");
+        if (isDefaultPrediction(ctx)) {
+            ctx.json(treeManager.getNewCasesPrediction(country));
+        } else {
+            Forecaster forecaster = getForecaster(ctx);
+            ctx.json(treeManager.getNewCasesForecast(country, forecaster, getPredictionWindow(ctx, forecaster),
+                    getPredictionHorizon(ctx)));
+        }
     }
 
     @OpenApi(
@@ -158,18 +468,36 @@ public class COVID19StatsController {
             method = HttpMethod.GET,
             description = "Get a prediction of total COVID-19 cases for the next day in a certain country. This works by using " +
                     "a simple linear regression model to estimate the total cases for the next day, according to the trend of the " +
-                    "latest 15 days.",
+                    "latest 15 days. If the model, window or horizon query parameters are supplied, it gets the " +
+                    "predictions for the next days instead, each one with the bounds of its 95% prediction interval.",
             summary = "Get a prediction of total COVID-19 cases for the next day in a country.",
             pathParams = {
                     @OpenApiParam(name = "country", description = "The country to get a prediction for.")
             },
+            queryParams = {
+                    @OpenApiParam(name = "model", description = "The prediction model: regression (the default), " +
+                            "holt (Holt's linear trend) or holt-winters (Holt-Winters with weekly seasonality)."),
+                    @OpenApiParam(name = "window", type = Integer.class, description = "The number of latest days " +
+                            "the predictions are based on (15 by default for the regression, 28 for holt and 56 for " +
+                            "holt-winters, between " + MIN_PREDICTION_WINDOW + " and " + MAX_PREDICTION_WINDOW + ")."),
+                    @OpenApiParam(name = "horizon", type = Integer.class, description = "The number of days to " +
+                            "predict (1 by default, 30 at most).")
+            },
             responses = {
                     // responses with same status and content type will be auto-grouped to the oneOf composed scheme
-                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = Integer.class))
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = Integer.class)),
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusForecast.class))
             }
     )
     public static void getTotalCasesPredict(Context ctx) {
-        ctx.json(totalStatCasesPredict(treeManager.getTotalCasesStats(ctx.pathParam("country"))));
+        String country = ctx.pathParam("country");
+        if (isDefaultPrediction(ctx)) {
+            ctx.json(treeManager.getTotalCasesPrediction(country));
+        } else {
+            Forecaster forecaster = getForecaster(ctx);
+            ctx.json(treeManager.getTotalCasesForecast(country, forecaster, getPredictionWindow(ctx, forecaster),
+                    getPredictionHorizon(ctx)));
+        }
     }
 
     @OpenApi(
@@ -177,18 +505,36 @@ public class COVID19StatsController {
             method = HttpMethod.GET,
             description = "Get a prediction of new COVID-19 deaths for the next day in a certain country. This works by using " +
                     "a simple linear regression model to estimate the new deaths for the next day, according to the trend of the " +
-                    "latest 15 days.",
+                    "latest 15 days. If the model, window or horizon query parameters are supplied, it gets the " +
+                    "predictions for the next days instead, each one with the bounds of its 95% prediction interval.",
             summary = "Get a prediction of new COVID-19 deaths for the next day in a country.",
             pathParams = {
                     @OpenApiParam(name = "country", description = "The country to get a prediction for.")
             },
+            queryParams = {
+                    @OpenApiParam(name = "model", description = "The prediction model: regression (the default), " +
+                            "holt (Holt's linear trend) or holt-winters (Holt-Winters with weekly seasonality)."),
+                    @OpenApiParam(name = "window", type = Integer.class, description = "The number of latest days " +
+                            "the predictions are based on (15 by default for the regression, 28 for holt and 56 for " +
+                            "holt-winters, between " + MIN_PREDICTION_WINDOW + " and " + MAX_PREDICTION_WINDOW + ")."),
+                    @OpenApiParam(name = "horizon", type = Integer.class, description = "The number of days to " +
+                            "predict (1 by default, 30 at most).")
+            },
             responses = {
                     // responses with same status and content type will be auto-grouped to the oneOf composed scheme
-                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = Integer.class))
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = Integer.class)),
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusForecast.class))
             }
     )
     public static void getNewDeathsPredict(Context ctx) {
-        ctx.json(newStatCasesPredict(treeManager.getTotalDeathsStats(ctx.pathParam("country"))));
+        String country = ctx.pathParam("country");
+        if (isDefaultPrediction(ctx)) {
+            ctx.json(treeManager.getNewDeathsPrediction(country));
+        } else {
+            Forecaster forecaster = getForecaster(ctx);
+            ctx.json(treeManager.getNewDeathsForecast(country, forecaster, getPredictionWindow(ctx, forecaster),
+                    getPredictionHorizon(ctx)));
+        }
     }
 
     @OpenApi(
@@ -196,18 +542,36 @@ public class COVID19StatsController {
             method = HttpMethod.GET,
             description = "Get a prediction of total COVID-19 deaths for the next day in a certain country. This works by using " +
                     "a simple linear regression model to estimate the total deaths for the next day, according to the trend of the " +
-                    "latest 15 days.",
+                    "latest 15 days. If the model, window or horizon query parameters are supplied, it gets the " +
+                    "predictions for the next days instead, each one with the bounds of its 95% prediction interval.",
             summary = "Get a prediction of total COVID-19 deaths for the next day in a country.",
             pathParams = {
                     @OpenApiParam(name = "country", description = "The country to get a prediction for.")
             },
+            queryParams = {
+                    @OpenApiParam(name = "model", description = "The prediction model: regression (the default), " +
+                            "holt (Holt's linear trend) or holt-winters (Holt-Winters with weekly seasonality)."),
+                    @OpenApiParam(name = "window", type = Integer.class, description = "The number of latest days " +
+                            "the predictions are based on (15 by default for the regression, 28 for holt and 56 for " +
+                            "holt-winters, between " + MIN_PREDICTION_WINDOW + " and " + MAX_PREDICTION_WINDOW + ")."),
+                    @OpenApiParam(name = "horizon", type = Integer.class, description = "The number of days to " +
+                            "predict (1 by default, 30 at most).")
+            },
             responses = {
                     // responses with same status and content type will be auto-grouped to the oneOf composed scheme
-                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = Integer.class))
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = Integer.class)),
+                    @OpenApiResponse(status = "200", content = @OpenApiContent(from = VirusForecast.class))
             }
     )
     public static void getTotalDeathsPredict(Context ctx) {
-        ctx.json(totalStatCasesPredict(treeManager.getTotalDeathsStats(ctx.pathParam("country"))));
+        String country = ctx.pathParam("country");
+        if (isDefaultPrediction(ctx)) {
+            ctx.json(treeManager.getTotalDeathsPrediction(country));
+        } else {
+            Forecaster forecaster = getForecaster(ctx);
+            ctx.json(treeManager.getTotalDeathsForecast(country, forecaster, getPredictionWindow(ctx, forecaster),
+                    getPredictionHorizon(ctx)));
+        }
     }
 
     @OpenApi(
@@ -216,7 +580,7 @@ public class COVID19StatsController {
             summary = "Get the new COVID-19 cases in a certain day for a country.",
             pathParams = {
                     @OpenApiParam(name = "country", description = "The country to get the new COVID-19 cases in a day for."),
-                    @OpenApiParam(name = "date", description = "The date to get new COVID-19 cases for, in milliseconds.")
+                    @OpenApiParam(name = "date", description = "The date to get new COVID-19 cases for, as yyyy-MM-dd or in milliseconds.")
             },
             responses = {
                     // responses with same status and content type will be auto-grouped to the oneOf composed scheme
@@ -225,7 +589,7 @@ public class COVID19StatsController {
     )
     public static void getNewCasesInDate(Context ctx) {
         VirusStatistic<Integer> stat = treeManager.getNewCasesInDate(ctx.pathParam("country"),
-                Long.parseLong(ctx.pathParam("date")));
+                getEpochDay(ctx.pathParam("date")));
         ctx.json(requireNonNullElse(stat, ""));
     }
 
@@ -235,7 +599,7 @@ public class COVID19StatsController {
             summary = "Get the total COVID-19 cases in a certain day for a country.",
             pathParams = {
                     @OpenApiParam(name = "country", description = "The country to get the total COVID-19 cases in a day for."),
-                    @OpenApiParam(name = "date", description = "The date to get COVID-19 total cases for, in milliseconds.")
+                    @OpenApiParam(name = "date", description = "The date to get COVID-19 total cases for, as yyyy-MM-dd or in milliseconds.")
             },
             responses = {
                     // responses with same status and content type will be auto-grouped to the oneOf composed scheme
@@ -244,7 +608,7 @@ public class COVID19StatsController {
     )
     public static void getTotalCasesInDate(Context ctx) {
         VirusStatistic<Integer> stat = treeManager.getTotalCasesInDate(ctx.pathParam("country"),
-                Long.parseLong(ctx.pathParam("date")));
+                getEpochDay(ctx.pathParam("date")));
         ctx.json(requireNonNullElse(stat, ""));
     }
 
@@ -254,7 +618,7 @@ public class COVID19StatsController {
             summary = "Get the new COVID-19 deaths in a certain day for a country.",
             pathParams = {
                     @OpenApiParam(name = "country", description = "The country to get the new COVID-19 deaths in a day for."),
-                    @OpenApiParam(name = "date", description = "The date to get new COVID-19 deaths for, in milliseconds.")
+                    @OpenApiParam(name = "date", description = "The date to get new COVID-19 deaths for, as yyyy-MM-dd or in milliseconds.")
             },
             responses = {
                     // responses with same status and content type will be auto-grouped to the oneOf composed scheme
@@ -263,7 +627,7 @@ public class COVID19StatsController {
     )
     public static void getNewDeathsInDate(Context ctx) {
         VirusStatistic<Integer> stat = treeManager.getNewDeathsInDate(ctx.pathParam("country"),
-                Long.parseLong(ctx.pathParam("date")));
+                getEpochDay(ctx.pathParam("date")));
         ctx.json(requireNonNullElse(stat, ""));
     }
 
@@ -273,7 +637,7 @@ public class COVID19StatsController {
             summary = "Get the total COVID-19 deaths in a certain day for a country.",
             pathParams = {
                     @OpenApiParam(name = "country", description = "The country to get the total COVID-19 deaths in a day for."),
-                    @OpenApiParam(name = "date", description = "The date to get total COVID-19 deaths for, in milliseconds.")
+                    @OpenApiParam(name = "date", description = "The date to get total COVID-19 deaths for, as yyyy-MM-dd or in milliseconds.")
 
             },
             responses = {
@@ -283,7 +647,113 @@ public class COVID19StatsController {
     )
     public static void getTotalDeathsInDate(Context ctx) {
         VirusStatistic<Integer> stat = treeManager.getTotalDeathsInDate(ctx.pathParam("country"),
-                Long.parseLong(ctx.pathParam("date")));
+                getEpochDay(ctx.pathParam("date")));
         ctx.json(requireNonNullElse(stat, ""));
     }
+
+    // gets the days since the epoch of a date parameter, an ISO date or a number of milliseconds, whatever the time zone
+    // of the server.
+    private static int getEpochDay(String date) {
+        try {
+            return parseEpochDay(date);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestResponse(e.getMessage());
+        }
+    }
+
+    // gets the tree indexes of a comma separated list of stats, or every tree index if there's no list.
+    private static int[] getTreeIdxs(String stats) {
+        if (stats == null) return new int[]{NEW_CASES_TREE_IDX, TOTAL_CASES_TREE_IDX, NEW_DEATHS_TREE_IDX,
+                TOTAL_DEATHS_TREE_IDX};
+
+        String[] statTypes = stats.split(",");
+        int[] treeIdxs = new int[statTypes.length];
+        for (int i = 0; i < statTypes.length; i++) {
+            treeIdxs[i] = AVLVirusStatsTreesManager.getTreeIdx(statTypes[i].trim());
+            if (treeIdxs[i] < 0) {
+                throw new BadRequestResponse("Unknown stat " + statTypes[i] + ", the available stats are newCases, " +
+                        "totalCases, newDeaths and totalDeaths");
+            }
+        }
+
+        return treeIdxs;
+    }
+
+    // gets the rolling window query parameter, which must be one of the precomputed windows, or null if it wasn't
+    // supplied.
+    private static Integer getRollingWindow(Context ctx) {
+        if (ctx.queryParam("window") == null) return null;
+
+        int window = ctx.queryParam("window", Integer.class).get();
+        for (int rollingWindow : SeriesIndexer.getRollingWindows()) {
+            if (rollingWindow == window) return window;
+        }
+
+        throw new BadRequestResponse("The rolling window must have one of " +
+                Arrays.toString(SeriesIndexer.getRollingWindows()) + " days");
+    }
+
+    // checks if none of the prediction query parameters were supplied, meaning only the next day prediction is wanted.
+    private static boolean isDefaultPrediction(Context ctx) {
+        return ctx.queryParam("model") == null && ctx.queryParam("window") == null && ctx.queryParam("horizon") == null;
+    }
+
+    // gets the sequence number of the last change the client saw, from the since query parameter or, when an event
+    // stream reconnects, from the Last-Event-ID header. null if the client saw no change.
+    private static Long getSince(Context ctx) {
+        String since = ctx.queryParam("since");
+        if (since == null) since = ctx.header("Last-Event-ID");
+        if (since == null) return null;
+
+        try {
+            return Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            throw new BadRequestResponse("The since sequence number must be a number");
+        }
+    }
+
+    // checks if the request has the admin token. the admin endpoints are forbidden if no admin token is set.
+    private static void requireAdmin(Context ctx) {
+        String adminToken = ConfigUtils.getString("admin.token", null);
+        if (adminToken == null) {
+            throw new ForbiddenResponse("The admin endpoints are disabled");
+        }
+
+        // compared in constant time, so the response time doesn't tell how much of the token was right.
+        String token = ctx.header("X-Admin-Token");
+        if (token == null || !MessageDigest.isEqual(adminToken.getBytes(UTF_8), token.getBytes(UTF_8))) {
+            throw new UnauthorizedResponse("Invalid admin token");
+        }
+    }
+
+    // gets the prediction model query parameter, which must be the name of one of the available models.
+    private static Forecaster getForecaster(Context ctx) {
+        String model = ctx.queryParam("model");
+        if (model == null) return Forecasters.DEFAULT;
+
+        Forecaster forecaster = Forecasters.get(model);
+        if (forecaster == null) {
+            throw new BadRequestResponse("Unknown model " + model + ", the available models are " + Forecasters.getNames());
+        }
+
+        return forecaster;
+    }
+
+    // gets the prediction window query parameter, which must be between the minimum and the maximum window. a window
+    // of less days has no residuals left to estimate the prediction intervals from.
+    private static int getPredictionWindow(Context ctx, Forecaster forecaster) {
+        return ctx.queryParam("window", Integer.class, String.valueOf(forecaster.getDefaultWindow()))
+                .check(window -> window >= MIN_PREDICTION_WINDOW && window <= MAX_PREDICTION_WINDOW,
+                        "The window must be between " + MIN_PREDICTION_WINDOW + " and " + MAX_PREDICTION_WINDOW +
+                                " days")
+                .get();
+    }
+
+    // gets the prediction horizon query parameter, which must be between one and the maximum horizon.
+    private static int getPredictionHorizon(Context ctx) {
+        return ctx.queryParam("horizon", Integer.class, "1")
+                .check(horizon -> horizon >= 1 && horizon <= MAX_PREDICTION_HORIZON,
+                        "The horizon must be between 1 and " + MAX_PREDICTION_HORIZON + " days")
+                .get();
+    }
 }
@@ -4,29 +4,38 @@ import io.javalin.Javalin;
 import io.javalin.plugin.openapi.OpenApiOptions;
 import io.javalin.plugin.openapi.OpenApiPlugin;
 import io.javalin.plugin.openapi.ui.SwaggerOptions;
-import io.javalin.websocket.WsContext;
 import io.swagger.v3.oas.models.info.Info;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.diff.SnapshotDiffer;
+import pt.ipsantarem.esgts.covid19tracker.server.exceptions.NonExistentCountryException;
 import pt.ipsantarem.esgts.covid19tracker.server.listeners.UpdateAvailableListener;
-import pt.ipsantarem.esgts.covid19tracker.server.scraping.COVID19StatsPageDocumentUpdateHandler;
-import pt.ipsantarem.esgts.covid19tracker.server.scraping.pages.COVID19StatsPage;
-import pt.ipsantarem.esgts.covid19tracker.server.scraping.pages.WorldInDataPage;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ProfilingRecorder;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.RequestProfiler;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.StartupPhases;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.IngestEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.SnapshotSwapEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.models.ChangeSet;
+import pt.ipsantarem.esgts.covid19tracker.server.models.Readiness;
+import pt.ipsantarem.esgts.covid19tracker.server.pipeline.IngestPipeline;
+import pt.ipsantarem.esgts.covid19tracker.server.rollup.RegionRollup;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.RefreshResult;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.RefreshScheduler;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.StatsSourceRegistry;
 import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
 import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.SeriesIndexer;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+import pt.ipsantarem.esgts.covid19tracker.server.websocket.SubscriptionRegistry;
 
 import java.time.LocalDate;
-import java.time.LocalTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import static io.javalin.apibuilder.ApiBuilder.get;
 import static io.javalin.apibuilder.ApiBuilder.path;
-import static pt.ipsantarem.esgts.covid19tracker.server.utils.ObjectPersistenceUtils.*;
 
 /**
  * The main class where the server runs.
@@ -34,27 +43,55 @@ import static pt.ipsantarem.esgts.covid19tracker.server.utils.ObjectPersistenceU
 public class ServerMain implements UpdateAvailableListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerMain.class);
 
-    // a scheduled executor service, for scheduling update checks
-    private ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    // serve the saved records right away, checking for updates in the background, instead of checking first.
+    private static final boolean FAST_START = ConfigUtils.getBoolean("startup.fastStart", true);
 
-    // the covid 19 stats page instance to use
-    private COVID19StatsPage page = new WorldInDataPage();
+    // the covid 19 stats sources to use
+    private final StatsSourceRegistry sources = StatsSourceRegistry.fromSettings();
 
-    // the websocket context.
-    private WsContext wsContext;
+    // persists, indexes and publishes the new records once they're built, the persist at the same time as the others.
+    private final IngestPipeline ingestPipeline = new IngestPipeline(this::persist, this::index, this::publish);
 
-    // the number of users connected to the websocket endpoint.
-    private int users = 0;
+    // checks the sources for updates, and ingests them, in the background.
+    private final RefreshScheduler refreshScheduler = new RefreshScheduler(sources, this);
+
+    // the sessions connected to the websocket endpoint, and what each one is subscribed to.
+    private final SubscriptionRegistry subscriptions = new SubscriptionRegistry(() -> COVID19StatsController.treeManager);
+
+    private Javalin app;
 
     private void init() {
-        Javalin app = Javalin.create(config -> {
+        app = Javalin.create(config -> {
             config.defaultContentType = "application/json";
             config.contextPath = "/api";
             config.registerPlugin(new OpenApiPlugin(getOpenApiOptions()));
         }).start(getHerokuAssignedPort());
 
+        // ----------------------------------- REQUEST PROFILING ----------------------------------- //
+
+        app.before(StartupPhases::onRequest);
+        app.before(RequestProfiler::begin);
+        app.after(RequestProfiler::end);
+
+        // ----------------------------------- REQUEST PROFILING ----------------------------------- //
+
+        // ---------------------------------------- READINESS ---------------------------------------- //
+
+        app.before(COVID19StatsController::requireRecords);
+        app.get("/ready", COVID19StatsController::getReady);
+
+        // ---------------------------------------- READINESS ---------------------------------------- //
+
         // --------------------------------------- API ENDPOINTS --------------------------------------- //
 
+        app.get("/metrics", COVID19StatsController::getMetrics);
+        app.get("/admin/backtest", COVID19StatsController::getBacktest);
+        app.get("/changes", COVID19StatsController::getChanges);
+        app.sse("/changes/stream", COVID19StatsController::streamChanges);
+        app.get("/countries", COVID19StatsController::getCountries);
+        app.get("/date/:date", COVID19StatsController::getCrossSection);
+        app.exception(NonExistentCountryException.class, COVID19StatsController::onNonExistentCountry);
+
         app.routes(() ->
                 path("/:country", () -> {
                             get("/cases/new", COVID19StatsController::getNewCases);
@@ -77,102 +114,184 @@ public class ServerMain implements UpdateAvailableListener {
         // ------------------------------ WEBSOCKET CLIENT FOR LIVE UPDATES ------------------------------ //
 
         app.ws("/recordsUpdate", ws -> {
-            ws.onConnect(ctx -> {
-                wsContext = ctx;
-                users++;
-            });
-            ws.onClose(ctx -> {
-                users--;
-                if (users == 0) {
-                    wsContext = null;
-                }
-            });
+            ws.onConnect(subscriptions::onConnect);
+            ws.onMessage(subscriptions::onMessage);
+            ws.onClose(subscriptions::onClose);
         });
 
         // ------------------------------ WEBSOCKET CLIENT FOR LIVE UPDATES ------------------------------ //
     }
 
     /**
-     * This function gets called when the {@link COVID19StatsPageDocumentUpdateHandler} finds a new update.
+     * This function gets called when the {@link RefreshScheduler} finds a new update, with the merged records of every
+     * stats source. The records are sent through the {@link IngestPipeline}, waiting only while its queues are full.
      */
     @Override
     public void onUpdateAvailable(Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
-        // update the records file.
-        updateRecordsFile(records);
+        ingestPipeline.submit(records);
+    }
 
-        // notify the websocket clients that records are available, if any are connected.
-        if (wsContext != null) {
-            wsContext.send(records);
-        }
+    /**
+     * Starts the server: loads (or downloads) the records, starts serving them and starts checking for updates in the
+     * background.
+     */
+    public void start() {
+        preinit();
+    }
 
-        // terminate the scheduled constant update check on the executor service, since its already been updated
-        executorService.shutdownNow();
+    /**
+     * @return The port the server listens on, which is only known after it starts when the "server.port" setting is
+     * 0 (any free port).
+     */
+    public int getPort() {
+        return app.port();
+    }
+
+    /**
+     * Stops checking for updates, waits for the records being ingested to be persisted and stops serving.
+     */
+    public void stop() {
+        refreshScheduler.stop();
+        ingestPipeline.close();
+        if (app != null) app.stop();
     }
 
     /**
      * Some pre initialization operations to be ran when the server starts.
      */
-    private void preinit() throws ExecutionException, InterruptedException {
-        // check if there are updates first
-        Map<String, List<AVLVirusStatsTree<?, ?>>> records =
-                executorService.submit(new COVID19StatsPageDocumentUpdateHandler(page)).get();
+    private void preinit() {
+        if (FAST_START) {
+            fastStart();
+            return;
+        }
+
+        // check if there are updates first, merging them with the saved records of the sources that weren't updated.
+        sources.loadSavedRecords();
 
-        // update flag
-        boolean updates = false;
+        Map<String, List<AVLVirusStatsTree<?, ?>>> records;
+        RefreshResult startupResult;
+        try {
+            records = sources.refresh();
+            startupResult = records.isEmpty() ? RefreshResult.NOT_MODIFIED : RefreshResult.UPDATED;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not check the stats for changes at startup!", e);
+            records = Collections.emptyMap();
+            startupResult = RefreshResult.FAILED;
+        }
 
-        // if there are remote updates, then use them and write them to the records map file. if not, then use the locally
-        // stored file as the current records.
+        // if there are remote updates, then use them and write the records of the updated sources to disk. if not,
+        // then merge the saved records of the sources.
         if (!records.isEmpty()) {
-            updates = true;
-            writeRecordsMap(records);
+            ingestPipeline.persist(records);
         } else {
-            LOGGER.info("Using the saved COVID-19 records map!");
-            records = readRecordsMap();
+            LOGGER.info("Using the saved COVID-19 records!");
+            records = mergeSavedRecords();
         }
 
         // create the tree and set it to inorder the results before we get any records from it.
-        COVID19StatsController.treeManager = new AVLVirusStatsTreesManager(records);
-        COVID19StatsController.treeManager.setInordered(true);
+        StartupPhases.finish("ingest");
+        if (startupResult == RefreshResult.UPDATED) {
+            swapSnapshot(records, "download", System.currentTimeMillis());
+        } else if (records != null) {
+            swapSnapshot(records, "saved", sources.getSavedRecordsLastModified());
+        }
+        StartupPhases.finish("swap");
 
         // then, finally initialize the server.
         init();
+        StartupPhases.finish("http");
 
-        // if the page has an usual update timeframe that is explicit on the webpage, then check if there were no updates
-        // but we are within an update timeframe and the last download day is lesser than the current day.
-        // if the conditions are true, then schedule a background thread constantly checking for changes.
-        if (page.getUsualUpdateTimeframe().length > 0) {
-            LocalTime currentTime = LocalTime.now();
-            LocalDate lastDownloadDate = readLastDownloadDate();
-            if (!updates && lastDownloadDate.getDayOfMonth() < LocalDate.now().getDayOfMonth()
-                    && (currentTime.getHour() >= page.getUsualUpdateTimeframe()[0]
-                    && currentTime.getHour() < page.getUsualUpdateTimeframe()[1])) {
-                scheduleConstantChecks();
-            }
-        }
+        // keep checking for updates in the background, more often within the usual update timeframe of the sources.
+        refreshScheduler.start(startupResult);
     }
 
-    /**
-     * Function that gets invoked by the preinit() function if there are yet no updates to the page, yet the current hours
-     * are the ones where the page usually gets updated.
-     */
-    private void scheduleConstantChecks() {
-        LOGGER.info("Scheduling constant checks for updates!");
-        try {
-            executorService.scheduleAtFixedRate(() -> {
-                LOGGER.info("Running a update check!");
-                COVID19StatsPageDocumentUpdateHandler updateHandler = new COVID19StatsPageDocumentUpdateHandler(page, this);
-                updateHandler.call();
-            }, 5, 5, TimeUnit.MINUTES).get();
-        } catch (InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
+    // serves the records saved by the previous run right away, and checks for updates in the background. without
+    // saved records, the server starts anyway, refusing the requests for records until the first download is swapped in.
+    private void fastStart() {
+        sources.loadSavedRecords();
+        Map<String, List<AVLVirusStatsTree<?, ?>>> records = mergeSavedRecords();
+        StartupPhases.finish("loadSnapshot");
+
+        if (records != null) {
+            swapSnapshot(records, "saved", sources.getSavedRecordsLastModified());
+        } else {
+            LOGGER.info("There are no saved COVID-19 records, serving the records once they are downloaded!");
         }
+        StartupPhases.finish("swap");
+
+        init();
+        StartupPhases.finish("http");
+
+        refreshScheduler.start();
+    }
+
+    // the merged records of the sources, as loaded from disk, or null if no source has saved records.
+    private Map<String, List<AVLVirusStatsTree<?, ?>>> mergeSavedRecords() {
+        Map<String, List<AVLVirusStatsTree<?, ?>>> records = sources.merge();
+        return !records.isEmpty() ? records : null;
     }
 
-    // update the records file and the TreesManager if new updates are found.
-    private void updateRecordsFile(Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
-        writeRecordsMap(records);
-        COVID19StatsController.treeManager = new AVLVirusStatsTreesManager(records);
-        COVID19StatsController.treeManager.setInordered(true);
+    // the persist stage: writes the records of each updated source to disk. the merged records aren't written, since
+    // they're merged again from the ones of the sources at startup.
+    private void persist(Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
+        sources.saveRecords();
+    }
+
+    // the index stage: swaps in the new records, returning their changes.
+    private ChangeSet index(Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
+        return swapSnapshot(records, "update", System.currentTimeMillis());
+    }
+
+    // the publish stage: appends the changes to the change feed, and notifies the websocket clients of the changes,
+    // each one with the changes of what it's subscribed to.
+    private void publish(ChangeSet changes) {
+        IngestEvent publishEvent = IngestEvent.start(IngestEvent.PUBLISH);
+        COVID19StatsController.changeFeed.append(changes);
+        subscriptions.publish(changes);
+        publishEvent.finish(0, changes.getCountries().size());
+    }
+
+    // replaces the records being served by the controller by the passed records, returning the changes between the
+    // replaced records and the passed ones (null if nothing was being served).
+    private ChangeSet swapSnapshot(Map<String, List<AVLVirusStatsTree<?, ?>>> records, String reason,
+                                   long downloadedAtMillis) {
+        AVLVirusStatsTreesManager previousTreeManager = COVID19StatsController.treeManager;
+        // add the sums of the continents and of the world before indexing, reusing the ones of the unchanged regions.
+        AVLVirusStatsTreesManager treeManager = new AVLVirusStatsTreesManager(
+                RegionRollup.rollup(records, previousTreeManager));
+        treeManager.setInordered(true);
+
+        ChangeSet changes = previousTreeManager != null ? SnapshotDiffer.diff(previousTreeManager, treeManager) : null;
+
+        // index the series, rolling series, predictions and cross sections before the records start being served,
+        // reusing the ones of the countries that weren't ingested again.
+        SeriesIndexer.index(treeManager, previousTreeManager);
+
+        SnapshotSwapEvent event = new SnapshotSwapEvent();
+        event.begin();
+        COVID19StatsController.treeManager = treeManager;
+        COVID19StatsController.readiness = new Readiness(reason, records.size(), getLatestRecordDate(records),
+                downloadedAtMillis);
+        StartupPhases.ready();
+
+        event.end();
+        event.countries = records.size();
+        event.reason = reason;
+        event.commit();
+
+        ServerMetrics.increment("snapshot.swaps");
+        return changes;
+    }
+
+    // the date of the latest record of any country, or null if there are no records.
+    private static String getLatestRecordDate(Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
+        LocalDate latest = null;
+        for (List<AVLVirusStatsTree<?, ?>> trees : records.values()) {
+            LocalDate date = trees.get(0).getLast().getLocalDate();
+            if (latest == null || date.isAfter(latest)) latest = date;
+        }
+
+        return latest != null ? latest.toString() : null;
     }
 
     // defines the OpenAPI settings.
@@ -188,17 +307,19 @@ public class ServerMain implements UpdateAvailableListener {
                         .title("COVID-19 stats API documentation"));
     }
 
-    // gets the heroku assigned port, defaults to 7000 if none
+    // gets the heroku assigned port, defaults to the "server.port" setting (7000) if none
     private static int getHerokuAssignedPort() {
         String herokuPort = System.getenv("PORT");
         if (herokuPort != null) {
             return Integer.parseInt(herokuPort);
         }
 
-        return 7000;
+        return ConfigUtils.getInt("server.port", 7000);
     }
 
-    public static void main(String[] args) throws ExecutionException, InterruptedException {
-        new ServerMain().preinit();
+    public static void main(String[] args) {
+        StartupPhases.finish("boot");
+        ProfilingRecorder.startIfEnabled();
+        new ServerMain().start();
     }
 }
@@ -0,0 +1,301 @@
+package pt.ipsantarem.esgts.covid19tracker.server.diff;
+
+import io.javalin.http.sse.SseClient;
+import io.javalin.plugin.json.JavalinJson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+import pt.ipsantarem.esgts.covid19tracker.server.models.ChangeFeedEntry;
+import pt.ipsantarem.esgts.covid19tracker.server.models.ChangeFeedPage;
+import pt.ipsantarem.esgts.covid19tracker.server.models.ChangeSet;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A feed of the changes of the records, where each change gets a sequence number greater than the previous one. The
+ * latest changes are kept in a ring buffer, whose size is set by the "changes.capacity" setting, so a client that
+ * knows the sequence number of the last change it saw can get only the changes after it, either by long polling or by
+ * a stream of server sent events. If those changes were already evicted from the buffer, the client is told to reload
+ * the records instead. Each event stream client has its own queue, whose size is set by the
+ * "changes.streamQueueCapacity" setting, and a client that falls further behind is disconnected.
+ * <p>
+ * The first sequence number is the time the server started, in milliseconds, so the sequence numbers keep increasing
+ * across restarts, and a client that resumes from a change that happened before a restart is told to reload.
+ *
+ * @author José Simões
+ */
+public class ChangeFeed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeFeed.class);
+
+    private final int capacity = ConfigUtils.getInt("changes.capacity", 64);
+    private final ArrayDeque<ChangeFeedEntry> entries = new ArrayDeque<>(capacity);
+    private long nextSequence = System.currentTimeMillis();
+
+    // the long polls waiting for a change, and their timeouts.
+    private final List<Waiter> waiters = new ArrayList<>();
+    private final ScheduledExecutorService timeoutExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "change-feed-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // the clients of the event stream. each one has its own bounded queue, written by one of the stream threads at a
+    // time, so a slow client never holds the refresh, nor the other clients.
+    private final int streamQueueCapacity = ConfigUtils.getInt("changes.streamQueueCapacity", 16);
+    private final Map<SseClient, StreamClient> streamClients = new ConcurrentHashMap<>();
+    private final ExecutorService streamExecutor =
+            Executors.newFixedThreadPool(Math.max(1, ConfigUtils.getInt("changes.streamThreads", 4)), r -> {
+                Thread thread = new Thread(r, "change-feed-stream");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public ChangeFeed() {
+        ServerMetrics.registerGauge("changes.sequence", this::getSequence);
+        ServerMetrics.registerGauge("changes.streamClients", streamClients::size);
+        ServerMetrics.registerGauge("changes.queuedEvents", () ->
+                streamClients.values().stream().mapToInt(StreamClient::getQueuedEvents).sum());
+        ServerMetrics.registerGauge("changes.waitingPolls", () -> {
+            synchronized (this) {
+                return waiters.size();
+            }
+        });
+    }
+
+    /**
+     * @return The sequence number of the latest change (the one before the first change, if there's none).
+     */
+    public synchronized long getSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Appends a change to the feed, evicting the oldest change if the buffer is full, and sends it to the waiting
+     * long polls and to the event stream clients.
+     *
+     * @param changes The change.
+     */
+    public void append(ChangeSet changes) {
+        ChangeFeedEntry entry;
+        List<Waiter> wokenWaiters;
+
+        synchronized (this) {
+            entry = new ChangeFeedEntry(nextSequence++, System.currentTimeMillis(), changes);
+            if (entries.size() == capacity) entries.poll();
+            entries.add(entry);
+
+            wokenWaiters = new ArrayList<>(waiters);
+            waiters.clear();
+
+            // queued under the lock, so it's queued after the backlog of every client that's already streaming.
+            for (StreamClient streamClient : streamClients.values()) {
+                streamClient.enqueue(() -> send(streamClient, entry));
+            }
+        }
+
+        for (Waiter waiter : wokenWaiters) {
+            waiter.future.complete(getSince(waiter.since));
+        }
+
+        LOGGER.info("Appended the change {} to the change feed!", entry.getSequence());
+    }
+
+    /**
+     * Gets the changes after a sequence number.
+     *
+     * @param since The sequence number of the last change the client saw, or null if it saw none.
+     * @return The changes, which are empty if there's none yet.
+     */
+    public synchronized ChangeFeedPage getSince(Long since) {
+        long sequence = getSequence();
+
+        if (mustResync(since)) {
+            ServerMetrics.increment("changes.resyncs");
+            return new ChangeFeedPage(sequence, true, Collections.emptyList());
+        }
+
+        List<ChangeFeedEntry> changes = new ArrayList<>();
+        for (ChangeFeedEntry entry : entries) {
+            if (entry.getSequence() > since) changes.add(entry);
+        }
+
+        return new ChangeFeedPage(sequence, false, changes);
+    }
+
+    /**
+     * Gets the changes after a sequence number, waiting for the next change if there's none yet.
+     *
+     * @param since          The sequence number of the last change the client saw, or null if it saw none.
+     * @param timeoutSeconds For how long to wait for the next change.
+     * @return The future changes, which are empty if no change happened until the timeout.
+     */
+    public CompletableFuture<ChangeFeedPage> poll(Long since, int timeoutSeconds) {
+        Waiter waiter;
+
+        synchronized (this) {
+            ChangeFeedPage page = getSince(since);
+            if (page.isResync() || !page.getChanges().isEmpty() || timeoutSeconds <= 0) {
+                return CompletableFuture.completedFuture(page);
+            }
+
+            waiter = new Waiter(since);
+            waiters.add(waiter);
+        }
+
+        timeoutExecutor.schedule(() -> {
+            synchronized (this) {
+                waiters.remove(waiter);
+            }
+            waiter.future.complete(getSince(since));
+        }, timeoutSeconds, TimeUnit.SECONDS);
+
+        return waiter.future;
+    }
+
+    /**
+     * Streams the changes after a sequence number to an event stream client: first the changes that already
+     * happened, then every new change, as "change" events with the sequence number as their id. If the client must
+     * reload the records, it gets a "resync" event with the latest sequence number instead of the changes that already
+     * happened.
+     *
+     * @param client The event stream client.
+     * @param since  The sequence number of the last change the client saw, or null if it saw none.
+     */
+    public void stream(SseClient client, Long since) {
+        StreamClient streamClient = new StreamClient(client);
+        client.onClose(() -> streamClients.remove(client));
+
+        // the backlog is read and queued under the lock, so the changes appended afterwards are queued after it, and
+        // the ones appended before it are part of it. it's queued as a single event, however long it is.
+        synchronized (this) {
+            ChangeFeedPage page = getSince(since);
+            streamClients.put(client, streamClient);
+
+            streamClient.enqueue(() -> {
+                if (page.isResync()) {
+                    client.sendEvent("resync", "{}", String.valueOf(page.getSequence()));
+                }
+
+                for (ChangeFeedEntry entry : page.getChanges()) {
+                    send(streamClient, entry);
+                }
+            });
+        }
+    }
+
+    private void send(StreamClient streamClient, ChangeFeedEntry entry) {
+        try {
+            streamClient.client.sendEvent("change", JavalinJson.toJson(entry), String.valueOf(entry.getSequence()));
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not send a change to an event stream client!", e);
+            streamClients.remove(streamClient.client);
+        }
+    }
+
+    // stops streaming to a client that fell too far behind, closing its connection, which also fails a send that's
+    // waiting for its socket.
+    private void drop(StreamClient streamClient) {
+        streamClients.remove(streamClient.client);
+        ServerMetrics.increment("changes.streamClients.dropped");
+        LOGGER.info("Dropped an event stream client that fell behind the change feed!");
+
+        try {
+            streamClient.client.ctx.req.getAsyncContext().complete();
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not close the connection of an event stream client!", e);
+        }
+    }
+
+    // the client must reload if it saw no change, if it saw a change that's no longer in the buffer, or if it saw
+    // a change that doesn't exist.
+    private boolean mustResync(Long since) {
+        long oldestSequence = entries.isEmpty() ? nextSequence : entries.peek().getSequence();
+        return since == null || since < oldestSequence - 1 || since > getSequence();
+    }
+
+    /**
+     * An event stream client, with its bounded queue of events to send. The events are sent in order by one stream
+     * thread at a time, and a client whose queue is full is dropped instead of holding the others.
+     */
+    private class StreamClient {
+        private final SseClient client;
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private boolean sending = false; // is a stream thread sending the queued events? guarded by the queue lock.
+        private boolean dropped = false;
+
+        private StreamClient(SseClient client) {
+            this.client = client;
+        }
+
+        // queues an event, starting to send the events if none is being sent.
+        private void enqueue(Runnable event) {
+            boolean full;
+
+            synchronized (queue) {
+                if (dropped) return;
+
+                full = queue.size() >= streamQueueCapacity;
+                if (full) {
+                    dropped = true;
+                    queue.clear();
+                } else {
+                    queue.add(event);
+                    if (sending) return;
+                    sending = true;
+                }
+            }
+
+            if (full) {
+                drop(this);
+            } else {
+                streamExecutor.execute(this::sendQueued);
+            }
+        }
+
+        // sends the queued events until there's none left.
+        private void sendQueued() {
+            while (true) {
+                Runnable event;
+
+                synchronized (queue) {
+                    event = dropped ? null : queue.poll();
+                    if (event == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+
+                event.run();
+            }
+        }
+
+        private int getQueuedEvents() {
+            synchronized (queue) {
+                return queue.size();
+            }
+        }
+    }
+
+    /**
+     * A long poll waiting for a change.
+     */
+    private static class Waiter {
+        private final Long since;
+        private final CompletableFuture<ChangeFeedPage> future = new CompletableFuture<>();
+
+        private Waiter(Long since) {
+            this.since = since;
+        }
+    }
+}
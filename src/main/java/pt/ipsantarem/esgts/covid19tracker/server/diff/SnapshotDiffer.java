@@ -0,0 +1,190 @@
+package pt.ipsantarem.esgts.covid19tracker.server.diff;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.IngestEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.models.ChangeSet;
+import pt.ipsantarem.esgts.covid19tracker.server.models.CountryChange;
+import pt.ipsantarem.esgts.covid19tracker.server.models.StatChange;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.VirusStatsNode;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils.epochDayToString;
+
+/**
+ * Computes the changes between two snapshots of the records (the records being served and the newly ingested ones):
+ * for every country and stat type, the days that were added, the days whose value was revised and the days that were
+ * removed (a source may drop its latest day, or a row). The countries are split between the
+ * threads of a fork/join pool, whose parallelism is set by the "diff.parallelism" setting (the number of available
+ * processors by default).
+ *
+ * @author José Simões
+ */
+public class SnapshotDiffer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotDiffer.class);
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            ConfigUtils.getInt("diff.parallelism", Runtime.getRuntime().availableProcessors()));
+
+    // the number of countries a task compares by itself instead of splitting them into subtasks.
+    private static final int COUNTRIES_PER_TASK = 8;
+
+    /**
+     * Computes the changes between two snapshots.
+     *
+     * @param oldManager The tree manager with the old records.
+     * @param newManager The tree manager with the new records.
+     * @return The changes.
+     */
+    public static ChangeSet diff(AVLVirusStatsTreesManager oldManager, AVLVirusStatsTreesManager newManager) {
+        IngestEvent diffEvent = IngestEvent.start(IngestEvent.DIFF);
+
+        int[] countryIds = newManager.getCountryIds();
+        CountryChange[] changes = new CountryChange[countryIds.length];
+        int[][] counts = new int[countryIds.length][3];
+
+        POOL.invoke(new DiffTask(oldManager, newManager, countryIds, changes, counts, 0, countryIds.length));
+
+        List<CountryChange> countryChanges = new ArrayList<>();
+        int addedDays = 0;
+        int revisedValues = 0;
+        int removedDays = 0;
+
+        for (int i = 0; i < countryIds.length; i++) {
+            if (changes[i] != null) countryChanges.add(changes[i]);
+            addedDays += counts[i][0];
+            revisedValues += counts[i][1];
+            removedDays += counts[i][2];
+        }
+
+        List<String> removedCountries = new ArrayList<>();
+        for (Map.Entry<String, List<AVLVirusStatsTree<?, ?>>> country : oldManager.getRecords().entrySet()) {
+            if (newManager.getTrees(country.getValue().get(0).getRoot().getCountryId()) == null) {
+                removedCountries.add(country.getKey());
+            }
+        }
+
+        diffEvent.finish(0, addedDays + revisedValues + removedDays);
+        LOGGER.info("{} countries changed ({} added days, {} revised values and {} removed days), {} countries were " +
+                "removed!", countryChanges.size(), addedDays, revisedValues, removedDays, removedCountries.size());
+
+        return new ChangeSet(countryChanges, removedCountries, addedDays, revisedValues, removedDays);
+    }
+
+    /**
+     * Computes the changes of a country.
+     *
+     * @param oldTrees The old trees of the country, or null if the country is new.
+     * @param newTrees The new trees of the country.
+     * @param counts   Where the number of added days, of revised values and of removed days get written to.
+     * @return The changes, or null if nothing changed.
+     */
+    private static CountryChange diffCountry(List<AVLVirusStatsTree<?, ?>> oldTrees, List<AVLVirusStatsTree<?, ?>> newTrees,
+                                             int[] counts) {
+        // the trees of the countries that didn't change may be the same trees, when only the changed countries were
+        // ingested again.
+        if (oldTrees == newTrees) return null;
+
+        Map<String, List<StatChange<?>>> added = new LinkedHashMap<>();
+        Map<String, List<StatChange<?>>> revised = new LinkedHashMap<>();
+        Map<String, List<StatChange<?>>> removed = new LinkedHashMap<>();
+
+        for (int treeIdx = 0; treeIdx < newTrees.size(); treeIdx++) {
+            AVLVirusStatsTree<?, ?> newTree = newTrees.get(treeIdx);
+            List<? extends VirusStatsNode<?>> newNodes = newTree.getNodes();
+            List<? extends VirusStatsNode<?>> oldNodes = oldTrees != null && treeIdx < oldTrees.size()
+                    ? oldTrees.get(treeIdx).getNodes() : Collections.emptyList();
+
+            List<StatChange<?>> addedStats = new ArrayList<>();
+            List<StatChange<?>> revisedStats = new ArrayList<>();
+            List<StatChange<?>> removedStats = new ArrayList<>();
+
+            // both lists are ordered by date, so they're walked side by side.
+            int i = 0;
+            for (VirusStatsNode<?> newNode : newNodes) {
+                while (i < oldNodes.size() && oldNodes.get(i).getEpochDay() < newNode.getEpochDay()) {
+                    removedStats.add(toRemovedStatChange(oldNodes.get(i++)));
+                }
+
+                if (i < oldNodes.size() && oldNodes.get(i).getEpochDay() == newNode.getEpochDay()) {
+                    Object oldStat = oldNodes.get(i++).getNodeInformation();
+                    if (!Objects.equals(oldStat, newNode.getNodeInformation())) {
+                        revisedStats.add(toStatChange(newNode, oldStat));
+                    }
+                } else {
+                    addedStats.add(toStatChange(newNode, null));
+                }
+            }
+
+            while (i < oldNodes.size()) {
+                removedStats.add(toRemovedStatChange(oldNodes.get(i++)));
+            }
+
+            String statType = newTree.getRoot().typeOfVirusStat();
+            if (!addedStats.isEmpty()) added.put(statType, addedStats);
+            if (!revisedStats.isEmpty()) revised.put(statType, revisedStats);
+            if (!removedStats.isEmpty()) removed.put(statType, removedStats);
+
+            // the new and the removed days are the same on every tree, so they're only counted once.
+            counts[0] = Math.max(counts[0], addedStats.size());
+            counts[1] += revisedStats.size();
+            counts[2] = Math.max(counts[2], removedStats.size());
+        }
+
+        if (added.isEmpty() && revised.isEmpty() && removed.isEmpty()) return null;
+        return new CountryChange(newTrees.get(0).getRoot().getCountry(), added, revised, removed);
+    }
+
+    private static StatChange<?> toStatChange(VirusStatsNode<?> node, Object previousStat) {
+        return new StatChange<>(epochDayToString(node.getEpochDay()), node.getNodeInformation(), previousStat);
+    }
+
+    private static StatChange<?> toRemovedStatChange(VirusStatsNode<?> oldNode) {
+        return new StatChange<>(epochDayToString(oldNode.getEpochDay()), null, oldNode.getNodeInformation());
+    }
+
+    /**
+     * Computes the changes of a range of countries, splitting it in half until it's small enough.
+     */
+    private static class DiffTask extends RecursiveAction {
+        private final AVLVirusStatsTreesManager oldManager;
+        private final AVLVirusStatsTreesManager newManager;
+        private final int[] countryIds;
+        private final CountryChange[] changes;
+        private final int[][] counts;
+        private final int from;
+        private final int to;
+
+        private DiffTask(AVLVirusStatsTreesManager oldManager, AVLVirusStatsTreesManager newManager, int[] countryIds,
+                         CountryChange[] changes, int[][] counts, int from, int to) {
+            this.oldManager = oldManager;
+            this.newManager = newManager;
+            this.countryIds = countryIds;
+            this.changes = changes;
+            this.counts = counts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > COUNTRIES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DiffTask(oldManager, newManager, countryIds, changes, counts, from, middle),
+                        new DiffTask(oldManager, newManager, countryIds, changes, counts, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                changes[i] = diffCountry(oldManager.getTrees(countryIds[i]), newManager.getTrees(countryIds[i]),
+                        counts[i]);
+            }
+        }
+    }
+}
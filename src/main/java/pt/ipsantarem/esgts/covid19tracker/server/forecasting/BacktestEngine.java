@@ -0,0 +1,235 @@
+package pt.ipsantarem.esgts.covid19tracker.server.forecasting;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.models.BacktestAccuracy;
+import pt.ipsantarem.esgts.covid19tracker.server.models.BacktestReport;
+import pt.ipsantarem.esgts.covid19tracker.server.models.ModelBacktest;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.CountryDictionary;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager.*;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.PREDICTED;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.PREDICTION_CONFIDENCE;
+
+/**
+ * Measures the accuracy and the cost of the prediction models by replaying the history of every country: for every
+ * day t, each model is fitted to the stats up to t and its predictions for the next days are compared to the real
+ * stats, accumulating the mean absolute error and the mean absolute percentage error by model, country and horizon.
+ * The regions rolled up from the countries (the continents and the world) are backtested and reported like the
+ * countries, but are left out of the overall accuracy of each model, so that their errors, which are the sums of the
+ * errors of their countries, don't outweigh the errors of the countries themselves.
+ * The countries are split between the threads of a fork/join pool, whose parallelism is set by the
+ * "backtest.parallelism" setting (the number of available processors by default).
+ *
+ * @author José Simões
+ */
+public class BacktestEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BacktestEngine.class);
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            ConfigUtils.getInt("backtest.parallelism", Runtime.getRuntime().availableProcessors()));
+
+    // the number of days a model needs to be fitted to.
+    private static final int MIN_FITTED_DAYS = 2;
+
+    /**
+     * Backtests every registered model.
+     *
+     * @param treeManager The tree manager with the records to replay.
+     * @param treeIdx     The index of the tree of the stat whose predictions are evaluated.
+     * @param maxHorizon  The maximum number of days ahead to predict.
+     * @param window      The number of latest days the models are fitted to, or 0 to use the default window of each
+     *                    model.
+     * @return The report with the results of every model.
+     */
+    public static BacktestReport run(AVLVirusStatsTreesManager treeManager, int treeIdx, int maxHorizon, int window) {
+        long start = System.nanoTime();
+
+        int[] countryIds = treeManager.getCountryIds();
+        Forecaster[] forecasters = Forecasters.getNames().stream().sorted().map(Forecasters::get)
+                .toArray(Forecaster[]::new);
+        Accumulator accumulator = new Accumulator(forecasters.length, countryIds.length, maxHorizon);
+
+        POOL.invoke(new BacktestTask(treeManager, treeIdx, maxHorizon, window, countryIds, forecasters, accumulator,
+                0, countryIds.length));
+
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+        List<ModelBacktest> models = new ArrayList<>();
+        long points = 0;
+
+        for (int model = 0; model < forecasters.length; model++) {
+            ModelBacktest modelBacktest = accumulator.toModelBacktest(forecasters[model].getName(), model, countryIds,
+                    treeManager);
+            models.add(modelBacktest);
+            points += modelBacktest.getPoints();
+        }
+
+        String statType = countryIds.length > 0
+                ? treeManager.getTrees(countryIds[0]).get(treeIdx).getRoot().typeOfVirusStat() : null;
+        BacktestReport report = new BacktestReport(statType, maxHorizon, countryIds.length, POOL.getParallelism(),
+                points, seconds, models);
+
+        LOGGER.info("Backtested {} models on {} countries, {} points in {} seconds ({} points per second)!",
+                forecasters.length, countryIds.length, points, seconds, report.getPointsPerSecond());
+
+        return report;
+    }
+
+    /**
+     * The sums of the errors, mapped by model, country and horizon. Each country is only written by the task that
+     * backtests it, so no synchronization is needed.
+     */
+    private static class Accumulator {
+        private final double[][][] absoluteErrors;
+        private final long[][][] points;
+        private final double[][][] percentageErrors;
+        private final long[][][] percentagePoints;
+        private final long[][] nanos;
+
+        private Accumulator(int models, int countries, int maxHorizon) {
+            absoluteErrors = new double[models][countries][maxHorizon];
+            points = new long[models][countries][maxHorizon];
+            percentageErrors = new double[models][countries][maxHorizon];
+            percentagePoints = new long[models][countries][maxHorizon];
+            nanos = new long[models][countries];
+        }
+
+        private ModelBacktest toModelBacktest(String name, int model, int[] countryIds,
+                                              AVLVirusStatsTreesManager treeManager) {
+            int maxHorizon = points[model].length > 0 ? points[model][0].length : 0;
+            double[] totalAbsoluteErrors = new double[maxHorizon];
+            long[] totalPoints = new long[maxHorizon];
+            double[] totalPercentageErrors = new double[maxHorizon];
+            long[] totalPercentagePoints = new long[maxHorizon];
+            long modelPoints = 0;
+            long modelNanos = 0;
+
+            Map<String, List<BacktestAccuracy>> countryAccuracies = new LinkedHashMap<>();
+
+            for (int country = 0; country < countryIds.length; country++) {
+                List<BacktestAccuracy> accuracies = new ArrayList<>(maxHorizon);
+                boolean region = CountryDictionary.isRegion(countryIds[country]);
+
+                for (int h = 0; h < maxHorizon; h++) {
+                    accuracies.add(accuracy(h + 1, absoluteErrors[model][country][h], points[model][country][h],
+                            percentageErrors[model][country][h], percentagePoints[model][country][h]));
+
+                    if (!region) {
+                        totalAbsoluteErrors[h] += absoluteErrors[model][country][h];
+                        totalPoints[h] += points[model][country][h];
+                        totalPercentageErrors[h] += percentageErrors[model][country][h];
+                        totalPercentagePoints[h] += percentagePoints[model][country][h];
+                    }
+                    modelPoints += points[model][country][h];
+                }
+
+                modelNanos += nanos[model][country];
+                countryAccuracies.put(treeManager.getCountrySeries(countryIds[country]).getCountry(), accuracies);
+            }
+
+            List<BacktestAccuracy> accuracies = new ArrayList<>(maxHorizon);
+            for (int h = 0; h < maxHorizon; h++) {
+                accuracies.add(accuracy(h + 1, totalAbsoluteErrors[h], totalPoints[h], totalPercentageErrors[h],
+                        totalPercentagePoints[h]));
+            }
+
+            return new ModelBacktest(name, modelPoints, modelNanos / (double) TimeUnit.SECONDS.toNanos(1),
+                    accuracies, countryAccuracies);
+        }
+
+        private static BacktestAccuracy accuracy(int horizon, double absoluteErrors, long points,
+                                                 double percentageErrors, long percentagePoints) {
+            return new BacktestAccuracy(horizon, points, points > 0 ? absoluteErrors / points : 0,
+                    percentagePoints > 0 ? 100 * percentageErrors / percentagePoints : 0);
+        }
+    }
+
+    /**
+     * Backtests a range of countries, splitting it in half until it has a single country.
+     */
+    private static class BacktestTask extends RecursiveAction {
+        private final AVLVirusStatsTreesManager treeManager;
+        private final int treeIdx;
+        private final int maxHorizon;
+        private final int window;
+        private final int[] countryIds;
+        private final Forecaster[] forecasters;
+        private final Accumulator accumulator;
+        private final int from;
+        private final int to;
+
+        private BacktestTask(AVLVirusStatsTreesManager treeManager, int treeIdx, int maxHorizon, int window,
+                             int[] countryIds, Forecaster[] forecasters, Accumulator accumulator, int from, int to) {
+            this.treeManager = treeManager;
+            this.treeIdx = treeIdx;
+            this.maxHorizon = maxHorizon;
+            this.window = window;
+            this.countryIds = countryIds;
+            this.forecasters = forecasters;
+            this.accumulator = accumulator;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BacktestTask(treeManager, treeIdx, maxHorizon, window, countryIds, forecasters,
+                                accumulator, from, middle),
+                        new BacktestTask(treeManager, treeIdx, maxHorizon, window, countryIds, forecasters,
+                                accumulator, middle, to));
+                return;
+            }
+
+            boolean newStat = treeIdx == NEW_CASES_TREE_IDX || treeIdx == NEW_DEATHS_TREE_IDX;
+            int totalIdx = treeIdx == NEW_CASES_TREE_IDX || treeIdx == TOTAL_CASES_TREE_IDX
+                    ? TOTAL_CASES_TREE_IDX : TOTAL_DEATHS_TREE_IDX;
+            int[] totals = treeManager.getCountrySeries(countryIds[from]).getStats(totalIdx);
+            int[][] forecast = new int[3][maxHorizon];
+
+            for (int model = 0; model < forecasters.length; model++) {
+                Forecaster forecaster = forecasters[model];
+                int modelWindow = window > 0 ? window : forecaster.getDefaultWindow();
+                long start = System.nanoTime();
+
+                for (int t = MIN_FITTED_DAYS; t < totals.length; t++) {
+                    int horizon = Math.min(maxHorizon, totals.length - t);
+                    forecaster.forecast(totals, t, modelWindow, horizon, PREDICTION_CONFIDENCE, forecast);
+
+                    for (int h = 0; h < horizon; h++) {
+                        int day = t + h;
+                        int predicted = forecast[PREDICTED][h];
+                        int actual = totals[day];
+
+                        if (newStat) {
+                            predicted -= h == 0 ? totals[t - 1] : forecast[PREDICTED][h - 1];
+                            actual -= totals[day - 1];
+                        }
+
+                        double error = Math.abs((double) predicted - actual);
+                        accumulator.absoluteErrors[model][from][h] += error;
+                        accumulator.points[model][from][h]++;
+
+                        if (actual != 0) {
+                            accumulator.percentageErrors[model][from][h] += error / Math.abs(actual);
+                            accumulator.percentagePoints[model][from][h]++;
+                        }
+                    }
+                }
+
+                accumulator.nanos[model][from] += System.nanoTime() - start;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package pt.ipsantarem.esgts.covid19tracker.server.forecasting;
+
+import pt.ipsantarem.esgts.covid19tracker.server.trees.CountrySeries;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager.*;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.*;
+
+/**
+ * The forecasting stage of the ingest. Fits the regressions of the default prediction window to the total stats of a
+ * country and predicts the next day of every stat from them, for the
+ * {@link pt.ipsantarem.esgts.covid19tracker.server.trees.SeriesIndexer}, which runs it for each country whose records
+ * changed, so that the predict endpoints only have to look the predictions up.
+ *
+ * @author José Simões
+ */
+public class ForecastStage {
+
+    // the pairs of the tree indexes of a total stat and of its new stat.
+    private static final int[][] STAT_PAIRS = {{TOTAL_CASES_TREE_IDX, NEW_CASES_TREE_IDX},
+            {TOTAL_DEATHS_TREE_IDX, NEW_DEATHS_TREE_IDX}};
+
+    /**
+     * Fits the regressions of the default prediction window to the logarithm of the total stats of a country. If the
+     * previous series of the country are its first days, their regressions are only fed the appended days, which fits
+     * the same lines, since the regressions are fed one day at a time.
+     *
+     * @param stats         The stats of each tree, ordered by date.
+     * @param previous      The previous series of the country, or null to fit the regressions from scratch.
+     * @param firstAppended The first day that isn't in the previous series (0 without previous series).
+     * @return The regressions, indexed by the tree indexes (null for the trees of new stats).
+     */
+    public static SlidingWindowRegression[] fitRegressions(int[][] stats, CountrySeries previous, int firstAppended) {
+        SlidingWindowRegression[] regressions = new SlidingWindowRegression[stats.length];
+
+        for (int[] pair : STAT_PAIRS) {
+            int totalIdx = pair[0];
+            int[] totals = stats[totalIdx];
+
+            regressions[totalIdx] = previous != null
+                    ? new SlidingWindowRegression(previous.getRegression(totalIdx))
+                    : new SlidingWindowRegression(PREDICTION_DAYS);
+            for (int i = previous != null ? firstAppended : 0; i < totals.length; i++) {
+                regressions[totalIdx].add(toLogStat(totals[i]));
+            }
+        }
+
+        return regressions;
+    }
+
+    /**
+     * Predicts the next day of every stat of a country.
+     *
+     * @param stats       The stats of each tree, ordered by date.
+     * @param regressions The regressions fitted to the total stats (see {@link #fitRegressions}).
+     * @return The next day predictions, indexed by the tree indexes.
+     */
+    public static int[] predict(int[][] stats, SlidingWindowRegression[] regressions) {
+        int[] predictions = new int[stats.length];
+
+        for (int[] pair : STAT_PAIRS) {
+            int totalIdx = pair[0];
+            int newIdx = pair[1];
+            int lastTotal = stats[totalIdx][stats[totalIdx].length - 1];
+
+            predictions[totalIdx] = totalStatCasesForecast(regressions[totalIdx], lastTotal, 1,
+                    PREDICTION_CONFIDENCE)[PREDICTED][0];
+            predictions[newIdx] = predictions[totalIdx] - lastTotal;
+        }
+
+        return predictions;
+    }
+}
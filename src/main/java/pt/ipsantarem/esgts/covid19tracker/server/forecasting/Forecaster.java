@@ -0,0 +1,39 @@
+package pt.ipsantarem.esgts.covid19tracker.server.forecasting;
+
+/**
+ * A model that predicts the next days of a total stat (for example, the total cases of a country) from its latest
+ * days. The implementations work directly on primitive arrays and should not allocate memory for each fitted day, so
+ * that fitting every country stays cheap. They must be thread safe, since the same instance is shared by every request.
+ *
+ * @author José Simões
+ * @see Forecasters
+ */
+public interface Forecaster {
+
+    /**
+     * @return The name of the model, used to choose it through the model query parameter.
+     */
+    String getName();
+
+    /**
+     * @return The number of latest days the model is fitted to when no window is chosen.
+     */
+    int getDefaultWindow();
+
+    /**
+     * Predicts the next days of a total stat.
+     *
+     * @param totals     The total stats, oldest first.
+     * @param length     The number of stats of the array to use (the model is fitted to the ones right before this
+     *                   position, which allows fitting to a prefix of the array without copying it).
+     * @param window     The number of latest stats the model is fitted to.
+     * @param horizon    The number of days to predict.
+     * @param confidence The confidence of the prediction intervals, between 0 and 1 (exclusive).
+     * @param forecast   The array the predictions are written to, indexed by
+     *                   {@link pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils#PREDICTED},
+     *                   {@link pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils#LOWER_BOUND} and
+     *                   {@link pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils#UPPER_BOUND}, each
+     *                   one with room for at least the horizon days.
+     */
+    void forecast(int[] totals, int length, int window, int horizon, double confidence, int[][] forecast);
+}
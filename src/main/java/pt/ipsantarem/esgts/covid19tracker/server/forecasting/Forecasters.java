@@ -0,0 +1,52 @@
+package pt.ipsantarem.esgts.covid19tracker.server.forecasting;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of the available forecasting models, mapped by their names.
+ *
+ * @author José Simões
+ */
+public class Forecasters {
+    private static final Map<String, Forecaster> FORECASTERS = new ConcurrentHashMap<>();
+
+    /**
+     * The model used when no model is chosen.
+     */
+    public static final Forecaster DEFAULT = new LogLinearRegressionForecaster();
+
+    static {
+        register(DEFAULT);
+        register(new HoltLinearForecaster());
+        register(new HoltWintersForecaster());
+    }
+
+    /**
+     * Registers a model, replacing any other model with the same name.
+     *
+     * @param forecaster The model.
+     */
+    public static void register(Forecaster forecaster) {
+        FORECASTERS.put(forecaster.getName(), forecaster);
+    }
+
+    /**
+     * Gets a model by its name.
+     *
+     * @param name The name of the model.
+     * @return The model, or null if there's no model with that name.
+     */
+    public static Forecaster get(String name) {
+        return FORECASTERS.get(name);
+    }
+
+    /**
+     * @return The names of the available models.
+     */
+    public static Set<String> getNames() {
+        return Collections.unmodifiableSet(FORECASTERS.keySet());
+    }
+}
@@ -0,0 +1,111 @@
+package pt.ipsantarem.esgts.covid19tracker.server.forecasting;
+
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.*;
+
+/**
+ * Holt's linear trend exponential smoothing, applied to the daily new stats (the differences between consecutive
+ * total stats). Keeps a smoothed level and trend of the new stats, so it follows growth that is slowing down or
+ * speeding up better than the regression. The smoothing factors are set by the "forecast.holt.alpha" (level) and
+ * "forecast.holt.beta" (trend) settings.
+ *
+ * @author José Simões
+ */
+public class HoltLinearForecaster implements Forecaster {
+    private final double alpha = Double.parseDouble(ConfigUtils.getString("forecast.holt.alpha", "0.3"));
+    private final double beta = Double.parseDouble(ConfigUtils.getString("forecast.holt.beta", "0.1"));
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return "holt";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDefaultWindow() {
+        return 28;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forecast(int[] totals, int length, int window, int horizon, double confidence, int[][] forecast) {
+        // the first day with a new stat, which needs the total stat of the day before.
+        int first = Math.max(1, length - window);
+
+        double level = 0;
+        double trend = 0;
+        double squaredErrors = 0;
+        int errors = 0;
+
+        if (first < length) {
+            level = totals[first] - totals[first - 1];
+            if (first + 1 < length) trend = (totals[first + 1] - totals[first]) - level;
+        }
+
+        for (int t = first + 1; t < length; t++) {
+            double y = totals[t] - totals[t - 1];
+            double error = y - (level + trend);
+            squaredErrors += error * error;
+            errors++;
+
+            double previousLevel = level;
+            level = alpha * y + (1 - alpha) * (level + trend);
+            trend = beta * (level - previousLevel) + (1 - beta) * trend;
+        }
+
+        double standardError = errors > 0 ? Math.sqrt(squaredErrors / errors) : 0;
+        writeForecast(totals[length - 1], level, trend, null, 0, standardError, alpha, beta, horizon, confidence,
+                forecast);
+    }
+
+    /**
+     * Writes the predictions of the total stats, accumulating the predicted new stats on top of the latest total stat.
+     *
+     * @param lastTotal      The latest total stat.
+     * @param level          The smoothed level of the new stats.
+     * @param trend          The smoothed trend of the new stats.
+     * @param seasonal       The seasonal components of the new stats, or null if there's no seasonality.
+     * @param nextSeason     The index of the seasonal component of the first predicted day.
+     * @param standardError  The standard error of the one day ahead predictions of the fitted days.
+     * @param alpha          The smoothing factor of the level.
+     * @param beta           The smoothing factor of the trend.
+     * @param horizon        The number of days to predict.
+     * @param confidence     The confidence of the prediction intervals.
+     * @param forecast       The array the predictions are written to.
+     */
+    static void writeForecast(int lastTotal, double level, double trend, double[] seasonal, int nextSeason,
+                              double standardError, double alpha, double beta, int horizon, double confidence,
+                              int[][] forecast) {
+        double z = Quantiles.normal(confidence);
+        double predictedTotal = lastTotal;
+        double lowerTotal = lastTotal;
+        double upperTotal = lastTotal;
+        double varianceFactor = 1;
+
+        for (int h = 1; h <= horizon; h++) {
+            double predicted = level + h * trend;
+            if (seasonal != null) predicted += seasonal[(nextSeason + h - 1) % seasonal.length];
+            predicted = Math.max(0, predicted);
+
+            // the variance of the h days ahead prediction grows with the smoothed level and trend errors.
+            if (h > 1) varianceFactor += alpha * alpha * (1 + (h - 1) * beta) * (1 + (h - 1) * beta);
+            double halfWidth = z * standardError * Math.sqrt(varianceFactor);
+
+            predictedTotal += predicted;
+            lowerTotal += Math.max(0, predicted - halfWidth);
+            upperTotal += predicted + halfWidth;
+
+            forecast[PREDICTED][h - 1] = toStat(Math.round(predictedTotal));
+            forecast[LOWER_BOUND][h - 1] = toStat(Math.round(lowerTotal));
+            forecast[UPPER_BOUND][h - 1] = toStat(Math.round(upperTotal));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package pt.ipsantarem.esgts.covid19tracker.server.forecasting;
+
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+/**
+ * Holt-Winters exponential smoothing with an additive weekly seasonality, applied to the daily new stats (the
+ * differences between consecutive total stats). Besides the level and trend of {@link HoltLinearForecaster}, it keeps
+ * a smoothed component for each day of the week, which captures the weekly reporting pattern of most countries (fewer
+ * reports on weekends, catching up on mondays). Needs at least two weeks of new stats in the window, falling back to
+ * Holt's linear trend if there are less. The smoothing factors are set by the "forecast.holt.alpha" (level),
+ * "forecast.holt.beta" (trend) and "forecast.holtWinters.gamma" (seasonality) settings.
+ *
+ * @author José Simões
+ */
+public class HoltWintersForecaster implements Forecaster {
+    private static final int SEASON_LENGTH = 7;
+
+    private final double alpha = Double.parseDouble(ConfigUtils.getString("forecast.holt.alpha", "0.3"));
+    private final double beta = Double.parseDouble(ConfigUtils.getString("forecast.holt.beta", "0.1"));
+    private final double gamma = Double.parseDouble(ConfigUtils.getString("forecast.holtWinters.gamma", "0.2"));
+    private final HoltLinearForecaster fallback = new HoltLinearForecaster();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return "holt-winters";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDefaultWindow() {
+        return 8 * SEASON_LENGTH;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forecast(int[] totals, int length, int window, int horizon, double confidence, int[][] forecast) {
+        // the first day with a new stat, which needs the total stat of the day before.
+        int first = Math.max(1, length - window);
+
+        if (length - first < 2 * SEASON_LENGTH) {
+            fallback.forecast(totals, length, window, horizon, confidence, forecast);
+            return;
+        }
+
+        // the level starts as the mean of the first week, the trend as the mean daily change between the first two
+        // weeks and the seasonal components as the differences between the days of the first week and its mean.
+        double firstWeekMean = (totals[first + SEASON_LENGTH - 1] - totals[first - 1]) / (double) SEASON_LENGTH;
+        double secondWeekMean = (totals[first + 2 * SEASON_LENGTH - 1] - totals[first + SEASON_LENGTH - 1])
+                / (double) SEASON_LENGTH;
+
+        double[] seasonal = new double[SEASON_LENGTH];
+        for (int i = 0; i < SEASON_LENGTH; i++) {
+            seasonal[i] = (totals[first + i] - totals[first + i - 1]) - firstWeekMean;
+        }
+
+        double level = firstWeekMean;
+        double trend = (secondWeekMean - firstWeekMean) / SEASON_LENGTH;
+        double squaredErrors = 0;
+        int errors = 0;
+
+        for (int t = first + SEASON_LENGTH; t < length; t++) {
+            int season = (t - first) % SEASON_LENGTH;
+            double y = totals[t] - totals[t - 1];
+            double error = y - (level + trend + seasonal[season]);
+            squaredErrors += error * error;
+            errors++;
+
+            double previousLevel = level;
+            level = alpha * (y - seasonal[season]) + (1 - alpha) * (level + trend);
+            trend = beta * (level - previousLevel) + (1 - beta) * trend;
+            seasonal[season] = gamma * (y - level) + (1 - gamma) * seasonal[season];
+        }
+
+        HoltLinearForecaster.writeForecast(totals[length - 1], level, trend, seasonal, (length - first) % SEASON_LENGTH,
+                Math.sqrt(squaredErrors / errors), alpha, beta, horizon, confidence, forecast);
+    }
+}
@@ -0,0 +1,56 @@
+package pt.ipsantarem.esgts.covid19tracker.server.forecasting;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.*;
+
+/**
+ * The original prediction model: a line fitted to the logarithm of the latest total stats, whose predicted growth is
+ * added to the latest total stat. Fits well while the growth is exponential.
+ *
+ * @author José Simões
+ * @see SlidingWindowRegression
+ */
+public class LogLinearRegressionForecaster implements Forecaster {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return "regression";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDefaultWindow() {
+        return PREDICTION_DAYS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forecast(int[] totals, int length, int window, int horizon, double confidence, int[][] forecast) {
+        totalStatCasesForecast(fit(totals, length, window), totals[length - 1], horizon, confidence, forecast);
+    }
+
+    /**
+     * Fits a regression to the logarithm of the latest total stats.
+     *
+     * @param totals The total stats, oldest first.
+     * @param length The number of stats of the array to use.
+     * @param window The number of latest stats the regression is fitted to (no more than the number of stats).
+     * @return The fitted regression.
+     */
+    public static SlidingWindowRegression fit(int[] totals, int length, int window) {
+        int first = Math.max(0, length - window);
+        SlidingWindowRegression regression = SlidingWindowRegression.startingAt(Math.max(2, length - first), first);
+
+        for (int i = first; i < length; i++) {
+            regression.add(toLogStat(totals[i]));
+        }
+
+        return regression;
+    }
+}
@@ -0,0 +1,57 @@
+package pt.ipsantarem.esgts.covid19tracker.server.forecasting;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.distribution.TDistribution;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.PREDICTION_CONFIDENCE;
+
+/**
+ * The quantiles used by the prediction intervals of the models. The quantiles of the default confidence get cached,
+ * since they are needed for every prediction.
+ */
+class Quantiles {
+    private static final double NORMAL_DEFAULT = normalQuantile(PREDICTION_CONFIDENCE);
+
+    // the t quantiles of the default confidence by degrees of freedom, 0 if not computed yet.
+    private static final double[] STUDENT_T_DEFAULT = new double[512];
+
+    /**
+     * Gets the quantile of the standard normal distribution that bounds a two-sided interval.
+     *
+     * @param confidence The confidence of the interval.
+     * @return The quantile.
+     */
+    static double normal(double confidence) {
+        return confidence == PREDICTION_CONFIDENCE ? NORMAL_DEFAULT : normalQuantile(confidence);
+    }
+
+    /**
+     * Gets the quantile of the Student's t distribution that bounds a two-sided interval.
+     *
+     * @param degreesOfFreedom The degrees of freedom of the distribution.
+     * @param confidence       The confidence of the interval.
+     * @return The quantile.
+     */
+    static double studentT(int degreesOfFreedom, double confidence) {
+        if (confidence != PREDICTION_CONFIDENCE || degreesOfFreedom >= STUDENT_T_DEFAULT.length) {
+            return studentTQuantile(degreesOfFreedom, confidence);
+        }
+
+        // computing the same quantile twice in a race is harmless.
+        double quantile = STUDENT_T_DEFAULT[degreesOfFreedom];
+        if (quantile == 0) {
+            quantile = studentTQuantile(degreesOfFreedom, confidence);
+            STUDENT_T_DEFAULT[degreesOfFreedom] = quantile;
+        }
+
+        return quantile;
+    }
+
+    private static double normalQuantile(double confidence) {
+        return new NormalDistribution().inverseCumulativeProbability(1 - (1 - confidence) / 2);
+    }
+
+    private static double studentTQuantile(int degreesOfFreedom, double confidence) {
+        return new TDistribution(degreesOfFreedom).inverseCumulativeProbability(1 - (1 - confidence) / 2);
+    }
+}
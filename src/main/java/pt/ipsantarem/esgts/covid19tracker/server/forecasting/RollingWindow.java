@@ -0,0 +1,109 @@
+package pt.ipsantarem.esgts.covid19tracker.server.forecasting;
+
+/**
+ * The sum, mean and maximum of the stats of a series in the latest days, a window of a fixed number of days that rolls
+ * forward as the days are added. The window keeps the running sum of its stats, and the candidates for its maximum in
+ * a monotonic deque (the stats that are bigger than every stat added after them), so adding a day, which evicts the
+ * days that fell out of the window, takes constant (amortized) time. The days don't need to be consecutive: a window
+ * of 7 days always covers the latest 7 dates, whether or not each one of them has a stat.
+ *
+ * @author José Simões
+ */
+public class RollingWindow {
+    private final int days; // the number of days of the window.
+
+    // circular buffer with the dates and stats of the days in the window, oldest first.
+    private final int[] epochDays;
+    private final int[] stats;
+    private int first;
+    private int size;
+    private long sum;
+
+    // circular buffer with the dates and stats of the candidates for the maximum, in decreasing order of their stats.
+    private final int[] maxEpochDays;
+    private final int[] maxStats;
+    private int maxFirst;
+    private int maxSize;
+
+    /**
+     * Creates a new window.
+     *
+     * @param days The number of days of the window.
+     * @throws IllegalArgumentException If the window has no days.
+     */
+    public RollingWindow(int days) {
+        if (days < 1) {
+            throw new IllegalArgumentException("The window must have at least one day, but it has " + days + "!");
+        }
+
+        this.days = days;
+        this.epochDays = new int[days];
+        this.stats = new int[days];
+        this.maxEpochDays = new int[days];
+        this.maxStats = new int[days];
+    }
+
+    /**
+     * Adds the next day of the series to the window, evicting the days that are no longer in it.
+     *
+     * @param epochDay The date of the day, in days since the epoch, after the date of the previously added day.
+     * @param stat     The stat of the day.
+     */
+    public void add(int epochDay, int stat) {
+        int oldestEpochDay = epochDay - days + 1;
+
+        while (size > 0 && epochDays[first] < oldestEpochDay) {
+            sum -= stats[first];
+            first = (first + 1) % days;
+            size--;
+        }
+
+        int slot = (first + size++) % days;
+        epochDays[slot] = epochDay;
+        stats[slot] = stat;
+        sum += stat;
+
+        while (maxSize > 0 && maxEpochDays[maxFirst] < oldestEpochDay) {
+            maxFirst = (maxFirst + 1) % days;
+            maxSize--;
+        }
+
+        // the smaller stats can no longer be the maximum, since they leave the window before this one.
+        while (maxSize > 0 && maxStats[(maxFirst + maxSize - 1) % days] <= stat) {
+            maxSize--;
+        }
+
+        int maxSlot = (maxFirst + maxSize++) % days;
+        maxEpochDays[maxSlot] = epochDay;
+        maxStats[maxSlot] = stat;
+    }
+
+    /**
+     * @return The number of days of the window.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @return The number of days in the window that have a stat.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return The mean of the stats of the days in the window that have one.
+     */
+    public double getMean() {
+        return size > 0 ? (double) sum / size : 0;
+    }
+
+    public int getMax() {
+        return maxStats[maxFirst];
+    }
+}
@@ -0,0 +1,171 @@
+package pt.ipsantarem.esgts.covid19tracker.server.forecasting;
+
+/**
+ * A simple linear regression over the latest points of a series, where the x of each point is its position in the
+ * series (0 for the first point, 1 for the second and so on). The regression keeps the running sums of the points in
+ * the window, so adding a new point (which evicts the oldest one once the window is full) takes constant time, instead
+ * of fitting the whole window again.
+ *
+ * @author José Simões
+ */
+public class SlidingWindowRegression {
+    private final double[] window; // circular buffer with the y of the points in the window.
+    private int size; // the number of points in the window.
+    private long nextX; // the x of the next point to be added.
+
+    // the running sums of the points in the window.
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumXY;
+    private double sumYY;
+
+    /**
+     * Creates a new regression.
+     *
+     * @param windowSize The maximum number of points the regression is fitted to.
+     * @throws IllegalArgumentException If the window has less than two points.
+     */
+    public SlidingWindowRegression(int windowSize) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("The window must have at least two points, but it has " + windowSize + "!");
+        }
+
+        this.window = new double[windowSize];
+    }
+
+    /**
+     * Creates a copy of a regression, which can be added points to without changing the copied one.
+     *
+     * @param regression The regression to copy.
+     */
+    public SlidingWindowRegression(SlidingWindowRegression regression) {
+        this.window = regression.window.clone();
+        this.size = regression.size;
+        this.nextX = regression.nextX;
+        this.sumX = regression.sumX;
+        this.sumY = regression.sumY;
+        this.sumXX = regression.sumXX;
+        this.sumXY = regression.sumXY;
+        this.sumYY = regression.sumYY;
+    }
+
+    /**
+     * Creates a new regression whose first point is not the first point of the series.
+     *
+     * @param windowSize The maximum number of points the regression is fitted to.
+     * @param firstX     The x of the first point that will be added.
+     * @return The regression, without any point.
+     */
+    public static SlidingWindowRegression startingAt(int windowSize, long firstX) {
+        SlidingWindowRegression regression = new SlidingWindowRegression(windowSize);
+        regression.nextX = firstX;
+        return regression;
+    }
+
+    /**
+     * Adds the next point of the series to the regression, evicting the oldest point if the window is full.
+     *
+     * @param y The y of the point.
+     */
+    public void add(double y) {
+        int slot = (int) (nextX % window.length);
+
+        if (size == window.length) {
+            double oldX = nextX - window.length;
+            double oldY = window[slot];
+            sumX -= oldX;
+            sumY -= oldY;
+            sumXX -= oldX * oldX;
+            sumXY -= oldX * oldY;
+            sumYY -= oldY * oldY;
+        } else {
+            size++;
+        }
+
+        double x = nextX++;
+        window[slot] = y;
+        sumX += x;
+        sumY += y;
+        sumXX += x * x;
+        sumXY += x * y;
+        sumYY += y * y;
+    }
+
+    /**
+     * @return The number of points the regression is fitted to.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return The x of the latest added point, or -1 if no point was added.
+     */
+    public long getLastX() {
+        return nextX - 1;
+    }
+
+    /**
+     * @return The slope of the fitted line, or 0 if there are less than two points.
+     */
+    public double getSlope() {
+        double sxx = sxx();
+        return size < 2 || sxx == 0 ? 0 : sxy() / sxx;
+    }
+
+    /**
+     * @return The intercept of the fitted line (the predicted y when x is 0).
+     */
+    public double getIntercept() {
+        return size == 0 ? 0 : (sumY - getSlope() * sumX) / size;
+    }
+
+    /**
+     * Predicts the y of a point.
+     *
+     * @param x The x of the point.
+     * @return The predicted y.
+     */
+    public double predict(double x) {
+        return getIntercept() + getSlope() * x;
+    }
+
+    /**
+     * Gets the half width of the prediction interval of a point, which means the true y should be between the
+     * predicted y minus and plus the half width with the given confidence.
+     *
+     * @param x          The x of the point.
+     * @param confidence The confidence of the interval, between 0 and 1 (exclusive).
+     * @return The half width of the interval, or 0 if there are not enough points to estimate it.
+     */
+    public double predictionHalfWidth(double x, double confidence) {
+        if (size < 3 || sxx() == 0) return 0;
+
+        // the residual sum of squares, which is the variation of y not explained by the line.
+        double slope = getSlope();
+        double sse = Math.max(0, syy() - slope * sxy());
+        double standardError = Math.sqrt(sse / (size - 2));
+
+        double meanX = sumX / size;
+        double t = Quantiles.studentT(size - 2, confidence);
+
+        return t * standardError * Math.sqrt(1 + 1.0 / size + (x - meanX) * (x - meanX) / sxx());
+    }
+
+    // ------------------------------------ CENTERED SUMS ------------------------------------ //
+
+    private double sxx() {
+        return sumXX - sumX * sumX / size;
+    }
+
+    private double sxy() {
+        return sumXY - sumX * sumY / size;
+    }
+
+    private double syy() {
+        return sumYY - sumY * sumY / size;
+    }
+
+    // ------------------------------------ CENTERED SUMS ------------------------------------ //
+}
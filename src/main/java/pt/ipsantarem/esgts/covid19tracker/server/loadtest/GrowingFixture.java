@@ -0,0 +1,127 @@
+package pt.ipsantarem.esgts.covid19tracker.server.loadtest;
+
+import pt.ipsantarem.esgts.covid19tracker.server.synthetic.SyntheticStatsGenerator;
+import pt.ipsantarem.esgts.covid19tracker.server.synthetic.ValueDistribution;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A synthetic stats file that grows by one day at a time during a load test, the way the Our World in Data file grows
+ * every day, so the server ingests updates and pushes their changes to the websocket sessions while it's under load.
+ * <p>
+ * The stats of every day are generated up front; the file starts with the first days of every location and each
+ * {@link #appendDay()} appends the rows of the next day, which the server reads incrementally.
+ */
+public class GrowingFixture {
+    private final Path file;
+    private final int locations;
+    private final int days;
+    private final int initialDays;
+    private final LocalDate firstDate;
+
+    // the rows of every location and day, location by location, without the header.
+    private final List<String> rows = new ArrayList<>();
+    private int writtenDays;
+
+    /**
+     * @param file       The file.
+     * @param locations  The number of locations.
+     * @param days       The number of days in the file when it's first written.
+     * @param appendDays The maximum number of days appended to it afterwards.
+     * @param firstDate  The date of the first day.
+     * @param seed       The seed of the random values.
+     * @throws IOException If the stats couldn't be generated.
+     */
+    public GrowingFixture(Path file, int locations, int days, int appendDays, LocalDate firstDate, long seed)
+            throws IOException {
+        this.file = file;
+        this.locations = locations;
+        this.days = days + appendDays;
+        this.initialDays = days;
+        this.firstDate = firstDate;
+
+        StringWriter stats = new StringWriter();
+        new SyntheticStatsGenerator(locations, this.days, firstDate, ValueDistribution.WAVES, 1000, seed)
+                .generate(stats);
+
+        String[] lines = stats.toString().split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            rows.add(lines[i]);
+        }
+
+        this.writtenDays = days;
+    }
+
+    /**
+     * Writes the file with its first days.
+     *
+     * @throws IOException If the file couldn't be written.
+     */
+    public void write() throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(SyntheticStatsGenerator.HEADER);
+            writer.write('\n');
+
+            for (int location = 0; location < locations; location++) {
+                for (int day = 0; day < writtenDays; day++) {
+                    writer.write(rows.get(location * days + day));
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the rows of the next day of every location to the file.
+     *
+     * @return If a day was appended, false if every generated day is already in the file.
+     * @throws IOException If the file couldn't be written.
+     */
+    public boolean appendDay() throws IOException {
+        if (writtenDays >= days) return false;
+
+        StringBuilder appended = new StringBuilder();
+        for (int location = 0; location < locations; location++) {
+            appended.append(rows.get(location * days + writtenDays)).append('\n');
+        }
+
+        Files.write(file, appended.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        writtenDays++;
+        return true;
+    }
+
+    /**
+     * @return The names of the locations, as they're requested from the server.
+     */
+    public List<String> getCountries() {
+        List<String> countries = new ArrayList<>();
+        for (int location = 0; location < locations; location++) {
+            countries.add(rows.get(location * days).split(",")[2]);
+        }
+        return countries;
+    }
+
+    public LocalDate getFirstDate() {
+        return firstDate;
+    }
+
+    /**
+     * @return The number of days in the file when it was first written.
+     */
+    public int getInitialDays() {
+        return initialDays;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
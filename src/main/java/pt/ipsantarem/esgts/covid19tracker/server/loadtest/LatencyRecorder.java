@@ -0,0 +1,86 @@
+package pt.ipsantarem.esgts.covid19tracker.server.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records latencies into a preallocated array, from any number of threads, so that the percentiles are exact. A load
+ * test has a known number of requests (its rate times its duration), so the array is sized up front, and the
+ * latencies recorded past its capacity are only counted as dropped.
+ */
+public class LatencyRecorder {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final long[] latencies;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity The maximum number of latencies recorded.
+     */
+    public LatencyRecorder(int capacity) {
+        this.latencies = new long[capacity];
+    }
+
+    /**
+     * @param nanos A latency, in nanoseconds.
+     */
+    public void record(long nanos) {
+        int index = count.getAndIncrement();
+
+        if (index < latencies.length) {
+            latencies[index] = nanos;
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return The number of recorded latencies (not counting the dropped ones).
+     */
+    public int getCount() {
+        return Math.min(count.get(), latencies.length);
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Should only be called after every latency was recorded.
+     *
+     * @return The mean, the p50, p90, p99 and p99.9 percentiles and the maximum of the latencies, in milliseconds,
+     * mapped by their names.
+     */
+    public Map<String, Double> summarize() {
+        long[] sorted = Arrays.copyOf(latencies, getCount());
+        Arrays.sort(sorted);
+
+        Map<String, Double> summary = new LinkedHashMap<>();
+        if (sorted.length == 0) return summary;
+
+        long sum = 0;
+        for (long latency : sorted) {
+            sum += latency;
+        }
+        summary.put("mean", toMillis(sum / (double) sorted.length));
+
+        for (double percentile : PERCENTILES) {
+            // the nearest rank percentile.
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            summary.put("p" + (percentile == (long) percentile ? String.valueOf((long) percentile)
+                    : String.valueOf(percentile)), toMillis(sorted[Math.max(0, rank - 1)]));
+        }
+
+        summary.put("max", toMillis(sorted[sorted.length - 1]));
+        return summary;
+    }
+
+    private static double toMillis(double nanos) {
+        return Math.round(nanos / TimeUnit.MILLISECONDS.toNanos(1) * 1000) / 1000.0;
+    }
+}
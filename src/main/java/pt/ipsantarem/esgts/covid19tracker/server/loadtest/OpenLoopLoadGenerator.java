@@ -0,0 +1,147 @@
+package pt.ipsantarem.esgts.covid19tracker.server.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed arrival rate, whether or not the server keeps up with them (an open loop): the request i
+ * is due at i / rate seconds after the start, and it's handed to the pool of connections at that time, waiting for a
+ * free connection if they are all busy.
+ * <p>
+ * The latency of a request is measured from the time it was due, not from the time it was sent, which corrects the
+ * coordinated omission: when the server stalls, the requests that should have been sent during the stall count the
+ * stall in their latency, as they would for real clients. The latencies from the time each request was actually sent
+ * (the service times) are recorded too, which shows how much of the latency was spent waiting for a connection.
+ *
+ * @author José Simões
+ */
+public class OpenLoopLoadGenerator {
+    private final String baseUrl;
+    private final RequestMix mix;
+    private final int connections;
+
+    private final LongAdder sent = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    /**
+     * @param baseUrl     The URL of the server, such as http://localhost:7000.
+     * @param mix         The mix of requests to send.
+     * @param connections The number of requests that can be in flight at the same time.
+     */
+    public OpenLoopLoadGenerator(String baseUrl, RequestMix mix, int connections) {
+        this.baseUrl = baseUrl;
+        this.mix = mix;
+        this.connections = connections;
+
+        // the connections kept alive between requests.
+        System.setProperty("http.maxConnections", String.valueOf(connections));
+    }
+
+    /**
+     * Sends the requests, waiting until every request is answered.
+     *
+     * @param rate            The number of requests per second.
+     * @param warmupSeconds   For how many seconds to send requests without recording their latencies.
+     * @param durationSeconds For how many seconds to send requests after the warmup.
+     * @param latencies       Where the latencies from the time each request was due are recorded.
+     * @param serviceTimes    Where the latencies from the time each request was sent are recorded.
+     * @return The number of seconds the measured requests took to be sent and answered.
+     */
+    public double run(int rate, int warmupSeconds, int durationSeconds, LatencyRecorder latencies,
+                      LatencyRecorder serviceTimes) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(connections, r -> {
+            Thread thread = new Thread(r, "load-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) rate;
+        long requests = (long) rate * (warmupSeconds + durationSeconds);
+        long warmupRequests = (long) rate * warmupSeconds;
+
+        long start = System.nanoTime();
+        long measureStart = start + (long) (warmupRequests * intervalNanos);
+
+        for (long i = 0; i < requests; i++) {
+            long dueNanos = start + (long) (i * intervalNanos);
+
+            long wait = dueNanos - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            boolean measured = i >= warmupRequests;
+            pool.execute(() -> send(dueNanos, measured ? latencies : null, measured ? serviceTimes : null));
+        }
+
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return (System.nanoTime() - measureStart) / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * @return The number of sent requests, including the warmup ones.
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * @return The number of failed requests, mapped by their status code (or by the exception that failed them).
+     */
+    public Map<String, Long> getErrors() {
+        Map<String, Long> counts = new TreeMap<>();
+        errors.forEach((error, count) -> counts.put(error, count.sum()));
+        return counts;
+    }
+
+    private void send(long dueNanos, LatencyRecorder latencies, LatencyRecorder serviceTimes) {
+        Random random = ThreadLocalRandom.current();
+        long sentNanos = System.nanoTime();
+
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + mix.nextPath(random)).openConnection();
+            int status = connection.getResponseCode();
+
+            // the body is read to the end, so the connection can be reused.
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                byte[] buffer = new byte[8192];
+                while (body.read(buffer) != -1) ;
+                body.close();
+            }
+
+            if (status != 200) countError(String.valueOf(status));
+        } catch (IOException e) {
+            countError(e.getClass().getSimpleName());
+        }
+
+        long end = System.nanoTime();
+        sent.increment();
+
+        if (latencies != null) latencies.record(end - dueNanos);
+        if (serviceTimes != null) serviceTimes.record(end - sentNanos);
+    }
+
+    private void countError(String error) {
+        errors.computeIfAbsent(error, k -> new LongAdder()).increment();
+    }
+}
@@ -0,0 +1,113 @@
+package pt.ipsantarem.esgts.covid19tracker.server.loadtest;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The mix of requests of a load test, each kind with a weight, such as "metric:4,range:3,date:2,predict:1":
+ * <ul>
+ * <li>metric, every record of a stat of a country (/api/[country]/cases/new, for example);</li>
+ * <li>range, the records of a stat of a country between two dates, a month apart;</li>
+ * <li>date, the record of a stat of a country in a date;</li>
+ * <li>predict, the next day prediction of a stat of a country.</li>
+ * </ul>
+ * The countries, stats and dates of the requests are random.
+ */
+public class RequestMix {
+    private static final String[] METRICS = {"cases/new", "cases/total", "deaths/new", "deaths/total"};
+
+    // the days between the dates of a range request.
+    private static final int RANGE_DAYS = 30;
+
+    private final List<String> kinds = new ArrayList<>();
+    private final List<Integer> cumulativeWeights = new ArrayList<>();
+    private final List<String> countries;
+    private final LocalDate firstDate;
+    private final int days;
+
+    /**
+     * @param mix       The kinds of requests and their weights.
+     * @param countries The names of the countries to request.
+     * @param firstDate The first date with records.
+     * @param days      The number of days with records.
+     * @throws IllegalArgumentException If the mix is malformed or has an unknown kind of request.
+     */
+    public RequestMix(String mix, List<String> countries, LocalDate firstDate, int days) {
+        this.countries = countries;
+        this.firstDate = firstDate;
+        this.days = days;
+
+        int totalWeight = 0;
+        for (String kindAndWeight : mix.split(",")) {
+            String[] parts = kindAndWeight.trim().split(":");
+            String kind = parts[0].trim();
+
+            if (!kind.equals("metric") && !kind.equals("range") && !kind.equals("date") && !kind.equals("predict")) {
+                throw new IllegalArgumentException("Unknown kind of request " + kind + "!");
+            }
+
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight <= 0) continue;
+
+            totalWeight += weight;
+            kinds.add(kind);
+            cumulativeWeights.add(totalWeight);
+        }
+
+        if (kinds.isEmpty()) throw new IllegalArgumentException("The request mix " + mix + " has no requests!");
+    }
+
+    /**
+     * @param random The random numbers generator of the calling thread.
+     * @return The path (without the host) of a random request of the mix.
+     */
+    public String nextPath(Random random) {
+        String kind = kinds.get(pickKind(random.nextInt(cumulativeWeights.get(cumulativeWeights.size() - 1))));
+        String country = encode(countries.get(random.nextInt(countries.size())));
+        String metric = METRICS[random.nextInt(METRICS.length)];
+        int day = random.nextInt(days);
+
+        switch (kind) {
+            case "metric":
+                return "/api/" + country + "/" + metric;
+            case "range":
+                int lastDay = Math.min(days - 1, day + RANGE_DAYS);
+                return "/api/" + country + "/" + metric + "?startDate=" + firstDate.plusDays(day)
+                        + "&endDate=" + firstDate.plusDays(lastDay);
+            case "date":
+                return "/api/" + country + "/" + metric + "/" + firstDate.plusDays(day);
+            default:
+                return "/api/" + country + "/" + metric + "/predict";
+        }
+    }
+
+    private int pickKind(int weight) {
+        for (int i = 0; i < cumulativeWeights.size(); i++) {
+            if (weight < cumulativeWeights.get(i)) return i;
+        }
+        return cumulativeWeights.size() - 1;
+    }
+
+    private static String encode(String country) {
+        try {
+            return URLEncoder.encode(country, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RequestMix{" +
+                "kinds=" + kinds +
+                ", cumulativeWeights=" + cumulativeWeights +
+                ", countries=" + countries.size() +
+                ", firstDate=" + firstDate +
+                ", days=" + days +
+                '}';
+    }
+}
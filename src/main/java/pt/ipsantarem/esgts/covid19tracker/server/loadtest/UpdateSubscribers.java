@@ -0,0 +1,105 @@
+package pt.ipsantarem.esgts.covid19tracker.server.loadtest;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Websocket clients connected to the /api/recordsUpdate endpoint during a load test, each one subscribed to the new
+ * cases of a random country (or, one in every four, to everything). Counts the changes messages they get and records
+ * how long after an update of the stats they got it.
+ */
+public class UpdateSubscribers {
+    private final WebSocketClient client = new WebSocketClient();
+    private final List<Session> sessions = new ArrayList<>();
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyRecorder deliveryLatencies;
+
+    // when the stats were last updated, which the delivery latencies are measured from.
+    private volatile long lastUpdateNanos;
+
+    /**
+     * @param capacity The maximum number of delivery latencies recorded.
+     */
+    public UpdateSubscribers(int capacity) {
+        this.deliveryLatencies = new LatencyRecorder(capacity);
+    }
+
+    /**
+     * Connects the clients and subscribes them.
+     *
+     * @param wsUrl     The URL of the websocket endpoint, such as ws://localhost:7000/api/recordsUpdate.
+     * @param clients   The number of clients.
+     * @param countries The names of the countries the clients can subscribe to.
+     * @throws Exception If a client couldn't connect.
+     */
+    public void connect(String wsUrl, int clients, List<String> countries) throws Exception {
+        client.start();
+        Random random = new Random(42);
+
+        for (int i = 0; i < clients; i++) {
+            Session session = client.connect(new Subscriber(), URI.create(wsUrl)).get(10, TimeUnit.SECONDS);
+
+            String subscription = i % 4 == 0 ? "{}" : "{\"countries\": [\""
+                    + countries.get(random.nextInt(countries.size())).replace("\"", "\\\"")
+                    + "\"], \"metrics\": [\"newCases\"]}";
+            session.getRemote().sendString(subscription);
+            sessions.add(session);
+        }
+    }
+
+    /**
+     * Marks the time the stats were updated at, which the next delivered changes are measured from.
+     */
+    public void updated() {
+        lastUpdateNanos = System.nanoTime();
+    }
+
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public LatencyRecorder getDeliveryLatencies() {
+        return deliveryLatencies;
+    }
+
+    /**
+     * Disconnects the clients.
+     */
+    public void close() throws Exception {
+        for (Session session : sessions) {
+            session.close();
+        }
+        client.stop();
+    }
+
+    private class Subscriber extends WebSocketAdapter {
+        @Override
+        public void onWebSocketText(String message) {
+            if (message.startsWith("{\"type\":\"changes\"")) {
+                messages.increment();
+                if (lastUpdateNanos > 0) deliveryLatencies.record(System.nanoTime() - lastUpdateNanos);
+            } else if (message.startsWith("{\"type\":\"error\"")) {
+                errors.increment();
+            }
+        }
+
+        @Override
+        public void onWebSocketError(Throwable cause) {
+            errors.increment();
+        }
+    }
+}
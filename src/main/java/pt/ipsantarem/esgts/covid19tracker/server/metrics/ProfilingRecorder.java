@@ -0,0 +1,105 @@
+package pt.ipsantarem.esgts.covid19tracker.server.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.IngestEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.RequestEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.SnapshotSwapEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The profiling mode of the server. When the "profiling.enabled" setting is true, a continuous flight recording is
+ * started and periodically dumped to a rotating set of files, so that production incidents can be diagnosed after the
+ * fact. The dumps are written to the "profiling.dir" directory (profiling by default), every
+ * "profiling.dumpIntervalMinutes" minutes, and the oldest file gets overwritten once "profiling.files" files exist.
+ *
+ * @author José Simões
+ */
+public class ProfilingRecorder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfilingRecorder.class);
+
+    private final Path directory = Paths.get(ConfigUtils.getString("profiling.dir", "profiling"));
+    private final int files = ConfigUtils.getInt("profiling.files", 6);
+    private final long dumpIntervalMinutes = ConfigUtils.getLong("profiling.dumpIntervalMinutes", 10);
+
+    private Recording recording;
+    private ScheduledExecutorService dumpExecutor;
+    private int dumps = 0;
+
+    /**
+     * Starts the profiling mode if the "profiling.enabled" setting is true.
+     *
+     * @return The started recorder, or null if the profiling mode is disabled.
+     */
+    public static ProfilingRecorder startIfEnabled() {
+        if (!ConfigUtils.getBoolean("profiling.enabled", false)) {
+            return null;
+        }
+
+        ProfilingRecorder recorder = new ProfilingRecorder();
+        recorder.start();
+        return recorder;
+    }
+
+    private void start() {
+        try {
+            Files.createDirectories(directory);
+            recording = new Recording(Configuration.getConfiguration("profile"));
+        } catch (IOException | ParseException e) {
+            throw new RuntimeException(e);
+        }
+
+        // every dump holds, at most, the events of the last two intervals, so consecutive dumps overlap.
+        recording.setName("covid19tracker");
+        recording.setToDisk(true);
+        recording.setMaxAge(Duration.ofMinutes(dumpIntervalMinutes * 2));
+        recording.enable(IngestEvent.class);
+        recording.enable(SnapshotSwapEvent.class);
+        recording.enable(RequestEvent.class);
+        recording.start();
+
+        dumpExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "profiling-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpExecutor.scheduleWithFixedDelay(this::dump, dumpIntervalMinutes, dumpIntervalMinutes, TimeUnit.MINUTES);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "profiling-shutdown"));
+
+        LOGGER.info("Profiling mode enabled, dumping the flight recording to {} every {} minutes!",
+                directory.toAbsolutePath(), dumpIntervalMinutes);
+    }
+
+    /**
+     * Dumps the recording to the next file of the rotation.
+     */
+    public synchronized void dump() {
+        Path file = directory.resolve("covid19tracker-" + (dumps++ % files) + ".jfr");
+
+        try {
+            recording.dump(file);
+        } catch (IOException e) {
+            LOGGER.error("Could not dump the flight recording to " + file + "!", e);
+        }
+    }
+
+    // dumps what's left of the recording and stops it.
+    private synchronized void stop() {
+        dumpExecutor.shutdownNow();
+        dump();
+        recording.close();
+    }
+}
@@ -0,0 +1,142 @@
+package pt.ipsantarem.esgts.covid19tracker.server.metrics;
+
+import io.javalin.http.Context;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.RequestEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Profiles the HTTP requests, splitting the time spent on them by phases: the lookup of the country trees, the traversal
+ * of the trees and the serialization of the results. Since a request is handled from the beginning to the end by the
+ * same thread, the profile of the request being handled is kept in a thread local. Every request emits a
+ * {@link RequestEvent} and records its phases in the {@link ServerMetrics}.
+ * <p>
+ * The bytes allocated by each request are sampled through the thread allocation counters of the JVM. The sampling
+ * rate is set by the "metrics.allocation.sampleRate" setting (1 samples every request, 10 samples one in every ten
+ * requests and 0 turns the sampling off).
+ *
+ * @author José Simões
+ */
+public class RequestProfiler {
+    private static final ThreadLocal<Profile> CURRENT = new ThreadLocal<>();
+    private static final int ALLOCATION_SAMPLE_RATE = ConfigUtils.getInt("metrics.allocation.sampleRate", 1);
+    private static final AtomicLong REQUESTS = new AtomicLong();
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = getAllocationCountingThreadMXBean();
+
+    /**
+     * The phases of a request.
+     */
+    public enum Phase {
+        LOOKUP, TRAVERSAL, SERIALIZATION
+    }
+
+    /**
+     * Starts profiling the request being handled by the current thread. Should be registered as a before handler.
+     *
+     * @param ctx The context of the request.
+     */
+    public static void begin(Context ctx) {
+        Profile profile = new Profile();
+        profile.event.begin();
+        profile.startNanos = System.nanoTime();
+        profile.lastMarkNanos = profile.startNanos;
+
+        if (THREAD_MX_BEAN != null && ALLOCATION_SAMPLE_RATE > 0
+                && REQUESTS.getAndIncrement() % ALLOCATION_SAMPLE_RATE == 0) {
+            profile.allocatedBytesAtStart = THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        CURRENT.set(profile);
+    }
+
+    /**
+     * Marks a phase of the request being handled by the current thread as finished. The duration of the phase is the
+     * time since the previous phase finished (or since the request began). This does nothing if no request is being
+     * profiled in the current thread, so it's safe to call from code that's also used outside the requests.
+     *
+     * @param phase The finished phase.
+     */
+    public static void phaseFinished(Phase phase) {
+        Profile profile = CURRENT.get();
+        if (profile == null) return;
+
+        long now = System.nanoTime();
+        long elapsed = now - profile.lastMarkNanos;
+        profile.lastMarkNanos = now;
+
+        switch (phase) {
+            case LOOKUP:
+                profile.event.lookupNanos += elapsed;
+                break;
+            case TRAVERSAL:
+                profile.event.traversalNanos += elapsed;
+                break;
+            case SERIALIZATION:
+                profile.event.serializationNanos += elapsed;
+                break;
+        }
+    }
+
+    /**
+     * Finishes profiling the request being handled by the current thread. The time since the last finished phase is
+     * accounted as serialization, since the results are serialized by the handler right before it returns. Should be
+     * registered as an after handler.
+     *
+     * @param ctx The context of the request.
+     */
+    public static void end(Context ctx) {
+        Profile profile = CURRENT.get();
+        if (profile == null) return;
+        CURRENT.remove();
+
+        phaseFinished(Phase.SERIALIZATION);
+
+        RequestEvent event = profile.event;
+        event.end();
+        event.method = ctx.method();
+        event.route = ctx.endpointHandlerPath();
+        event.status = ctx.status();
+
+        if (profile.allocatedBytesAtStart >= 0) {
+            event.allocatedBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId())
+                    - profile.allocatedBytesAtStart;
+            ServerMetrics.record("http.request.allocatedBytes", event.allocatedBytes);
+        }
+
+        event.commit();
+
+        ServerMetrics.increment("http.requests");
+        ServerMetrics.recordNanos("http.request.total", System.nanoTime() - profile.startNanos);
+        ServerMetrics.recordNanos("http.request.lookup", event.lookupNanos);
+        ServerMetrics.recordNanos("http.request.traversal", event.traversalNanos);
+        ServerMetrics.recordNanos("http.request.serialization", event.serializationNanos);
+    }
+
+    // gets the thread mx bean if the JVM supports counting the bytes allocated by each thread, null if it doesn't.
+    private static com.sun.management.ThreadMXBean getAllocationCountingThreadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * The profile of a single request.
+     */
+    private static class Profile {
+        private final RequestEvent event = new RequestEvent();
+        private long startNanos;
+        private long lastMarkNanos;
+        private long allocatedBytesAtStart = -1;
+    }
+}
@@ -0,0 +1,119 @@
+package pt.ipsantarem.esgts.covid19tracker.server.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The metrics registry of the server. Holds counters, distributions (count, sum, max and mean of a recorded value,
+ * such as a duration or an amount of bytes) and gauges (values that are read when the metrics are requested), all
+ * mapped by their names. Every operation is thread safe and lock free, so it can be called from the request threads.
+ *
+ * @author José Simões
+ */
+public class ServerMetrics {
+    private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Distribution> DISTRIBUTIONS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Supplier<?>> GAUGES = new ConcurrentHashMap<>();
+
+    static {
+        // the garbage collector stats, so that latency spikes can be compared against the time spent on GC.
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = "jvm.gc." + gc.getName().replace(' ', '_');
+            registerGauge(name + ".count", gc::getCollectionCount);
+            registerGauge(name + ".timeMs", gc::getCollectionTime);
+        }
+        registerGauge("jvm.heap.usedBytes", () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+    }
+
+    /**
+     * Increments a counter by one.
+     *
+     * @param name The name of the counter.
+     */
+    public static void increment(String name) {
+        COUNTERS.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Records a value in a distribution.
+     *
+     * @param name  The name of the distribution.
+     * @param value The value to record.
+     */
+    public static void record(String name, long value) {
+        DISTRIBUTIONS.computeIfAbsent(name, k -> new Distribution()).record(value);
+    }
+
+    /**
+     * Records a duration in a distribution, in milliseconds (with fractional part) when the metrics are read.
+     *
+     * @param name  The name of the distribution. The "Ms" suffix is appended to it.
+     * @param nanos The duration, in nanoseconds.
+     */
+    public static void recordNanos(String name, long nanos) {
+        record(name + "Ms", nanos);
+    }
+
+    /**
+     * Registers a gauge, replacing any other gauge with the same name.
+     *
+     * @param name  The name of the gauge.
+     * @param gauge The supplier that gets called every time the metrics are read.
+     */
+    public static void registerGauge(String name, Supplier<?> gauge) {
+        GAUGES.put(name, gauge);
+    }
+
+    /**
+     * @return A point in time view of every metric, sorted by its name.
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new TreeMap<>();
+
+        COUNTERS.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        DISTRIBUTIONS.forEach((name, distribution) -> snapshot.put(name, distribution.toMap(name.endsWith("Ms"))));
+        GAUGES.forEach((name, gauge) -> snapshot.put(name, gauge.get()));
+
+        return snapshot;
+    }
+
+    /**
+     * The count, sum and max of a recorded value.
+     */
+    private static class Distribution {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        private volatile long last;
+
+        private void record(long value) {
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+            last = value;
+        }
+
+        // if the recorded values are nanoseconds, they get converted to milliseconds.
+        private Map<String, Object> toMap(boolean nanos) {
+            Map<String, Object> map = new TreeMap<>();
+            long count = this.count.sum();
+            double divisor = nanos ? TimeUnit.MILLISECONDS.toNanos(1) : 1;
+
+            map.put("count", count);
+            map.put("sum", sum.sum() / divisor);
+            map.put("max", count > 0 ? max.get() / divisor : 0);
+            map.put("mean", count > 0 ? sum.sum() / divisor / count : 0);
+            map.put("last", last / divisor);
+
+            return map;
+        }
+    }
+}
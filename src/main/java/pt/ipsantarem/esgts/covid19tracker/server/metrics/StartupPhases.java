@@ -0,0 +1,67 @@
+package pt.ipsantarem.esgts.covid19tracker.server.metrics;
+
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Times the startup of the server, by phases (such as loading the saved records or starting the HTTP server), and
+ * how long it took since the JVM started until the records were first served and until the first request arrived.
+ * Every timing is logged and recorded in the {@link ServerMetrics}, as "startup.[phase]Ms", "startup.timeToReadyMs"
+ * and "startup.timeToFirstRequestMs".
+ *
+ * @author José Simões
+ */
+public class StartupPhases {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupPhases.class);
+
+    private static final AtomicBoolean READY = new AtomicBoolean();
+    private static final AtomicBoolean FIRST_REQUEST = new AtomicBoolean();
+
+    // the phases are timed from the start of the JVM.
+    private static long lastMarkNanos = System.nanoTime()
+            - TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime());
+
+    /**
+     * Marks a startup phase as finished. The duration of the phase is the time since the previous phase finished (or
+     * since the JVM started, for the first phase).
+     *
+     * @param phase The name of the finished phase.
+     */
+    public static synchronized void finish(String phase) {
+        long now = System.nanoTime();
+        long nanos = now - lastMarkNanos;
+        lastMarkNanos = now;
+
+        LOGGER.info("Startup phase {} took {} ms!", phase, TimeUnit.NANOSECONDS.toMillis(nanos));
+        ServerMetrics.recordNanos("startup." + phase, nanos);
+    }
+
+    /**
+     * Marks the server as ready, when the records are first served. Only the first call is recorded.
+     */
+    public static void ready() {
+        if (READY.compareAndSet(false, true)) {
+            long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            LOGGER.info("Serving the records {} ms after the JVM started!", uptimeMillis);
+            ServerMetrics.recordNanos("startup.timeToReady", TimeUnit.MILLISECONDS.toNanos(uptimeMillis));
+        }
+    }
+
+    /**
+     * Records the time until the first request arrived. Should be registered as a before handler.
+     *
+     * @param ctx The context of the request.
+     */
+    public static void onRequest(Context ctx) {
+        if (!FIRST_REQUEST.get() && FIRST_REQUEST.compareAndSet(false, true)) {
+            long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            LOGGER.info("The first request ({}) arrived {} ms after the JVM started!", ctx.path(), uptimeMillis);
+            ServerMetrics.recordNanos("startup.timeToFirstRequest", TimeUnit.MILLISECONDS.toNanos(uptimeMillis));
+        }
+    }
+}
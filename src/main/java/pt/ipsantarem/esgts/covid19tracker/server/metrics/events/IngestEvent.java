@@ -0,0 +1,68 @@
+package pt.ipsantarem.esgts.covid19tracker.server.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+
+/**
+ * Flight recorder event of an ingest stage (download, parse, tree build, persist, rollup, diff, index or publish).
+ * Every finished stage is also recorded in the {@link ServerMetrics}, under the "ingest." prefix.
+ */
+@Name("pt.ipsantarem.esgts.covid19tracker.Ingest")
+@Label("Ingest Stage")
+@Category({"COVID-19 Tracker", "Ingest"})
+public class IngestEvent extends Event {
+    public static final String DOWNLOAD = "download";
+    public static final String PARSE = "parse";
+    public static final String BUILD = "build";
+    public static final String PERSIST = "persist";
+    public static final String ROLLUP = "rollup";
+    public static final String DIFF = "diff";
+    public static final String INDEX = "index";
+    public static final String PUBLISH = "publish";
+
+    @Label("Stage")
+    private String stage;
+
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+
+    @Label("Records")
+    private long records;
+
+    // not recorded by the flight recorder, used for the metrics.
+    private transient long startNanos;
+
+    /**
+     * Starts timing an ingest stage.
+     *
+     * @param stage The stage, one of the constants of this class.
+     * @return The started event.
+     */
+    public static IngestEvent start(String stage) {
+        IngestEvent event = new IngestEvent();
+        event.stage = stage;
+        event.startNanos = System.nanoTime();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finishes timing the ingest stage, committing the event.
+     *
+     * @param bytes   The number of bytes handled by the stage, or 0 if unknown.
+     * @param records The number of records handled by the stage, or 0 if unknown.
+     */
+    public void finish(long bytes, long records) {
+        end();
+        this.bytes = bytes;
+        this.records = records;
+        commit();
+
+        ServerMetrics.recordNanos("ingest." + stage, System.nanoTime() - startNanos);
+    }
+}
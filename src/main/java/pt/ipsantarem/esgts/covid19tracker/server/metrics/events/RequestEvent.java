@@ -0,0 +1,44 @@
+package pt.ipsantarem.esgts.covid19tracker.server.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a handled HTTP request, with the time spent on each phase of the request.
+ *
+ * @see pt.ipsantarem.esgts.covid19tracker.server.metrics.RequestProfiler
+ */
+@Name("pt.ipsantarem.esgts.covid19tracker.Request")
+@Label("HTTP Request")
+@Category({"COVID-19 Tracker", "HTTP"})
+public class RequestEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Route")
+    public String route;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Lookup")
+    @Timespan
+    public long lookupNanos;
+
+    @Label("Traversal")
+    @Timespan
+    public long traversalNanos;
+
+    @Label("Serialization")
+    @Timespan
+    public long serializationNanos;
+
+    @Label("Allocated")
+    @DataAmount
+    public long allocatedBytes;
+}
@@ -0,0 +1,21 @@
+package pt.ipsantarem.esgts.covid19tracker.server.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of the swap of the records being served by a newly ingested set of records.
+ */
+@Name("pt.ipsantarem.esgts.covid19tracker.SnapshotSwap")
+@Label("Snapshot Swap")
+@Category({"COVID-19 Tracker", "Ingest"})
+public class SnapshotSwapEvent extends Event {
+
+    @Label("Countries")
+    public int countries;
+
+    @Label("Reason")
+    public String reason;
+}
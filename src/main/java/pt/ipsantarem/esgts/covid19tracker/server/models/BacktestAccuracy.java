@@ -0,0 +1,58 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+
+/**
+ * The accuracy of the predictions of a model for a certain number of days ahead.
+ */
+public class BacktestAccuracy implements Serializable {
+    private final int horizon;
+    private final long points;
+    private final double mae;
+    private final double mape;
+
+    public BacktestAccuracy(int horizon, long points, double mae, double mape) {
+        this.horizon = horizon;
+        this.points = points;
+        this.mae = mae;
+        this.mape = mape;
+    }
+
+    /**
+     * @return How many days ahead the evaluated predictions are.
+     */
+    public int getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * @return The number of evaluated predictions.
+     */
+    public long getPoints() {
+        return points;
+    }
+
+    /**
+     * @return The mean absolute error of the predictions.
+     */
+    public double getMae() {
+        return mae;
+    }
+
+    /**
+     * @return The mean absolute percentage error of the predictions (the days without cases are left out).
+     */
+    public double getMape() {
+        return mape;
+    }
+
+    @Override
+    public String toString() {
+        return "BacktestAccuracy{" +
+                "horizon=" + horizon +
+                ", points=" + points +
+                ", mae=" + mae +
+                ", mape=" + mape +
+                '}';
+    }
+}
@@ -0,0 +1,88 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The report of a backtest of the prediction models, with the accuracy and throughput of each model.
+ */
+public class BacktestReport implements Serializable {
+    private final String statType;
+    private final int maxHorizon;
+    private final int countries;
+    private final int parallelism;
+    private final long points;
+    private final double seconds;
+    private final List<ModelBacktest> models;
+
+    public BacktestReport(String statType, int maxHorizon, int countries, int parallelism, long points,
+                          double seconds, List<ModelBacktest> models) {
+        this.statType = statType;
+        this.maxHorizon = maxHorizon;
+        this.countries = countries;
+        this.parallelism = parallelism;
+        this.points = points;
+        this.seconds = seconds;
+        this.models = models;
+    }
+
+    /**
+     * @return The type of the stat whose predictions were evaluated.
+     */
+    public String getStatType() {
+        return statType;
+    }
+
+    public int getMaxHorizon() {
+        return maxHorizon;
+    }
+
+    public int getCountries() {
+        return countries;
+    }
+
+    /**
+     * @return The number of threads the backtest ran on.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return The number of evaluated predictions, of every model.
+     */
+    public long getPoints() {
+        return points;
+    }
+
+    /**
+     * @return The wall clock duration of the backtest.
+     */
+    public double getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * @return The number of evaluated predictions per wall clock second.
+     */
+    public double getPointsPerSecond() {
+        return seconds > 0 ? points / seconds : 0;
+    }
+
+    public List<ModelBacktest> getModels() {
+        return models;
+    }
+
+    @Override
+    public String toString() {
+        return "BacktestReport{" +
+                "statType='" + statType + '\'' +
+                ", maxHorizon=" + maxHorizon +
+                ", countries=" + countries +
+                ", parallelism=" + parallelism +
+                ", points=" + points +
+                ", seconds=" + seconds +
+                ", models=" + models +
+                '}';
+    }
+}
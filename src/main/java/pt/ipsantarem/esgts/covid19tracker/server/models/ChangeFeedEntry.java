@@ -0,0 +1,42 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+
+/**
+ * A change of the records in the change feed, identified by its sequence number.
+ */
+public class ChangeFeedEntry implements Serializable {
+    private final long sequence;
+    private final long timestamp;
+    private final ChangeSet changes;
+
+    public ChangeFeedEntry(long sequence, long timestamp, ChangeSet changes) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.changes = changes;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return When the change happened, in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public ChangeSet getChanges() {
+        return changes;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeFeedEntry{" +
+                "sequence=" + sequence +
+                ", timestamp=" + timestamp +
+                ", changes=" + changes +
+                '}';
+    }
+}
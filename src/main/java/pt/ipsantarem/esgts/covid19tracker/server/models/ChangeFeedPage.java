@@ -0,0 +1,45 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The changes of the records after a certain sequence number. If the changes after that sequence number are no longer
+ * available, the client must reload the records (resync is true) and then ask for the changes after the returned
+ * sequence number.
+ */
+public class ChangeFeedPage implements Serializable {
+    private final long sequence;
+    private final boolean resync;
+    private final List<ChangeFeedEntry> changes;
+
+    public ChangeFeedPage(long sequence, boolean resync, List<ChangeFeedEntry> changes) {
+        this.sequence = sequence;
+        this.resync = resync;
+        this.changes = changes;
+    }
+
+    /**
+     * @return The sequence number of the latest change, from which the next request should continue.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isResync() {
+        return resync;
+    }
+
+    public List<ChangeFeedEntry> getChanges() {
+        return changes;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeFeedPage{" +
+                "sequence=" + sequence +
+                ", resync=" + resync +
+                ", changes=" + changes +
+                '}';
+    }
+}
@@ -0,0 +1,75 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The changes between two snapshots of the records: the changes of every country that has added days, revised values
+ * or removed days, and the countries that no longer have records.
+ */
+public class ChangeSet implements Serializable {
+    private final List<CountryChange> countries;
+    private final List<String> removedCountries;
+    private final int addedDays;
+    private final int revisedValues;
+    private final int removedDays;
+
+    public ChangeSet(List<CountryChange> countries, List<String> removedCountries, int addedDays, int revisedValues,
+                     int removedDays) {
+        this.countries = countries;
+        this.removedCountries = removedCountries;
+        this.addedDays = addedDays;
+        this.revisedValues = revisedValues;
+        this.removedDays = removedDays;
+    }
+
+    public List<CountryChange> getCountries() {
+        return countries;
+    }
+
+    public List<String> getRemovedCountries() {
+        return removedCountries;
+    }
+
+    /**
+     * @return The number of added days, of every country and stat type.
+     */
+    public int getAddedDays() {
+        return addedDays;
+    }
+
+    /**
+     * @return The number of revised values, of every country and stat type.
+     */
+    public int getRevisedValues() {
+        return revisedValues;
+    }
+
+    /**
+     * @return The number of removed days, of every country and stat type.
+     */
+    public int getRemovedDays() {
+        return removedDays;
+    }
+
+    /**
+     * @return True if nothing changed between the snapshots.
+     */
+    @JsonIgnore
+    public boolean isEmpty() {
+        return countries.isEmpty() && removedCountries.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeSet{" +
+                "countries=" + countries +
+                ", removedCountries=" + removedCountries +
+                ", addedDays=" + addedDays +
+                ", revisedValues=" + revisedValues +
+                ", removedDays=" + removedDays +
+                '}';
+    }
+}
@@ -0,0 +1,51 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The changes to the records of a country between two snapshots: the added days, the revised values and the removed
+ * days, mapped by stat type. Only the stat types with changes are present. A removed day has no stat, only the
+ * previous one.
+ */
+public class CountryChange implements Serializable {
+    private final String country;
+    private final Map<String, List<StatChange<?>>> added;
+    private final Map<String, List<StatChange<?>>> revised;
+    private final Map<String, List<StatChange<?>>> removed;
+
+    public CountryChange(String country, Map<String, List<StatChange<?>>> added,
+                         Map<String, List<StatChange<?>>> revised, Map<String, List<StatChange<?>>> removed) {
+        this.country = country;
+        this.added = added;
+        this.revised = revised;
+        this.removed = removed;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public Map<String, List<StatChange<?>>> getAdded() {
+        return added;
+    }
+
+    public Map<String, List<StatChange<?>>> getRevised() {
+        return revised;
+    }
+
+    public Map<String, List<StatChange<?>>> getRemoved() {
+        return removed;
+    }
+
+    @Override
+    public String toString() {
+        return "CountryChange{" +
+                "country='" + country + '\'' +
+                ", added=" + added +
+                ", revised=" + revised +
+                ", removed=" + removed +
+                '}';
+    }
+}
@@ -0,0 +1,58 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.io.Serializable;
+
+/**
+ * The virus statistics of a country in a certain day. The stats that weren't asked for, or that the country has no
+ * record of in that day, are null.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CountryDayStats implements Serializable {
+    private final String country;
+    private final Integer newCases;
+    private final Integer totalCases;
+    private final Integer newDeaths;
+    private final Integer totalDeaths;
+
+    public CountryDayStats(String country, Integer newCases, Integer totalCases, Integer newDeaths,
+                           Integer totalDeaths) {
+        this.country = country;
+        this.newCases = newCases;
+        this.totalCases = totalCases;
+        this.newDeaths = newDeaths;
+        this.totalDeaths = totalDeaths;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public Integer getNewCases() {
+        return newCases;
+    }
+
+    public Integer getTotalCases() {
+        return totalCases;
+    }
+
+    public Integer getNewDeaths() {
+        return newDeaths;
+    }
+
+    public Integer getTotalDeaths() {
+        return totalDeaths;
+    }
+
+    @Override
+    public String toString() {
+        return "CountryDayStats{" +
+                "country='" + country + '\'' +
+                ", newCases=" + newCases +
+                ", totalCases=" + totalCases +
+                ", newDeaths=" + newDeaths +
+                ", totalDeaths=" + totalDeaths +
+                '}';
+    }
+}
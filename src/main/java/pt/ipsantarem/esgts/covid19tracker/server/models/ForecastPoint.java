@@ -0,0 +1,46 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+
+/**
+ * A predicted value of a virus statistic in a certain date, with the bounds of its prediction interval.
+ */
+public class ForecastPoint implements Serializable {
+    private final String date;
+    private final int stat;
+    private final int lowerBound;
+    private final int upperBound;
+
+    public ForecastPoint(String date, int stat, int lowerBound, int upperBound) {
+        this.date = date;
+        this.stat = stat;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public int getStat() {
+        return stat;
+    }
+
+    public int getLowerBound() {
+        return lowerBound;
+    }
+
+    public int getUpperBound() {
+        return upperBound;
+    }
+
+    @Override
+    public String toString() {
+        return "ForecastPoint{" +
+                "date='" + date + '\'' +
+                ", stat=" + stat +
+                ", lowerBound=" + lowerBound +
+                ", upperBound=" + upperBound +
+                '}';
+    }
+}
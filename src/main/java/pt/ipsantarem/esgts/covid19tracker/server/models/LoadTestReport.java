@@ -0,0 +1,148 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * The report of a load test of the server, with its throughput, the latencies of its requests and the updates pushed
+ * to its websocket sessions.
+ */
+public class LoadTestReport implements Serializable {
+    private final int targetRate;
+    private final int connections;
+    private final String mix;
+    private final long requests;
+    private final double seconds;
+    private final Map<String, Long> errors;
+    private final Map<String, Double> latencyMs;
+    private final Map<String, Double> serviceTimeMs;
+    private final int websocketClients;
+    private final int updates;
+    private final long updateMessages;
+    private final long websocketErrors;
+    private final Map<String, Double> updateDeliveryMs;
+
+    public LoadTestReport(int targetRate, int connections, String mix, long requests, double seconds,
+                          Map<String, Long> errors, Map<String, Double> latencyMs, Map<String, Double> serviceTimeMs,
+                          int websocketClients, int updates, long updateMessages, long websocketErrors,
+                          Map<String, Double> updateDeliveryMs) {
+        this.targetRate = targetRate;
+        this.connections = connections;
+        this.mix = mix;
+        this.requests = requests;
+        this.seconds = seconds;
+        this.errors = errors;
+        this.latencyMs = latencyMs;
+        this.serviceTimeMs = serviceTimeMs;
+        this.websocketClients = websocketClients;
+        this.updates = updates;
+        this.updateMessages = updateMessages;
+        this.websocketErrors = websocketErrors;
+        this.updateDeliveryMs = updateDeliveryMs;
+    }
+
+    /**
+     * @return The number of requests per second sent, whether or not the server kept up with them.
+     */
+    public int getTargetRate() {
+        return targetRate;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public String getMix() {
+        return mix;
+    }
+
+    /**
+     * @return The number of measured requests (after the warmup).
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return How long the measured requests took to be sent and answered.
+     */
+    public double getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * @return The number of answered requests per second.
+     */
+    public double getThroughput() {
+        return seconds > 0 ? Math.round(requests / seconds * 10) / 10.0 : 0;
+    }
+
+    /**
+     * @return The number of failed requests (warmup included), by status code or by exception.
+     */
+    public Map<String, Long> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return The latencies from the time each request was due, corrected for the coordinated omission.
+     */
+    public Map<String, Double> getLatencyMs() {
+        return latencyMs;
+    }
+
+    /**
+     * @return The latencies from the time each request was actually sent, not corrected for the coordinated omission.
+     */
+    public Map<String, Double> getServiceTimeMs() {
+        return serviceTimeMs;
+    }
+
+    public int getWebsocketClients() {
+        return websocketClients;
+    }
+
+    /**
+     * @return The number of days appended to the stats file during the test.
+     */
+    public int getUpdates() {
+        return updates;
+    }
+
+    /**
+     * @return The number of changes messages received by the websocket clients.
+     */
+    public long getUpdateMessages() {
+        return updateMessages;
+    }
+
+    public long getWebsocketErrors() {
+        return websocketErrors;
+    }
+
+    /**
+     * @return The latencies from the time the stats file was appended to until the websocket clients got the changes.
+     */
+    public Map<String, Double> getUpdateDeliveryMs() {
+        return updateDeliveryMs;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadTestReport{" +
+                "targetRate=" + targetRate +
+                ", connections=" + connections +
+                ", mix='" + mix + '\'' +
+                ", requests=" + requests +
+                ", seconds=" + seconds +
+                ", errors=" + errors +
+                ", latencyMs=" + latencyMs +
+                ", serviceTimeMs=" + serviceTimeMs +
+                ", websocketClients=" + websocketClients +
+                ", updates=" + updates +
+                ", updateMessages=" + updateMessages +
+                ", websocketErrors=" + websocketErrors +
+                ", updateDeliveryMs=" + updateDeliveryMs +
+                '}';
+    }
+}
@@ -0,0 +1,69 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of the backtest of a prediction model: its accuracy by horizon, overall (over the countries, leaving
+ * out the continents and the world) and for each country, and its cost.
+ */
+public class ModelBacktest implements Serializable {
+    private final String model;
+    private final long points;
+    private final double cpuSeconds;
+    private final List<BacktestAccuracy> accuracy;
+    private final Map<String, List<BacktestAccuracy>> countries;
+
+    public ModelBacktest(String model, long points, double cpuSeconds, List<BacktestAccuracy> accuracy,
+                         Map<String, List<BacktestAccuracy>> countries) {
+        this.model = model;
+        this.points = points;
+        this.cpuSeconds = cpuSeconds;
+        this.accuracy = accuracy;
+        this.countries = countries;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * @return The number of evaluated predictions.
+     */
+    public long getPoints() {
+        return points;
+    }
+
+    /**
+     * @return The time spent fitting the model and predicting, summed over every thread.
+     */
+    public double getCpuSeconds() {
+        return cpuSeconds;
+    }
+
+    /**
+     * @return The number of evaluated predictions per second of a single thread.
+     */
+    public double getPointsPerSecond() {
+        return cpuSeconds > 0 ? points / cpuSeconds : 0;
+    }
+
+    public List<BacktestAccuracy> getAccuracy() {
+        return accuracy;
+    }
+
+    public Map<String, List<BacktestAccuracy>> getCountries() {
+        return countries;
+    }
+
+    @Override
+    public String toString() {
+        return "ModelBacktest{" +
+                "model='" + model + '\'' +
+                ", points=" + points +
+                ", cpuSeconds=" + cpuSeconds +
+                ", accuracy=" + accuracy +
+                '}';
+    }
+}
@@ -0,0 +1,84 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * If the server is serving records yet and, if it is, how old they are. The records are served as soon as the server
+ * starts, from the snapshot saved by a previous run, while the stats are checked for updates in the background, so the
+ * age of the served records is what tells the client (or a load balancer) if they are stale.
+ */
+public class Readiness implements Serializable {
+    private final boolean ready;
+    private final String snapshot;
+    private final int countries;
+    private final String latestRecordDate;
+    private final long downloadedAtMillis;
+
+    /**
+     * @param snapshot           Where the served records came from: saved, download or update.
+     * @param countries          The number of countries of the served records.
+     * @param latestRecordDate   The date of the latest record served.
+     * @param downloadedAtMillis When the served records were downloaded, in epoch milliseconds (0 if unknown).
+     */
+    public Readiness(String snapshot, int countries, String latestRecordDate, long downloadedAtMillis) {
+        this.ready = true;
+        this.snapshot = snapshot;
+        this.countries = countries;
+        this.latestRecordDate = latestRecordDate;
+        this.downloadedAtMillis = downloadedAtMillis;
+    }
+
+    private Readiness() {
+        this.ready = false;
+        this.snapshot = null;
+        this.countries = 0;
+        this.latestRecordDate = null;
+        this.downloadedAtMillis = 0;
+    }
+
+    /**
+     * @return The readiness of a server that isn't serving any records yet.
+     */
+    public static Readiness notReady() {
+        return new Readiness();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    public int getCountries() {
+        return countries;
+    }
+
+    public String getLatestRecordDate() {
+        return latestRecordDate;
+    }
+
+    public String getDownloadedAt() {
+        return downloadedAtMillis > 0 ? Instant.ofEpochMilli(downloadedAtMillis).toString() : null;
+    }
+
+    /**
+     * @return How many seconds ago the served records were downloaded, or null if it's unknown.
+     */
+    public Long getDataAgeSeconds() {
+        return downloadedAtMillis > 0 ? (System.currentTimeMillis() - downloadedAtMillis) / 1000 : null;
+    }
+
+    @Override
+    public String toString() {
+        return "Readiness{" +
+                "ready=" + ready +
+                ", snapshot='" + snapshot + '\'' +
+                ", countries=" + countries +
+                ", latestRecordDate='" + latestRecordDate + '\'' +
+                ", downloadedAt=" + getDownloadedAt() +
+                '}';
+    }
+}
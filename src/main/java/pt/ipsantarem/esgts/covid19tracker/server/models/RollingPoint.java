@@ -0,0 +1,49 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+
+/**
+ * The sum, mean and maximum of a virus statistic in the window of days ending in a certain date.
+ */
+public class RollingPoint implements Serializable {
+    private final String date;
+    private final long sum;
+    private final double mean;
+    private final int max;
+
+    public RollingPoint(String date, long sum, double mean, int max) {
+        this.date = date;
+        this.sum = sum;
+        this.mean = mean;
+        this.max = max;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return The mean of the days of the window that have a stat.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "RollingPoint{" +
+                "date='" + date + '\'' +
+                ", sum=" + sum +
+                ", mean=" + mean +
+                ", max=" + max +
+                '}';
+    }
+}
@@ -0,0 +1,52 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.io.Serializable;
+
+/**
+ * A virus statistic that changed between two snapshots of the records: either a day that was added, a day whose
+ * value was revised, in which case the previous value is also present, or a day that was removed, which only has the
+ * previous value.
+ *
+ * @param <T> The type of the statistic.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StatChange<T> implements Serializable {
+    private final String date;
+    private final T stat;
+    private final T previousStat;
+
+    public StatChange(String date, T stat, T previousStat) {
+        this.date = date;
+        this.stat = stat;
+        this.previousStat = previousStat;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    /**
+     * @return The value after the change, or null if the day was removed.
+     */
+    public T getStat() {
+        return stat;
+    }
+
+    /**
+     * @return The value before the revision, or null if the day was added.
+     */
+    public T getPreviousStat() {
+        return previousStat;
+    }
+
+    @Override
+    public String toString() {
+        return "StatChange{" +
+                "date='" + date + '\'' +
+                ", stat=" + stat +
+                ", previousStat=" + previousStat +
+                '}';
+    }
+}
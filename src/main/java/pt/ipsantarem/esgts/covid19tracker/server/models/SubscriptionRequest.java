@@ -0,0 +1,37 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.util.List;
+
+/**
+ * A message sent by a websocket client to choose the updates it gets: the countries and the stat types (newCases,
+ * totalCases, newDeaths or totalDeaths) it's interested in. A missing or empty list means every country, or every
+ * stat type.
+ */
+public class SubscriptionRequest {
+    private List<String> countries;
+    private List<String> metrics;
+
+    public List<String> getCountries() {
+        return countries;
+    }
+
+    public void setCountries(List<String> countries) {
+        this.countries = countries;
+    }
+
+    public List<String> getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(List<String> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriptionRequest{" +
+                "countries=" + countries +
+                ", metrics=" + metrics +
+                '}';
+    }
+}
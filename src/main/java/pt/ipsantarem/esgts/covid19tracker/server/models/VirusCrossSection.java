@@ -0,0 +1,47 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The virus statistics of every country in a certain day. Primary purpose is to be sent over to clients/consumers
+ * over a JSON format.
+ */
+public class VirusCrossSection implements Serializable {
+    private final String date;
+    private final List<String> statTypes;
+    private final List<CountryDayStats> countries;
+
+    public VirusCrossSection(String date, List<String> statTypes, List<CountryDayStats> countries) {
+        this.date = date;
+        this.statTypes = statTypes;
+        this.countries = countries;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    /**
+     * @return The types of the stats of the countries.
+     */
+    public List<String> getStatTypes() {
+        return statTypes;
+    }
+
+    /**
+     * @return The stats of the countries that have a record of the day, in the order of the records.
+     */
+    public List<CountryDayStats> getCountries() {
+        return countries;
+    }
+
+    @Override
+    public String toString() {
+        return "VirusCrossSection{" +
+                "date='" + date + '\'' +
+                ", statTypes=" + statTypes +
+                ", countries=" + countries +
+                '}';
+    }
+}
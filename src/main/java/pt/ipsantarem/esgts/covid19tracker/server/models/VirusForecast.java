@@ -0,0 +1,72 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The predictions of a virus statistic of a country for the next days. Primary purpose is to be sent over to
+ * clients/consumers over a JSON format.
+ */
+public class VirusForecast implements Serializable {
+    private final String country;
+    private final String statType;
+    private final String model;
+    private final int window;
+    private final double confidence;
+    private final List<ForecastPoint> predictions;
+
+    public VirusForecast(String country, String statType, String model, int window, double confidence,
+                         List<ForecastPoint> predictions) {
+        this.country = country;
+        this.statType = statType;
+        this.model = model;
+        this.window = window;
+        this.confidence = confidence;
+        this.predictions = predictions;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public String getStatType() {
+        return statType;
+    }
+
+    /**
+     * @return The name of the model that made the predictions.
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * @return The number of latest days the predictions are based on.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return The confidence of the prediction intervals.
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public List<ForecastPoint> getPredictions() {
+        return predictions;
+    }
+
+    @Override
+    public String toString() {
+        return "VirusForecast{" +
+                "country='" + country + '\'' +
+                ", statType='" + statType + '\'' +
+                ", model='" + model + '\'' +
+                ", window=" + window +
+                ", confidence=" + confidence +
+                ", predictions=" + predictions +
+                '}';
+    }
+}
@@ -0,0 +1,51 @@
+package pt.ipsantarem.esgts.covid19tracker.server.models;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The sums, means and maximums of a virus statistic of a country in a rolling window of days, one for each day of its
+ * records. Primary purpose is to be sent over to clients/consumers over a JSON format.
+ */
+public class VirusRollingSeries implements Serializable {
+    private final String country;
+    private final String statType;
+    private final int window;
+    private final List<RollingPoint> points;
+
+    public VirusRollingSeries(String country, String statType, int window, List<RollingPoint> points) {
+        this.country = country;
+        this.statType = statType;
+        this.window = window;
+        this.points = points;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public String getStatType() {
+        return statType;
+    }
+
+    /**
+     * @return The number of days of the window.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    public List<RollingPoint> getPoints() {
+        return points;
+    }
+
+    @Override
+    public String toString() {
+        return "VirusRollingSeries{" +
+                "country='" + country + '\'' +
+                ", statType='" + statType + '\'' +
+                ", window=" + window +
+                ", points=" + points +
+                '}';
+    }
+}
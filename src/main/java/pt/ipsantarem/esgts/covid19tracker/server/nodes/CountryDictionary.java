@@ -0,0 +1,170 @@
+package pt.ipsantarem.esgts.covid19tracker.server.nodes;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the names of the countries to dense int ids, assigned at ingest in the order the countries are first read.
+ * The nodes and the series store the id of their country instead of its name, the data of the countries is indexed
+ * by it in arrays, and the name is only resolved at the edges of the API. A country keeps its id while the server
+ * runs, even if it's dropped from the records and read again later. The dictionary also keeps the ISO code and the
+ * continent of each country, when its source has them, and flags the regions rolled up from the countries (the
+ * continents and the world), so that they can be told apart from them.
+ *
+ * @author José Simões
+ */
+public class CountryDictionary {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final Object LOCK = new Object();
+
+    // the ids of the countries, by their name as first read and by their lower case name, so that both can be
+    // resolved without lower casing them.
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+
+    // the names of the countries, as first read, by their id.
+    private static volatile String[] names = new String[INITIAL_CAPACITY];
+    private static volatile String[] isoCodes = new String[INITIAL_CAPACITY];
+    private static volatile String[] continents = new String[INITIAL_CAPACITY];
+    private static volatile boolean[] regions = new boolean[INITIAL_CAPACITY];
+    private static volatile int size;
+
+    private CountryDictionary() {
+    }
+
+    /**
+     * Gets the id of a country, assigning it a new one if it hasn't been read before. The countries whose names only
+     * differ in case share the same id.
+     *
+     * @param country The name of the country.
+     * @return The id of the country.
+     */
+    public static int idOf(String country) {
+        Integer id = IDS.get(country);
+        if (id != null) return id;
+
+        String lowerCase = country.toLowerCase(Locale.ROOT);
+
+        synchronized (LOCK) {
+            id = IDS.get(lowerCase);
+            if (id == null) {
+                id = size;
+                if (id == names.length) {
+                    isoCodes = Arrays.copyOf(isoCodes, names.length * 2);
+                    continents = Arrays.copyOf(continents, names.length * 2);
+                    regions = Arrays.copyOf(regions, names.length * 2);
+                    names = Arrays.copyOf(names, names.length * 2);
+                }
+                names[id] = country;
+                size = id + 1;
+                IDS.put(lowerCase, id);
+            }
+            IDS.putIfAbsent(country, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Resolves the id of a country by its name, in any case, without assigning ids.
+     *
+     * @param country The name of the country.
+     * @return The id of the country, or -1 if it was never read.
+     */
+    public static int resolve(String country) {
+        Integer id = IDS.get(country);
+        if (id == null) id = IDS.get(country.toLowerCase(Locale.ROOT));
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @param id The id of a country.
+     * @return The name of the country, as first read.
+     * @throws IllegalArgumentException If no country has the id.
+     */
+    public static String getName(int id) {
+        // the size is read first, since it's written after the name.
+        int size = CountryDictionary.size;
+        String[] names = CountryDictionary.names;
+        if (id < 0 || id >= size) throw new IllegalArgumentException("No country has the id " + id + "!");
+        return names[id];
+    }
+
+    /**
+     * Sets the ISO code of a country, as read by the source of its records.
+     *
+     * @param id      The id of the country.
+     * @param isoCode The ISO code (or the code the source uses for the country, if it isn't a country).
+     */
+    public static void setIsoCode(int id, String isoCode) {
+        synchronized (LOCK) {
+            if (id < 0 || id >= size) throw new IllegalArgumentException("No country has the id " + id + "!");
+            isoCodes[id] = isoCode;
+        }
+    }
+
+    /**
+     * @param id The id of a country.
+     * @return The ISO code of the country, or null if its source has none.
+     */
+    public static String getIsoCode(int id) {
+        synchronized (LOCK) {
+            return id >= 0 && id < size ? isoCodes[id] : null;
+        }
+    }
+
+    /**
+     * Sets the continent of a country, as read by the source of its records.
+     *
+     * @param id        The id of the country.
+     * @param continent The name of the continent.
+     */
+    public static void setContinent(int id, String continent) {
+        synchronized (LOCK) {
+            if (id < 0 || id >= size) throw new IllegalArgumentException("No country has the id " + id + "!");
+            continents[id] = continent;
+        }
+    }
+
+    /**
+     * @param id The id of a country.
+     * @return The name of the continent of the country, or null if its source has none (as for the aggregates of
+     * several countries).
+     */
+    public static String getContinent(int id) {
+        synchronized (LOCK) {
+            return id >= 0 && id < size ? continents[id] : null;
+        }
+    }
+
+    /**
+     * Flags a country as a region rolled up from other countries, like a continent or the world.
+     *
+     * @param id The id of the region.
+     */
+    public static void markRegion(int id) {
+        synchronized (LOCK) {
+            if (id < 0 || id >= size) throw new IllegalArgumentException("No country has the id " + id + "!");
+            regions[id] = true;
+        }
+    }
+
+    /**
+     * @param id The id of a country.
+     * @return If the country is a region rolled up from other countries, like a continent or the world.
+     */
+    public static boolean isRegion(int id) {
+        synchronized (LOCK) {
+            return id >= 0 && id < size && regions[id];
+        }
+    }
+
+    /**
+     * @return The number of ids assigned, which bounds the arrays indexed by them.
+     */
+    public static int size() {
+        return size;
+    }
+}
@@ -1,25 +1,23 @@
 package pt.ipsantarem.esgts.covid19tracker.server.nodes;
 
-import java.util.Date;
-
 /**
  * A node that represents the new cases in a day.
  */
 public class NewCasesNode extends VirusStatsNode<Integer> {
     private int newCases;
 
-    public NewCasesNode(Date date, String country, int newCases) {
-        super(date, country);
+    public NewCasesNode(int epochDay, int countryId, int newCases) {
+        super(epochDay, countryId);
         this.newCases = newCases;
     }
 
-    public NewCasesNode(Date date, String country, VirusStatsNode<Integer> left, int newCases) {
-        super(date, country, left);
+    public NewCasesNode(int epochDay, int countryId, VirusStatsNode<Integer> left, int newCases) {
+        super(epochDay, countryId, left);
         this.newCases = newCases;
     }
 
-    public NewCasesNode(Date date, String country, VirusStatsNode<Integer> left, VirusStatsNode<Integer> right, int newCases) {
-        super(date, country, left, right);
+    public NewCasesNode(int epochDay, int countryId, VirusStatsNode<Integer> left, VirusStatsNode<Integer> right, int newCases) {
+        super(epochDay, countryId, left, right);
         this.newCases = newCases;
     }
 
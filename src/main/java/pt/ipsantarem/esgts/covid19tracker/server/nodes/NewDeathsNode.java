@@ -1,25 +1,23 @@
 package pt.ipsantarem.esgts.covid19tracker.server.nodes;
 
-import java.util.Date;
-
 /**
  * A node that represents the new deaths in a day.
  */
 public class NewDeathsNode extends VirusStatsNode<Integer> {
     private int newDeaths;
 
-    public NewDeathsNode(Date date, String country, int newDeaths) {
-        super(date, country);
+    public NewDeathsNode(int epochDay, int countryId, int newDeaths) {
+        super(epochDay, countryId);
         this.newDeaths = newDeaths;
     }
 
-    public NewDeathsNode(Date date, String country, VirusStatsNode<Integer> left, int newDeaths) {
-        super(date, country, left);
+    public NewDeathsNode(int epochDay, int countryId, VirusStatsNode<Integer> left, int newDeaths) {
+        super(epochDay, countryId, left);
         this.newDeaths = newDeaths;
     }
 
-    public NewDeathsNode(Date date, String country, VirusStatsNode<Integer> left, VirusStatsNode<Integer> right, int newDeaths) {
-        super(date, country, left, right);
+    public NewDeathsNode(int epochDay, int countryId, VirusStatsNode<Integer> left, VirusStatsNode<Integer> right, int newDeaths) {
+        super(epochDay, countryId, left, right);
         this.newDeaths = newDeaths;
     }
 
@@ -1,25 +1,23 @@
 package pt.ipsantarem.esgts.covid19tracker.server.nodes;
 
-import java.util.Date;
-
 /**
  * A node that represents the recovered cases in each day.
  */
 public class RecoveredCasesNode extends VirusStatsNode<Integer> {
     private int recoveredCases;
 
-    public RecoveredCasesNode(Date date, String country, int recoveredCases) {
-        super(date, country);
+    public RecoveredCasesNode(int epochDay, int countryId, int recoveredCases) {
+        super(epochDay, countryId);
         this.recoveredCases = recoveredCases;
     }
 
-    public RecoveredCasesNode(Date date, String country, VirusStatsNode<Integer> left, int recoveredCases) {
-        super(date, country, left);
+    public RecoveredCasesNode(int epochDay, int countryId, VirusStatsNode<Integer> left, int recoveredCases) {
+        super(epochDay, countryId, left);
         this.recoveredCases = recoveredCases;
     }
 
-    public RecoveredCasesNode(Date date, String country, VirusStatsNode<Integer> left, VirusStatsNode<Integer> right, int recoveredCases) {
-        super(date, country, left, right);
+    public RecoveredCasesNode(int epochDay, int countryId, VirusStatsNode<Integer> left, VirusStatsNode<Integer> right, int recoveredCases) {
+        super(epochDay, countryId, left, right);
         this.recoveredCases = recoveredCases;
     }
 
@@ -1,25 +1,23 @@
 package pt.ipsantarem.esgts.covid19tracker.server.nodes;
 
-import java.util.Date;
-
 /**
  * A node that represents the total cases in each day.
  */
 public class TotalCasesNode extends VirusStatsNode<Integer> {
     private int totalCases;
 
-    public TotalCasesNode(Date date, String country, int totalCases) {
-        super(date, country);
+    public TotalCasesNode(int epochDay, int countryId, int totalCases) {
+        super(epochDay, countryId);
         this.totalCases = totalCases;
     }
 
-    public TotalCasesNode(Date date, String country, VirusStatsNode<Integer> left, int totalCases) {
-        super(date, country, left);
+    public TotalCasesNode(int epochDay, int countryId, VirusStatsNode<Integer> left, int totalCases) {
+        super(epochDay, countryId, left);
         this.totalCases = totalCases;
     }
 
-    public TotalCasesNode(Date date, String country, VirusStatsNode<Integer> left, VirusStatsNode<Integer> right, int totalCases) {
-        super(date, country, left, right);
+    public TotalCasesNode(int epochDay, int countryId, VirusStatsNode<Integer> left, VirusStatsNode<Integer> right, int totalCases) {
+        super(epochDay, countryId, left, right);
         this.totalCases = totalCases;
     }
 
@@ -1,25 +1,23 @@
 package pt.ipsantarem.esgts.covid19tracker.server.nodes;
 
-import java.util.Date;
-
 /**
  * A node that represents the total deaths in each day.
  */
 public class TotalDeathsNode extends VirusStatsNode<Integer> {
     private int totalDeaths;
 
-    public TotalDeathsNode(Date date, String country, int totalDeaths) {
-        super(date, country);
+    public TotalDeathsNode(int epochDay, int countryId, int totalDeaths) {
+        super(epochDay, countryId);
         this.totalDeaths = totalDeaths;
     }
 
-    public TotalDeathsNode(Date date, String country, VirusStatsNode<Integer> left, int totalDeaths) {
-        super(date, country, left);
+    public TotalDeathsNode(int epochDay, int countryId, VirusStatsNode<Integer> left, int totalDeaths) {
+        super(epochDay, countryId, left);
         this.totalDeaths = totalDeaths;
     }
 
-    public TotalDeathsNode(Date date, String country, VirusStatsNode<Integer> left, VirusStatsNode<Integer> right, int totalDeaths) {
-        super(date, country, left, right);
+    public TotalDeathsNode(int epochDay, int countryId, VirusStatsNode<Integer> left, VirusStatsNode<Integer> right, int totalDeaths) {
+        super(epochDay, countryId, left, right);
         this.totalDeaths = totalDeaths;
     }
 
@@ -1,6 +1,10 @@
 package pt.ipsantarem.esgts.covid19tracker.server.nodes;
 
-import java.util.Date;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OptionalDataException;
+import java.time.LocalDate;
 
 /**
  * A node that can represent a certain statistic about the coronavirus outbreak. This class must be subclassed in order
@@ -9,61 +13,79 @@ import java.util.Date;
  *
  * @param <T> The type of data that the statistic represents.
  */
-public abstract class VirusStatsNode<T> extends VirusNode<Date, T> {
+public abstract class VirusStatsNode<T> extends VirusNode<Integer, T> {
 
     /**
-     * The date of the information present in this node
+     * The date of the information present in this node, in days since the epoch (1970-01-01), with no time zone
      */
-    private Date date;
+    private int epochDay;
 
     /**
-     * The country of the information present in this node
+     * The id of the country of the information present in this node, in the {@link CountryDictionary}. The ids are
+     * only valid while the server runs, so the nodes are serialized with the name of the country instead
      */
-    private String country;
+    private transient int countryId;
 
 
-    public VirusStatsNode(Date date, String country) {
-        this.date = date;
-        this.country = country;
+    public VirusStatsNode(int epochDay, int countryId) {
+        this.epochDay = epochDay;
+        this.countryId = countryId;
     }
 
-    public VirusStatsNode(Date date, String country, VirusStatsNode<T> left) {
-        this.date = date;
-        this.country = country;
+    public VirusStatsNode(int epochDay, int countryId, VirusStatsNode<T> left) {
+        this.epochDay = epochDay;
+        this.countryId = countryId;
         this.left = left;
     }
 
-    public VirusStatsNode(Date date, String country, VirusStatsNode<T> left, VirusStatsNode<T> right) {
-        this.date = date;
-        this.country = country;
+    public VirusStatsNode(int epochDay, int countryId, VirusStatsNode<T> left, VirusStatsNode<T> right) {
+        this.epochDay = epochDay;
+        this.countryId = countryId;
         this.left = left;
         this.right = right;
     }
 
-    public Date getDate() {
-        return date;
+    public int getEpochDay() {
+        return epochDay;
     }
 
-    public void setDate(Date date) {
-        this.date = date;
+    public void setEpochDay(int epochDay) {
+        this.epochDay = epochDay;
     }
 
-    public String getCountry() {
-        return country;
+    /**
+     * @return The date of the information present in this node.
+     */
+    public LocalDate getLocalDate() {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    public int getCountryId() {
+        return countryId;
     }
 
-    public void setCountry(String country) {
-        this.country = country;
+    public void setCountryId(int countryId) {
+        this.countryId = countryId;
+    }
+
+    /**
+     * @return The name of the country of the information present in this node, resolved by its id.
+     */
+    public String getCountry() {
+        return CountryDictionary.getName(countryId);
     }
 
+    /**
+     * {@inheritDoc} The trees compare the primitive {@link #getEpochDay()} instead, which isn't boxed.
+     */
     @Override
-    public Date getKey() {
-        return getDate();
+    public Integer getKey() {
+        return epochDay;
     }
 
     @Override
-    public void setKey(Date key) {
-        setDate(key);
+    public void setKey(Integer key) {
+        setEpochDay(key);
     }
 
     /**
@@ -71,10 +93,40 @@ public abstract class VirusStatsNode<T> extends VirusNode<Date, T> {
      */
     public abstract String typeOfVirusStat();
 
+    // the name, the continent and the ISO code of the country are the same Strings for every node of the country, so
+    // they're only written once per stream.
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(getCountry());
+        out.writeObject(CountryDictionary.getContinent(countryId));
+        out.writeObject(CountryDictionary.getIsoCode(countryId));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        countryId = CountryDictionary.idOf((String) in.readObject());
+
+        String continent = readOptionalString(in);
+        if (continent != null) CountryDictionary.setContinent(countryId, continent);
+
+        String isoCode = readOptionalString(in);
+        if (isoCode != null) CountryDictionary.setIsoCode(countryId, isoCode);
+    }
+
+    // reads a String that the nodes written by older versions don't have, null if the node has none.
+    private static String readOptionalString(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        try {
+            return (String) in.readObject();
+        } catch (OptionalDataException e) {
+            if (!e.eof) throw e;
+            return null;
+        }
+    }
+
     @Override
     public int hashCode() {
-        int result = country != null ? country.hashCode() : 0;
-        result = 31 * result + (date != null ? date.hashCode() : 0);
+        int result = countryId;
+        result = 31 * result + epochDay;
         result = 31 * result + (left != null ? left.hashCode() : 0);
         result = 31 * result + (right != null ? right.hashCode() : 0);
         return result;
@@ -87,8 +139,8 @@ public abstract class VirusStatsNode<T> extends VirusNode<Date, T> {
 
         VirusStatsNode<?> that = (VirusStatsNode<?>) o;
 
-        if (country != null ? !country.equals(that.country) : that.country != null) return false;
-        if (date != null ? !date.equals(that.date) : that.date != null) return false;
+        if (countryId != that.countryId) return false;
+        if (epochDay != that.epochDay) return false;
         if (left != null ? !left.equals(that.left) : that.left != null) return false;
         return right != null ? right.equals(that.right) : that.right == null;
     }
@@ -96,8 +148,8 @@ public abstract class VirusStatsNode<T> extends VirusNode<Date, T> {
     @Override
     public String toString() {
         return "VirusStatsNode{" +
-                "country='" + country + '\'' +
-                ", date=" + date +
+                "country='" + getCountry() + '\'' +
+                ", date=" + getLocalDate() +
                 ", left=" + left +
                 ", right=" + right +
                 '}';
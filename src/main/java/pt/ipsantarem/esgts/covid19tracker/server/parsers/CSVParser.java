@@ -9,6 +9,13 @@ public interface CSVParser extends Parser {
 
     // ---------------------- INDEXES OF THE STATS SPLITTED BY THE DELIMITER ---------------------- //
 
+    int getIsoCodeIndex();
+
+    /**
+     * @return The index of the continent of the location, or -1 if the CSV has none.
+     */
+    int getContinentIndex();
+
     int getLocationIndex();
 
     int getDateIndex();
@@ -17,4 +17,25 @@ public interface Parser {
      * @return A map of virus trees mapped by individual countries.
      */
     Map<String, List<AVLVirusStatsTree<?, ?>>> parse(byte[] data);
+
+    /**
+     * @return True if this parser can parse the records appended to already parsed data.
+     */
+    default boolean canParseAppended() {
+        return false;
+    }
+
+    /**
+     * Parse the records appended to already parsed data, merging them with the already parsed records. The trees of
+     * the already parsed records are not changed: the countries with appended records get new trees.
+     *
+     * @param appendedData The appended records.
+     * @param records      The already parsed records.
+     * @return A map of virus trees mapped by individual countries, with the already parsed and the appended records.
+     * @throws UnsupportedOperationException If this parser can't parse appended records.
+     */
+    default Map<String, List<AVLVirusStatsTree<?, ?>>> parseAppended(byte[] appendedData,
+                                                                     Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
+        throw new UnsupportedOperationException();
+    }
 }
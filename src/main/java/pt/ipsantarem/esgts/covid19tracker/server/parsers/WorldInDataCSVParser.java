@@ -1,7 +1,10 @@
 package pt.ipsantarem.esgts.covid19tracker.server.parsers;
 
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.IngestEvent;
 import pt.ipsantarem.esgts.covid19tracker.server.nodes.*;
+import pt.ipsantarem.esgts.covid19tracker.server.pipeline.PipelineStage;
 import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -9,86 +12,192 @@ import java.io.StringReader;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
-import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BiConsumer;
 
-import static pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils.parseStringToDate;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils.parseIsoEpochDay;
 
 /**
  * Class that parses the CSVs.
  */
 public class WorldInDataCSVParser implements CSVParser {
 
+    // how many countries read by the parse can wait for the build of their trees.
+    private static final int BUILD_QUEUE_CAPACITY = ConfigUtils.getInt("pipeline.buildQueueCapacity", 64);
+
+    // builds the trees of the countries read by every parse, on a thread of its own that lives as long as the server,
+    // so that a parse doesn't start a thread (and register the gauge of its queue) of its own.
+    private static final PipelineStage<Runnable> BUILD_STAGE = new PipelineStage<>("build", BUILD_QUEUE_CAPACITY,
+            Runnable::run);
+
+    // the columns of the CSV, found by their names in its header, or the columns of the original layout of the CSV
+    // until a header is read.
+    private volatile Columns columns = Columns.ORIGINAL_LAYOUT;
+    private volatile boolean headerRead;
+
     @Override
     public String getDelimiter() {
         return ",";
     }
 
+    @Override
+    public int getIsoCodeIndex() {
+        return columns.isoCode;
+    }
+
+    @Override
+    public int getContinentIndex() {
+        return columns.continent;
+    }
+
     @Override
     public int getLocationIndex() {
-        return 1;
+        return columns.location;
     }
 
     @Override
     public int getDateIndex() {
-        return 2;
+        return columns.date;
     }
 
     @Override
     public int getNewCasesIndex() {
-        return 4;
+        return columns.newCases;
     }
 
     @Override
     public int getTotalCasesIndex() {
-        return 3;
+        return columns.totalCases;
     }
 
     @Override
     public int getNewDeathsIndex() {
-        return 6;
+        return columns.newDeaths;
     }
 
     @Override
     public int getTotalDeathsIndex() {
-        return 5;
+        return columns.totalDeaths;
     }
 
     /**
-     * Converts a CSV string into a map of virus stat trees
+     * Converts a CSV string into a map of virus stat trees. The trees are built by the build stage, on a thread shared
+     * by every parse, while the rest of the CSV is parsed: as soon as every row of a country is read, its nodes are put
+     * in the bounded queue of the build stage. The build ingest stage is the time the build took after the parse
+     * finished.
      *
      * @param csv The CSV
      * @return The map with the trees mapped to their respective countries
      */
     @Override
-    @SuppressWarnings("ConstantConditions")
     public Map<String, List<AVLVirusStatsTree<?, ?>>> parse(byte[] csv) {
+        IngestEvent parseEvent = IngestEvent.start(IngestEvent.PARSE);
+
+        // list of trees mapped by each individual country, only touched by the build stage until its builds are done
+        Map<String, List<AVLVirusStatsTree<?, ?>>> treesByCountry = new LinkedHashMap<>();
+        Builds builds = new Builds();
+
+        long records;
+        try {
+            records = readRecords(csv, true, (country, nodes) ->
+                    builds.put(() -> buildCountryTrees(nodes, treesByCountry)));
+        } catch (RuntimeException e) {
+            builds.await();
+            throw e;
+        }
+
+        parseEvent.finish(csv.length, records);
+
+        IngestEvent buildEvent = IngestEvent.start(IngestEvent.BUILD);
+        builds.await();
+        buildEvent.finish(0, records);
+
+        if (builds.firstFailure != null) throw builds.firstFailure;
+        return treesByCountry;
+    }
+
+    /**
+     * {@inheritDoc} The appended rows have no header, so they can only be parsed once the header of the whole CSV was
+     * read, which finds the columns of the rows.
+     */
+    @Override
+    public boolean canParseAppended() {
+        return headerRead;
+    }
+
+    /**
+     * Converts the rows appended to an already parsed CSV (without the header) into a map of virus stat trees. Only the
+     * trees of the countries with appended rows are built again, with the nodes of the already parsed trees and the
+     * appended nodes. An appended row with the date of an already parsed one replaces it.
+     *
+     * @param appendedCsv The rows appended to the CSV.
+     * @param records     The trees of the already parsed CSV, mapped to their respective countries.
+     * @return The map with the trees mapped to their respective countries
+     */
+    @Override
+    public Map<String, List<AVLVirusStatsTree<?, ?>>> parseAppended(byte[] appendedCsv,
+                                                                     Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
+        IngestEvent parseEvent = IngestEvent.start(IngestEvent.PARSE);
+
+        Map<String, CountryNodes> appendedNodesByCountry = new LinkedHashMap<>();
+        long appendedRecords = readRecords(appendedCsv, false, (country, nodes) ->
+                appendedNodesByCountry.merge(country, nodes, CountryNodes::addAll));
+
+        // the nodes of the already parsed records go first, so the appended ones replace them.
+        Map<String, CountryNodes> nodesByCountry = new LinkedHashMap<>();
+        appendedNodesByCountry.forEach((country, appendedNodes) -> {
+            CountryNodes nodes = new CountryNodes(country, appendedNodes.countryId);
+            List<AVLVirusStatsTree<?, ?>> trees = records.get(country);
+            if (trees != null) nodes.addCopiesOf(trees);
+            nodes.addAll(appendedNodes);
+            nodes.removeReplacedDates();
+            nodesByCountry.put(country, nodes);
+        });
+
+        parseEvent.finish(appendedCsv.length, appendedRecords);
+
+        Map<String, List<AVLVirusStatsTree<?, ?>>> treesByCountry = new LinkedHashMap<>(records);
+        treesByCountry.putAll(buildTrees(nodesByCountry, appendedRecords));
+        return treesByCountry;
+    }
+
+    /**
+     * Reads the rows of a CSV into the nodes of their countries. The rows of a country are usually together, so the
+     * nodes of a country are handed over as soon as the rows of the next country start. If a country's rows are split,
+     * its nodes are handed over once for each part.
+     *
+     * @param csv         The CSV
+     * @param hasHeader   If the first line of the CSV is the header.
+     * @param countryRead Gets the name of each read country and its nodes.
+     * @return The number of read records.
+     */
+    private long readRecords(byte[] csv, boolean hasHeader, BiConsumer<String, CountryNodes> countryRead) {
         // current line that the bufferedreader is reading
         String line;
 
-        // list of trees mapped by each individual country
-        Map<String, List<AVLVirusStatsTree<?, ?>>> treesByCountry = new LinkedHashMap<>();
+        // the number of records read
+        long records = 0;
 
         // create a new reader to read the csv
         try (BufferedReader br = new BufferedReader(new StringReader(new String(csv, StandardCharsets.UTF_8)))) {
             // a flag to indicate if its the first loop or not
-            boolean firstLoop = true;
+            boolean firstLoop = hasHeader;
 
-            // the location the csv is currently iterating on
+            // the location the csv is currently iterating on, and its nodes
             String currentLocation = "";
-
-            // initialize the trees
-            AVLVirusStatsTree<Integer, NewCasesNode> newCasesTree = null;
-            AVLVirusStatsTree<Integer, TotalCasesNode> totalCasesTree = null;
-            AVLVirusStatsTree<Integer, NewDeathsNode> newDeathsTree = null;
-            AVLVirusStatsTree<Integer, TotalDeathsNode> totalDeathsTree = null;
+            CountryNodes currentNodes = null;
 
             // start reading the csv
             while ((line = br.readLine()) != null) {
-                // skip the csv header
+                // find the columns by the csv header, and skip the empty lines
                 if (firstLoop) {
+                    columns = Columns.fromHeader(line.split(getDelimiter()));
+                    headerRead = true;
                     firstLoop = false;
                     continue;
+                } else if (line.isEmpty()) {
+                    continue;
                 }
 
                 // split the record, delimited by a comma, into a string array
@@ -96,68 +205,266 @@ public class WorldInDataCSVParser implements CSVParser {
 
                 String locationLowerCase = record[getLocationIndex()].toLowerCase();
 
-                // create the nodes
-                NewCasesNode newCasesNode = createNewNode(NewCasesNode.class,
-                        record[getDateIndex()], record[getLocationIndex()], record[getNewCasesIndex()]);
-                TotalCasesNode totalCasesNode = createNewNode(TotalCasesNode.class,
-                        record[getDateIndex()], record[getLocationIndex()], record[getTotalCasesIndex()]);
-                NewDeathsNode newDeathsNode = createNewNode(NewDeathsNode.class,
-                        record[getDateIndex()], record[getLocationIndex()], record[getNewDeathsIndex()]);
-                TotalDeathsNode totalDeathsNode = createNewNode(TotalDeathsNode.class,
-                        record[getDateIndex()], record[getLocationIndex()], record[getTotalDeathsIndex()]);
-
                 // if the location record read in the csv is different than the current location,
-                // then that means we are reading the records of the next country in the csv. save the trees of the
-                // other country in the map, reassign the variables and start adding again from scratch.
+                // then that means we are reading the records of the next country in the csv.
                 if (!locationLowerCase.equals(currentLocation)) {
-                    if (!currentLocation.isEmpty()) {
-                        treesByCountry.put(currentLocation,
-                                Arrays.asList(newCasesTree, totalCasesTree, newDeathsTree, totalDeathsTree));
+                    if (currentNodes != null) countryRead.accept(currentLocation, currentNodes);
+
+                    int countryId = CountryDictionary.idOf(record[getLocationIndex()]);
+                    if (!record[getIsoCodeIndex()].isEmpty()) {
+                        CountryDictionary.setIsoCode(countryId, record[getIsoCodeIndex()]);
+                    }
+                    if (getContinentIndex() >= 0 && !record[getContinentIndex()].isEmpty()) {
+                        CountryDictionary.setContinent(countryId, record[getContinentIndex()]);
                     }
 
                     currentLocation = locationLowerCase;
-
-                    newCasesTree = new AVLVirusStatsTree<>(newCasesNode);
-                    totalCasesTree = new AVLVirusStatsTree<>(totalCasesNode);
-                    newDeathsTree = new AVLVirusStatsTree<>(newDeathsNode);
-                    totalDeathsTree = new AVLVirusStatsTree<>(totalDeathsNode);
-
-                    continue;
+                    currentNodes = new CountryNodes(currentLocation, countryId);
                 }
 
-                // add the nodes into their respective trees
-                newCasesTree.add(newCasesNode);
-                totalCasesTree.add(totalCasesNode);
-                newDeathsTree.add(newDeathsNode);
-                totalDeathsTree.add(totalDeathsNode);
+                // create the nodes, with the date parsed once for all of them
+                int epochDay = parseIsoEpochDay(record[getDateIndex()]);
+                currentNodes.newCases.add(createNewNode(NewCasesNode.class,
+                        epochDay, currentNodes.countryId, record[getNewCasesIndex()]));
+                currentNodes.totalCases.add(createNewNode(TotalCasesNode.class,
+                        epochDay, currentNodes.countryId, record[getTotalCasesIndex()]));
+                currentNodes.newDeaths.add(createNewNode(NewDeathsNode.class,
+                        epochDay, currentNodes.countryId, record[getNewDeathsIndex()]));
+                currentNodes.totalDeaths.add(createNewNode(TotalDeathsNode.class,
+                        epochDay, currentNodes.countryId, record[getTotalDeathsIndex()]));
+
+                records++;
             }
+
+            if (currentNodes != null) countryRead.accept(currentLocation, currentNodes);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
+        return records;
+    }
+
+    /**
+     * Adds the parsed nodes into their respective trees.
+     *
+     * @param nodesByCountry The nodes mapped by each individual country.
+     * @param records        The number of parsed records.
+     * @return The map with the trees mapped to their respective countries
+     */
+    private Map<String, List<AVLVirusStatsTree<?, ?>>> buildTrees(Map<String, CountryNodes> nodesByCountry,
+                                                                  long records) {
+        IngestEvent buildEvent = IngestEvent.start(IngestEvent.BUILD);
+
+        // list of trees mapped by each individual country
+        Map<String, List<AVLVirusStatsTree<?, ?>>> treesByCountry = new LinkedHashMap<>();
+
+        nodesByCountry.forEach((country, nodes) -> treesByCountry.put(country, Arrays.asList(
+                buildTree(nodes.newCases), buildTree(nodes.totalCases),
+                buildTree(nodes.newDeaths), buildTree(nodes.totalDeaths))));
+
+        buildEvent.finish(0, records);
+
         return treesByCountry;
     }
 
+    /**
+     * Builds the trees of a country with its read nodes. If the country's trees were already built (because its rows
+     * are split), they are built again with the nodes of both parts.
+     *
+     * @param nodes          The read nodes of the country.
+     * @param treesByCountry The map with the trees mapped to their respective countries, where the built trees are
+     *                       put.
+     */
+    private void buildCountryTrees(CountryNodes nodes, Map<String, List<AVLVirusStatsTree<?, ?>>> treesByCountry) {
+        CountryNodes countryNodes = nodes;
+
+        List<AVLVirusStatsTree<?, ?>> builtTrees = treesByCountry.get(nodes.country);
+        if (builtTrees != null) {
+            countryNodes = new CountryNodes(nodes.country, nodes.countryId);
+            countryNodes.addCopiesOf(builtTrees);
+            countryNodes.addAll(nodes);
+        }
+
+        treesByCountry.put(nodes.country, Arrays.asList(
+                buildTree(countryNodes.newCases), buildTree(countryNodes.totalCases),
+                buildTree(countryNodes.newDeaths), buildTree(countryNodes.totalDeaths)));
+    }
+
+    /**
+     * Builds a tree with the passed nodes, the first one being the initial root.
+     *
+     * @param nodes The nodes of the tree.
+     * @param <T>   A node that extends from {@link VirusStatsNode}
+     * @return The built tree.
+     */
+    private <T extends VirusStatsNode<Integer>> AVLVirusStatsTree<Integer, T> buildTree(List<T> nodes) {
+        AVLVirusStatsTree<Integer, T> tree = new AVLVirusStatsTree<>(nodes.get(0));
+
+        for (int i = 1; i < nodes.size(); i++) {
+            tree.add(nodes.get(i));
+        }
+
+        return tree;
+    }
+
     /**
      * Small utility function to create a new node
      *
      * @param nodeClazz The {@link java.lang.Class} of the argument
-     * @param date      The date
-     * @param location  The location
+     * @param epochDay  The date, in days since the epoch
+     * @param countryId The id of the location
      * @param stat      The stat
      * @param <T>       A node that extends from {@link VirusStatsNode}
      * @return A new node
      */
-    private <T extends VirusStatsNode<?>> T createNewNode(Class<T> nodeClazz, String date,
-                                                          String location, String stat) {
+    private <T extends VirusStatsNode<?>> T createNewNode(Class<T> nodeClazz, int epochDay,
+                                                          int countryId, String stat) {
         try {
             // get the constructor of the node reflectively, using the Class types from the passed arguments
-            Constructor<T> nodeConstructor = nodeClazz.getConstructor(Date.class, String.class, int.class);
+            Constructor<T> nodeConstructor = nodeClazz.getConstructor(int.class, int.class, int.class);
 
             // using the obtained constructor, create the node
-            return nodeConstructor.newInstance((parseStringToDate("yyyy-MM-dd", date)), location, Integer.parseInt(stat));
-        } catch (ParseException | NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            return nodeConstructor.newInstance(epochDay, countryId, Integer.parseInt(stat));
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * The builds of the trees of a parse, which are put in the build stage along with the builds of the other parses,
+     * but are awaited apart from them.
+     */
+    private static class Builds {
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        // the first build that failed, so that the parse can rethrow it.
+        private volatile RuntimeException firstFailure;
+
+        // puts a build in the build stage, waiting while its queue is full.
+        private void put(Runnable build) {
+            BUILD_STAGE.put(() -> {
+                try {
+                    build.run();
+                } catch (RuntimeException e) {
+                    if (firstFailure == null) firstFailure = e;
+                    // the build stage logs and counts the failure.
+                    throw e;
+                }
+            });
+        }
+
+        // waits for the builds put so far. the build stage handles its items in order, so they are done once an item
+        // put after them is.
+        private void await() {
+            BUILD_STAGE.put(done::countDown);
+
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the build stage!", e);
+            }
+        }
+    }
+
+    /**
+     * The nodes of a country, for each type of stat.
+     */
+    private static class CountryNodes {
+        private final String country;
+        private final int countryId;
+        private List<NewCasesNode> newCases = new ArrayList<>();
+        private List<TotalCasesNode> totalCases = new ArrayList<>();
+        private List<NewDeathsNode> newDeaths = new ArrayList<>();
+        private List<TotalDeathsNode> totalDeaths = new ArrayList<>();
+
+        private CountryNodes(String country, int countryId) {
+            this.country = country;
+            this.countryId = countryId;
+        }
+
+        // adds copies of the nodes of already built trees, since a node can only be in one tree.
+        private void addCopiesOf(List<AVLVirusStatsTree<?, ?>> trees) {
+            for (VirusStatsNode<?> node : trees.get(0).getNodes()) {
+                newCases.add(new NewCasesNode(node.getEpochDay(), node.getCountryId(), (Integer) node.getNodeInformation()));
+            }
+            for (VirusStatsNode<?> node : trees.get(1).getNodes()) {
+                totalCases.add(new TotalCasesNode(node.getEpochDay(), node.getCountryId(), (Integer) node.getNodeInformation()));
+            }
+            for (VirusStatsNode<?> node : trees.get(2).getNodes()) {
+                newDeaths.add(new NewDeathsNode(node.getEpochDay(), node.getCountryId(), (Integer) node.getNodeInformation()));
+            }
+            for (VirusStatsNode<?> node : trees.get(3).getNodes()) {
+                totalDeaths.add(new TotalDeathsNode(node.getEpochDay(), node.getCountryId(), (Integer) node.getNodeInformation()));
+            }
+        }
+
+        private CountryNodes addAll(CountryNodes nodes) {
+            newCases.addAll(nodes.newCases);
+            totalCases.addAll(nodes.totalCases);
+            newDeaths.addAll(nodes.newDeaths);
+            totalDeaths.addAll(nodes.totalDeaths);
+            return this;
+        }
+
+        // when there are nodes with the same date, only the last one is kept.
+        private void removeReplacedDates() {
+            newCases = lastByDate(newCases);
+            totalCases = lastByDate(totalCases);
+            newDeaths = lastByDate(newDeaths);
+            totalDeaths = lastByDate(totalDeaths);
+        }
+
+        private static <T extends VirusStatsNode<?>> List<T> lastByDate(List<T> nodes) {
+            Map<Integer, T> nodesByDate = new LinkedHashMap<>();
+            for (T node : nodes) {
+                nodesByDate.put(node.getEpochDay(), node);
+            }
+
+            return nodesByDate.size() == nodes.size() ? nodes : new ArrayList<>(nodesByDate.values());
+        }
+    }
+
+    /**
+     * The indexes of the columns of the CSV.
+     */
+    private static class Columns {
+        // the columns of the CSV before the continent column was added to it.
+        private static final Columns ORIGINAL_LAYOUT = new Columns(0, -1, 1, 2, 3, 4, 5, 6);
+
+        private final int isoCode;
+        private final int continent;
+        private final int location;
+        private final int date;
+        private final int totalCases;
+        private final int newCases;
+        private final int totalDeaths;
+        private final int newDeaths;
+
+        private Columns(int isoCode, int continent, int location, int date, int totalCases, int newCases,
+                        int totalDeaths, int newDeaths) {
+            this.isoCode = isoCode;
+            this.continent = continent;
+            this.location = location;
+            this.date = date;
+            this.totalCases = totalCases;
+            this.newCases = newCases;
+            this.totalDeaths = totalDeaths;
+            this.newDeaths = newDeaths;
+        }
+
+        // finds the columns by their names. only the continent column is optional.
+        private static Columns fromHeader(String[] header) {
+            List<String> names = Arrays.asList(header);
+            return new Columns(require(names, "iso_code"), names.indexOf("continent"), require(names, "location"),
+                    require(names, "date"), require(names, "total_cases"), require(names, "new_cases"),
+                    require(names, "total_deaths"), require(names, "new_deaths"));
+        }
+
+        private static int require(List<String> names, String name) {
+            int index = names.indexOf(name);
+            if (index < 0) throw new IllegalArgumentException("The CSV has no " + name + " column!");
+            return index;
+        }
+    }
 }
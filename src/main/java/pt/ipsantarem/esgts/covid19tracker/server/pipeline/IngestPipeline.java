@@ -0,0 +1,108 @@
+package pt.ipsantarem.esgts.covid19tracker.server.pipeline;
+
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+import pt.ipsantarem.esgts.covid19tracker.server.models.ChangeSet;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The stages of the ingest that follow the fetch, parse and build of the records (which run on the threads of the
+ * stats sources, the build overlapping the parse). Once the records of every source are built and merged, they go
+ * through two independent branches at the same time:
+ * <ul>
+ * <li>the persist stage, which writes them to disk;</li>
+ * <li>the index stage, which diffs them, forecasts them and swaps them in, followed by the publish stage, which sends
+ * the changes to the change feed and to the websocket clients.</li>
+ * </ul>
+ * So the new records are served and published as soon as they are built, without waiting for the disk. Each stage
+ * has its own thread and bounded queue (a {@link PipelineStage}), whose capacity is set by the
+ * "pipeline.queueCapacity" setting. Besides the timings of each stage, the time from the submission of the records
+ * until they were published and until they were persisted are recorded as "pipeline.timeToPublishMs" and
+ * "pipeline.timeToPersistMs".
+ *
+ * @author José Simões
+ */
+public class IngestPipeline {
+    private static final int QUEUE_CAPACITY = ConfigUtils.getInt("pipeline.queueCapacity", 2);
+
+    private final PipelineStage<Batch> persistStage;
+    private final PipelineStage<Batch> indexStage;
+    private final PipelineStage<Batch> publishStage;
+
+    /**
+     * Creates the stages and starts their threads.
+     *
+     * @param persister Writes the records to disk.
+     * @param indexer   Swaps the records in, returning their changes (or null if there were no records before).
+     * @param publisher Publishes the changes of the records, which are never empty.
+     */
+    public IngestPipeline(Consumer<Map<String, List<AVLVirusStatsTree<?, ?>>>> persister,
+                          Function<Map<String, List<AVLVirusStatsTree<?, ?>>>, ChangeSet> indexer,
+                          Consumer<ChangeSet> publisher) {
+        this.persistStage = new PipelineStage<>("persist", QUEUE_CAPACITY, batch -> {
+            persister.accept(batch.records);
+            ServerMetrics.recordNanos("pipeline.timeToPersist", System.nanoTime() - batch.submittedNanos);
+        });
+
+        this.publishStage = new PipelineStage<>("publish", QUEUE_CAPACITY, batch -> {
+            publisher.accept(batch.changes);
+            ServerMetrics.recordNanos("pipeline.timeToPublish", System.nanoTime() - batch.submittedNanos);
+        });
+
+        this.indexStage = new PipelineStage<>("index", QUEUE_CAPACITY, batch -> {
+            batch.changes = indexer.apply(batch.records);
+            if (batch.changes != null && !batch.changes.isEmpty()) publishStage.put(batch);
+        });
+    }
+
+    /**
+     * Sends newly built records through every stage, waiting while the queues are full.
+     *
+     * @param records The merged records of every stats source.
+     */
+    public void submit(Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
+        Batch batch = new Batch(records);
+
+        // the index stage goes first, since the records are served and published once it's done.
+        indexStage.put(batch);
+        persistStage.put(batch);
+    }
+
+    /**
+     * Sends records that were already swapped in only through the persist stage, waiting while its queue is full.
+     *
+     * @param records The merged records of every stats source.
+     */
+    public void persist(Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
+        persistStage.put(new Batch(records));
+    }
+
+    /**
+     * Waits for the submitted records to go through every stage and stops the threads of the stages.
+     */
+    public void close() {
+        indexStage.close();
+        publishStage.close();
+        persistStage.close();
+    }
+
+    /**
+     * Records going through the pipeline, and their changes once they are indexed.
+     */
+    private static class Batch {
+        private final Map<String, List<AVLVirusStatsTree<?, ?>>> records;
+        private final long submittedNanos = System.nanoTime();
+
+        // set by the index stage, and read by the publish stage after it.
+        private volatile ChangeSet changes;
+
+        private Batch(Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
+            this.records = records;
+        }
+    }
+}
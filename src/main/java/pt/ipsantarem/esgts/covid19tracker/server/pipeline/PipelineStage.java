@@ -0,0 +1,132 @@
+package pt.ipsantarem.esgts.covid19tracker.server.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * A stage of the ingest pipeline: a thread of its own that handles the items put in its bounded queue, one at a time
+ * and in the order they were put. When the queue is full, putting an item waits until the stage takes one, so a slow
+ * stage slows down the stages that feed it instead of piling up records in memory.
+ * <p>
+ * For every item, the time it waited in the queue and the time it took to handle are recorded in the
+ * {@link ServerMetrics} as "pipeline.[name].waitMs" and "pipeline.[name]Ms", and the number of queued items is the
+ * "pipeline.[name].queued" gauge. An item that fails to be handled is logged and counted in
+ * "pipeline.[name].failures", and the stage goes on with the next one.
+ *
+ * @param <T> The type of the items handled by the stage.
+ * @author José Simões
+ */
+public class PipelineStage<T> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineStage.class);
+
+    private final String name;
+    private final Consumer<T> handler;
+    private final BlockingQueue<Entry<T>> queue;
+    private final Thread thread;
+
+    // the first item that failed to be handled, so a stage that runs only once can rethrow it.
+    private volatile RuntimeException firstFailure;
+
+    /**
+     * Creates the stage and starts its thread.
+     *
+     * @param name     The name of the stage, used by its thread and its metrics.
+     * @param capacity How many items can wait in the queue of the stage.
+     * @param handler  Handles each item, on the thread of the stage.
+     */
+    public PipelineStage(String name, int capacity, Consumer<T> handler) {
+        this.name = name;
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.thread = new Thread(this::run, "ingest-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+
+        ServerMetrics.registerGauge("pipeline." + name + ".queued", queue::size);
+    }
+
+    /**
+     * Puts an item in the queue of the stage, waiting while the queue is full.
+     *
+     * @param item The item to handle, not null.
+     * @throws IllegalStateException If the thread is interrupted while waiting.
+     */
+    public void put(T item) {
+        Objects.requireNonNull(item);
+
+        try {
+            queue.put(new Entry<>(item));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the " + name + " stage!", e);
+        }
+    }
+
+    /**
+     * Waits for the queued items to be handled and stops the thread of the stage.
+     *
+     * @throws IllegalStateException If the thread is interrupted while waiting.
+     */
+    public void close() {
+        try {
+            // an entry without an item is put after the last one, to stop the thread.
+            queue.put(new Entry<>(null));
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the " + name + " stage!", e);
+        }
+    }
+
+    /**
+     * @return The failure of the first item that failed to be handled, or null if every item was handled.
+     */
+    public RuntimeException getFirstFailure() {
+        return firstFailure;
+    }
+
+    private void run() {
+        while (true) {
+            Entry<T> entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (entry.item == null) return;
+
+            long start = System.nanoTime();
+            ServerMetrics.recordNanos("pipeline." + name + ".wait", start - entry.putNanos);
+
+            try {
+                handler.accept(entry.item);
+            } catch (RuntimeException e) {
+                LOGGER.warn("The {} stage failed!", name, e);
+                ServerMetrics.increment("pipeline." + name + ".failures");
+                if (firstFailure == null) firstFailure = e;
+            }
+
+            ServerMetrics.recordNanos("pipeline." + name, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * A queued item, with the time it was put in the queue.
+     */
+    private static class Entry<T> {
+        private final T item;
+        private final long putNanos = System.nanoTime();
+
+        private Entry(T item) {
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package pt.ipsantarem.esgts.covid19tracker.server.rollup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.IngestEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.*;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager.*;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.toStat;
+
+/**
+ * The rollup stage of the ingest. Runs before the records are swapped in, adding the records of every continent (the
+ * sums of the stats of its countries, day by day) and of the world (the sums of the stats of the continents), so that
+ * they're served like the records of any country, without summing anything at request time. The continents come from
+ * the continent column of the stats, and their sums are computed in parallel, each one on a thread of a fork/join pool
+ * whose parallelism is set by the "rollup.parallelism" setting (the number of available processors by default).
+ * <p>
+ * A continent whose countries have the same trees as in the previous records (the countries without appended records)
+ * keeps its previous sums, and so does the world if no continent changed. A continent (or the world) whose countries
+ * changed is summed from its previous sums: the sums of the days before the first day in which any of its countries
+ * changed are copied, and only the days from then on are summed again. The continents and the world that the sources
+ * already have records of are not summed, their records are served as they are. Either way, the continents and the
+ * world are flagged as regions in the {@link CountryDictionary}. The sums that don't fit in a stat are clamped to it.
+ *
+ * @author José Simões
+ */
+public class RegionRollup {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegionRollup.class);
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            ConfigUtils.getInt("rollup.parallelism", Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The name of the region with every country.
+     */
+    public static final String WORLD = "World";
+
+    /**
+     * Adds the records of the continents and of the world to the records of the countries.
+     *
+     * @param records             The records of the countries, mapped by the (lower case) name of the country.
+     * @param previousTreeManager The tree manager with the previous records, or null if there are none.
+     * @return The records of the countries, the continents and the world, or the passed records if no country has a
+     * continent.
+     */
+    public static Map<String, List<AVLVirusStatsTree<?, ?>>> rollup(Map<String, List<AVLVirusStatsTree<?, ?>>> records,
+                                                                   AVLVirusStatsTreesManager previousTreeManager) {
+        Map<String, List<List<AVLVirusStatsTree<?, ?>>>> countriesByContinent = groupByContinent(records);
+        if (countriesByContinent.isEmpty()) return records;
+
+        IngestEvent rollupEvent = IngestEvent.start(IngestEvent.ROLLUP);
+
+        Map<String, List<List<AVLVirusStatsTree<?, ?>>>> previousCountriesByContinent = previousTreeManager != null
+                ? groupByContinent(previousTreeManager.getRecords()) : null;
+
+        Map<String, List<AVLVirusStatsTree<?, ?>>> rolledUp = new LinkedHashMap<>(records);
+        Map<String, ForkJoinTask<List<AVLVirusStatsTree<?, ?>>>> sums = new LinkedHashMap<>();
+        List<List<AVLVirusStatsTree<?, ?>>> continents = new ArrayList<>();
+        // the world keeps its previous sums only if it has the same continents, with the same trees.
+        boolean continentsChanged = previousCountriesByContinent == null
+                || previousCountriesByContinent.size() != countriesByContinent.size();
+        int summed = 0;
+
+        for (Map.Entry<String, List<List<AVLVirusStatsTree<?, ?>>>> continent : countriesByContinent.entrySet()) {
+            String key = continent.getKey().toLowerCase();
+            int continentId = CountryDictionary.idOf(continent.getKey());
+            CountryDictionary.markRegion(continentId);
+
+            List<AVLVirusStatsTree<?, ?>> trees = records.get(key);
+            if (trees == null && previousCountriesByContinent != null && isSame(continent.getValue(),
+                    previousCountriesByContinent.get(continent.getKey()))) {
+                trees = previousTreeManager.getTrees(continentId);
+            }
+
+            if (trees != null) {
+                rolledUp.put(key, trees);
+                continents.add(trees);
+                continentsChanged |= previousTreeManager == null || previousTreeManager.getTrees(continentId) != trees;
+            } else {
+                List<List<AVLVirusStatsTree<?, ?>>> countries = continent.getValue();
+                Set<Integer> previousCountryIds = previousCountriesByContinent != null
+                        ? idsOf(previousCountriesByContinent.get(continent.getKey())) : null;
+                List<List<AVLVirusStatsTree<?, ?>>> previousCountries =
+                        previousMembers(countries, previousCountryIds, previousTreeManager);
+                List<AVLVirusStatsTree<?, ?>> previousSums = previousCountries != null
+                        ? previousTreeManager.getTrees(continentId) : null;
+
+                sums.put(key, POOL.submit(() -> sum(continentId, countries, previousCountries, previousSums)));
+                continentsChanged = true;
+            }
+        }
+
+        for (Map.Entry<String, ForkJoinTask<List<AVLVirusStatsTree<?, ?>>>> sum : sums.entrySet()) {
+            List<AVLVirusStatsTree<?, ?>> trees = sum.getValue().join();
+            rolledUp.put(sum.getKey(), trees);
+            continents.add(trees);
+            summed++;
+        }
+
+        String worldKey = WORLD.toLowerCase();
+        int worldId = CountryDictionary.idOf(WORLD);
+        CountryDictionary.markRegion(worldId);
+        if (!records.containsKey(worldKey)) {
+            List<AVLVirusStatsTree<?, ?>> world = !continentsChanged ? previousTreeManager.getTrees(worldId) : null;
+            if (world == null) {
+                Set<Integer> previousContinentIds = previousCountriesByContinent != null
+                        ? regionIdsOf(previousCountriesByContinent.keySet()) : null;
+                List<List<AVLVirusStatsTree<?, ?>>> previousContinents =
+                        previousMembers(continents, previousContinentIds, previousTreeManager);
+                List<AVLVirusStatsTree<?, ?>> previousSums = previousContinents != null
+                        ? previousTreeManager.getTrees(worldId) : null;
+
+                world = sum(worldId, continents, previousContinents, previousSums);
+                summed++;
+            }
+            rolledUp.put(worldKey, world);
+        }
+
+        rollupEvent.finish(0, summed);
+        LOGGER.info("Summed the records of {} regions, reused the sums of {} unchanged regions!", summed,
+                rolledUp.size() - records.size() - summed);
+
+        return rolledUp;
+    }
+
+    // groups the trees of the countries by the name of their continent, leaving out the ones without a continent.
+    private static Map<String, List<List<AVLVirusStatsTree<?, ?>>>> groupByContinent(
+            Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
+        Map<String, List<List<AVLVirusStatsTree<?, ?>>>> countriesByContinent = new LinkedHashMap<>();
+
+        for (List<AVLVirusStatsTree<?, ?>> trees : records.values()) {
+            String continent = CountryDictionary.getContinent(trees.get(0).getRoot().getCountryId());
+            if (continent != null) {
+                countriesByContinent.computeIfAbsent(continent, c -> new ArrayList<>()).add(trees);
+            }
+        }
+
+        return countriesByContinent;
+    }
+
+    // checks if two lists of countries have the same trees, in the same order.
+    private static boolean isSame(List<List<AVLVirusStatsTree<?, ?>>> countries,
+                                  List<List<AVLVirusStatsTree<?, ?>>> previousCountries) {
+        if (previousCountries == null || previousCountries.size() != countries.size()) return false;
+
+        for (int i = 0; i < countries.size(); i++) {
+            if (countries.get(i) != previousCountries.get(i)) return false;
+        }
+
+        return true;
+    }
+
+    // the ids of the countries with certain trees, or null if there are no trees.
+    private static Set<Integer> idsOf(List<List<AVLVirusStatsTree<?, ?>>> countries) {
+        if (countries == null) return null;
+
+        Set<Integer> ids = new HashSet<>();
+        for (List<AVLVirusStatsTree<?, ?>> trees : countries) {
+            ids.add(trees.get(0).getRoot().getCountryId());
+        }
+
+        return ids;
+    }
+
+    // the ids of the regions with certain names.
+    private static Set<Integer> regionIdsOf(Collection<String> regions) {
+        Set<Integer> ids = new HashSet<>();
+        for (String region : regions) {
+            ids.add(CountryDictionary.idOf(region));
+        }
+
+        return ids;
+    }
+
+    // the previous trees of each member of a region, in the same order, or null if the region had other members.
+    private static List<List<AVLVirusStatsTree<?, ?>>> previousMembers(List<List<AVLVirusStatsTree<?, ?>>> members,
+                                                                       Set<Integer> previousMemberIds,
+                                                                       AVLVirusStatsTreesManager previousTreeManager) {
+        if (previousMemberIds == null || previousMemberIds.size() != members.size()) return null;
+
+        List<List<AVLVirusStatsTree<?, ?>>> previousMembers = new ArrayList<>(members.size());
+        for (List<AVLVirusStatsTree<?, ?>> trees : members) {
+            int id = trees.get(0).getRoot().getCountryId();
+            List<AVLVirusStatsTree<?, ?>> previousTrees = previousMemberIds.contains(id)
+                    ? previousTreeManager.getTrees(id) : null;
+            if (previousTrees == null) return null;
+
+            previousMembers.add(previousTrees);
+        }
+
+        return previousMembers;
+    }
+
+    // the first day in which the stats of any country differ from its previous ones, or Integer.MAX_VALUE if none do.
+    private static int firstChangedDay(List<List<AVLVirusStatsTree<?, ?>>> countries,
+                                       List<List<AVLVirusStatsTree<?, ?>>> previousCountries) {
+        int firstChangedDay = Integer.MAX_VALUE;
+
+        for (int i = 0; i < countries.size(); i++) {
+            List<AVLVirusStatsTree<?, ?>> trees = countries.get(i);
+            List<AVLVirusStatsTree<?, ?>> previousTrees = previousCountries.get(i);
+            if (trees == previousTrees) continue;
+
+            for (int treeIdx = 0; treeIdx < trees.size(); treeIdx++) {
+                List<? extends VirusStatsNode<?>> nodes = trees.get(treeIdx).getNodes();
+                List<? extends VirusStatsNode<?>> previousNodes = previousTrees.get(treeIdx).getNodes();
+
+                int same = 0;
+                while (same < nodes.size() && same < previousNodes.size()
+                        && nodes.get(same).getEpochDay() == previousNodes.get(same).getEpochDay()
+                        && nodes.get(same).getNodeInformation().equals(previousNodes.get(same).getNodeInformation())) {
+                    same++;
+                }
+
+                if (same < nodes.size()) {
+                    firstChangedDay = Math.min(firstChangedDay, nodes.get(same).getEpochDay());
+                }
+                if (same < previousNodes.size()) {
+                    firstChangedDay = Math.min(firstChangedDay, previousNodes.get(same).getEpochDay());
+                }
+            }
+        }
+
+        return firstChangedDay;
+    }
+
+    // the index of the first node of a date or after it, or the number of nodes if there's none.
+    private static int indexFrom(List<? extends VirusStatsNode<?>> nodes, int epochDay) {
+        int low = 0;
+        int high = nodes.size();
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (nodes.get(middle).getEpochDay() < epochDay) low = middle + 1;
+            else high = middle;
+        }
+
+        return low;
+    }
+
+    /**
+     * Sums the stats of a group of countries, day by day. A country without a record in a day adds nothing to the new
+     * stats of the day, and adds its latest total stats (if any) to the total stats of the day.
+     *
+     * @param regionId  The id of the region of the countries.
+     * @param countries The trees of the countries, indexed by the tree indexes.
+     * @return The trees of the region, indexed by the tree indexes.
+     */
+    static List<AVLVirusStatsTree<?, ?>> sum(int regionId, List<List<AVLVirusStatsTree<?, ?>>> countries) {
+        return sum(regionId, countries, null, null);
+    }
+
+    /**
+     * Sums the stats of a group of countries, day by day, starting from the previous sums of the region. The sums of
+     * the days before the first day in which any country changed are copied from the previous trees of the region,
+     * since they can't have changed, and the running sums of the total stats go on from the latest copied ones.
+     *
+     * @param regionId          The id of the region of the countries.
+     * @param countries         The trees of the countries, indexed by the tree indexes.
+     * @param previousCountries The previous trees of each country, in the same order, or null to sum every day.
+     * @param previousRegion    The trees of the region summed from the previous trees of the countries, or null to sum
+     *                          every day.
+     * @return The trees of the region, indexed by the tree indexes, or the previous ones if no country changed.
+     */
+    @SuppressWarnings("unchecked")
+    static List<AVLVirusStatsTree<?, ?>> sum(int regionId, List<List<AVLVirusStatsTree<?, ?>>> countries,
+                                             List<List<AVLVirusStatsTree<?, ?>>> previousCountries,
+                                             List<AVLVirusStatsTree<?, ?>> previousRegion) {
+        int firstDay = Integer.MAX_VALUE;
+        int lastDay = Integer.MIN_VALUE;
+
+        for (List<AVLVirusStatsTree<?, ?>> trees : countries) {
+            List<? extends VirusStatsNode<?>> nodes = trees.get(0).getNodes();
+            firstDay = Math.min(firstDay, nodes.get(0).getEpochDay());
+            lastDay = Math.max(lastDay, nodes.get(nodes.size() - 1).getEpochDay());
+        }
+
+        // the first day whose sums can differ from the previous ones.
+        int firstSummedDay = firstDay;
+        if (previousCountries != null && previousRegion != null) {
+            int firstChangedDay = firstChangedDay(countries, previousCountries);
+            if (firstChangedDay == Integer.MAX_VALUE) return previousRegion;
+
+            firstSummedDay = Math.max(firstDay, firstChangedDay);
+        }
+
+        int days = lastDay - firstSummedDay + 1;
+        boolean[] hasRecords = new boolean[days];
+        AVLVirusStatsTree<?, ?>[] regionTrees = new AVLVirusStatsTree<?, ?>[4];
+
+        for (int treeIdx = 0; treeIdx < regionTrees.length; treeIdx++) {
+            boolean totalStat = treeIdx == TOTAL_CASES_TREE_IDX || treeIdx == TOTAL_DEATHS_TREE_IDX;
+            List<VirusStatsNode<Integer>> nodes = new ArrayList<>();
+            long runningSum = 0;
+
+            // the nodes of the previous trees are copied, since they're still linked to each other in those trees.
+            if (firstSummedDay > firstDay) {
+                for (VirusStatsNode<?> node : previousRegion.get(treeIdx).getNodes()) {
+                    if (node.getEpochDay() >= firstSummedDay) break;
+
+                    int stat = (Integer) node.getNodeInformation();
+                    nodes.add(createNode(treeIdx, node.getEpochDay(), regionId, stat));
+                    if (totalStat) runningSum = stat;
+                }
+            }
+
+            long[] sums = new long[days];
+
+            for (List<AVLVirusStatsTree<?, ?>> trees : countries) {
+                List<? extends VirusStatsNode<?>> countryNodes = trees.get(treeIdx).getNodes();
+                int first = indexFrom(countryNodes, firstSummedDay);
+                int previousStat = first > 0 ? (Integer) countryNodes.get(first - 1).getNodeInformation() : 0;
+
+                for (int i = first; i < countryNodes.size(); i++) {
+                    VirusStatsNode<?> node = countryNodes.get(i);
+                    int day = node.getEpochDay() - firstSummedDay;
+                    int stat = (Integer) node.getNodeInformation();
+                    hasRecords[day] = true;
+
+                    // the total stats are added as the differences to the previous ones, so that the running sum
+                    // carries the latest total of each country over the days it has no record.
+                    sums[day] += totalStat ? stat - previousStat : stat;
+                    previousStat = stat;
+                }
+            }
+
+            for (int day = 0; day < days; day++) {
+                runningSum += sums[day];
+                if (hasRecords[day]) {
+                    int stat = toStat(totalStat ? runningSum : sums[day]);
+                    nodes.add(createNode(treeIdx, firstSummedDay + day, regionId, stat));
+                }
+            }
+
+            regionTrees[treeIdx] = buildTree(nodes);
+        }
+
+        return Arrays.asList(regionTrees);
+    }
+
+    private static VirusStatsNode<Integer> createNode(int treeIdx, int epochDay, int regionId, int stat) {
+        switch (treeIdx) {
+            case NEW_CASES_TREE_IDX:
+                return new NewCasesNode(epochDay, regionId, stat);
+            case TOTAL_CASES_TREE_IDX:
+                return new TotalCasesNode(epochDay, regionId, stat);
+            case NEW_DEATHS_TREE_IDX:
+                return new NewDeathsNode(epochDay, regionId, stat);
+            default:
+                return new TotalDeathsNode(epochDay, regionId, stat);
+        }
+    }
+
+    private static AVLVirusStatsTree<Integer, VirusStatsNode<Integer>> buildTree(List<VirusStatsNode<Integer>> nodes) {
+        AVLVirusStatsTree<Integer, VirusStatsNode<Integer>> tree = new AVLVirusStatsTree<>(nodes.get(0));
+
+        for (int i = 1; i < nodes.size(); i++) {
+            tree.add(nodes.get(i));
+        }
+
+        return tree;
+    }
+}
@@ -2,19 +2,21 @@ package pt.ipsantarem.esgts.covid19tracker.server.scraping;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import pt.ipsantarem.esgts.covid19tracker.server.listeners.UpdateAvailableListener;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.IngestEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.parsers.Parser;
 import pt.ipsantarem.esgts.covid19tracker.server.scraping.pages.COVID19StatsPage;
 import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-
-import static pt.ipsantarem.esgts.covid19tracker.server.utils.ObjectPersistenceUtils.readLastDownloadDate;
-import static pt.ipsantarem.esgts.covid19tracker.server.utils.ObjectPersistenceUtils.writeLastDownloadDate;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles the update of the a COVID 19 stat page update (in short, when a new batch of COVID-19 related data is inserted). This
@@ -26,76 +28,93 @@ import static pt.ipsantarem.esgts.covid19tracker.server.utils.ObjectPersistenceU
 public class COVID19StatsPageDocumentUpdateHandler implements Callable<Map<String, List<AVLVirusStatsTree<?, ?>>>> {
     private static final Logger LOGGER = LoggerFactory.getLogger(COVID19StatsPageDocumentUpdateHandler.class);
 
-    private COVID19StatsPage covid19StatsPage;
-    private UpdateAvailableListener updateAvailableListener;
+    // download only the bytes appended to the stats since the last download, if the stats only grew?
+    private static final boolean INCREMENTAL_DOWNLOADS = ConfigUtils.getBoolean("download.incremental", false);
+
+    // how long and how many appended downloads can go by before the whole file is downloaded again, since an appended
+    // download can't tell if the bytes before the appended ones were changed.
+    private static final long FULL_DOWNLOAD_INTERVAL_MILLIS =
+            TimeUnit.HOURS.toMillis(ConfigUtils.getInt("download.fullIntervalHours", 24));
+    private static final int MAX_APPENDED_DOWNLOADS = ConfigUtils.getInt("download.maxAppendedDownloads", 24);
+
+    private final StatsSource source;
+    private final COVID19StatsPage covid19StatsPage;
+
+    // the date and validators of the download the returned records were parsed from.
+    private LocalDate lastDownloadDate;
+    private DownloadValidators downloadValidators;
 
     /**
-     * Initializes a new document update handler instance.
+     * Initializes a new document update handler instance for one of several stats sources, whose last download date
+     * and validators are the ones of its current records. They aren't written by the handler, but are set in the
+     * source with the returned records (see {@link #getLastDownloadDate()} and {@link #getDownloadValidators()}), and
+     * written to disk with them.
      *
-     * @param covid19StatsPage The page to handle updates for.
+     * @param source The stats source.
      */
-    public COVID19StatsPageDocumentUpdateHandler(COVID19StatsPage covid19StatsPage) {
-        this.covid19StatsPage = covid19StatsPage;
+    public COVID19StatsPageDocumentUpdateHandler(StatsSource source) {
+        this.source = source;
+        this.covid19StatsPage = source.getPage();
     }
 
     /**
-     * Initializes a new document update handler instance with an attached listener that gets notified if new updates
-     * are available.
-     *
-     * @param covid19StatsPage        The page to handle updates for.
-     * @param updateAvailableListener The update listener instance.
+     * @return The date of the download the returned records were parsed from, or null if nothing was downloaded.
      */
-    public COVID19StatsPageDocumentUpdateHandler(COVID19StatsPage covid19StatsPage,
-                                                 UpdateAvailableListener updateAvailableListener) {
-        this.covid19StatsPage = covid19StatsPage;
-        this.updateAvailableListener = updateAvailableListener;
+    public LocalDate getLastDownloadDate() {
+        return lastDownloadDate;
     }
 
     /**
-     * Check for changes on the specified COVID 19 stat page and compare the date of those changes to the last time where we checked
-     * for changes locally.
+     * @return The validators of the download the returned records were parsed from, or null if there are none.
+     */
+    public DownloadValidators getDownloadValidators() {
+        return downloadValidators;
+    }
+
+    /**
+     * Check for changes on the specified COVID 19 stat page since we last downloaded its stats. The check is a
+     * conditional request with the validators of the last download, and only if the server gives no validators, the
+     * last time updated on the page is compared to the last time we downloaded the stats.
      *
-     * @return A empty records map if the COVID 19 stat page document instance is null of if there are no updates
-     * to the page since we last checked, or a records map that should contain the newly added records
-     * if the page was changed since we last checked it.
+     * @return A empty records map if there are no updates to the page since we last checked, or a records map that
+     * should contain the newly added records if the page was changed since we last checked it.
+     * @throws UncheckedIOException If the COVID 19 stat page couldn't be reached.
      */
     @Override
     public Map<String, List<AVLVirusStatsTree<?, ?>>> call() {
-        // if the document is null, just return empty data and try again later. it means that no connection could be
-        // established.
-        if (covid19StatsPage.getPageInstance() == null) {
-            LOGGER.warn("The stats page document is null, skipping the change check!");
-            return Collections.emptyMap();
-        }
-
-        // if there is a connection, we open the locally stored database file that contains the last time we downloaded
-        LocalDate lastTimeDownloadedRecords = readLastDownloadDate();
+        // open the locally stored database file that contains the last time we downloaded the records.
+        LocalDate lastTimeDownloadedRecords = source.getLastDownloadDate();
 
         // if the last time we downloaded the updates is null, that means we never downloaded them in the first place.
-        // add the current date as the time we checked for updates and proceed to download the records.
         if (lastTimeDownloadedRecords == null) {
             LOGGER.info("First run of the server, downloading the records!");
-            writeLastDownloadDate(LocalDate.now());
             return downloadRecords();
         }
 
-        // get the time where the page was last updated.
-        LocalDate lastTimeUpdatedInPage = covid19StatsPage.getLastTimeUpdated();
+        // the records of the last download are needed, but they're gone, so they must be downloaded again.
+        if (source.getRecords() == null) {
+            LOGGER.info("The records of the last download are missing, downloading them again!");
+            return downloadRecords();
+        }
 
-        // if the time where the records were updated on the page is bigger than the time where we last downloaded
-        // the updates, it means there are new records. update the last time we downloaded new records and then download
-        // it.
-        if (lastTimeUpdatedInPage.compareTo(lastTimeDownloadedRecords) > 0) {
-            LOGGER.info("New updates are available, downloading them!");
+        // check if the stats changed since the last download.
+        Freshness freshness;
+        try {
+            freshness = covid19StatsPage.checkFreshness(source.getDownloadValidators());
+        } catch (IOException e) {
+            ServerMetrics.increment("ingest.checks.failed");
+            throw new UncheckedIOException("Could not check the stats for changes!", e);
+        }
 
-            writeLastDownloadDate(LocalDate.now());
-            Map<String, List<AVLVirusStatsTree<?, ?>>> records = downloadRecords();
+        if (freshness == Freshness.UNKNOWN) {
+            freshness = checkLastTimeUpdated(lastTimeDownloadedRecords);
+        }
 
-            if (updateAvailableListener != null) {
-                updateAvailableListener.onUpdateAvailable(records);
-            }
+        ServerMetrics.increment("ingest.checks." + (freshness == Freshness.MODIFIED ? "modified" : "notModified"));
 
-            return records;
+        if (freshness == Freshness.MODIFIED) {
+            LOGGER.info("New updates are available, downloading them!");
+            return downloadRecords();
         }
 
         LOGGER.info("No updates found!");
@@ -105,13 +124,65 @@ public class COVID19StatsPageDocumentUpdateHandler implements Callable<Map<Strin
     }
 
     /**
-     * Download and parse the records
+     * Checks if the stats changed by comparing the last time they were updated on the page to the last time we
+     * downloaded them.
+     *
+     * @param lastTimeDownloadedRecords The last time we downloaded the stats.
+     * @return If the stats changed. They didn't if the page couldn't be reached.
+     */
+    private Freshness checkLastTimeUpdated(LocalDate lastTimeDownloadedRecords) {
+        // if the document is null, it means that no connection could be established. try again later.
+        if (covid19StatsPage.getPageInstance() == null) {
+            LOGGER.warn("The stats page document is null, skipping the change check!");
+            return Freshness.NOT_MODIFIED;
+        }
+
+        // if the time where the records were updated on the page is bigger than the time where we last downloaded
+        // the updates, it means there are new records.
+        return covid19StatsPage.getLastTimeUpdated().compareTo(lastTimeDownloadedRecords) > 0
+                ? Freshness.MODIFIED : Freshness.NOT_MODIFIED;
+    }
+
+    /**
+     * Download and parse the records, updating the last time we downloaded them and the validators of the download
+     * once they are parsed, so that a download whose parse fails is retried by the next check.
      *
      * @return A map containing the downloaded records.
      */
     private Map<String, List<AVLVirusStatsTree<?, ?>>> downloadRecords() {
+        Parser parser = covid19StatsPage.getParser();
+        DownloadValidators previousValidators = source.getDownloadValidators();
+        Map<String, List<AVLVirusStatsTree<?, ?>>> records = source.getRecords();
+
+        // the appended stats can only be downloaded if the parser can merge them with the current records.
+        boolean incremental = INCREMENTAL_DOWNLOADS && previousValidators != null && records != null
+                && parser.canParseAppended() && previousValidators.mayDownloadAppended(System.currentTimeMillis(),
+                FULL_DOWNLOAD_INTERVAL_MILLIS, MAX_APPENDED_DOWNLOADS);
+
         try {
-            return covid19StatsPage.downloadAndParseCovid19Stats();
+            IngestEvent downloadEvent = IngestEvent.start(IngestEvent.DOWNLOAD);
+            StatsDownload download = incremental
+                    ? covid19StatsPage.downloadAppended(previousValidators)
+                    : covid19StatsPage.download();
+            downloadEvent.finish(download.getData().length, 0);
+
+            Map<String, List<AVLVirusStatsTree<?, ?>>> downloadedRecords;
+            DownloadValidators validators;
+            if (download.isPartial()) {
+                LOGGER.info("Downloaded the {} bytes appended to the stats!", download.getData().length);
+                ServerMetrics.increment("ingest.downloads.partial");
+                downloadedRecords = parser.parseAppended(download.getData(), records);
+                validators = download.getValidators().afterAppendedDownload(previousValidators);
+            } else {
+                ServerMetrics.increment("ingest.downloads.full");
+                downloadedRecords = parser.parse(download.getData());
+                validators = download.getValidators().afterFullDownload(System.currentTimeMillis());
+            }
+
+            lastDownloadDate = LocalDate.now();
+            downloadValidators = validators;
+
+            return downloadedRecords;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,148 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The HTTP validators of a downloaded stats file (its entity tag, last modified date and length), which tell whether
+ * the file changed since it was downloaded without downloading it again. The last bytes of the file are also kept, to
+ * check that a file that grew still starts with the downloaded bytes before downloading only the appended ones, and
+ * so is when the whole file was last downloaded and how many appended downloads followed it, since the last bytes
+ * can't tell if earlier bytes were changed too.
+ */
+public class DownloadValidators implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String eTag;
+    private final String lastModified;
+    private final long contentLength;
+    private final byte[] tail;
+    private final long fullDownloadMillis;
+    private final int appendedDownloads;
+
+    /**
+     * @param eTag          The value of the ETag header, or null if there's none.
+     * @param lastModified  The value of the Last-Modified header, or null if there's none.
+     * @param contentLength The length of the file, or -1 if unknown.
+     */
+    public DownloadValidators(String eTag, String lastModified, long contentLength) {
+        this(eTag, lastModified, contentLength, null);
+    }
+
+    /**
+     * @param eTag          The value of the ETag header, or null if there's none.
+     * @param lastModified  The value of the Last-Modified header, or null if there's none.
+     * @param contentLength The length of the file, or -1 if unknown.
+     * @param tail          The last bytes of the file, or null if unknown.
+     */
+    public DownloadValidators(String eTag, String lastModified, long contentLength, byte[] tail) {
+        this(eTag, lastModified, contentLength, tail, 0, 0);
+    }
+
+    private DownloadValidators(String eTag, String lastModified, long contentLength, byte[] tail,
+                               long fullDownloadMillis, int appendedDownloads) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.contentLength = contentLength;
+        this.tail = tail;
+        this.fullDownloadMillis = fullDownloadMillis;
+        this.appendedDownloads = appendedDownloads;
+    }
+
+    /**
+     * @param millis When the whole file was downloaded.
+     * @return These validators, as the ones of a download of the whole file.
+     */
+    public DownloadValidators afterFullDownload(long millis) {
+        return new DownloadValidators(eTag, lastModified, contentLength, tail, millis, 0);
+    }
+
+    /**
+     * @param previous The validators of the download the appended bytes were appended to.
+     * @return These validators, as the ones of a download of the bytes appended to the previous download.
+     */
+    public DownloadValidators afterAppendedDownload(DownloadValidators previous) {
+        return new DownloadValidators(eTag, lastModified, contentLength, tail, previous.fullDownloadMillis,
+                previous.appendedDownloads + 1);
+    }
+
+    /**
+     * Checks if the next download may be only of the appended bytes, which it may not if the whole file was last
+     * downloaded too long ago, or if too many appended downloads followed it.
+     *
+     * @param nowMillis             The current time.
+     * @param maxFullDownloadMillis The maximum time since the whole file was last downloaded.
+     * @param maxAppendedDownloads  The maximum number of appended downloads after a download of the whole file.
+     * @return If the next download may be only of the appended bytes.
+     */
+    public boolean mayDownloadAppended(long nowMillis, long maxFullDownloadMillis, int maxAppendedDownloads) {
+        return nowMillis - fullDownloadMillis < maxFullDownloadMillis && appendedDownloads < maxAppendedDownloads;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * @return The last bytes of the file, or null if unknown.
+     */
+    public byte[] getTail() {
+        return tail;
+    }
+
+    /**
+     * @return True if there's an entity tag or a last modified date to compare.
+     */
+    public boolean canValidate() {
+        return eTag != null || lastModified != null;
+    }
+
+    /**
+     * Checks if a file with these validators is the same file as the one with the other validators. The entity tags
+     * are compared first, then the last modified dates and then the lengths.
+     *
+     * @param other The validators of the other file.
+     * @return True if it's the same file, false if it isn't, or null if the validators can't tell.
+     */
+    public Boolean sameAs(DownloadValidators other) {
+        if (eTag != null && other.eTag != null) return eTag.equals(other.eTag);
+        if (lastModified != null && other.lastModified != null) {
+            return lastModified.equals(other.lastModified)
+                    && (contentLength < 0 || other.contentLength < 0 || contentLength == other.contentLength);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DownloadValidators that = (DownloadValidators) o;
+        return contentLength == that.contentLength &&
+                Objects.equals(eTag, that.eTag) &&
+                Objects.equals(lastModified, that.lastModified);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(eTag, lastModified, contentLength);
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadValidators{" +
+                "eTag='" + eTag + '\'' +
+                ", lastModified='" + lastModified + '\'' +
+                ", contentLength=" + contentLength +
+                ", appendedDownloads=" + appendedDownloads +
+                '}';
+    }
+}
@@ -0,0 +1,100 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.scraping.HttpStatsFetcher.startsWith;
+import static pt.ipsantarem.esgts.covid19tracker.server.scraping.HttpStatsFetcher.tail;
+
+/**
+ * Utility class that checks and reads stats files on the local file system, the same way the {@link HttpStatsFetcher}
+ * does over HTTP. The validators of a file are its last modified time and its size, and a file that grew by appending
+ * can be read incrementally, from the last bytes of the previous read.
+ */
+public class FileStatsFetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileStatsFetcher.class);
+
+    /**
+     * Checks if a stats file changed since it was last read.
+     *
+     * @param file     The file.
+     * @param previous The validators of the last read, or null if it was never read.
+     * @return If the file changed.
+     * @throws IOException If the file doesn't exist or its attributes couldn't be read.
+     */
+    public static Freshness check(Path file, DownloadValidators previous) throws IOException {
+        if (previous == null) return Freshness.MODIFIED;
+        return getValidators(file).sameAs(previous) ? Freshness.NOT_MODIFIED : Freshness.MODIFIED;
+    }
+
+    /**
+     * Reads a stats file.
+     *
+     * @param file The file.
+     * @return The file, with its validators.
+     * @throws IOException If the file couldn't be read.
+     */
+    public static StatsDownload download(Path file) throws IOException {
+        // the validators are read first, so if the file changes while it's read, the next check sees it changed.
+        DownloadValidators validators = getValidators(file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        return new StatsDownload(bytes, new DownloadValidators(null, validators.getLastModified(), bytes.length,
+                tail(new byte[0], bytes)));
+    }
+
+    /**
+     * Reads only the bytes appended to a stats file since it was last read, starting at the last bytes of the
+     * previous read, which must be unchanged. If the file didn't only grow, the whole file is read instead.
+     *
+     * @param file     The file.
+     * @param previous The validators of the last read.
+     * @return The appended bytes (a partial download), or the whole file.
+     * @throws IOException If the file couldn't be read.
+     */
+    public static StatsDownload downloadAppended(Path file, DownloadValidators previous) throws IOException {
+        // the appended bytes must start a new line, so the previous read must end one.
+        byte[] previousTail = previous.getTail();
+        if (previousTail == null || previousTail.length == 0 || previousTail[previousTail.length - 1] != '\n'
+                || previous.getContentLength() < previousTail.length) {
+            return download(file);
+        }
+
+        DownloadValidators validators = getValidators(file);
+        long firstByte = previous.getContentLength() - previousTail.length;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size > previous.getContentLength() && size - firstByte <= Integer.MAX_VALUE) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) (size - firstByte));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, firstByte + buffer.position()) < 0) break;
+                }
+                byte[] bytes = Arrays.copyOf(buffer.array(), buffer.position());
+
+                if (startsWith(bytes, previousTail)) {
+                    byte[] appended = Arrays.copyOfRange(bytes, previousTail.length, bytes.length);
+                    return new StatsDownload(appended, new DownloadValidators(null, validators.getLastModified(),
+                            previous.getContentLength() + appended.length, tail(previousTail, appended)), true);
+                }
+            }
+        }
+
+        LOGGER.info("The stats file {} was changed, not only appended to, reading all of it!", file);
+        return download(file);
+    }
+
+    private static DownloadValidators getValidators(Path file) throws IOException {
+        return new DownloadValidators(null, String.valueOf(Files.getLastModifiedTime(file).toMillis()),
+                Files.size(file));
+    }
+}
@@ -0,0 +1,21 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping;
+
+/**
+ * The result of checking whether a stats file changed since it was last downloaded.
+ */
+public enum Freshness {
+    /**
+     * The file didn't change.
+     */
+    NOT_MODIFIED,
+
+    /**
+     * The file changed, or it was never downloaded.
+     */
+    MODIFIED,
+
+    /**
+     * The server gives no validators, so the check must be done some other way.
+     */
+    UNKNOWN
+}
@@ -0,0 +1,224 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.InputStreamUtils.readAllBytes;
+
+/**
+ * Utility class that checks and downloads stats files over HTTP. The freshness check is a conditional HEAD request
+ * (If-None-Match and If-Modified-Since) with the validators of the last download, so when nothing changed it costs a
+ * single round trip without a body. Files that grow by appending can be downloaded incrementally, with a Range request
+ * for the bytes after the ones already downloaded. The connect and read timeouts are set by the
+ * "download.timeoutSeconds" setting.
+ */
+public class HttpStatsFetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpStatsFetcher.class);
+
+    private static final int TIMEOUT_MILLIS =
+            (int) TimeUnit.SECONDS.toMillis(ConfigUtils.getInt("download.timeoutSeconds", 30));
+
+    // the number of last bytes of a download that are kept to check if the file only grew.
+    private static final int TAIL_BYTES = 512;
+
+    // the Content-Range header of a partial response: bytes first-last/length.
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    /**
+     * Checks if a stats file changed since it was last downloaded.
+     *
+     * @param url      The URL of the file.
+     * @param previous The validators of the last download, or null if it was never downloaded.
+     * @return If the file changed.
+     * @throws IOException If the server couldn't be reached, or if it answered with an unexpected status.
+     */
+    public static Freshness check(URL url, DownloadValidators previous) throws IOException {
+        HttpURLConnection conn = openConditional(url, "HEAD", previous);
+
+        try {
+            int status = conn.getResponseCode();
+
+            // some servers don't allow HEAD requests, so a conditional GET is made instead, without reading the body.
+            if (status == HttpURLConnection.HTTP_BAD_METHOD || status == HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+                conn.disconnect();
+                conn = openConditional(url, "GET", previous);
+                status = conn.getResponseCode();
+            }
+
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return Freshness.NOT_MODIFIED;
+            }
+
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected status " + status + " checking " + url + "!");
+            }
+
+            // the server may ignore the conditional headers, so the validators are compared here too.
+            DownloadValidators current = getValidators(conn);
+            if (!current.canValidate()) return Freshness.UNKNOWN;
+            if (previous == null) return Freshness.MODIFIED;
+
+            Boolean same = current.sameAs(previous);
+            if (same == null) return Freshness.UNKNOWN;
+            return same ? Freshness.NOT_MODIFIED : Freshness.MODIFIED;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Downloads a stats file.
+     *
+     * @param url The URL of the file.
+     * @return The file, with the validators of the response.
+     * @throws IOException If the file couldn't be downloaded.
+     */
+    public static StatsDownload download(URL url) throws IOException {
+        HttpURLConnection conn = open(url, "GET");
+
+        try (InputStream data = new BufferedInputStream(conn.getInputStream())) {
+            byte[] bytes = readAllBytes(data);
+            return new StatsDownload(bytes, getValidators(conn, bytes.length, tail(new byte[0], bytes)));
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Downloads only the bytes appended to a stats file since it was last downloaded. The range requested starts at
+     * the last bytes of the previous download, which must come back unchanged, and the file must be longer than it
+     * was. That can't tell a file that only grew from one whose earlier bytes were also changed, so the whole file
+     * must still be downloaded every once in a while (see {@link DownloadValidators#mayDownloadAppended}).
+     * If the server sends the whole file, that's the download. If the server can't send the range (for example,
+     * with a 412 or a 416 status), or if the file didn't only grow, the whole file is downloaded instead.
+     *
+     * @param url      The URL of the file.
+     * @param previous The validators of the last download.
+     * @return The appended bytes (a partial download), or the whole file.
+     * @throws IOException If the file couldn't be downloaded.
+     */
+    public static StatsDownload downloadAppended(URL url, DownloadValidators previous) throws IOException {
+        // the appended bytes must start a new line, so the previous download must end one.
+        byte[] previousTail = previous.getTail();
+        if (previousTail == null || previousTail.length == 0 || previousTail[previousTail.length - 1] != '\n'
+                || previous.getContentLength() < previousTail.length) {
+            return download(url);
+        }
+
+        long firstByte = previous.getContentLength() - previousTail.length;
+        HttpURLConnection conn = open(url, "GET");
+        conn.setRequestProperty("Range", "bytes=" + firstByte + "-");
+
+        try {
+            int status = conn.getResponseCode();
+
+            if (status == HttpURLConnection.HTTP_OK) {
+                try (InputStream data = new BufferedInputStream(conn.getInputStream())) {
+                    byte[] bytes = readAllBytes(data);
+                    return new StatsDownload(bytes, getValidators(conn, bytes.length, tail(new byte[0], bytes)));
+                }
+            }
+
+            if (status == HttpURLConnection.HTTP_PARTIAL) {
+                Matcher range = CONTENT_RANGE.matcher(String.valueOf(conn.getHeaderField("Content-Range")));
+
+                // a file that didn't grow was changed, not appended to, even if its last bytes are where they were.
+                if (range.matches() && Long.parseLong(range.group(1)) == firstByte && !range.group(3).equals("*")
+                        && Long.parseLong(range.group(3)) > previous.getContentLength()) {
+                    try (InputStream data = new BufferedInputStream(conn.getInputStream())) {
+                        byte[] bytes = readAllBytes(data);
+
+                        if (startsWith(bytes, previousTail)) {
+                            byte[] appended = Arrays.copyOfRange(bytes, previousTail.length, bytes.length);
+                            long length = previous.getContentLength() + appended.length;
+                            return new StatsDownload(appended, getValidators(conn, length, tail(previousTail, appended)),
+                                    true);
+                        }
+                    }
+
+                    LOGGER.info("The stats file was changed, not only appended to, downloading all of it!");
+                } else {
+                    LOGGER.info("Unexpected range {} of the stats file, downloading all of it!",
+                            conn.getHeaderField("Content-Range"));
+                }
+            } else {
+                LOGGER.info("The range of the stats file couldn't be downloaded (status {}), downloading all of it!",
+                        status);
+            }
+        } finally {
+            conn.disconnect();
+        }
+
+        return download(url);
+    }
+
+    /**
+     * Gets the validators of a response.
+     *
+     * @param conn The connection, after the response was received.
+     * @return The validators.
+     */
+    static DownloadValidators getValidators(HttpURLConnection conn) {
+        return getValidators(conn, conn.getContentLengthLong(), null);
+    }
+
+    private static DownloadValidators getValidators(HttpURLConnection conn, long contentLength, byte[] tail) {
+        return new DownloadValidators(conn.getHeaderField("ETag"), conn.getHeaderField("Last-Modified"),
+                contentLength, tail);
+    }
+
+    // gets the last bytes of a file made of the first bytes followed by the second ones.
+    static byte[] tail(byte[] first, byte[] second) {
+        int length = Math.min(TAIL_BYTES, first.length + second.length);
+        byte[] tail = new byte[length];
+        int fromSecond = Math.min(length, second.length);
+        int fromFirst = length - fromSecond;
+
+        System.arraycopy(first, first.length - fromFirst, tail, 0, fromFirst);
+        System.arraycopy(second, second.length - fromSecond, tail, fromFirst, fromSecond);
+        return tail;
+    }
+
+    static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) return false;
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) return false;
+        }
+
+        return true;
+    }
+
+    static HttpURLConnection open(URL url, String method) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        conn.setConnectTimeout(TIMEOUT_MILLIS);
+        conn.setReadTimeout(TIMEOUT_MILLIS);
+        return conn;
+    }
+
+    private static HttpURLConnection openConditional(URL url, String method, DownloadValidators previous)
+            throws IOException {
+        HttpURLConnection conn = open(url, method);
+
+        if (previous != null) {
+            if (previous.getETag() != null) conn.setRequestProperty("If-None-Match", previous.getETag());
+            if (previous.getLastModified() != null) {
+                conn.setRequestProperty("If-Modified-Since", previous.getLastModified());
+            }
+        }
+
+        return conn;
+    }
+}
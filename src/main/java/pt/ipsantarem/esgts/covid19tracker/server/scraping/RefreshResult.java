@@ -0,0 +1,21 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping;
+
+/**
+ * The result of a check for new stats made by the {@link RefreshScheduler}.
+ */
+public enum RefreshResult {
+    /**
+     * The stats changed, and the new ones were downloaded and are being served.
+     */
+    UPDATED,
+
+    /**
+     * The stats didn't change since they were last downloaded.
+     */
+    NOT_MODIFIED,
+
+    /**
+     * The stats couldn't be checked, downloaded or parsed.
+     */
+    FAILED
+}
@@ -0,0 +1,239 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.listeners.UpdateAvailableListener;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps checking the stats sources for new stats for as long as the server runs, on a background thread, so the
+ * checks, the downloads and the parse and build of the new records never hold the thread that started the server.
+ * Each check is scheduled once the previous one finishes:
+ * <ul>
+ * <li>every "refresh.windowIntervalSeconds" inside the usual update timeframe of any source, until the stats get
+ * updated within it;</li>
+ * <li>outside of it, starting at "refresh.intervalSeconds" and doubling after every check without changes, up to
+ * "refresh.maxIntervalSeconds", but never past the start of the next update timeframe;</li>
+ * <li>after failed checks, starting at "refresh.windowIntervalSeconds" and doubling after every failure, up to
+ * "refresh.maxIntervalSeconds".</li>
+ * </ul>
+ * Every delay is randomly shifted by up to the "refresh.jitter" fraction of it, so the servers that started together
+ * don't check the sources together.
+ *
+ * @author José Simões
+ */
+public class RefreshScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshScheduler.class);
+
+    private static final long WINDOW_INTERVAL_SECONDS = ConfigUtils.getLong("refresh.windowIntervalSeconds", 300);
+    private static final long INTERVAL_SECONDS = ConfigUtils.getLong("refresh.intervalSeconds", 1800);
+    private static final long MAX_INTERVAL_SECONDS = ConfigUtils.getLong("refresh.maxIntervalSeconds", 21600);
+    private static final double JITTER = Double.parseDouble(ConfigUtils.getString("refresh.jitter", "0.1"));
+
+    private final StatsSourceRegistry sources;
+    private final UpdateAvailableListener updateAvailableListener;
+    private final List<int[]> timeframes;
+
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "refresh-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // the state of the checks, only changed by the scheduler thread, but read by the metrics.
+    private volatile RefreshResult lastResult;
+    private volatile LocalDateTime lastCheck;
+    private volatile LocalDateTime lastUpdate;
+    private volatile LocalDateTime nextCheck;
+    private volatile int consecutiveFailures;
+    private volatile int consecutiveIdleChecks;
+
+    /**
+     * @param sources                 The sources to check for new stats.
+     * @param updateAvailableListener The listener that gets notified, on the scheduler thread, of the new records.
+     */
+    public RefreshScheduler(StatsSourceRegistry sources, UpdateAvailableListener updateAvailableListener) {
+        this.sources = sources;
+        this.updateAvailableListener = updateAvailableListener;
+        this.timeframes = sources.getUsualUpdateTimeframes();
+
+        ServerMetrics.registerGauge("refresh.lastResult", () -> lastResult != null ? lastResult.name() : null);
+        ServerMetrics.registerGauge("refresh.lastCheck", () -> lastCheck != null ? lastCheck.toString() : null);
+        ServerMetrics.registerGauge("refresh.nextCheck", () -> nextCheck != null ? nextCheck.toString() : null);
+        ServerMetrics.registerGauge("refresh.nextCheckInSeconds", () -> nextCheck != null
+                ? Math.max(0, Duration.between(LocalDateTime.now(), nextCheck).getSeconds()) : null);
+        ServerMetrics.registerGauge("refresh.consecutiveFailures", () -> consecutiveFailures);
+    }
+
+    /**
+     * Schedules the first check, and every check after it.
+     *
+     * @param startupResult The result of the check made when the server started, which the first delay is based on.
+     */
+    public void start(RefreshResult startupResult) {
+        LocalDateTime now = LocalDateTime.now();
+        onResult(startupResult, now);
+        schedule(nextDelaySeconds(now));
+    }
+
+    /**
+     * Runs the first check right away in the background, for a server that started without checking for updates, and
+     * schedules every check after it.
+     */
+    public void start() {
+        schedule(0);
+    }
+
+    /**
+     * Cancels the next check, interrupting the one that is running (if any).
+     */
+    public void stop() {
+        executorService.shutdownNow();
+    }
+
+    private void schedule(long delaySeconds) {
+        if (executorService.isShutdown()) return;
+
+        nextCheck = LocalDateTime.now().plusSeconds(delaySeconds);
+        LOGGER.info("Next check for updates at {}!", nextCheck);
+
+        executorService.schedule(this::check, delaySeconds, TimeUnit.SECONDS);
+    }
+
+    private void check() {
+        LOGGER.info("Running a update check!");
+        long start = System.nanoTime();
+
+        RefreshResult result = RefreshResult.FAILED;
+        try {
+            Map<String, List<AVLVirusStatsTree<?, ?>>> records = sources.refresh();
+            if (!records.isEmpty()) updateAvailableListener.onUpdateAvailable(records);
+            result = records.isEmpty() ? RefreshResult.NOT_MODIFIED : RefreshResult.UPDATED;
+        } catch (RuntimeException e) {
+            LOGGER.warn("The update check failed!", e);
+        } finally {
+            // the next check is scheduled even if an error (such as running out of memory) ends this one, since the
+            // executor would swallow the error and never check again.
+            ServerMetrics.recordNanos("refresh.check", System.nanoTime() - start);
+            ServerMetrics.increment("refresh.checks." + result.name().toLowerCase());
+
+            LocalDateTime now = LocalDateTime.now();
+            onResult(result, now);
+            schedule(nextDelaySeconds(now));
+        }
+    }
+
+    private void onResult(RefreshResult result, LocalDateTime now) {
+        lastResult = result;
+        lastCheck = now;
+
+        switch (result) {
+            case UPDATED:
+                lastUpdate = now;
+                consecutiveFailures = 0;
+                consecutiveIdleChecks = 0;
+                break;
+            case NOT_MODIFIED:
+                consecutiveFailures = 0;
+                consecutiveIdleChecks = isInUpdateWindow(now) ? 0 : consecutiveIdleChecks + 1;
+                break;
+            case FAILED:
+                consecutiveFailures++;
+                break;
+        }
+    }
+
+    // ----------------------------------- DELAYS ----------------------------------- //
+
+    private long nextDelaySeconds(LocalDateTime now) {
+        if (consecutiveFailures > 0) {
+            return withJitter(backoff(WINDOW_INTERVAL_SECONDS, consecutiveFailures));
+        }
+
+        if (isInUpdateWindow(now) && !isUpdatedInWindow(now)) {
+            return withJitter(WINDOW_INTERVAL_SECONDS);
+        }
+
+        long delay = withJitter(backoff(INTERVAL_SECONDS, consecutiveIdleChecks));
+
+        // don't sleep through the start of the next update timeframe.
+        LocalDateTime nextWindowStart = getNextWindowStart(now);
+        if (nextWindowStart != null) {
+            delay = Math.min(delay, Math.max(1, Duration.between(now, nextWindowStart).getSeconds()));
+        }
+
+        return delay;
+    }
+
+    // doubles the delay for every time after the first, up to the maximum delay, so that the first failure (or check
+    // without changes) waits the delay itself.
+    private static long backoff(long delaySeconds, int times) {
+        return Math.min(MAX_INTERVAL_SECONDS, delaySeconds << Math.min(Math.max(0, times - 1), 20));
+    }
+
+    // shifts the delay randomly by up to the jitter fraction of it, either way.
+    private static long withJitter(long delaySeconds) {
+        double shift = JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(1, Math.round(delaySeconds * (1 + shift)));
+    }
+
+    // ----------------------------------- DELAYS ----------------------------------- //
+
+    // ----------------------------------- UPDATE TIMEFRAME ----------------------------------- //
+
+    // if the time is within the usual update timeframe of any source, which can go past midnight (for example, 22 to
+    // 2).
+    private boolean isInUpdateWindow(LocalDateTime time) {
+        for (int[] timeframe : timeframes) {
+            if (isInTimeframe(timeframe, time.getHour())) return true;
+        }
+        return false;
+    }
+
+    // if the stats were already updated since the start of the latest update timeframe the time is within.
+    private boolean isUpdatedInWindow(LocalDateTime time) {
+        if (lastUpdate == null) return false;
+
+        LocalDateTime windowStart = null;
+        for (int[] timeframe : timeframes) {
+            if (!isInTimeframe(timeframe, time.getHour())) continue;
+
+            LocalDateTime start = time.toLocalDate().atTime(timeframe[0], 0);
+            if (start.isAfter(time)) start = start.minusDays(1);
+            if (windowStart == null || start.isAfter(windowStart)) windowStart = start;
+        }
+
+        return windowStart != null && !lastUpdate.isBefore(windowStart);
+    }
+
+    // the start of the next update timeframe after the time, or null if no source has an usual update timeframe.
+    private LocalDateTime getNextWindowStart(LocalDateTime time) {
+        LocalDateTime nextWindowStart = null;
+        for (int[] timeframe : timeframes) {
+            LocalDateTime start = time.toLocalDate().atTime(timeframe[0], 0);
+            if (!start.isAfter(time)) start = start.plusDays(1);
+            if (nextWindowStart == null || start.isBefore(nextWindowStart)) nextWindowStart = start;
+        }
+
+        return nextWindowStart;
+    }
+
+    private static boolean isInTimeframe(int[] timeframe, int hour) {
+        return timeframe[0] <= timeframe[1]
+                ? hour >= timeframe[0] && hour < timeframe[1]
+                : hour >= timeframe[0] || hour < timeframe[1];
+    }
+
+    // ----------------------------------- UPDATE TIMEFRAME ----------------------------------- //
+}
@@ -0,0 +1,36 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping;
+
+/**
+ * A downloaded stats file, together with its validators. The download is partial if only the bytes appended to the
+ * file since it was last downloaded were downloaded.
+ */
+public class StatsDownload {
+    private final byte[] data;
+    private final DownloadValidators validators;
+    private final boolean partial;
+
+    public StatsDownload(byte[] data, DownloadValidators validators) {
+        this(data, validators, false);
+    }
+
+    public StatsDownload(byte[] data, DownloadValidators validators, boolean partial) {
+        this.data = data;
+        this.validators = validators;
+        this.partial = partial;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public DownloadValidators getValidators() {
+        return validators;
+    }
+
+    /**
+     * @return True if the data are only the bytes appended to the file since it was last downloaded.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+}
@@ -0,0 +1,98 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping;
+
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.pages.COVID19StatsPage;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A named COVID 19 stats page that the records are ingested from, together with the records last downloaded from it
+ * (before they were merged with the records of the other sources), and the date and validators of the download they
+ * were parsed from. The date and validators only change together with the records, once they are parsed, so a
+ * download whose parse fails is checked for again.
+ */
+public class StatsSource {
+    private final String name;
+    private final COVID19StatsPage page;
+    private volatile Map<String, List<AVLVirusStatsTree<?, ?>>> records;
+    private volatile LocalDate lastDownloadDate;
+    private volatile DownloadValidators downloadValidators;
+
+    // the records last written to disk, so the same records aren't written again.
+    private volatile Map<String, List<AVLVirusStatsTree<?, ?>>> savedRecords;
+
+    /**
+     * @param name The name of the source, which its files are prefixed by.
+     * @param page The page of the source, with its own parser.
+     */
+    public StatsSource(String name, COVID19StatsPage page) {
+        this.name = name;
+        this.page = page;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public COVID19StatsPage getPage() {
+        return page;
+    }
+
+    /**
+     * @return The records last downloaded from the source, or null if there are none.
+     */
+    public Map<String, List<AVLVirusStatsTree<?, ?>>> getRecords() {
+        return records;
+    }
+
+    /**
+     * @return The date of the download the records were parsed from, or null if there are no records.
+     */
+    public LocalDate getLastDownloadDate() {
+        return lastDownloadDate;
+    }
+
+    /**
+     * @return The validators of the download the records were parsed from, or null if there are none.
+     */
+    public DownloadValidators getDownloadValidators() {
+        return downloadValidators;
+    }
+
+    /**
+     * Sets the records last downloaded from the source, with the date and validators of their download. Synchronized
+     * on the source, so the three of them can be read together.
+     *
+     * @param records            The records.
+     * @param lastDownloadDate   The date of the download.
+     * @param downloadValidators The validators of the download, or null if there are none.
+     */
+    public synchronized void setRecords(Map<String, List<AVLVirusStatsTree<?, ?>>> records, LocalDate lastDownloadDate,
+                           DownloadValidators downloadValidators) {
+        this.lastDownloadDate = lastDownloadDate;
+        this.downloadValidators = downloadValidators;
+        this.records = records;
+    }
+
+    /**
+     * @return The records last written to disk, or null if none were.
+     */
+    public Map<String, List<AVLVirusStatsTree<?, ?>>> getSavedRecords() {
+        return savedRecords;
+    }
+
+    public void setSavedRecords(Map<String, List<AVLVirusStatsTree<?, ?>>> savedRecords) {
+        this.savedRecords = savedRecords;
+    }
+
+    @Override
+    public String toString() {
+        return "StatsSource{" +
+                "name='" + name + '\'' +
+                ", page=" + page.getClass().getSimpleName() +
+                ", countries=" + (records != null ? records.size() : 0) +
+                '}';
+    }
+}
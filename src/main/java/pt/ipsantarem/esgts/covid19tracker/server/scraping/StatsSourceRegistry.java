@@ -0,0 +1,320 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+import pt.ipsantarem.esgts.covid19tracker.server.parsers.Parser;
+import pt.ipsantarem.esgts.covid19tracker.server.parsers.WorldInDataCSVParser;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.pages.COVID19StatsPage;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.pages.LocalFilePage;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.pages.SyntheticStatsPage;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.pages.WorldInDataPage;
+import pt.ipsantarem.esgts.covid19tracker.server.synthetic.SyntheticStatsGenerator;
+import pt.ipsantarem.esgts.covid19tracker.server.synthetic.ValueDistribution;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.ObjectPersistenceUtils.*;
+
+/**
+ * The stats sources the records are ingested from. Every source is checked, downloaded and parsed at the same time as
+ * the others, each by its own thread, so a refresh takes as long as the slowest source. The records of every source
+ * are then merged into a single records map: each country gets the trees of the first source that has it, in the
+ * order of precedence of the country if there's one, or else in the order the sources were registered. The records
+ * of each source are only written to disk by {@link #saveRecords()}, so that the merged records don't wait for it.
+ * The merged records aren't written at all, they're merged again from the saved records of the sources at startup.
+ * <p>
+ * The sources are set by the "sources" setting, a comma separated list of source names, and each source by the
+ * "sources.[name].type" (worldInData, file or synthetic), "sources.[name].url", "sources.[name].path" and
+ * "sources.[name].parser" settings, plus the settings of the {@link SyntheticStatsGenerator} of a synthetic source
+ * ("sources.[name].locations", "days", "firstDate", "distribution", "peakCases" and "seed"). The order of precedence
+ * of certain countries is set by the "sources.countryPrecedence" setting, such as "portugal:local,worldInData".
+ *
+ * @author José Simões
+ */
+public class StatsSourceRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatsSourceRegistry.class);
+
+    private final List<StatsSource> sources;
+    private final Map<String, List<String>> countryPrecedence;
+    private final ExecutorService executorService;
+
+    /**
+     * @param sources           The sources, in their order of precedence.
+     * @param countryPrecedence The names of the sources in their order of precedence for certain countries, mapped by
+     *                          the (lower case) names of the countries. The sources that aren't named follow in their
+     *                          order of precedence.
+     */
+    public StatsSourceRegistry(List<StatsSource> sources, Map<String, List<String>> countryPrecedence) {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("There must be at least one stats source!");
+        }
+
+        this.sources = sources;
+        this.countryPrecedence = countryPrecedence;
+        this.executorService = Executors.newFixedThreadPool(sources.size(), r -> {
+            Thread thread = new Thread(r, "stats-source-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return The registry of the sources set by the "sources" settings (only Our World in Data, by default).
+     * @throws IllegalArgumentException If a source is not correctly set.
+     */
+    public static StatsSourceRegistry fromSettings() {
+        List<StatsSource> sources = new ArrayList<>();
+        for (String name : ConfigUtils.getString("sources", "worldInData").split(",")) {
+            sources.add(new StatsSource(name.trim(), createPage(name.trim())));
+        }
+
+        Map<String, List<String>> countryPrecedence = new HashMap<>();
+        String precedence = ConfigUtils.getString("sources.countryPrecedence", "");
+        for (String countryOrder : precedence.split(";")) {
+            if (countryOrder.trim().isEmpty()) continue;
+
+            String[] countryAndSources = countryOrder.split(":");
+            if (countryAndSources.length != 2) {
+                throw new IllegalArgumentException("Malformed country precedence " + countryOrder + "!");
+            }
+
+            List<String> sourceNames = new ArrayList<>();
+            for (String name : countryAndSources[1].split(",")) {
+                sourceNames.add(name.trim());
+            }
+            countryPrecedence.put(countryAndSources[0].trim().toLowerCase(), sourceNames);
+        }
+
+        return new StatsSourceRegistry(sources, countryPrecedence);
+    }
+
+    public List<StatsSource> getSources() {
+        return sources;
+    }
+
+    /**
+     * @return The usual update timeframes of the pages of the sources that have one.
+     */
+    public List<int[]> getUsualUpdateTimeframes() {
+        List<int[]> timeframes = new ArrayList<>();
+        for (StatsSource source : sources) {
+            int[] timeframe = source.getPage().getUsualUpdateTimeframe();
+            if (timeframe.length >= 2) timeframes.add(timeframe);
+        }
+        return timeframes;
+    }
+
+    /**
+     * Loads the records last downloaded from each source, saved by a previous run of the server.
+     */
+    public void loadSavedRecords() {
+        for (StatsSource source : sources) {
+            Map<String, List<AVLVirusStatsTree<?, ?>>> records = readSourceRecordsMap(source.getName());
+            source.setRecords(records, readLastDownloadDate(source.getName()), readDownloadValidators(source.getName()));
+            source.setSavedRecords(records);
+        }
+    }
+
+    /**
+     * @return When the saved records of the sources were last written, in epoch milliseconds, or 0 if none were.
+     */
+    public long getSavedRecordsLastModified() {
+        long lastModified = 0;
+        for (StatsSource source : sources) {
+            lastModified = Math.max(lastModified, getSourceRecordsMapLastModified(source.getName()));
+        }
+        return lastModified;
+    }
+
+    /**
+     * Writes the records last downloaded from each source to disk, if they weren't yet, followed by the date and
+     * validators of their download. Should only be called by one thread at a time.
+     */
+    public void saveRecords() {
+        for (StatsSource source : sources) {
+            Map<String, List<AVLVirusStatsTree<?, ?>>> records;
+            LocalDate lastDownloadDate;
+            DownloadValidators downloadValidators;
+
+            // the records, date and validators of the same download, even if a newer download is being set meanwhile.
+            synchronized (source) {
+                records = source.getRecords();
+                lastDownloadDate = source.getLastDownloadDate();
+                downloadValidators = source.getDownloadValidators();
+            }
+
+            if (records != null && records != source.getSavedRecords()) {
+                writeSourceRecordsMap(source.getName(), records);
+                writeLastDownloadDate(source.getName(), lastDownloadDate);
+                writeDownloadValidators(source.getName(), downloadValidators);
+                source.setSavedRecords(records);
+            }
+        }
+    }
+
+    /**
+     * Checks every source for updates at the same time, downloading and parsing the updated ones.
+     *
+     * @return The merged records of every source if any source was updated, or an empty map if none was.
+     * @throws RuntimeException The failure of the first source, if every source failed. The failures of only some
+     *                          sources are logged, and the other sources are still merged.
+     */
+    public Map<String, List<AVLVirusStatsTree<?, ?>>> refresh() {
+        long start = System.nanoTime();
+
+        List<CompletableFuture<Boolean>> refreshes = new ArrayList<>();
+        for (StatsSource source : sources) {
+            refreshes.add(CompletableFuture.supplyAsync(() -> refresh(source), executorService));
+        }
+
+        boolean updated = false;
+        RuntimeException firstFailure = null;
+        int failures = 0;
+
+        for (int i = 0; i < sources.size(); i++) {
+            try {
+                updated |= refreshes.get(i).join();
+            } catch (CompletionException e) {
+                RuntimeException failure = e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause() : e;
+                LOGGER.warn("Could not refresh the stats source {}!", sources.get(i).getName(), failure);
+                ServerMetrics.increment("sources." + sources.get(i).getName() + ".failures");
+
+                if (firstFailure == null) firstFailure = failure;
+                failures++;
+            }
+        }
+
+        ServerMetrics.recordNanos("sources.refresh", System.nanoTime() - start);
+
+        if (failures == sources.size()) throw firstFailure;
+        return updated ? merge() : Collections.emptyMap();
+    }
+
+    /**
+     * Merges the records last downloaded from each source.
+     *
+     * @return The records map, with the trees of each country taken from the first source in its order of precedence.
+     */
+    public Map<String, List<AVLVirusStatsTree<?, ?>>> merge() {
+        Set<String> countries = new LinkedHashSet<>();
+        for (StatsSource source : sources) {
+            if (source.getRecords() != null) countries.addAll(source.getRecords().keySet());
+        }
+
+        Map<String, List<AVLVirusStatsTree<?, ?>>> records = new LinkedHashMap<>();
+        for (String country : countries) {
+            for (StatsSource source : getPrecedence(country)) {
+                Map<String, List<AVLVirusStatsTree<?, ?>>> sourceRecords = source.getRecords();
+
+                if (sourceRecords != null && sourceRecords.containsKey(country)) {
+                    records.put(country, sourceRecords.get(country));
+                    break;
+                }
+            }
+        }
+
+        return records;
+    }
+
+    // refreshes a source, returning if it was updated.
+    private boolean refresh(StatsSource source) {
+        long start = System.nanoTime();
+
+        try {
+            COVID19StatsPageDocumentUpdateHandler handler = new COVID19StatsPageDocumentUpdateHandler(source);
+            Map<String, List<AVLVirusStatsTree<?, ?>>> records = handler.call();
+
+            if (records.isEmpty()) return false;
+
+            LOGGER.info("The stats source {} was updated!", source.getName());
+            source.setRecords(records, handler.getLastDownloadDate(), handler.getDownloadValidators());
+            return true;
+        } finally {
+            ServerMetrics.recordNanos("sources." + source.getName() + ".refresh", System.nanoTime() - start);
+        }
+    }
+
+    // the sources in the order of precedence of a country.
+    private List<StatsSource> getPrecedence(String country) {
+        List<String> names = countryPrecedence.get(country);
+        if (names == null) return sources;
+
+        List<StatsSource> precedence = new ArrayList<>();
+        for (String name : names) {
+            for (StatsSource source : sources) {
+                if (source.getName().equals(name)) precedence.add(source);
+            }
+        }
+        for (StatsSource source : sources) {
+            if (!precedence.contains(source)) precedence.add(source);
+        }
+
+        return precedence;
+    }
+
+    // creates the page of a source, by its settings.
+    private static COVID19StatsPage createPage(String name) {
+        String type = ConfigUtils.getString("sources." + name + ".type", name);
+
+        switch (type) {
+            case "worldInData":
+                String url = ConfigUtils.getString("sources." + name + ".url", null);
+                return url != null ? new WorldInDataPage(toURL(url)) : new WorldInDataPage();
+            case "file":
+                String path = ConfigUtils.getString("sources." + name + ".path", null);
+                if (path == null) {
+                    throw new IllegalArgumentException("The setting sources." + name + ".path must be set!");
+                }
+                return new LocalFilePage(Paths.get(path), createParser(name));
+            case "synthetic":
+                return new SyntheticStatsPage(Paths.get(ConfigUtils.getString("sources." + name + ".path",
+                        name + ".csv")), createGenerator(name));
+            default:
+                throw new IllegalArgumentException("Unknown type " + type + " of the stats source " + name + "!");
+        }
+    }
+
+    // creates the generator of the stats file of a synthetic source, by its settings.
+    private static SyntheticStatsGenerator createGenerator(String name) {
+        String prefix = "sources." + name + ".";
+
+        return new SyntheticStatsGenerator(
+                ConfigUtils.getInt(prefix + "locations", 200),
+                ConfigUtils.getInt(prefix + "days", 365),
+                LocalDate.parse(ConfigUtils.getString(prefix + "firstDate", "2020-01-01")),
+                ValueDistribution.valueOf(ConfigUtils.getString(prefix + "distribution", "WAVES").toUpperCase()),
+                ConfigUtils.getInt(prefix + "peakCases", 1000),
+                ConfigUtils.getLong(prefix + "seed", 42));
+    }
+
+    // creates the parser of a source, by the name of its class.
+    private static Parser createParser(String name) {
+        String className = ConfigUtils.getString("sources." + name + ".parser", WorldInDataCSVParser.class.getName());
+
+        try {
+            return (Parser) Class.forName(className).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Unknown parser " + className + " of the stats source " + name + "!", e);
+        }
+    }
+
+    private static URL toURL(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Malformed download URL " + url + "!", e);
+        }
+    }
+}
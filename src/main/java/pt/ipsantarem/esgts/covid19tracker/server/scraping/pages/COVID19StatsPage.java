@@ -2,19 +2,18 @@ package pt.ipsantarem.esgts.covid19tracker.server.scraping.pages;
 
 import org.jsoup.nodes.Document;
 import pt.ipsantarem.esgts.covid19tracker.server.parsers.Parser;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.DownloadValidators;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.Freshness;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.HttpStatsFetcher;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.StatsDownload;
 import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
-import static pt.ipsantarem.esgts.covid19tracker.server.utils.InputStreamUtils.readAllBytes;
-
 /**
  * Represents a webpage that has downloadable analyzable coronavirus statistics.
  */
@@ -51,17 +50,39 @@ public interface COVID19StatsPage {
      */
     Parser getParser();
 
+    /**
+     * Checks if the stats changed since they were last downloaded, without downloading them.
+     *
+     * @param previous The validators of the last download, or null if they were never downloaded.
+     * @return If the stats changed, or {@link Freshness#UNKNOWN} if it can only be told by the last time updated.
+     * @throws IOException If there was a IO problem checking the stats.
+     */
+    default Freshness checkFreshness(DownloadValidators previous) throws IOException {
+        return HttpStatsFetcher.check(getDownloadURL(), previous);
+    }
+
+    /**
+     * @return The COVID 19 stats in a byte array form, together with their validators.
+     */
+    default StatsDownload download() throws IOException {
+        return HttpStatsFetcher.download(getDownloadURL());
+    }
+
+    /**
+     * Downloads only the stats appended since they were last downloaded, if the stats only grew since then.
+     *
+     * @param previous The validators of the last download.
+     * @return The appended stats (a partial download), or all of the stats.
+     */
+    default StatsDownload downloadAppended(DownloadValidators previous) throws IOException {
+        return HttpStatsFetcher.downloadAppended(getDownloadURL(), previous);
+    }
+
     /**
      * @return The COVID 19 stats in a byte array form.
      */
     default byte[] downloadCovid19Stats() throws IOException {
-        // open a url connection to the stats file
-        HttpURLConnection conn = (HttpURLConnection) getDownloadURL().openConnection();
-
-        // get the input stream of the url connection
-        try (InputStream data = new BufferedInputStream(conn.getInputStream())) {
-            return readAllBytes(data);
-        }
+        return download().getData();
     }
 
     /**
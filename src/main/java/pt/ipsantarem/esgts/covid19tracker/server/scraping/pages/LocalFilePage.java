@@ -0,0 +1,118 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping.pages;
+
+import org.jsoup.nodes.Document;
+import pt.ipsantarem.esgts.covid19tracker.server.parsers.Parser;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.DownloadValidators;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.FileStatsFetcher;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.Freshness;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.StatsDownload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * A stats file on the local file system, such as a file dropped in a directory by another process or a copy of an
+ * upstream file, so the stats can be ingested without a network connection. The file is checked and read by the
+ * {@link FileStatsFetcher}, and it has no usual update timeframe, since it changes whenever it's written.
+ */
+public class LocalFilePage implements COVID19StatsPage {
+    private final Path file;
+    private final Parser parser;
+
+    /**
+     * @param file   The stats file.
+     * @param parser The parser of the stats file.
+     */
+    public LocalFilePage(Path file, Parser parser) {
+        this.file = file;
+        this.parser = parser;
+    }
+
+    /**
+     * @return Always null, since there's no page, only the file.
+     */
+    @Override
+    public Document getPageInstance() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public URL getPageURL() {
+        return getDownloadURL();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public URL getDownloadURL() {
+        try {
+            return file.toUri().toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalDate getLastTimeUpdated() {
+        try {
+            Instant lastModified = Files.getLastModifiedTime(file).toInstant();
+            return lastModified.atZone(ZoneId.systemDefault()).toLocalDate();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getUsualUpdateTimeframe() {
+        return new int[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Parser getParser() {
+        return parser;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Freshness checkFreshness(DownloadValidators previous) throws IOException {
+        return FileStatsFetcher.check(file, previous);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StatsDownload download() throws IOException {
+        return FileStatsFetcher.download(file);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StatsDownload downloadAppended(DownloadValidators previous) throws IOException {
+        return FileStatsFetcher.downloadAppended(file, previous);
+    }
+}
@@ -0,0 +1,71 @@
+package pt.ipsantarem.esgts.covid19tracker.server.scraping.pages;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.parsers.WorldInDataCSVParser;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.DownloadValidators;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.Freshness;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.StatsDownload;
+import pt.ipsantarem.esgts.covid19tracker.server.synthetic.SyntheticStatsGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A stats file with synthetic stats on the local file system, which is generated by a
+ * {@link SyntheticStatsGenerator} the first time it's needed, if it doesn't exist yet. After that, it's served like any
+ * other local file, so it can be replaced by a bigger one, or appended to, while the server runs.
+ */
+public class SyntheticStatsPage extends LocalFilePage {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SyntheticStatsPage.class);
+
+    private final Path file;
+    private final SyntheticStatsGenerator generator;
+
+    /**
+     * @param file      The stats file.
+     * @param generator The generator of the stats file, if it doesn't exist.
+     */
+    public SyntheticStatsPage(Path file, SyntheticStatsGenerator generator) {
+        super(file, new WorldInDataCSVParser());
+        this.file = file;
+        this.generator = generator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Freshness checkFreshness(DownloadValidators previous) throws IOException {
+        generateIfMissing();
+        return super.checkFreshness(previous);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StatsDownload download() throws IOException {
+        generateIfMissing();
+        return super.download();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StatsDownload downloadAppended(DownloadValidators previous) throws IOException {
+        generateIfMissing();
+        return super.downloadAppended(previous);
+    }
+
+    private synchronized void generateIfMissing() throws IOException {
+        if (Files.exists(file)) return;
+
+        LOGGER.info("Generating the synthetic stats file {} with {}!", file, generator);
+        long start = System.nanoTime();
+        long rows = generator.generate(file);
+        LOGGER.info("Generated {} rows in {} ms!", rows, (System.nanoTime() - start) / 1_000_000);
+    }
+}
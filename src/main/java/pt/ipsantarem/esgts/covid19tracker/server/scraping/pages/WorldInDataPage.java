@@ -6,27 +6,60 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pt.ipsantarem.esgts.covid19tracker.server.parsers.Parser;
 import pt.ipsantarem.esgts.covid19tracker.server.parsers.WorldInDataCSVParser;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.ParseException;
 import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
 
 import static pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils.parseStringToLocalDate;
 
 public class WorldInDataPage implements COVID19StatsPage {
     private static final Logger LOGGER = LoggerFactory.getLogger(WorldInDataPage.class);
 
-    // the document instance
-    private static Document document;
+    private static final String DEFAULT_DOWNLOAD_URL = "https://covid.ourworldindata.org/data/owid-covid-data.csv";
+
+    // for how long a fetched document is reused, so that a single check doesn't fetch it twice, but the next ones
+    // see the page as it is then.
+    private static final long DOCUMENT_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // the download url of the stats.
+    private final URL downloadURL;
+
+    // the parser of the stats, kept across downloads so that it can merge the appended stats with the ones it parsed.
+    private final WorldInDataCSVParser parser = new WorldInDataCSVParser();
+
+    // the document instance, and when it was fetched.
+    private Document document;
+    private long documentFetchedMillis;
+
+    /**
+     * Creates the page, downloading the stats from the "worldInData.downloadUrl" setting (the Our World in Data CSV
+     * file by default).
+     */
+    public WorldInDataPage() {
+        this(toURL(ConfigUtils.getString("worldInData.downloadUrl", DEFAULT_DOWNLOAD_URL)));
+    }
+
+    /**
+     * Creates the page, downloading the stats from a certain URL (for example, a local server standing in for the
+     * Our World in Data server).
+     *
+     * @param downloadURL The download URL.
+     */
+    public WorldInDataPage(URL downloadURL) {
+        this.downloadURL = downloadURL;
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Document getPageInstance() {
-        if (document == null) {
+    public synchronized Document getPageInstance() {
+        if (document == null || System.currentTimeMillis() - documentFetchedMillis > DOCUMENT_MAX_AGE_MILLIS) {
             createInstance();
         }
 
@@ -52,13 +85,7 @@ public class WorldInDataPage implements COVID19StatsPage {
      */
     @Override
     public URL getDownloadURL() {
-        URL url = null;
-
-        try {
-            url = new URL("https://covid.ourworldindata.org/data/owid-covid-data.csv");
-        } catch (MalformedURLException ignored) { /* will never be malformed */ }
-
-        return url;
+        return downloadURL;
     }
 
     /**
@@ -93,7 +120,7 @@ public class WorldInDataPage implements COVID19StatsPage {
      */
     @Override
     public Parser getParser() {
-        return new WorldInDataCSVParser();
+        return parser;
     }
 
     /**
@@ -112,5 +139,14 @@ public class WorldInDataPage implements COVID19StatsPage {
         }
 
         document = doc;
+        documentFetchedMillis = System.currentTimeMillis();
+    }
+
+    private static URL toURL(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Malformed download URL " + url + "!", e);
+        }
     }
 }
@@ -0,0 +1,218 @@
+package pt.ipsantarem.esgts.covid19tracker.server.synthetic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Generates Our World in Data like CSV files with synthetic stats, with any number of locations and days, so the
+ * ingest, the trees, the persistence and the API can be measured offline at a bigger scale than the real stats. The
+ * same settings and seed always generate the same file.
+ * <p>
+ * The locations are named "Region 1", "Region 2" and so on, with the "R1", "R2"... iso codes, and they're spread over
+ * the continents in turn ("Region 1" in Africa, "Region 2" in Asia and so on), so the continents and the world are
+ * rolled up like with the real file. Their rows are ordered by date, one location after the other, like in the real
+ * file.
+ *
+ * @author José Simões
+ */
+public class SyntheticStatsGenerator {
+    public static final String HEADER =
+            "iso_code,continent,location,date,total_cases,new_cases,total_deaths,new_deaths";
+
+    // the continents the locations are spread over, in turn.
+    private static final String[] CONTINENTS =
+            {"Africa", "Asia", "Europe", "North America", "Oceania", "South America"};
+
+    // the days between a case and its death, and the fraction of the cases that die.
+    private static final int DEATH_DELAY_DAYS = 14;
+    private static final double DEATH_RATE = 0.02;
+
+    private final int locations;
+    private final int days;
+    private final LocalDate firstDate;
+    private final ValueDistribution distribution;
+    private final int peakCases;
+    private final long seed;
+
+    /**
+     * @param locations    The number of locations.
+     * @param days         The number of days of each location.
+     * @param firstDate    The date of the first day.
+     * @param distribution How the daily values are distributed.
+     * @param peakCases    The typical peak of the daily cases of a location.
+     * @param seed         The seed of the random values.
+     * @throws IllegalArgumentException If there isn't at least one location and one day, or if the peak is negative.
+     */
+    public SyntheticStatsGenerator(int locations, int days, LocalDate firstDate, ValueDistribution distribution,
+                                   int peakCases, long seed) {
+        if (locations < 1 || days < 1) {
+            throw new IllegalArgumentException("There must be at least one location and one day!");
+        }
+
+        if (peakCases < 0) {
+            throw new IllegalArgumentException("The peak of the daily cases can't be negative!");
+        }
+
+        this.locations = locations;
+        this.days = days;
+        this.firstDate = firstDate;
+        this.distribution = distribution;
+        this.peakCases = peakCases;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the stats into a file, which is written to a temporary file first and then moved into place, so a
+     * reader of the file never sees it half written.
+     *
+     * @param file The file.
+     * @return The number of written rows.
+     * @throws IOException If the file couldn't be written.
+     */
+    public long generate(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            long rows;
+            try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                rows = generate(writer);
+            }
+
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            return rows;
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Generates the stats, with the header.
+     *
+     * @param writer Where the stats are written to.
+     * @return The number of written rows.
+     * @throws IOException If the stats couldn't be written.
+     */
+    public long generate(Writer writer) throws IOException {
+        // the dates are the same for every location, so they're formatted only once.
+        String[] dates = new String[days];
+        boolean[] weekends = new boolean[days];
+        for (int day = 0; day < days; day++) {
+            LocalDate date = firstDate.plusDays(day);
+            dates[day] = date.toString();
+            weekends[day] = date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY;
+        }
+
+        writer.write(HEADER);
+        writer.write('\n');
+
+        Random random = new Random(seed);
+        int[] newCases = new int[days];
+        int[] newDeaths = new int[days];
+        StringBuilder row = new StringBuilder(64);
+
+        for (int location = 1; location <= locations; location++) {
+            generateNewCases(random, weekends, newCases);
+            generateNewDeaths(random, newCases, newDeaths);
+
+            String locationColumns = "R" + location + "," + CONTINENTS[(location - 1) % CONTINENTS.length]
+                    + ",Region " + location + ",";
+            long totalCases = 0;
+            long totalDeaths = 0;
+
+            for (int day = 0; day < days; day++) {
+                totalCases += newCases[day];
+                totalDeaths += newDeaths[day];
+
+                row.setLength(0);
+                row.append(locationColumns).append(dates[day])
+                        .append(',').append(totalCases).append(',').append(newCases[day])
+                        .append(',').append(totalDeaths).append(',').append(newDeaths[day])
+                        .append('\n');
+                writer.append(row);
+            }
+        }
+
+        return (long) locations * days;
+    }
+
+    // ------------------------------------ DISTRIBUTIONS ------------------------------------ //
+
+    private void generateNewCases(Random random, boolean[] weekends, int[] newCases) {
+        switch (distribution) {
+            case WAVES:
+                generateWaves(random, weekends, newCases);
+                break;
+            case UNIFORM:
+                for (int day = 0; day < days; day++) {
+                    newCases[day] = random.nextInt(peakCases + 1);
+                }
+                break;
+        }
+    }
+
+    // the sum of one to three waves, each one shaped like the derivative of a logistic curve, over a low level of
+    // cases that lasts from the start of the first wave, with noise.
+    private void generateWaves(Random random, boolean[] weekends, int[] newCases) {
+        // the size of a location is log-normal, so most locations are small and a few are much bigger.
+        double peak = peakCases * Math.exp(random.nextGaussian() - 0.5);
+
+        int waves = 1 + random.nextInt(3);
+        double[] centers = new double[waves];
+        double[] widths = new double[waves];
+        double[] heights = new double[waves];
+        double firstCase = days;
+        for (int wave = 0; wave < waves; wave++) {
+            centers[wave] = random.nextDouble() * days;
+            widths[wave] = 10 + random.nextDouble() * 50;
+            heights[wave] = peak * (0.2 + random.nextDouble() * 0.8);
+            firstCase = Math.min(firstCase, centers[wave] - 2 * widths[wave]);
+        }
+
+        for (int day = 0; day < days; day++) {
+            double expected = day >= firstCase ? 0.02 * peak : 0;
+            for (int wave = 0; wave < waves; wave++) {
+                double sech = 1 / Math.cosh((day - centers[wave]) / widths[wave]);
+                expected += heights[wave] * sech * sech;
+            }
+
+            if (weekends[day]) expected *= 0.6;
+
+            double noisy = expected * (1 + 0.15 * random.nextGaussian()) + Math.sqrt(expected) * random.nextGaussian();
+            newCases[day] = (int) Math.max(0, Math.round(noisy));
+        }
+    }
+
+    // a fraction of the cases of two weeks before, or of the same day if there's no trend to follow.
+    private void generateNewDeaths(Random random, int[] newCases, int[] newDeaths) {
+        int delay = distribution == ValueDistribution.WAVES ? DEATH_DELAY_DAYS : 0;
+
+        for (int day = 0; day < days; day++) {
+            int cases = day >= delay ? newCases[day - delay] : 0;
+            double expected = cases * DEATH_RATE;
+            newDeaths[day] = (int) Math.max(0, Math.round(expected + Math.sqrt(expected) * random.nextGaussian()));
+        }
+    }
+
+    // ------------------------------------ DISTRIBUTIONS ------------------------------------ //
+
+    @Override
+    public String toString() {
+        return "SyntheticStatsGenerator{" +
+                "locations=" + locations +
+                ", days=" + days +
+                ", firstDate=" + firstDate +
+                ", distribution=" + distribution +
+                ", peakCases=" + peakCases +
+                ", seed=" + seed +
+                '}';
+    }
+}
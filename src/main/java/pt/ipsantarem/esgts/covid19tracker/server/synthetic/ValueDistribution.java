@@ -0,0 +1,19 @@
+package pt.ipsantarem.esgts.covid19tracker.server.synthetic;
+
+/**
+ * How the daily values of the synthetic stats are distributed.
+ */
+public enum ValueDistribution {
+    /**
+     * Each location has a size drawn from a log-normal distribution and one to three epidemic waves, with noisy daily
+     * cases, fewer cases reported on weekends, and deaths following the cases two weeks later. It resembles real
+     * stats, so it's the one to measure the parser, the trees and the predictions with.
+     */
+    WAVES,
+
+    /**
+     * The daily cases of every location are drawn uniformly between zero and the peak, and the deaths are a fraction
+     * of them. There's no trend, which is the worst case for the predictions.
+     */
+    UNIFORM
+}
@@ -0,0 +1,68 @@
+package pt.ipsantarem.esgts.covid19tracker.server.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.BacktestEngine;
+import pt.ipsantarem.esgts.covid19tracker.server.models.BacktestReport;
+import pt.ipsantarem.esgts.covid19tracker.server.parsers.WorldInDataCSVParser;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.StatsSourceRegistry;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.SeriesIndexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.MAX_PREDICTION_HORIZON;
+
+/**
+ * Runs a backtest of the prediction models from the command line and prints its report as JSON. Usage:
+ * <pre>
+ * BacktestMain [csv file|saved] [stat type] [max horizon] [window]
+ * </pre>
+ * The records are read from an Our World in Data CSV file or, if "saved" is passed (the default), from the records
+ * the server saved for each of its sources, merged like the server merges them. The stat type is newCases (the
+ * default), totalCases, newDeaths or totalDeaths, the max horizon defaults to 14 days and the window defaults to 0,
+ * which means the default window of each model.
+ */
+public class BacktestMain {
+
+    public static void main(String[] args) throws IOException {
+        String source = args.length > 0 ? args[0] : "saved";
+        String statType = args.length > 1 ? args[1] : "newCases";
+        int maxHorizon = args.length > 2 ? Integer.parseInt(args[2]) : 14;
+        int window = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        int treeIdx = AVLVirusStatsTreesManager.getTreeIdx(statType);
+        if (treeIdx < 0) {
+            throw new IllegalArgumentException("Unknown stat type " + statType + "!");
+        }
+
+        if (maxHorizon < 1 || maxHorizon > MAX_PREDICTION_HORIZON) {
+            throw new IllegalArgumentException("The max horizon must be between 1 and " + MAX_PREDICTION_HORIZON + "!");
+        }
+
+        Map<String, List<AVLVirusStatsTree<?, ?>>> records = source.equals("saved")
+                ? readSavedRecords()
+                : new WorldInDataCSVParser().parse(Files.readAllBytes(Paths.get(source)));
+
+        if (records.isEmpty()) {
+            throw new IllegalStateException("There are no saved records!");
+        }
+
+        AVLVirusStatsTreesManager treeManager = new AVLVirusStatsTreesManager(records);
+        SeriesIndexer.index(treeManager);
+
+        BacktestReport report = BacktestEngine.run(treeManager, treeIdx, maxHorizon, window);
+        System.out.println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(report));
+    }
+
+    // the saved records of the sources set by the "sources" settings, merged like the server merges them.
+    private static Map<String, List<AVLVirusStatsTree<?, ?>>> readSavedRecords() {
+        StatsSourceRegistry sources = StatsSourceRegistry.fromSettings();
+        sources.loadSavedRecords();
+        return sources.merge();
+    }
+}
@@ -0,0 +1,126 @@
+package pt.ipsantarem.esgts.covid19tracker.server.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.ServerMain;
+import pt.ipsantarem.esgts.covid19tracker.server.loadtest.GrowingFixture;
+import pt.ipsantarem.esgts.covid19tracker.server.loadtest.LatencyRecorder;
+import pt.ipsantarem.esgts.covid19tracker.server.loadtest.OpenLoopLoadGenerator;
+import pt.ipsantarem.esgts.covid19tracker.server.loadtest.RequestMix;
+import pt.ipsantarem.esgts.covid19tracker.server.loadtest.UpdateSubscribers;
+import pt.ipsantarem.esgts.covid19tracker.server.models.LoadTestReport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a load test of the server from the command line and prints its report as JSON. Usage:
+ * <pre>
+ * LoadTestMain [rate] [seconds] [connections] [mix] [locations] [days] [websocket clients] [update interval] [warmup]
+ * </pre>
+ * The server is started on a free port with a synthetic stats file in a temporary directory, so the test runs fully
+ * offline and doesn't touch the saved records. The rate of requests per second defaults to 200, the measured seconds
+ * to 30, the connections to 64, the mix to metric:4,range:3,date:2,predict:1 (see {@link RequestMix}), the locations
+ * to 200, the days to 365, the websocket clients to 20, the seconds between the days appended to the stats file to 10
+ * (0 turns the updates off) and the warmup seconds to 5.
+ */
+public class LoadTestMain {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTestMain.class);
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        String mix = args.length > 3 ? args[3] : "metric:4,range:3,date:2,predict:1";
+        int locations = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+        int days = args.length > 5 ? Integer.parseInt(args[5]) : 365;
+        int websocketClients = args.length > 6 ? Integer.parseInt(args[6]) : 20;
+        int updateIntervalSeconds = args.length > 7 ? Integer.parseInt(args[7]) : 10;
+        int warmupSeconds = args.length > 8 ? Integer.parseInt(args[8]) : 5;
+
+        if (rate < 1 || seconds < 1 || connections < 1) {
+            throw new IllegalArgumentException("The rate, the seconds and the connections must be positive!");
+        }
+
+        Path directory = Files.createTempDirectory("covid19tracker-loadtest");
+        int appendDays = updateIntervalSeconds > 0 ? (warmupSeconds + seconds) / updateIntervalSeconds + 1 : 0;
+        GrowingFixture fixture = new GrowingFixture(directory.resolve("stats.csv"), locations, days, appendDays,
+                LocalDate.parse("2020-01-01"), 42);
+        fixture.write();
+
+        // the settings must be set before the server classes read them.
+        System.setProperty("server.port", "0");
+        System.setProperty("persistence.dir", directory.toString());
+        System.setProperty("startup.fastStart", "false");
+        System.setProperty("sources", "loadTest");
+        System.setProperty("sources.loadTest.type", "file");
+        System.setProperty("sources.loadTest.path", fixture.getFile().toString());
+        System.setProperty("download.incremental", "true"); // the fixture only grows by appending.
+        System.setProperty("refresh.windowIntervalSeconds", "1");
+        System.setProperty("refresh.intervalSeconds", "1");
+        System.setProperty("refresh.maxIntervalSeconds", "1");
+        System.setProperty("refresh.jitter", "0");
+
+        ServerMain server = new ServerMain();
+        server.start();
+
+        String host = "localhost:" + server.getPort();
+        UpdateSubscribers subscribers = new UpdateSubscribers(Math.max(1, websocketClients) * (appendDays + 1));
+        if (websocketClients > 0) {
+            subscribers.connect("ws://" + host + "/api/recordsUpdate", websocketClients, fixture.getCountries());
+        }
+
+        // appends a day to the stats file every interval, which the server picks up on its next check.
+        AtomicInteger updates = new AtomicInteger();
+        ScheduledExecutorService updater = Executors.newSingleThreadScheduledExecutor();
+        if (updateIntervalSeconds > 0) {
+            updater.scheduleAtFixedRate(() -> {
+                try {
+                    if (fixture.appendDay()) {
+                        subscribers.updated();
+                        updates.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Could not append a day to the stats file!", e);
+                }
+            }, updateIntervalSeconds, updateIntervalSeconds, TimeUnit.SECONDS);
+        }
+
+        RequestMix requestMix = new RequestMix(mix, fixture.getCountries(), fixture.getFirstDate(),
+                fixture.getInitialDays());
+        OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator("http://" + host, requestMix, connections);
+
+        LatencyRecorder latencies = new LatencyRecorder(rate * seconds);
+        LatencyRecorder serviceTimes = new LatencyRecorder(rate * seconds);
+        double measuredSeconds = generator.run(rate, warmupSeconds, seconds, latencies, serviceTimes);
+
+        updater.shutdownNow();
+
+        LoadTestReport report = new LoadTestReport(rate, connections, mix, latencies.getCount(),
+                Math.round(measuredSeconds * 1000) / 1000.0, generator.getErrors(), latencies.summarize(),
+                serviceTimes.summarize(), websocketClients, updates.get(), subscribers.getMessages(),
+                subscribers.getErrors(), subscribers.getDeliveryLatencies().summarize());
+        System.out.println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(report));
+
+        subscribers.close();
+        server.stop();
+
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(directory);
+
+        System.exit(0);
+    }
+}
@@ -0,0 +1,188 @@
+package pt.ipsantarem.esgts.covid19tracker.server.tools;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import pt.ipsantarem.esgts.covid19tracker.server.loadtest.GrowingFixture;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.VirusStatsNode;
+import pt.ipsantarem.esgts.covid19tracker.server.parsers.WorldInDataCSVParser;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.COVID19StatsPageDocumentUpdateHandler;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.StatsSource;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.pages.WorldInDataPage;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the incremental downloads of the stats over HTTP from the command line, fully offline. Usage:
+ * <pre>
+ * RangeDownloadCheckMain [locations] [days]
+ * </pre>
+ * A synthetic stats file, with 50 locations and 120 days by default, is served by a local HTTP server that answers
+ * conditional and Range requests, and is ingested by a World in Data page pointing at it. The file is first downloaded
+ * whole, then a day is appended to it, which must be downloaded with a Range request, and then an earlier value is
+ * revised without changing the length of the file, which must be downloaded whole. After each download, the records
+ * must be the same as the ones parsed from the whole file. Exits with status 1 if any check fails.
+ */
+public class RangeDownloadCheckMain {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-");
+
+    public static void main(String[] args) throws Exception {
+        int locations = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 120;
+
+        // the settings must be set before the ingest classes read them.
+        System.setProperty("download.incremental", "true");
+
+        Path directory = Files.createTempDirectory("covid19tracker-rangecheck");
+        GrowingFixture fixture = new GrowingFixture(directory.resolve("stats.csv"), locations, days, 1,
+                LocalDate.parse("2020-01-01"), 42);
+        fixture.write();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/stats.csv", exchange -> serve(exchange, fixture.getFile()));
+        server.start();
+
+        boolean passed;
+        try {
+            URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/stats.csv");
+            StatsSource source = new StatsSource("rangeCheck", new WorldInDataPage(url));
+
+            passed = check("first download is whole", source, fixture.getFile(), false);
+
+            fixture.appendDay();
+            passed &= check("appended day is downloaded with a Range request", source, fixture.getFile(), true);
+
+            reviseEarlierValue(fixture.getFile());
+            passed &= check("same length revision is downloaded whole", source, fixture.getFile(), false);
+        } finally {
+            server.stop(0);
+        }
+
+        System.out.println(passed ? "All checks passed" : "Some checks failed");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // refreshes the source, checking if the download was partial and if the records are the ones of the whole file.
+    private static boolean check(String name, StatsSource source, Path file, boolean partial) throws IOException {
+        long partialBefore = partialDownloads();
+
+        COVID19StatsPageDocumentUpdateHandler handler = new COVID19StatsPageDocumentUpdateHandler(source);
+        Map<String, List<AVLVirusStatsTree<?, ?>>> records = handler.call();
+        if (!records.isEmpty()) {
+            source.setRecords(records, handler.getLastDownloadDate(), handler.getDownloadValidators());
+        }
+
+        boolean wasPartial = partialDownloads() > partialBefore;
+        boolean sameRecords = sameRecords(source.getRecords(),
+                new WorldInDataCSVParser().parse(Files.readAllBytes(file)));
+        boolean passed = !records.isEmpty() && wasPartial == partial && sameRecords;
+
+        System.out.println((passed ? "PASS " : "FAIL ") + name + " (" + (wasPartial ? "partial" : "whole")
+                + " download, records " + (sameRecords ? "match" : "don't match") + " the whole file)");
+        return passed;
+    }
+
+    private static long partialDownloads() {
+        Object count = ServerMetrics.snapshot().get("ingest.downloads.partial");
+        return count != null ? (Long) count : 0;
+    }
+
+    // changes the last digit of the first row of the file, so that its length and its last bytes stay the same.
+    private static void reviseEarlierValue(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        int rowEnd = indexOf(bytes, (byte) '\n', indexOf(bytes, (byte) '\n', 0) + 1);
+
+        for (int i = rowEnd - 1; i >= 0; i--) {
+            if (bytes[i] >= '0' && bytes[i] <= '9') {
+                bytes[i] = (byte) ('0' + (bytes[i] - '0' + 1) % 10);
+                break;
+            }
+        }
+
+        Files.write(file, bytes);
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == b) return i;
+        }
+        return bytes.length;
+    }
+
+    // checks if two records have the same countries, with the same stats in the same dates.
+    @SuppressWarnings("unchecked")
+    private static boolean sameRecords(Map<String, List<AVLVirusStatsTree<?, ?>>> records,
+                                       Map<String, List<AVLVirusStatsTree<?, ?>>> expected) {
+        if (records == null || !records.keySet().equals(expected.keySet())) return false;
+
+        for (Map.Entry<String, List<AVLVirusStatsTree<?, ?>>> country : expected.entrySet()) {
+            List<AVLVirusStatsTree<?, ?>> trees = records.get(country.getKey());
+
+            for (int treeIdx = 0; treeIdx < country.getValue().size(); treeIdx++) {
+                AVLVirusStatsTree<?, ?> tree = trees.get(treeIdx);
+                AVLVirusStatsTree<?, ?> expectedTree = country.getValue().get(treeIdx);
+
+                if (!tree.getStats().equals(expectedTree.getStats())) return false;
+
+                List<? extends VirusStatsNode<?>> nodes = tree.getNodes();
+                List<? extends VirusStatsNode<?>> expectedNodes = expectedTree.getNodes();
+                for (int i = 0; i < expectedNodes.size(); i++) {
+                    if (nodes.get(i).getEpochDay() != expectedNodes.get(i).getEpochDay()) return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    // serves the file, answering conditional requests with its entity tag, and Range requests of its last bytes.
+    private static void serve(HttpExchange exchange, Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        String eTag = "\"" + bytes.length + "-" + Integer.toHexString(Arrays.hashCode(bytes)) + "\"";
+        exchange.getResponseHeaders().set("ETag", eTag);
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+
+        if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        int status = 200;
+        byte[] body = bytes;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        Matcher matcher = range != null ? RANGE.matcher(range) : null;
+
+        if (matcher != null && matcher.matches() && Long.parseLong(matcher.group(1)) < bytes.length) {
+            int firstByte = Integer.parseInt(matcher.group(1));
+            status = 206;
+            body = Arrays.copyOfRange(bytes, firstByte, bytes.length);
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + firstByte + "-" + (bytes.length - 1) + "/" + bytes.length);
+        }
+
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(bytes.length));
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package pt.ipsantarem.esgts.covid19tracker.server.tools;
+
+import pt.ipsantarem.esgts.covid19tracker.server.synthetic.SyntheticStatsGenerator;
+import pt.ipsantarem.esgts.covid19tracker.server.synthetic.ValueDistribution;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
+/**
+ * Generates an Our World in Data like CSV file with synthetic stats from the command line. Usage:
+ * <pre>
+ * SyntheticStatsMain [file] [locations] [days] [distribution] [seed] [peak cases] [first date]
+ * </pre>
+ * The file defaults to synthetic.csv, the locations to 200, the days to 365, the distribution to waves (or uniform),
+ * the seed to 42, the peak of the daily cases of a location to 1000 and the first date to 2020-01-01. The file can
+ * then be served by a synthetic or file stats source, or parsed by the {@link BacktestMain}.
+ */
+public class SyntheticStatsMain {
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "synthetic.csv");
+        int locations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int days = args.length > 2 ? Integer.parseInt(args[2]) : 365;
+        ValueDistribution distribution = ValueDistribution.valueOf((args.length > 3 ? args[3] : "waves").toUpperCase());
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        int peakCases = args.length > 5 ? Integer.parseInt(args[5]) : 1000;
+        LocalDate firstDate = LocalDate.parse(args.length > 6 ? args[6] : "2020-01-01");
+
+        SyntheticStatsGenerator generator =
+                new SyntheticStatsGenerator(locations, days, firstDate, distribution, peakCases, seed);
+
+        long start = System.nanoTime();
+        long rows = generator.generate(file);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("Generated " + rows + " rows (" + Files.size(file) + " bytes) into " + file + " in "
+                + millis + " ms with " + generator);
+    }
+}
@@ -4,12 +4,7 @@ import pt.ipsantarem.esgts.covid19tracker.server.models.VirusStatistic;
 import pt.ipsantarem.esgts.covid19tracker.server.nodes.VirusStatsNode;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-
-import static pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils.localDateToString;
 
 /**
  * A self balancing tree implementation of the interface {@link VirusTree}
@@ -20,9 +15,12 @@ import static pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils.localDat
  * @see "https://github.com/eugenp/tutorials/blob/master/data-structures/src/main/java/com/baeldung/avltree/AVLTree.java"
  */
 @SuppressWarnings("unchecked")
-public class AVLVirusStatsTree<E, T extends VirusStatsNode<E>> implements VirusTree<Date, E, T> {
+public class AVLVirusStatsTree<E, T extends VirusStatsNode<E>> implements VirusTree<Integer, E, T> {
     private T root;
 
+    // the nodes laid out by date, which the reads are served from, or null if the tree changed since they were.
+    private transient volatile FlattenedTree<E> flattened;
+
     /**
      * Constructs a new virus stat tree with a root element.
      *
@@ -44,24 +42,20 @@ public class AVLVirusStatsTree<E, T extends VirusStatsNode<E>> implements VirusT
      * {@inheritDoc}
      */
     @Override
-    public VirusStatistic<E> get(Date key) {
-        T current = root;
-
-        while (current != null) {
-            if (current.getKey().equals(key)) {
-                break;
-            }
-
-            current = (T) (current.getKey().compareTo(key) < 0 ? current.getRight() : current.getLeft());
-        }
+    public VirusStatistic<E> get(Integer key) {
+        return get(key.intValue());
+    }
 
-        return current != null ? new VirusStatistic<E>(localDateToString(current.getDate()), current.getCountry(),
-                current.getNodeInformation()) {
-            @Override
-            public String statType() {
-                return root.typeOfVirusStat();
-            }
-        } : null;
+    /**
+     * Gets the virus statistic of a date.
+     *
+     * @param epochDay The date, in days since the epoch.
+     * @return The virus statistic, or null if there's none in that date.
+     */
+    public VirusStatistic<E> get(int epochDay) {
+        FlattenedTree<E> flattened = flattened();
+        int index = flattened.indexOf(epochDay);
+        return index >= 0 ? StatisticsView.statistic(flattened, index) : null;
     }
 
     /**
@@ -70,15 +64,16 @@ public class AVLVirusStatsTree<E, T extends VirusStatsNode<E>> implements VirusT
     @Override
     public void add(T node) {
         checkNodeInstanceIsSameAsRoot(node.getClass());
-        checkNodeCountryIsSameAsRoot(node.getCountry());
+        checkNodeCountryIsSameAsRoot(node);
         root = insert(root, node);
+        flattened = null;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void delete(Date key) {
+    public void delete(Integer key) {
         throw new UnsupportedOperationException("Delete operation not supported on AVL virus stats tree!");
     }
 
@@ -87,8 +82,8 @@ public class AVLVirusStatsTree<E, T extends VirusStatsNode<E>> implements VirusT
      */
     @Override
     public List<VirusStatistic<E>> preorder() {
-        if (root == null) return Collections.emptyList();
-        return preorder(root);
+        FlattenedTree<E> flattened = flattened();
+        return new StatisticsView<>(flattened, flattened.getPreorder(), 0, flattened.size());
     }
 
     /**
@@ -96,8 +91,8 @@ public class AVLVirusStatsTree<E, T extends VirusStatsNode<E>> implements VirusT
      */
     @Override
     public List<VirusStatistic<E>> inorder() {
-        if (root == null) return Collections.emptyList();
-        return inorder(root);
+        FlattenedTree<E> flattened = flattened();
+        return new StatisticsView<>(flattened, null, 0, flattened.size());
     }
 
     /**
@@ -105,34 +100,57 @@ public class AVLVirusStatsTree<E, T extends VirusStatsNode<E>> implements VirusT
      */
     @Override
     public List<VirusStatistic<E>> postorder() {
-        if (root == null) return Collections.emptyList();
-        return postorder(root);
+        FlattenedTree<E> flattened = flattened();
+        return new StatisticsView<>(flattened, flattened.getPostorder(), 0, flattened.size());
     }
 
     /**
      * Gets all the virus statistics in a certain date interval.
      *
-     * @param firstDate  The first date interval.
-     * @param secondDate The second date interval.
+     * @param firstDate  The first date interval, in days since the epoch.
+     * @param secondDate The second date interval (inclusive), in days since the epoch.
      * @return A list of virus statistics
      */
-    public List<VirusStatistic<E>> getBetweenDates(Date firstDate, Date secondDate) {
-        long timeDiff = secondDate.getTime() - firstDate.getTime();
-        long diff = TimeUnit.DAYS.convert(timeDiff, TimeUnit.MILLISECONDS);
-        Date[] dates = new Date[(int) diff + 1];
+    public List<VirusStatistic<E>> getBetweenDates(int firstDate, int secondDate) {
+        FlattenedTree<E> flattened = flattened();
+        int first = flattened.search(firstDate);
+        int end = flattened.search(secondDate + 1L);
 
-        for (int i = 0; i <= diff; i++) {
-            dates[i] = new Date(firstDate.getTime() + TimeUnit.DAYS.toMillis(i));
-        }
+        return new StatisticsView<>(flattened, null, first, Math.max(0, end - first));
+    }
 
-        List<VirusStatistic<E>> recordsByDate = new ArrayList<>();
+    /**
+     * @return The node with the latest date.
+     */
+    public T getLast() {
+        T current = root;
 
-        for (Date date : dates) {
-            VirusStatistic<E> stat = get(date);
-            if (stat != null) recordsByDate.add(stat);
+        while (current.getRight() != null) {
+            current = (T) current.getRight();
         }
 
-        return recordsByDate;
+        return current;
+    }
+
+    /**
+     * Gets the information of every node of the tree, ordered by date, without summarizing it in
+     * {@link VirusStatistic} objects.
+     *
+     * @return The information of the nodes, oldest first.
+     */
+    public List<E> getStats() {
+        List<E> stats = new ArrayList<>();
+        collectStats(root, stats);
+        return stats;
+    }
+
+    /**
+     * @return The nodes of the tree, oldest first.
+     */
+    public List<T> getNodes() {
+        List<T> nodes = new ArrayList<>();
+        collectNodes(root, nodes);
+        return nodes;
     }
 
     /**
@@ -149,9 +167,9 @@ public class AVLVirusStatsTree<E, T extends VirusStatsNode<E>> implements VirusT
     private T insert(T current, T node) {
         if (current == null) {
             return node;
-        } else if (current.getKey().compareTo(node.getKey()) > 0) {
+        } else if (current.getEpochDay() > node.getEpochDay()) {
             current.setLeft(insert((T) current.getLeft(), node));
-        } else if (current.getKey().compareTo(node.getKey()) < 0) {
+        } else if (current.getEpochDay() < node.getEpochDay()) {
             current.setRight(insert((T) current.getRight(), node));
         } else {
             throw new IllegalArgumentException("Duplicate key!");
@@ -278,53 +296,32 @@ public class AVLVirusStatsTree<E, T extends VirusStatsNode<E>> implements VirusT
         return (node == null) ? 0 : height((T) node.getRight()) - height((T) node.getLeft());
     }
 
-    private List<VirusStatistic<E>> preorder(T node) {
-        if (node == null) return Collections.emptyList();
-
-        List<VirusStatistic<E>> preorder = new ArrayList<>();
-
-        preorder.add(new VirusStatistic<E>(localDateToString(node.getDate()), node.getCountry(), node.getNodeInformation()) {
-            @Override
-            public String statType() {
-                return root.typeOfVirusStat();
-            }
-        });
-        preorder.addAll(preorder((T) node.getLeft()));
-        preorder.addAll(preorder((T) node.getRight()));
-
-        return preorder;
+    // the nodes of the tree laid out by date, flattened again on the first read after a change.
+    private FlattenedTree<E> flattened() {
+        FlattenedTree<E> flattened = this.flattened;
+        if (flattened == null) {
+            flattened = new FlattenedTree<>(root);
+            this.flattened = flattened;
+        }
+        return flattened;
     }
 
-    private List<VirusStatistic<E>> inorder(T node) {
-        if (node == null) return Collections.emptyList();
+    // inorder traversal that collects the nodes.
+    private void collectNodes(T node, List<T> nodes) {
+        if (node == null) return;
 
-        List<VirusStatistic<E>> inorder = new ArrayList<>(inorder((T) node.getLeft()));
-        inorder.add(new VirusStatistic<E>(localDateToString(node.getDate()), node.getCountry(), node.getNodeInformation()) {
-            @Override
-            public String statType() {
-                return root.typeOfVirusStat();
-            }
-        });
-        inorder.addAll(inorder((T) node.getRight()));
-
-        return inorder;
+        collectNodes((T) node.getLeft(), nodes);
+        nodes.add(node);
+        collectNodes((T) node.getRight(), nodes);
     }
 
-    private List<VirusStatistic<E>> postorder(T node) {
-        if (node == null) return Collections.emptyList();
-
-        List<VirusStatistic<E>> postorder = new ArrayList<>();
-
-        postorder.addAll(postorder((T) node.getLeft()));
-        postorder.addAll(postorder((T) node.getRight()));
-        postorder.add(new VirusStatistic<E>(localDateToString(node.getDate()), node.getCountry(), node.getNodeInformation()) {
-            @Override
-            public String statType() {
-                return root.typeOfVirusStat();
-            }
-        });
+    // inorder traversal that collects the information of the nodes.
+    private void collectStats(T node, List<E> stats) {
+        if (node == null) return;
 
-        return postorder;
+        collectStats((T) node.getLeft(), stats);
+        stats.add(node.getNodeInformation());
+        collectStats((T) node.getRight(), stats);
     }
 
     // ------------------------------------------ PRECONDITIONS ------------------------------------------ //
@@ -337,9 +334,9 @@ public class AVLVirusStatsTree<E, T extends VirusStatsNode<E>> implements VirusT
         }
     }
 
-    private void checkNodeCountryIsSameAsRoot(String nodeCountry) {
-        if (!root.getCountry().equals(nodeCountry)) {
-            throw new IllegalArgumentException("The node being inserted is from the " + nodeCountry
+    private void checkNodeCountryIsSameAsRoot(T node) {
+        if (root.getCountryId() != node.getCountryId()) {
+            throw new IllegalArgumentException("The node being inserted is from the " + node.getCountry()
                     + " country, while the root node is from the country " + root.getCountry() + "! All the nodes"
                     + " in this tree must share the same country.");
         }
@@ -1,10 +1,31 @@
 package pt.ipsantarem.esgts.covid19tracker.server.trees;
 
+import pt.ipsantarem.esgts.covid19tracker.server.exceptions.NonExistentCountryException;
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.Forecaster;
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.Forecasters;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.RequestProfiler;
+import pt.ipsantarem.esgts.covid19tracker.server.models.CountryDayStats;
+import pt.ipsantarem.esgts.covid19tracker.server.models.ForecastPoint;
+import pt.ipsantarem.esgts.covid19tracker.server.models.RollingPoint;
+import pt.ipsantarem.esgts.covid19tracker.server.models.VirusCrossSection;
+import pt.ipsantarem.esgts.covid19tracker.server.models.VirusForecast;
+import pt.ipsantarem.esgts.covid19tracker.server.models.VirusRollingSeries;
 import pt.ipsantarem.esgts.covid19tracker.server.models.VirusStatistic;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.CountryDictionary;
 
-import java.util.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.metrics.RequestProfiler.Phase.LOOKUP;
+import static pt.ipsantarem.esgts.covid19tracker.server.metrics.RequestProfiler.Phase.TRAVERSAL;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils.epochDayToString;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils.localDateToString;
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.VirusPredictionUtils.*;
 
 /**
  * Manages a list of self balanced trees mapped by individual countries.
@@ -17,16 +38,68 @@ public class AVLVirusStatsTreesManager {
     /**
      * The indexes of the lists with certain virus stats.
      */
-    private static final int NEW_CASES_TREE_IDX = 0;
-    private static final int TOTAL_CASES_TREE_IDX = 1;
-    private static final int NEW_DEATHS_TREE_IDX = 2;
-    private static final int TOTAL_DEATHS_TREE_IDX = 3;
+    public static final int NEW_CASES_TREE_IDX = 0;
+    public static final int TOTAL_CASES_TREE_IDX = 1;
+    public static final int NEW_DEATHS_TREE_IDX = 2;
+    public static final int TOTAL_DEATHS_TREE_IDX = 3;
+
+    /**
+     * The types of the stats of each tree index.
+     */
+    public static final List<String> STAT_TYPES = Collections.unmodifiableList(
+            Arrays.asList("newCases", "totalCases", "newDeaths", "totalDeaths"));
 
     private Map<String, List<AVLVirusStatsTree<?, ?>>> records; // the list of trees mapped by a individual country.
     private boolean shouldBeInordered = false; // should we inorder the contents before returning them?
 
+    // the same trees, indexed by the id of their country, and the ids of the countries with records, in the order of
+    // the records.
+    private final List<AVLVirusStatsTree<?, ?>>[] trees;
+    private final int[] countryIds;
+
+    // resolves the names, ISO codes, aliases and prefixes the clients use for the countries.
+    private final CountryResolver resolver;
+
+    // the records of every country as primitive arrays, and their predictions, indexed by the id of the country.
+    private CountrySeries[] series = new CountrySeries[0];
+
+    // the stats of every country in each date, built at ingest from the series.
+    private volatile CrossSectionIndex crossSections;
+
     public AVLVirusStatsTreesManager(Map<String, List<AVLVirusStatsTree<?, ?>>> records) {
         this.records = records;
+        this.trees = (List<AVLVirusStatsTree<?, ?>>[]) new List<?>[CountryDictionary.size()];
+        this.countryIds = new int[records.size()];
+
+        int i = 0;
+        for (List<AVLVirusStatsTree<?, ?>> countryTrees : records.values()) {
+            int countryId = countryTrees.get(0).getRoot().getCountryId();
+            trees[countryId] = countryTrees;
+            countryIds[i++] = countryId;
+        }
+
+        this.resolver = new CountryResolver(countryIds, trees.length);
+    }
+
+    /**
+     * Gets the index of the tree of a stat type.
+     *
+     * @param statType The type of the stat: newCases, totalCases, newDeaths or totalDeaths.
+     * @return The tree index, or -1 if the stat type is unknown.
+     */
+    public static int getTreeIdx(String statType) {
+        switch (statType) {
+            case "newCases":
+                return NEW_CASES_TREE_IDX;
+            case "totalCases":
+                return TOTAL_CASES_TREE_IDX;
+            case "newDeaths":
+                return NEW_DEATHS_TREE_IDX;
+            case "totalDeaths":
+                return TOTAL_DEATHS_TREE_IDX;
+            default:
+                return -1;
+        }
     }
 
     /**
@@ -38,22 +111,112 @@ public class AVLVirusStatsTreesManager {
         shouldBeInordered = inordered;
     }
 
+    /**
+     * Set the series (the records as primitive arrays, and their predictions) of every country.
+     *
+     * @param series The series, indexed by the id of the country.
+     * @see SeriesIndexer
+     */
+    public void setSeries(CountrySeries[] series) {
+        this.series = series;
+    }
+
+    /**
+     * Set the stats of every country transposed by date.
+     *
+     * @param crossSections The index of the stats of every country in each date.
+     * @see SeriesIndexer
+     */
+    public void setCrossSections(CrossSectionIndex crossSections) {
+        this.crossSections = crossSections;
+    }
+
+    /**
+     * @return The trees of every country, mapped by the (lower case) name of the country.
+     */
+    public Map<String, List<AVLVirusStatsTree<?, ?>>> getRecords() {
+        return records;
+    }
+
+    /**
+     * @return The (lower case) names of the countries that have records.
+     */
+    public Set<String> getCountries() {
+        return records.keySet();
+    }
+
+    /**
+     * @return The ids of the countries that have records, in the order of the records. The array must not be changed.
+     */
+    public int[] getCountryIds() {
+        return countryIds;
+    }
+
+    /**
+     * @return The length of the arrays indexed by the id of the countries, which is bigger than any of their ids.
+     */
+    public int getCountryIdsBound() {
+        return trees.length;
+    }
+
+    /**
+     * Resolves a country by its name, ISO code, alias or unambiguous prefix, in any case.
+     *
+     * @param country What the client called the country.
+     * @return The id of the country.
+     * @throws NonExistentCountryException If no country with records goes by that name.
+     */
+    public int resolveCountry(String country) {
+        int countryId = resolver.resolve(country);
+        if (countryId < 0) throw new NonExistentCountryException("There are no records of the country " + country);
+        return countryId;
+    }
+
+    /**
+     * Gets the countries with a name, ISO code or alias that starts with a prefix, in any case.
+     *
+     * @param prefix The prefix (an empty prefix gets every country).
+     * @param limit  The maximum number of countries.
+     * @return The names of the countries.
+     */
+    public List<String> completeCountries(String prefix, int limit) {
+        return resolver.complete(prefix, limit);
+    }
+
+    /**
+     * Gets the trees of a country.
+     *
+     * @return The trees, indexed by the tree indexes, or null if the country has no records.
+     */
+    public List<AVLVirusStatsTree<?, ?>> getTrees(String country) {
+        return getTrees(resolver.resolve(country));
+    }
+
+    /**
+     * Gets the trees of a country by its id.
+     *
+     * @return The trees, indexed by the tree indexes, or null if the country has no records.
+     */
+    public List<AVLVirusStatsTree<?, ?>> getTrees(int countryId) {
+        return countryId >= 0 && countryId < trees.length ? trees[countryId] : null;
+    }
+
     // --------------------------------------- TREE OPERATIONS --------------------------------------- //
 
-    public VirusStatistic<Integer> getNewCasesInDate(String country, long date) {
-        return (VirusStatistic<Integer>) getVirusTree(country, NEW_CASES_TREE_IDX).get(new Date(date));
+    public VirusStatistic<Integer> getNewCasesInDate(String country, int epochDay) {
+        return (VirusStatistic<Integer>) getVirusStatInDate(country, NEW_CASES_TREE_IDX, epochDay);
     }
 
-    public VirusStatistic<Integer> getTotalCasesInDate(String country, long date) {
-        return (VirusStatistic<Integer>) getVirusTree(country, TOTAL_CASES_TREE_IDX).get(new Date(date));
+    public VirusStatistic<Integer> getTotalCasesInDate(String country, int epochDay) {
+        return (VirusStatistic<Integer>) getVirusStatInDate(country, TOTAL_CASES_TREE_IDX, epochDay);
     }
 
-    public VirusStatistic<Integer> getNewDeathsInDate(String country, long date) {
-        return (VirusStatistic<Integer>) getVirusTree(country, NEW_DEATHS_TREE_IDX).get(new Date(date));
+    public VirusStatistic<Integer> getNewDeathsInDate(String country, int epochDay) {
+        return (VirusStatistic<Integer>) getVirusStatInDate(country, NEW_DEATHS_TREE_IDX, epochDay);
     }
 
-    public VirusStatistic<Integer> getTotalDeathsInDate(String country, long date) {
-        return (VirusStatistic<Integer>) getVirusTree(country, TOTAL_DEATHS_TREE_IDX).get(new Date(date));
+    public VirusStatistic<Integer> getTotalDeathsInDate(String country, int epochDay) {
+        return (VirusStatistic<Integer>) getVirusStatInDate(country, TOTAL_DEATHS_TREE_IDX, epochDay);
     }
 
     public List<VirusStatistic<Integer>> getNewCasesStats(String country) {
@@ -72,24 +235,292 @@ public class AVLVirusStatsTreesManager {
         return (List<VirusStatistic<Integer>>) getVirusStats(country, TOTAL_DEATHS_TREE_IDX);
     }
 
-    public List<VirusStatistic<Integer>> getNewCasesStatsBetweenDates(String country, long firstDate, long secondDate) {
+    public List<VirusStatistic<Integer>> getNewCasesStatsBetweenDates(String country, int firstDate, int secondDate) {
         return (List<VirusStatistic<Integer>>) getVirusStatsBetweenDates(country, NEW_CASES_TREE_IDX, firstDate, secondDate);
     }
 
-    public List<VirusStatistic<Integer>> getTotalCasesStatsBetweenDates(String country, long firstDate, long secondDate) {
+    public List<VirusStatistic<Integer>> getTotalCasesStatsBetweenDates(String country, int firstDate, int secondDate) {
         return (List<VirusStatistic<Integer>>) getVirusStatsBetweenDates(country, TOTAL_CASES_TREE_IDX, firstDate, secondDate);
     }
 
-    public List<VirusStatistic<Integer>> getNewDeathsStatsBetweenDates(String country, long firstDate, long secondDate) {
+    public List<VirusStatistic<Integer>> getNewDeathsStatsBetweenDates(String country, int firstDate, int secondDate) {
         return (List<VirusStatistic<Integer>>) getVirusStatsBetweenDates(country, NEW_DEATHS_TREE_IDX, firstDate, secondDate);
     }
 
-    public List<VirusStatistic<Integer>> getTotalDeathsStatsBetweenDates(String country, long firstDate, long secondDate) {
+    public List<VirusStatistic<Integer>> getTotalDeathsStatsBetweenDates(String country, int firstDate, int secondDate) {
         return (List<VirusStatistic<Integer>>) getVirusStatsBetweenDates(country, TOTAL_DEATHS_TREE_IDX, firstDate, secondDate);
     }
 
+    public int getNewCasesPrediction(String country) {
+        return getPrediction(country, NEW_CASES_TREE_IDX);
+    }
+
+    public int getTotalCasesPrediction(String country) {
+        return getPrediction(country, TOTAL_CASES_TREE_IDX);
+    }
+
+    public int getNewDeathsPrediction(String country) {
+        return getPrediction(country, NEW_DEATHS_TREE_IDX);
+    }
+
+    public int getTotalDeathsPrediction(String country) {
+        return getPrediction(country, TOTAL_DEATHS_TREE_IDX);
+    }
+
+    public VirusForecast getNewCasesForecast(String country, Forecaster forecaster, int window, int horizon) {
+        return getForecast(country, NEW_CASES_TREE_IDX, forecaster, window, horizon);
+    }
+
+    public VirusForecast getTotalCasesForecast(String country, Forecaster forecaster, int window, int horizon) {
+        return getForecast(country, TOTAL_CASES_TREE_IDX, forecaster, window, horizon);
+    }
+
+    public VirusForecast getNewDeathsForecast(String country, Forecaster forecaster, int window, int horizon) {
+        return getForecast(country, NEW_DEATHS_TREE_IDX, forecaster, window, horizon);
+    }
+
+    public VirusForecast getTotalDeathsForecast(String country, Forecaster forecaster, int window, int horizon) {
+        return getForecast(country, TOTAL_DEATHS_TREE_IDX, forecaster, window, horizon);
+    }
+
+    public VirusRollingSeries getNewCasesRollingStats(String country, int window) {
+        return getRollingStats(country, NEW_CASES_TREE_IDX, window, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public VirusRollingSeries getTotalCasesRollingStats(String country, int window) {
+        return getRollingStats(country, TOTAL_CASES_TREE_IDX, window, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public VirusRollingSeries getNewDeathsRollingStats(String country, int window) {
+        return getRollingStats(country, NEW_DEATHS_TREE_IDX, window, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public VirusRollingSeries getTotalDeathsRollingStats(String country, int window) {
+        return getRollingStats(country, TOTAL_DEATHS_TREE_IDX, window, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public VirusRollingSeries getNewCasesRollingStatsBetweenDates(String country, int window, int firstDate,
+                                                           int secondDate) {
+        return getRollingStats(country, NEW_CASES_TREE_IDX, window, firstDate, secondDate);
+    }
+
+    public VirusRollingSeries getTotalCasesRollingStatsBetweenDates(String country, int window, int firstDate,
+                                                           int secondDate) {
+        return getRollingStats(country, TOTAL_CASES_TREE_IDX, window, firstDate, secondDate);
+    }
+
+    public VirusRollingSeries getNewDeathsRollingStatsBetweenDates(String country, int window, int firstDate,
+                                                           int secondDate) {
+        return getRollingStats(country, NEW_DEATHS_TREE_IDX, window, firstDate, secondDate);
+    }
+
+    public VirusRollingSeries getTotalDeathsRollingStatsBetweenDates(String country, int window, int firstDate,
+                                                           int secondDate) {
+        return getRollingStats(country, TOTAL_DEATHS_TREE_IDX, window, firstDate, secondDate);
+    }
+
+    /**
+     * Get the stats of every country in a certain date, scanning the row of the date of each stat.
+     *
+     * @param epochDay The date, in days since the epoch.
+     * @param treeIdxs The tree indexes of the stats to get.
+     * @return The stats of the countries that have a record of any of those stats in that date.
+     */
+    public VirusCrossSection getCrossSection(int epochDay, int[] treeIdxs) {
+        CrossSectionIndex crossSections = getCrossSections();
+        RequestProfiler.phaseFinished(LOOKUP);
+
+        List<String> statTypes = new ArrayList<>(treeIdxs.length);
+        int[][] rows = new int[STAT_TYPES.size()][];
+        for (int treeIdx : treeIdxs) {
+            if (rows[treeIdx] == null) statTypes.add(STAT_TYPES.get(treeIdx));
+            rows[treeIdx] = crossSections.getRows(treeIdx);
+        }
+
+        List<CountryDayStats> countries = new ArrayList<>();
+        int offset = crossSections.getRowOffset(epochDay);
+
+        if (offset >= 0) {
+            for (int column = 0; column < crossSections.getColumns(); column++) {
+                int position = offset + column;
+                Integer newCases = crossSectionStat(rows[NEW_CASES_TREE_IDX], position);
+                Integer totalCases = crossSectionStat(rows[TOTAL_CASES_TREE_IDX], position);
+                Integer newDeaths = crossSectionStat(rows[NEW_DEATHS_TREE_IDX], position);
+                Integer totalDeaths = crossSectionStat(rows[TOTAL_DEATHS_TREE_IDX], position);
+
+                if (newCases != null || totalCases != null || newDeaths != null || totalDeaths != null) {
+                    countries.add(new CountryDayStats(CountryDictionary.getName(crossSections.getCountryId(column)),
+                            newCases, totalCases, newDeaths, totalDeaths));
+                }
+            }
+        }
+        RequestProfiler.phaseFinished(TRAVERSAL);
+
+        // only the days with records share a cached label, so that a client can't fill the cache with any day it asks for.
+        String date = offset >= 0 ? epochDayToString(epochDay) : localDateToString(LocalDate.ofEpochDay(epochDay));
+        return new VirusCrossSection(date, statTypes, countries);
+    }
+
     // --------------------------------------- TREE OPERATIONS --------------------------------------- //
 
+    // a stat of a country in the rows of a date, or null if it wasn't asked for or the country has no record of it.
+    private static Integer crossSectionStat(int[] rows, int position) {
+        return rows == null || rows[position] == CrossSectionIndex.MISSING ? null : rows[position];
+    }
+
+    /**
+     * Get the index of the stats of every country in each date. If it was not built at ingest, it gets built now.
+     *
+     * @return The index.
+     */
+    public CrossSectionIndex getCrossSections() {
+        CrossSectionIndex crossSections = this.crossSections;
+        if (crossSections == null) {
+            CountrySeries[] series = new CountrySeries[trees.length];
+            for (int countryId : countryIds) {
+                series[countryId] = getCountrySeries(countryId);
+            }
+
+            crossSections = CrossSectionIndex.build(countryIds, series);
+            this.crossSections = crossSections;
+        }
+
+        return crossSections;
+    }
+
+    /**
+     * Get the next day prediction of a stat by a tree index.
+     *
+     * @param treeIdx The index of the tree we want to get a prediction for.
+     * @return The prediction.
+     */
+    private int getPrediction(String country, int treeIdx) {
+        return getCountrySeries(country).getPrediction(treeIdx);
+    }
+
+    /**
+     * Get the predictions of a stat for the next days by a tree index. If the model and window are the default ones,
+     * the regression fitted at ingest is used, if not, the model is fitted to the latest days of the stat.
+     *
+     * @param treeIdx    The index of the tree we want to get the predictions for.
+     * @param forecaster The model that makes the predictions.
+     * @param window     The number of latest days the predictions are based on.
+     * @param horizon    The number of days to predict.
+     * @return The predictions.
+     */
+    private VirusForecast getForecast(String country, int treeIdx, Forecaster forecaster, int window, int horizon) {
+        CountrySeries countrySeries = getCountrySeries(country);
+        int totalIdx = treeIdx == NEW_CASES_TREE_IDX || treeIdx == TOTAL_CASES_TREE_IDX
+                ? TOTAL_CASES_TREE_IDX : TOTAL_DEATHS_TREE_IDX;
+        int[] totals = countrySeries.getStats(totalIdx);
+        int lastTotal = totals[totals.length - 1];
+        int[][] forecast = new int[3][horizon];
+
+        if (forecaster == Forecasters.DEFAULT && window == PREDICTION_DAYS) {
+            totalStatCasesForecast(countrySeries.getRegression(totalIdx), lastTotal, horizon, PREDICTION_CONFIDENCE,
+                    forecast);
+        } else {
+            forecaster.forecast(totals, totals.length, window, horizon, PREDICTION_CONFIDENCE, forecast);
+        }
+
+        if (totalIdx != treeIdx) forecast = newStatCasesForecast(forecast, lastTotal);
+        RequestProfiler.phaseFinished(TRAVERSAL);
+
+        List<ForecastPoint> points = new ArrayList<>(horizon);
+        for (int i = 0; i < horizon; i++) {
+            points.add(new ForecastPoint(localDateToString(countrySeries.getLastDate().plusDays(i + 1)),
+                    forecast[PREDICTED][i], forecast[LOWER_BOUND][i], forecast[UPPER_BOUND][i]));
+        }
+
+        return new VirusForecast(countrySeries.getCountry(), getVirusTree(country, treeIdx).getRoot().typeOfVirusStat(),
+                forecaster.getName(), Math.min(window, totals.length), PREDICTION_CONFIDENCE, points);
+    }
+
+    /**
+     * Get the rolling sums, means and maximums of a stat by a tree index, in a window precomputed at ingest.
+     *
+     * @param treeIdx    The index of the tree we want to get the rolling stats for.
+     * @param window     The number of days of the window.
+     * @param firstDate  The first date in the interval, in days since the epoch.
+     * @param secondDate The second date in the interval, in days since the epoch.
+     * @return The rolling stats.
+     * @throws IllegalArgumentException If the window wasn't precomputed.
+     */
+    private VirusRollingSeries getRollingStats(String country, int treeIdx, int window, int firstDate,
+                                               int secondDate) {
+        CountrySeries countrySeries = getCountrySeries(country);
+        RollingSeries rollingSeries = countrySeries.getRollingSeries(treeIdx, window);
+        if (rollingSeries == null) {
+            throw new IllegalArgumentException("The rolling series of " + window + " days weren't precomputed!");
+        }
+
+        int[] epochDays = countrySeries.getEpochDays();
+        int first = searchEpochDay(epochDays, firstDate);
+        int end = searchEpochDay(epochDays, secondDate + 1L);
+
+        List<RollingPoint> points = new ArrayList<>(Math.max(0, end - first));
+        for (int i = first; i < end; i++) {
+            points.add(new RollingPoint(epochDayToString(epochDays[i]), rollingSeries.getSum(i),
+                    rollingSeries.getMean(i), rollingSeries.getMax(i)));
+        }
+        RequestProfiler.phaseFinished(TRAVERSAL);
+
+        return new VirusRollingSeries(countrySeries.getCountry(),
+                getVirusTree(country, treeIdx).getRoot().typeOfVirusStat(), window, points);
+    }
+
+    // the position of the first date on or after the passed one (the number of dates if there's none).
+    private static int searchEpochDay(int[] epochDays, long epochDay) {
+        int low = 0;
+        int high = epochDays.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (epochDays[middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Get the series of a country. If they were not built at ingest, they get built now.
+     *
+     * @return The series of the country.
+     */
+    public CountrySeries getCountrySeries(String country) {
+        return getCountrySeries(resolveCountry(country));
+    }
+
+    /**
+     * Get the series of a country by its id. If they were not built at ingest, they get built now.
+     *
+     * @return The series of the country.
+     */
+    public CountrySeries getCountrySeries(int countryId) {
+        CountrySeries[] series = this.series;
+        CountrySeries countrySeries = countryId >= 0 && countryId < series.length ? series[countryId] : null;
+        if (countrySeries == null) countrySeries = SeriesIndexer.buildSeries(getTrees(countryId));
+        RequestProfiler.phaseFinished(LOOKUP);
+        return countrySeries;
+    }
+
+    /**
+     * Get a virus stat in a certain date by a tree index.
+     *
+     * @param treeIdx  The index of the tree we want to get the virus stat from.
+     * @param epochDay The date of the virus stat, in days since the epoch.
+     * @return The virus stat, or null if there's none in that date.
+     */
+    private VirusStatistic<?> getVirusStatInDate(String country, int treeIdx, int epochDay) {
+        VirusStatistic<?> stat = getVirusTree(country, treeIdx).get(epochDay);
+        RequestProfiler.phaseFinished(TRAVERSAL);
+        return stat;
+    }
+
     /**
      * Get a list of virus stats by a tree index (the information of that tree summarized in a {@link VirusStatistic}
      * object).
@@ -99,21 +530,25 @@ public class AVLVirusStatsTreesManager {
      */
     private List<? extends VirusStatistic<?>> getVirusStats(String country, int treeIdx) {
         AVLVirusStatsTree<?, ?> tree = getVirusTree(country, treeIdx);
-        if (!shouldBeInordered) return tree.preorder();
-        return tree.inorder();
+        List<? extends VirusStatistic<?>> stats = shouldBeInordered ? tree.inorder() : tree.preorder();
+        RequestProfiler.phaseFinished(TRAVERSAL);
+        return stats;
     }
 
     /**
      * Get a list of virus stats between two dates by a tree index.
      *
      * @param treeIdx    The index of the tree we want to get a list of virus stats for.
-     * @param firstDate  The first date in the interval.
-     * @param secondDate The second date in the interval.
+     * @param firstDate  The first date in the interval, in days since the epoch.
+     * @param secondDate The second date in the interval, in days since the epoch.
      * @return The list of virus stats.
      */
     private List<? extends VirusStatistic<?>> getVirusStatsBetweenDates(String country,
-                                                                        int treeIdx, long firstDate, long secondDate) {
-        return getVirusTree(country, treeIdx).getBetweenDates(new Date(firstDate), new Date(secondDate));
+                                                                        int treeIdx, int firstDate, int secondDate) {
+        List<? extends VirusStatistic<?>> stats =
+                getVirusTree(country, treeIdx).getBetweenDates(firstDate, secondDate);
+        RequestProfiler.phaseFinished(TRAVERSAL);
+        return stats;
     }
 
     /**
@@ -121,9 +556,11 @@ public class AVLVirusStatsTreesManager {
      *
      * @param treeIdx The index of the type of the tree.
      * @return The tree itself.
-     * @throws IllegalStateException If no country is currently selected.
+     * @throws NonExistentCountryException If the country has no records.
      */
     private AVLVirusStatsTree<?, ?> getVirusTree(String country, int treeIdx) {
-        return records.get(country.toLowerCase()).get(treeIdx);
+        AVLVirusStatsTree<?, ?> tree = getTrees(resolveCountry(country)).get(treeIdx);
+        RequestProfiler.phaseFinished(LOOKUP);
+        return tree;
     }
 }
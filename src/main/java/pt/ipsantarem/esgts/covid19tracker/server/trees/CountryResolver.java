@@ -0,0 +1,154 @@
+package pt.ipsantarem.esgts.covid19tracker.server.trees;
+
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.CountryDictionary;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resolves the names that the clients use for the countries of a tree manager: their names, in any case, their ISO
+ * codes, the aliases of the "countries.aliases" setting and any prefix that only one country starts with. Built once
+ * per tree manager, at ingest, as a sorted array of lower case keys, so that a lookup is a binary search and the
+ * countries starting with a prefix are a range of the array.
+ * <p>
+ * The names that resolve to no country are kept in a small negative cache, whose size is set by the
+ * "countries.negativeCacheSize" setting, so that repeating a bad lookup costs a single hash.
+ *
+ * @author José Simões
+ */
+class CountryResolver {
+    private static final int NEGATIVE_CACHE_SIZE = Integer.highestOneBit(
+            Math.max(1, ConfigUtils.getInt("countries.negativeCacheSize", 1024)));
+
+    // the aliases of the countries, mapped to their lower case names.
+    private static final Map<String, String> ALIASES = parseAliases(ConfigUtils.getString("countries.aliases", ""));
+
+    // the lower case keys, sorted, and the ids of their countries.
+    private final String[] keys;
+    private final int[] ids;
+
+    // the countries that can be resolved, indexed by their id.
+    private final boolean[] known;
+
+    // the names that resolved to no country, each in the slot of its hash. a racing write only loses a cached miss,
+    // since the slots hold immutable strings.
+    private final String[] misses = new String[NEGATIVE_CACHE_SIZE];
+
+    /**
+     * @param countryIds The ids of the countries to resolve.
+     * @param idsBound   The length of the arrays indexed by the id of the countries.
+     */
+    CountryResolver(int[] countryIds, int idsBound) {
+        known = new boolean[idsBound];
+        Map<String, Integer> idsByKey = new HashMap<>();
+
+        for (int countryId : countryIds) {
+            known[countryId] = true;
+            idsByKey.put(toKey(CountryDictionary.getName(countryId)), countryId);
+
+            String isoCode = CountryDictionary.getIsoCode(countryId);
+            if (isoCode != null) idsByKey.putIfAbsent(toKey(isoCode), countryId);
+        }
+
+        ALIASES.forEach((alias, name) -> {
+            Integer countryId = idsByKey.get(name);
+            if (countryId != null) idsByKey.putIfAbsent(alias, countryId);
+        });
+
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(idsByKey.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+
+        keys = new String[entries.size()];
+        ids = new int[entries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = entries.get(i).getKey();
+            ids[i] = entries.get(i).getValue();
+        }
+    }
+
+    /**
+     * Resolves a country by its name, ISO code, alias or unambiguous prefix, in any case.
+     *
+     * @param country What the client called the country.
+     * @return The id of the country, or -1 if it resolves to no country.
+     */
+    int resolve(String country) {
+        // the names as read, and their lower case forms, are resolved without lower casing them.
+        int countryId = CountryDictionary.resolve(country);
+        if (countryId >= 0 && countryId < known.length && known[countryId]) return countryId;
+
+        int slot = country.hashCode() & (misses.length - 1);
+        if (country.equals(misses[slot])) return -1;
+
+        String key = toKey(country);
+        int first = search(key);
+        if (first < keys.length && keys[first].equals(key)) return ids[first];
+
+        // a prefix only resolves if every key that starts with it is of the same country.
+        countryId = -1;
+        if (!key.isEmpty()) {
+            for (int i = first; i < keys.length && keys[i].startsWith(key); i++) {
+                if (countryId >= 0 && countryId != ids[i]) {
+                    countryId = -1;
+                    break;
+                }
+                countryId = ids[i];
+            }
+        }
+
+        if (countryId < 0) misses[slot] = country;
+        return countryId;
+    }
+
+    /**
+     * Gets the countries with a name, ISO code or alias that starts with a prefix, in any case.
+     *
+     * @param prefix The prefix.
+     * @param limit  The maximum number of countries.
+     * @return The names of the countries, in alphabetical order.
+     */
+    List<String> complete(String prefix, int limit) {
+        String key = toKey(prefix);
+        List<String> countries = new ArrayList<>();
+        boolean[] added = new boolean[known.length];
+
+        for (int i = search(key); i < keys.length && keys[i].startsWith(key); i++) {
+            if (!added[ids[i]]) {
+                added[ids[i]] = true;
+                countries.add(CountryDictionary.getName(ids[i]));
+            }
+        }
+
+        countries.sort(String.CASE_INSENSITIVE_ORDER);
+        return countries.size() > limit ? new ArrayList<>(countries.subList(0, limit)) : countries;
+    }
+
+    // the position of the first key that is not smaller than the passed one.
+    private int search(String key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static String toKey(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // parses the aliases setting: alias:name pairs, separated by semicolons.
+    private static Map<String, String> parseAliases(String aliases) {
+        Map<String, String> namesByAlias = new HashMap<>();
+
+        for (String aliasAndName : aliases.split(";")) {
+            String[] pair = aliasAndName.split(":");
+            if (pair.length != 2) continue;
+
+            namesByAlias.put(toKey(pair[0]), toKey(pair[1]));
+        }
+
+        return namesByAlias;
+    }
+}
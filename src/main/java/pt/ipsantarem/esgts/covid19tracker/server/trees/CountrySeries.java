@@ -0,0 +1,96 @@
+package pt.ipsantarem.esgts.covid19tracker.server.trees;
+
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.SlidingWindowRegression;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.CountryDictionary;
+
+import java.time.LocalDate;
+
+/**
+ * The records of a country as primitive arrays ordered by date, one for each tree (indexed by the tree indexes of the
+ * {@link AVLVirusStatsTreesManager}), together with their rolling series and the forecasting state derived from them.
+ * Built at ingest by the {@link SeriesIndexer}, so that the requests that need whole
+ * series don't have to traverse the trees.
+ *
+ * @author José Simões
+ */
+public class CountrySeries {
+    private final int countryId;
+    private final LocalDate lastDate;
+    private final int[] epochDays;
+    private final int[][] stats;
+    private final RollingSeries[][] rollingSeries;
+    private final SlidingWindowRegression[] regressions;
+    private final int[] predictions;
+
+    /**
+     * @param countryId   The id of the country, in the {@link CountryDictionary}.
+     * @param lastDate    The date of the latest record.
+     * @param epochDays   The dates of the records, in days since the epoch, in ascending order.
+     * @param stats       The stats of each tree, ordered by date.
+     * @param rolling     The rolling series of each tree, one for each precomputed window.
+     * @param regressions The regressions of the default prediction window, fitted to the logarithm of the total stats
+     *                    (null for the trees of new stats).
+     * @param predictions The next day predictions.
+     */
+    public CountrySeries(int countryId, LocalDate lastDate, int[] epochDays, int[][] stats, RollingSeries[][] rolling,
+                         SlidingWindowRegression[] regressions, int[] predictions) {
+        this.countryId = countryId;
+        this.lastDate = lastDate;
+        this.epochDays = epochDays;
+        this.stats = stats;
+        this.rollingSeries = rolling;
+        this.regressions = regressions;
+        this.predictions = predictions;
+    }
+
+    public int getCountryId() {
+        return countryId;
+    }
+
+    /**
+     * @return The name of the country, resolved by its id.
+     */
+    public String getCountry() {
+        return CountryDictionary.getName(countryId);
+    }
+
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    public int getLength() {
+        return stats[0].length;
+    }
+
+    /**
+     * @return The dates of the records, in days since the epoch, in ascending order.
+     */
+    public int[] getEpochDays() {
+        return epochDays;
+    }
+
+    public int[] getStats(int treeIdx) {
+        return stats[treeIdx];
+    }
+
+    /**
+     * @param treeIdx The index of the tree.
+     * @param window  The number of days of the window.
+     * @return The rolling series of the tree, or null if the window isn't precomputed.
+     */
+    public RollingSeries getRollingSeries(int treeIdx, int window) {
+        for (RollingSeries series : rollingSeries[treeIdx]) {
+            if (series.getWindow() == window) return series;
+        }
+
+        return null;
+    }
+
+    public SlidingWindowRegression getRegression(int treeIdx) {
+        return regressions[treeIdx];
+    }
+
+    public int getPrediction(int treeIdx) {
+        return predictions[treeIdx];
+    }
+}
@@ -0,0 +1,164 @@
+package pt.ipsantarem.esgts.covid19tracker.server.trees;
+
+import java.util.Arrays;
+
+/**
+ * The records of every country transposed by date: for each stat, a single array with a row for each day between the
+ * first and the last date of the records, and a column for each country, in the order of the records. Built at ingest
+ * from the {@link CountrySeries} of the countries, so that the stats of every country in a date are a single scan of
+ * a contiguous row of each stat, instead of a tree search (and a virus statistic) for each country and stat.
+ * <p>
+ * An index can be built from the previous one: if it has the same countries and the same first date, its rows are
+ * copied and only the columns of the countries whose series changed are written again.
+ *
+ * @author José Simões
+ */
+public class CrossSectionIndex {
+
+    /**
+     * The value of the days a country has no record of.
+     */
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    // the number of stats, one for each tree index.
+    private static final int STAT_TYPES = 4;
+
+    private final int firstEpochDay;
+    private final int days;
+    private final int[] countryIds; // the id of the country of each column.
+    private final CountrySeries[] columnSeries; // the series each column was written from.
+    private final int[][] stats; // the rows of each stat, indexed by the tree indexes.
+
+    private CrossSectionIndex(int firstEpochDay, int days, int[] countryIds, CountrySeries[] columnSeries) {
+        int cells;
+        try {
+            cells = Math.multiplyExact(days, countryIds.length);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("The " + days + " days of the " + countryIds.length
+                    + " countries are too many to index by date!", e);
+        }
+
+        this.firstEpochDay = firstEpochDay;
+        this.days = days;
+        this.countryIds = countryIds;
+        this.columnSeries = columnSeries;
+        this.stats = new int[STAT_TYPES][cells];
+    }
+
+    /**
+     * Transposes the series of the countries.
+     *
+     * @param countryIds The ids of the countries, in the order of the records.
+     * @param series     The series of the countries, indexed by the id of the country.
+     * @return The index.
+     * @throws IllegalArgumentException If there are too many days and countries to index.
+     */
+    public static CrossSectionIndex build(int[] countryIds, CountrySeries[] series) {
+        return build(countryIds, series, null);
+    }
+
+    /**
+     * Transposes the series of the countries, copying the columns of the countries whose series didn't change from
+     * the previous index.
+     *
+     * @param countryIds The ids of the countries, in the order of the records.
+     * @param series     The series of the countries, indexed by the id of the country.
+     * @param previous   The index of the previous records, or null to transpose every country.
+     * @return The index.
+     * @throws IllegalArgumentException If there are too many days and countries to index.
+     */
+    public static CrossSectionIndex build(int[] countryIds, CountrySeries[] series, CrossSectionIndex previous) {
+        int firstEpochDay = Integer.MAX_VALUE;
+        int lastEpochDay = Integer.MIN_VALUE;
+
+        for (int countryId : countryIds) {
+            int[] epochDays = series[countryId].getEpochDays();
+            firstEpochDay = Math.min(firstEpochDay, epochDays[0]);
+            lastEpochDay = Math.max(lastEpochDay, epochDays[epochDays.length - 1]);
+        }
+
+        int days = countryIds.length > 0 ? lastEpochDay - firstEpochDay + 1 : 0;
+        CountrySeries[] columnSeries = new CountrySeries[countryIds.length];
+        for (int column = 0; column < countryIds.length; column++) {
+            columnSeries[column] = series[countryIds[column]];
+        }
+
+        CrossSectionIndex index = new CrossSectionIndex(firstEpochDay, days, countryIds, columnSeries);
+
+        // the rows are laid out by date, so the previous rows are the first rows of the new ones as long as the
+        // columns and the first date are the same, and the dates were only appended.
+        boolean reusable = previous != null && previous.firstEpochDay == firstEpochDay && previous.days <= days
+                && Arrays.equals(previous.countryIds, countryIds);
+
+        for (int treeIdx = 0; treeIdx < STAT_TYPES; treeIdx++) {
+            int[] rows = index.stats[treeIdx];
+            int copied = 0;
+            if (reusable) {
+                copied = previous.stats[treeIdx].length;
+                System.arraycopy(previous.stats[treeIdx], 0, rows, 0, copied);
+            }
+            Arrays.fill(rows, copied, rows.length, MISSING);
+        }
+
+        for (int column = 0; column < countryIds.length; column++) {
+            CountrySeries countrySeries = columnSeries[column];
+            if (reusable && previous.columnSeries[column] == countrySeries) continue;
+
+            int[] epochDays = countrySeries.getEpochDays();
+
+            for (int treeIdx = 0; treeIdx < STAT_TYPES; treeIdx++) {
+                int[] countryStats = countrySeries.getStats(treeIdx);
+                int[] rows = index.stats[treeIdx];
+
+                // the copied stats of a changed country are cleared, in case it no longer has a record of some day.
+                if (reusable) {
+                    for (int day = 0; day < previous.days; day++) {
+                        rows[day * countryIds.length + column] = MISSING;
+                    }
+                }
+
+                for (int i = 0; i < countryStats.length; i++) {
+                    rows[(epochDays[i] - firstEpochDay) * countryIds.length + column] = countryStats[i];
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * @return The number of countries, the length of each row.
+     */
+    public int getColumns() {
+        return countryIds.length;
+    }
+
+    /**
+     * @param column A column of the rows.
+     * @return The id of the country of the column.
+     */
+    public int getCountryId(int column) {
+        return countryIds[column];
+    }
+
+    /**
+     * Gets where the row of a date starts in the rows of the stats.
+     *
+     * @param epochDay The date, in days since the epoch.
+     * @return The offset of the row, or -1 if the date is outside the records.
+     */
+    public int getRowOffset(int epochDay) {
+        long day = (long) epochDay - firstEpochDay;
+        return day >= 0 && day < days ? (int) day * countryIds.length : -1;
+    }
+
+    /**
+     * Gets the rows of a stat, one after the other. The array must not be changed.
+     *
+     * @param treeIdx The tree index of the stat.
+     * @return The rows, with {@link #MISSING} in the days a country has no record of.
+     */
+    public int[] getRows(int treeIdx) {
+        return stats[treeIdx];
+    }
+}
@@ -0,0 +1,124 @@
+package pt.ipsantarem.esgts.covid19tracker.server.trees;
+
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.VirusStatsNode;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.utils.DateUtils.epochDayToString;
+
+/**
+ * The nodes of an {@link AVLVirusStatsTree} laid out in arrays, ordered by date, with their formatted dates and the
+ * positions of the nodes in the preorder and postorder traversals. Built once per tree, on its first read after a
+ * change, so the reads that follow are served by {@link StatisticsView} objects over the arrays without traversing
+ * the tree or copying its nodes.
+ *
+ * @param <E> The stat that the nodes represent.
+ */
+class FlattenedTree<E> {
+    private final VirusStatsNode<E>[] nodes;
+    private final int[] epochDays;
+    private final String[] dates;
+    private final int[] preorder;
+    private final int[] postorder;
+    private final String country;
+    private final String statType;
+
+    // the next positions of the preorder and postorder traversals, while the tree is flattened.
+    private int nextPreorder;
+    private int nextPostorder;
+
+    @SuppressWarnings("unchecked")
+    FlattenedTree(VirusStatsNode<E> root) {
+        int size = size(root);
+        this.nodes = (VirusStatsNode<E>[]) new VirusStatsNode<?>[size];
+        this.epochDays = new int[size];
+        this.dates = new String[size];
+        this.preorder = new int[size];
+        this.postorder = new int[size];
+        this.country = root != null ? root.getCountry() : null;
+        this.statType = root != null ? root.typeOfVirusStat() : null;
+
+        flatten(root, 0);
+    }
+
+    /**
+     * @param epochDay A date, in days since the epoch.
+     * @return The position of the node of the date, or -1 if there's none.
+     */
+    int indexOf(int epochDay) {
+        int index = search(epochDay);
+        return index < epochDays.length && epochDays[index] == epochDay ? index : -1;
+    }
+
+    /**
+     * @param epochDay A date, in days since the epoch.
+     * @return The position of the first node on or after the date (the number of nodes if there's none).
+     */
+    int search(long epochDay) {
+        int low = 0;
+        int high = epochDays.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (epochDays[middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    int size() {
+        return nodes.length;
+    }
+
+    VirusStatsNode<E> getNode(int index) {
+        return nodes[index];
+    }
+
+    String getDate(int index) {
+        return dates[index];
+    }
+
+    int[] getPreorder() {
+        return preorder;
+    }
+
+    int[] getPostorder() {
+        return postorder;
+    }
+
+    String getCountry() {
+        return country;
+    }
+
+    String getStatType() {
+        return statType;
+    }
+
+    // places the node at its position by date, which follows the nodes of its left subtree, and records that position
+    // in the traversals. returns the number of nodes of the subtree.
+    @SuppressWarnings("unchecked")
+    private int flatten(VirusStatsNode<E> node, int first) {
+        if (node == null) return 0;
+
+        int preorderPosition = nextPreorder++;
+        int leftSize = flatten((VirusStatsNode<E>) node.getLeft(), first);
+        int index = first + leftSize;
+
+        nodes[index] = node;
+        epochDays[index] = node.getEpochDay();
+        dates[index] = epochDayToString(node.getEpochDay());
+        preorder[preorderPosition] = index;
+
+        int rightSize = flatten((VirusStatsNode<E>) node.getRight(), index + 1);
+        postorder[nextPostorder++] = index;
+
+        return leftSize + 1 + rightSize;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int size(VirusStatsNode<?> node) {
+        return node == null ? 0 : 1 + size((VirusStatsNode<?>) node.getLeft()) + size((VirusStatsNode<?>) node.getRight());
+    }
+}
@@ -0,0 +1,104 @@
+package pt.ipsantarem.esgts.covid19tracker.server.trees;
+
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.RollingWindow;
+
+/**
+ * The sums, means and maximums of the stats of a country in a window of a number of days ending at each day of its
+ * records, ordered by date, like the stats of its {@link CountrySeries}. Built at ingest by rolling a
+ * {@link RollingWindow} over the stats, one day at a time, or, when days are appended to the records, by rolling it
+ * only over the appended days, starting from the previous days it still covers.
+ *
+ * @author José Simões
+ */
+public class RollingSeries {
+    private final int window;
+    private final long[] sums;
+    private final int[] sizes;
+    private final int[] maxes;
+
+    private RollingSeries(int window, int length) {
+        this.window = window;
+        this.sums = new long[length];
+        this.sizes = new int[length];
+        this.maxes = new int[length];
+    }
+
+    /**
+     * Rolls a window over the stats of a series.
+     *
+     * @param window    The number of days of the window.
+     * @param epochDays The dates of the stats, in days since the epoch, in ascending order.
+     * @param stats     The stats.
+     * @return The rolling series.
+     */
+    public static RollingSeries of(int window, int[] epochDays, int[] stats) {
+        RollingSeries series = new RollingSeries(window, stats.length);
+        series.roll(new RollingWindow(window), epochDays, stats, 0);
+        return series;
+    }
+
+    /**
+     * Extends the rolling series of a series with the days appended to it. The rolling stats of the previous days are
+     * copied, and the window starts from the previous days it still covers, so only the appended days are rolled
+     * over.
+     *
+     * @param previous      The rolling series of the previous days.
+     * @param epochDays     The dates of the stats, in days since the epoch, in ascending order, starting with the
+     *                      previous days.
+     * @param stats         The stats, starting with the stats of the previous days.
+     * @param firstAppended The index of the first appended day, the number of previous days.
+     * @return The rolling series.
+     */
+    public static RollingSeries extend(RollingSeries previous, int[] epochDays, int[] stats, int firstAppended) {
+        RollingSeries series = new RollingSeries(previous.window, stats.length);
+        System.arraycopy(previous.sums, 0, series.sums, 0, firstAppended);
+        System.arraycopy(previous.sizes, 0, series.sizes, 0, firstAppended);
+        System.arraycopy(previous.maxes, 0, series.maxes, 0, firstAppended);
+
+        // the window starts with the previous days it covered at the latest previous day.
+        int firstInWindow = firstAppended;
+        while (firstInWindow > 0 && epochDays[firstInWindow - 1] > epochDays[firstAppended - 1] - previous.window) {
+            firstInWindow--;
+        }
+
+        RollingWindow rollingWindow = new RollingWindow(previous.window);
+        for (int i = firstInWindow; i < firstAppended; i++) {
+            rollingWindow.add(epochDays[i], stats[i]);
+        }
+
+        series.roll(rollingWindow, epochDays, stats, firstAppended);
+        return series;
+    }
+
+    // rolls the window over the stats from a day on, recording its sum, size and maximum at each day.
+    private void roll(RollingWindow rollingWindow, int[] epochDays, int[] stats, int from) {
+        for (int i = from; i < stats.length; i++) {
+            rollingWindow.add(epochDays[i], stats[i]);
+            sums[i] = rollingWindow.getSum();
+            sizes[i] = rollingWindow.getSize();
+            maxes[i] = rollingWindow.getMax();
+        }
+    }
+
+    /**
+     * @return The number of days of the window.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    public long getSum(int index) {
+        return sums[index];
+    }
+
+    /**
+     * @return The mean of the stats of the days of the window that have one.
+     */
+    public double getMean(int index) {
+        return (double) sums[index] / sizes[index];
+    }
+
+    public int getMax(int index) {
+        return maxes[index];
+    }
+}
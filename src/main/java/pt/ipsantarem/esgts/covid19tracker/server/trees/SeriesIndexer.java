@@ -0,0 +1,225 @@
+package pt.ipsantarem.esgts.covid19tracker.server.trees;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.ForecastStage;
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.SlidingWindowRegression;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.IngestEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.VirusStatsNode;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The indexing stage of the ingest. Runs after new records are ingested, building the {@link CountrySeries} of every
+ * country: the primitive arrays of its stats, their rolling sums, means and maximums in the windows of the
+ * "rolling.windows" setting, and the forecasts of the {@link ForecastStage}, so that the predict and rolling endpoints
+ * only have to look them up. Only the countries whose records changed get indexed again, and the ones whose changes
+ * are only appended days have their previous rolling series and regressions extended with just those days. The
+ * countries are split between the threads of a fork/join pool, whose parallelism is set by the "series.parallelism"
+ * setting (the number of available processors by default). The series of every country are then transposed by date
+ * into a {@link CrossSectionIndex}, for the date endpoint, copying the columns of the unchanged countries from the
+ * previous index.
+ *
+ * @author José Simões
+ */
+public class SeriesIndexer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeriesIndexer.class);
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            ConfigUtils.getInt("series.parallelism", Runtime.getRuntime().availableProcessors()));
+
+    // the number of countries a task indexes by itself instead of splitting them into subtasks.
+    private static final int COUNTRIES_PER_TASK = 8;
+
+    // the number of days of the windows of the rolling series.
+    private static final int[] ROLLING_WINDOWS = parseWindows(ConfigUtils.getString("rolling.windows", "7,14"));
+
+    /**
+     * Builds the series and the cross sections of every country of the tree manager and stores them in it.
+     *
+     * @param treeManager The tree manager with the records to index.
+     */
+    public static void index(AVLVirusStatsTreesManager treeManager) {
+        index(treeManager, null);
+    }
+
+    /**
+     * Builds the series of the countries of the tree manager that changed since the previous records, and the cross
+     * sections of every country, and stores them in it. The series of the countries that still have the same trees as
+     * in the previous tree manager (the ones that weren't ingested again) are taken from it.
+     *
+     * @param treeManager         The tree manager with the records to index.
+     * @param previousTreeManager The tree manager with the previous records, or null to index every country.
+     */
+    public static void index(AVLVirusStatsTreesManager treeManager, AVLVirusStatsTreesManager previousTreeManager) {
+        IngestEvent indexEvent = IngestEvent.start(IngestEvent.INDEX);
+
+        int[] countryIds = treeManager.getCountryIds();
+        CountrySeries[] series = new CountrySeries[treeManager.getCountryIdsBound()];
+
+        // the series of the countries whose trees are the same ones are taken from the previous tree manager.
+        int unchangedCountries = 0;
+        if (previousTreeManager != null) {
+            for (int countryId : countryIds) {
+                if (previousTreeManager.getTrees(countryId) == treeManager.getTrees(countryId)) {
+                    series[countryId] = previousTreeManager.getCountrySeries(countryId);
+                    unchangedCountries++;
+                }
+            }
+        }
+
+        POOL.invoke(new SeriesTask(treeManager, previousTreeManager, countryIds, series, 0, countryIds.length));
+
+        treeManager.setSeries(series);
+        treeManager.setCrossSections(CrossSectionIndex.build(countryIds, series,
+                previousTreeManager != null ? previousTreeManager.getCrossSections() : null));
+        indexEvent.finish(0, countryIds.length - unchangedCountries);
+
+        LOGGER.info("Indexed {} countries, reused the series of {} unchanged countries!",
+                countryIds.length - unchangedCountries, unchangedCountries);
+    }
+
+    /**
+     * Builds the series of a country.
+     *
+     * @param trees The trees of the country, indexed by the tree indexes.
+     * @return The series.
+     */
+    public static CountrySeries buildSeries(List<AVLVirusStatsTree<?, ?>> trees) {
+        return buildSeries(trees, null);
+    }
+
+    /**
+     * Builds the series of a country, extending its previous series if the records only have appended days since
+     * them: the rolling series and the regressions of the previous series are only rolled and fed over the appended
+     * days.
+     *
+     * @param trees    The trees of the country, indexed by the tree indexes.
+     * @param previous The series of the previous records of the country, or null to build the series from scratch.
+     * @return The series.
+     */
+    @SuppressWarnings("unchecked")
+    public static CountrySeries buildSeries(List<AVLVirusStatsTree<?, ?>> trees, CountrySeries previous) {
+        List<? extends VirusStatsNode<?>> nodes = trees.get(0).getNodes();
+        int[] epochDays = new int[nodes.size()];
+        for (int i = 0; i < epochDays.length; i++) {
+            epochDays[i] = nodes.get(i).getEpochDay();
+        }
+
+        int[][] stats = new int[trees.size()][];
+        for (int treeIdx = 0; treeIdx < stats.length; treeIdx++) {
+            List<Integer> treeStats = ((AVLVirusStatsTree<Integer, ?>) trees.get(treeIdx)).getStats();
+            stats[treeIdx] = new int[treeStats.size()];
+
+            for (int i = 0; i < stats[treeIdx].length; i++) {
+                stats[treeIdx][i] = treeStats.get(i);
+            }
+        }
+
+        // the first day that isn't in the previous series, or 0 if the previous days changed.
+        int firstAppended = previous != null && isExtension(previous, epochDays, stats) ? previous.getLength() : 0;
+
+        RollingSeries[][] rolling = new RollingSeries[stats.length][ROLLING_WINDOWS.length];
+        for (int treeIdx = 0; treeIdx < stats.length; treeIdx++) {
+            for (int w = 0; w < ROLLING_WINDOWS.length; w++) {
+                rolling[treeIdx][w] = firstAppended > 0
+                        ? RollingSeries.extend(previous.getRollingSeries(treeIdx, ROLLING_WINDOWS[w]),
+                                epochDays, stats[treeIdx], firstAppended)
+                        : RollingSeries.of(ROLLING_WINDOWS[w], epochDays, stats[treeIdx]);
+            }
+        }
+
+        SlidingWindowRegression[] regressions = ForecastStage.fitRegressions(stats,
+                firstAppended > 0 ? previous : null, firstAppended);
+        int[] predictions = ForecastStage.predict(stats, regressions);
+
+        AVLVirusStatsTree<?, ?> anyTree = trees.get(0);
+        return new CountrySeries(anyTree.getRoot().getCountryId(), anyTree.getLast().getLocalDate(), epochDays,
+                stats, rolling, regressions, predictions);
+    }
+
+    // checks if the previous series are the first days of the new records, with the same stats.
+    private static boolean isExtension(CountrySeries previous, int[] epochDays, int[][] stats) {
+        int length = previous.getLength();
+        if (length > epochDays.length) return false;
+
+        int[] previousEpochDays = previous.getEpochDays();
+        for (int i = 0; i < length; i++) {
+            if (previousEpochDays[i] != epochDays[i]) return false;
+        }
+
+        for (int treeIdx = 0; treeIdx < stats.length; treeIdx++) {
+            int[] previousStats = previous.getStats(treeIdx);
+            for (int i = 0; i < length; i++) {
+                if (previousStats[i] != stats[treeIdx][i]) return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The number of days of the windows of the rolling series, in the order of the "rolling.windows" setting.
+     */
+    public static int[] getRollingWindows() {
+        return ROLLING_WINDOWS.clone();
+    }
+
+    // parses the windows setting: numbers of days separated by commas.
+    private static int[] parseWindows(String windows) {
+        String[] days = windows.split(",");
+        int[] parsed = new int[days.length];
+
+        for (int i = 0; i < days.length; i++) {
+            parsed[i] = Integer.parseInt(days[i].trim());
+            if (parsed[i] < 1) throw new IllegalArgumentException("A rolling window must have at least one day!");
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Builds the series of a range of countries, splitting it in half until it's small enough.
+     */
+    private static class SeriesTask extends RecursiveAction {
+        private final AVLVirusStatsTreesManager treeManager;
+        private final AVLVirusStatsTreesManager previousTreeManager;
+        private final int[] countryIds;
+        private final CountrySeries[] series;
+        private final int from;
+        private final int to;
+
+        private SeriesTask(AVLVirusStatsTreesManager treeManager, AVLVirusStatsTreesManager previousTreeManager,
+                           int[] countryIds, CountrySeries[] series, int from, int to) {
+            this.treeManager = treeManager;
+            this.previousTreeManager = previousTreeManager;
+            this.countryIds = countryIds;
+            this.series = series;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > COUNTRIES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SeriesTask(treeManager, previousTreeManager, countryIds, series, from, middle),
+                        new SeriesTask(treeManager, previousTreeManager, countryIds, series, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                int countryId = countryIds[i];
+                if (series[countryId] == null) {
+                    CountrySeries previous = previousTreeManager != null
+                            && previousTreeManager.getTrees(countryId) != null
+                            ? previousTreeManager.getCountrySeries(countryId) : null;
+                    series[countryId] = buildSeries(treeManager.getTrees(countryId), previous);
+                }
+            }
+        }
+    }
+}
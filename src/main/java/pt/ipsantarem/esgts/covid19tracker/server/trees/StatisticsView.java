@@ -0,0 +1,79 @@
+package pt.ipsantarem.esgts.covid19tracker.server.trees;
+
+import pt.ipsantarem.esgts.covid19tracker.server.models.VirusStatistic;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.VirusStatsNode;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read only list of the virus statistics of a tree, in one of its traversal orders or in a range of dates, over the
+ * arrays of its {@link FlattenedTree}. Creating the view copies nothing; each statistic is created when it's read,
+ * with the formatted date and the stat type shared by the whole tree, so the statistics of a response only live while
+ * it's serialized.
+ *
+ * @param <E> The type of statistic of the list.
+ */
+class StatisticsView<E> extends AbstractList<VirusStatistic<E>> implements RandomAccess {
+    private final FlattenedTree<E> tree;
+    // the positions (by date) of the nodes in the order of the view, or null to follow the order by date.
+    private final int[] order;
+    private final int first;
+    private final int size;
+
+    /**
+     * @param tree  The flattened tree.
+     * @param order The positions (by date) of the nodes in the order of the view, or null to order them by date.
+     * @param first The position of the first statistic of the view.
+     * @param size  The number of statistics of the view.
+     */
+    StatisticsView(FlattenedTree<E> tree, int[] order, int first, int size) {
+        this.tree = tree;
+        this.order = order;
+        this.first = first;
+        this.size = size;
+    }
+
+    @Override
+    public VirusStatistic<E> get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        int position = order != null ? order[first + index] : first + index;
+        return statistic(tree, position);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param tree     The flattened tree.
+     * @param position The position (by date) of a node.
+     * @return The statistic of the node.
+     */
+    static <E> VirusStatistic<E> statistic(FlattenedTree<E> tree, int position) {
+        VirusStatsNode<E> node = tree.getNode(position);
+        return new TreeStatistic<>(tree.getDate(position), tree.getCountry(), node.getNodeInformation(),
+                tree.getStatType());
+    }
+
+    /**
+     * A statistic of a tree, which keeps the stat type shared by the tree instead of a reference to it.
+     */
+    private static class TreeStatistic<E> extends VirusStatistic<E> {
+        private final String statType;
+
+        private TreeStatistic(String date, String country, E stat, String statType) {
+            super(date, country, stat);
+            this.statType = statType;
+        }
+
+        @Override
+        public String statType() {
+            return statType;
+        }
+    }
+}
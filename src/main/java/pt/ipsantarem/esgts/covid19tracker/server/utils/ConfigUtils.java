@@ -0,0 +1,98 @@
+package pt.ipsantarem.esgts.covid19tracker.server.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Utility class for reading the server settings. A setting is looked up, in order, on the JVM system properties
+ * (for example, -Dprofiling.enabled=true), on the environment variables (the same key in upper case with the dots
+ * replaced by underscores, for example, PROFILING_ENABLED=true) and finally on the application.properties file.
+ */
+public class ConfigUtils {
+    private static final Properties PROPERTIES = loadProperties();
+
+    /**
+     * Gets a setting as a String.
+     *
+     * @param key          The key of the setting.
+     * @param defaultValue The value to return if the setting is not defined.
+     * @return The setting value, or the default value if it's not defined.
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+
+        if (value == null) {
+            value = System.getenv(key.toUpperCase().replace('.', '_'));
+        }
+
+        if (value == null) {
+            value = PROPERTIES.getProperty(key);
+        }
+
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+
+    /**
+     * Gets a setting as a boolean.
+     *
+     * @param key          The key of the setting.
+     * @param defaultValue The value to return if the setting is not defined.
+     * @return The setting value, or the default value if it's not defined.
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    /**
+     * Gets a setting as an int.
+     *
+     * @param key          The key of the setting.
+     * @param defaultValue The value to return if the setting is not defined.
+     * @return The setting value, or the default value if it's not defined.
+     * @throws IllegalArgumentException If the setting is defined but it's not a number.
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("The setting " + key + " must be a number, but it was " + value + "!", nfe);
+        }
+    }
+
+    /**
+     * Gets a setting as a long.
+     *
+     * @param key          The key of the setting.
+     * @param defaultValue The value to return if the setting is not defined.
+     * @return The setting value, or the default value if it's not defined.
+     * @throws IllegalArgumentException If the setting is defined but it's not a number.
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+
+        try {
+            return value != null ? Long.parseLong(value) : defaultValue;
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("The setting " + key + " must be a number, but it was " + value + "!", nfe);
+        }
+    }
+
+    // loads the application.properties file from the classpath, if there's one.
+    private static Properties loadProperties() {
+        Properties properties = new Properties();
+
+        try (InputStream is = ConfigUtils.class.getResourceAsStream("/application.properties")) {
+            if (is != null) {
+                properties.load(is);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return properties;
+    }
+}
@@ -2,16 +2,23 @@ package pt.ipsantarem.esgts.covid19tracker.server.utils;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Utility class for various date related tasks.
  */
 public class DateUtils {
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    // the formatted dates, by their days since the epoch, shared by every record of the same day.
+    private static final ConcurrentMap<Integer, String> DATE_LABELS = new ConcurrentHashMap<>();
 
     /**
      * Parses a String to a {@link java.time.LocalDate}
@@ -65,7 +72,85 @@ public class DateUtils {
      * @return The Date converted to a String
      */
     public static String localDateToString(Date date) {
-        LocalDate localDate = dateToLocalDate(date);
+        return localDateToString(dateToLocalDate(date));
+    }
+
+    /**
+     * Converts a {@link java.time.LocalDate} to a {@link String}
+     *
+     * @param localDate The LocalDate param
+     * @return The LocalDate converted to a String
+     */
+    public static String localDateToString(LocalDate localDate) {
         return localDate.getDayOfMonth() + "/" + localDate.getMonthValue() + "/" + localDate.getYear();
     }
+
+    // ------------------------------------ EPOCH DAYS ------------------------------------ //
+
+    /**
+     * Parses an ISO date (yyyy-MM-dd), such as the ones of the stats files, to the number of days since the epoch.
+     * Faster than a date format, since the digits are read in place.
+     *
+     * @param date The ISO date
+     * @return The days since the epoch (1970-01-01)
+     * @throws DateTimeException If the date isn't a valid ISO date.
+     */
+    public static int parseIsoEpochDay(String date) {
+        if (date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            throw new DateTimeException("Invalid ISO date " + date + "!");
+        }
+
+        return (int) LocalDate.of(digits(date, 0, 4), digits(date, 5, 7), digits(date, 8, 10)).toEpochDay();
+    }
+
+    /**
+     * Parses a date supplied to the API, which can either be an ISO date (yyyy-MM-dd) or a number of milliseconds since
+     * the epoch. The milliseconds are normalized to the UTC day they fall in, whatever the time zone of the server.
+     *
+     * @param date The ISO date or the milliseconds.
+     * @return The days since the epoch (1970-01-01)
+     * @throws IllegalArgumentException If the date is neither.
+     */
+    public static int parseEpochDay(String date) {
+        try {
+            if (date.indexOf('-', 1) > 0) return parseIsoEpochDay(date);
+            return Math.toIntExact(Math.floorDiv(Long.parseLong(date), MILLIS_PER_DAY));
+        } catch (DateTimeException | ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("The date " + date + " must be an ISO date (yyyy-MM-dd) or a number of "
+                    + "milliseconds!", e);
+        }
+    }
+
+    /**
+     * @param epochDay The days since the epoch (1970-01-01)
+     * @return The milliseconds since the epoch of the UTC midnight of the day.
+     */
+    public static long epochDayToMillis(int epochDay) {
+        return epochDay * MILLIS_PER_DAY;
+    }
+
+    /**
+     * Converts a number of days since the epoch to a {@link String}, the same way as
+     * {@link #localDateToString(LocalDate)}, but formatting each day only once and returning the same String for it
+     * afterwards. The formatted days are never evicted, so only the days of the records should be formatted with it,
+     * never a day that comes from a request.
+     *
+     * @param epochDay The days since the epoch (1970-01-01)
+     * @return The day converted to a String
+     */
+    public static String epochDayToString(int epochDay) {
+        return DATE_LABELS.computeIfAbsent(epochDay, day -> localDateToString(LocalDate.ofEpochDay(day)));
+    }
+
+    private static int digits(String date, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char digit = date.charAt(i);
+            if (digit < '0' || digit > '9') throw new DateTimeException("Invalid ISO date " + date + "!");
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
+    // ------------------------------------ EPOCH DAYS ------------------------------------ //
 }
@@ -1,8 +1,14 @@
 package pt.ipsantarem.esgts.covid19tracker.server.utils;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.events.IngestEvent;
+import pt.ipsantarem.esgts.covid19tracker.server.scraping.DownloadValidators;
 import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTree;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -11,8 +17,11 @@ import java.util.Map;
  * An utility class that has various methods related to specific object persistence purposes in the server.
  */
 public class ObjectPersistenceUtils {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectPersistenceUtils.class);
+
     private static final String LAST_DOWNLOAD_DATE_FILE = "lastDownloadDate.dat";
     private static final String SAVED_MAP_FILE = "map.dat";
+    private static final String DOWNLOAD_VALIDATORS_FILE = "downloadValidators.dat";
 
     /**
      * Read the last download date.
@@ -20,7 +29,17 @@ public class ObjectPersistenceUtils {
      * @return A LocalDate object
      */
     public static LocalDate readLastDownloadDate() {
-        return readObjectFile(LAST_DOWNLOAD_DATE_FILE);
+        return readLastDownloadDate(null);
+    }
+
+    /**
+     * Read the last download date of a stats source.
+     *
+     * @param source The name of the source.
+     * @return A LocalDate object
+     */
+    public static LocalDate readLastDownloadDate(String source) {
+        return readObjectFile(getSourceFileName(source, LAST_DOWNLOAD_DATE_FILE));
     }
 
     /**
@@ -29,33 +48,100 @@ public class ObjectPersistenceUtils {
      * @param lastDownloadDate A LocalDate object
      */
     public static void writeLastDownloadDate(LocalDate lastDownloadDate) {
-        writeObjectFile(lastDownloadDate, LAST_DOWNLOAD_DATE_FILE);
+        writeLastDownloadDate(null, lastDownloadDate);
+    }
+
+    /**
+     * Writes the last download date of a stats source to its file.
+     *
+     * @param source           The name of the source.
+     * @param lastDownloadDate A LocalDate object
+     */
+    public static void writeLastDownloadDate(String source, LocalDate lastDownloadDate) {
+        writeObjectFile(lastDownloadDate, getSourceFileName(source, LAST_DOWNLOAD_DATE_FILE));
+    }
+
+    /**
+     * Read the validators of the last download.
+     *
+     * @return The validators, or null if there are none.
+     */
+    public static DownloadValidators readDownloadValidators() {
+        return readDownloadValidators(null);
+    }
+
+    /**
+     * Read the validators of the last download of a stats source.
+     *
+     * @param source The name of the source.
+     * @return The validators, or null if there are none.
+     */
+    public static DownloadValidators readDownloadValidators(String source) {
+        return readObjectFile(getSourceFileName(source, DOWNLOAD_VALIDATORS_FILE));
     }
 
     /**
-     * Reads the records map.
+     * Writes the validators of the last download to the file.
      *
-     * @return The read records map
+     * @param validators The validators.
      */
-    public static Map<String, List<AVLVirusStatsTree<?, ?>>> readRecordsMap() {
-        return readObjectFile(SAVED_MAP_FILE);
+    public static void writeDownloadValidators(DownloadValidators validators) {
+        writeDownloadValidators(null, validators);
     }
 
     /**
-     * Writes a map of records to the file.
+     * Writes the validators of the last download of a stats source to its file.
      *
-     * @param map A records map
+     * @param source     The name of the source.
+     * @param validators The validators.
      */
-    public static void writeRecordsMap(Map<String, List<AVLVirusStatsTree<?, ?>>> map) {
-        writeObjectFile(map, SAVED_MAP_FILE);
+    public static void writeDownloadValidators(String source, DownloadValidators validators) {
+        writeObjectFile(validators, getSourceFileName(source, DOWNLOAD_VALIDATORS_FILE));
     }
 
     /**
-     * Utility function for reading object files.
+     * Reads the records last downloaded from a stats source, before they were merged with the other sources.
+     *
+     * @param source The name of the source.
+     * @return The read records map, or null if there is none.
+     */
+    public static Map<String, List<AVLVirusStatsTree<?, ?>>> readSourceRecordsMap(String source) {
+        return readObjectFile(getSourceFileName(source, SAVED_MAP_FILE));
+    }
+
+    /**
+     * Writes the records last downloaded from a stats source to its file.
+     *
+     * @param source The name of the source.
+     * @param map    A records map
+     */
+    public static void writeSourceRecordsMap(String source, Map<String, List<AVLVirusStatsTree<?, ?>>> map) {
+        IngestEvent persistEvent = IngestEvent.start(IngestEvent.PERSIST);
+        String fileName = getSourceFileName(source, SAVED_MAP_FILE);
+        writeObjectFile(map, fileName);
+        persistEvent.finish(new File(getCurrentAbsolutePath() + "/" + fileName).length(), map.size());
+    }
+
+    /**
+     * @param source The name of the source.
+     * @return When the records of a stats source were last written, in epoch milliseconds, or 0 if they don't exist.
+     */
+    public static long getSourceRecordsMapLastModified(String source) {
+        return new File(getCurrentAbsolutePath() + "/" + getSourceFileName(source, SAVED_MAP_FILE)).lastModified();
+    }
+
+    // the files of each stats source are prefixed by its name, and the files of no source in particular aren't.
+    private static String getSourceFileName(String source, String fileName) {
+        return source != null ? source + "." + fileName : fileName;
+    }
+
+    /**
+     * Utility function for reading object files. A file written by an older version of the server, whose classes
+     * changed since then, is treated as missing, so its contents are downloaded again.
      *
      * @param fileName The name of the file.
      * @param <T>      The type of the object we are reading.
-     * @return The read object.
+     * @return The read object, or null if the file doesn't exist or has an older format.
      */
     @SuppressWarnings("unchecked")
     private static <T> T readObjectFile(String fileName) {
@@ -65,6 +151,9 @@ public class ObjectPersistenceUtils {
             return (T) ois.readObject();
         } catch (FileNotFoundException fnfe) {
             return null;
+        } catch (InvalidClassException ice) {
+            LOGGER.warn("The file {} has an older format, ignoring it!", fileName, ice);
+            return null;
         } catch (IOException | ClassNotFoundException e) {
             throw new RuntimeException(e);
         }
@@ -88,11 +177,21 @@ public class ObjectPersistenceUtils {
     }
 
     /**
-     * Gets the current absolute path based on the context of the currently running JAR file.
+     * Gets the current absolute path based on the context of the currently running JAR file, unless the
+     * "persistence.dir" setting sets another directory for the files, which is created if it doesn't exist.
      *
      * @return The absolute path
      */
     private static String getCurrentAbsolutePath() {
+        String persistenceDir = ConfigUtils.getString("persistence.dir", null);
+        if (persistenceDir != null) {
+            try {
+                return Files.createDirectories(Paths.get(persistenceDir)).toAbsolutePath().toString();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create the persistence directory " + persistenceDir + "!", e);
+            }
+        }
+
         String absolutePath = ObjectPersistenceUtils.class.getProtectionDomain().getCodeSource().getLocation().getPath();
         absolutePath = absolutePath.substring(0, absolutePath.lastIndexOf("/"));
         absolutePath = absolutePath.replaceAll("%20", " ");
@@ -1,15 +1,47 @@
 package pt.ipsantarem.esgts.covid19tracker.server.utils;
 
-import org.apache.commons.math3.stat.regression.SimpleRegression;
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.LogLinearRegressionForecaster;
+import pt.ipsantarem.esgts.covid19tracker.server.forecasting.SlidingWindowRegression;
 import pt.ipsantarem.esgts.covid19tracker.server.models.VirusStatistic;
 
 import java.util.List;
 
 /**
- * A utility class that can be used for predicting various indicators about the virus.
+ * A utility class that can be used for predicting various indicators about the virus. The predictions follow the
+ * trend of growth of the latest days of a total stat: a line is fitted to the logarithm of the stat, and the growth
+ * the line predicts is added to the latest stat.
  */
 public class VirusPredictionUtils {
 
+    /**
+     * The default number of latest days the predictions are based on.
+     */
+    public static final int PREDICTION_DAYS = 15;
+
+    /**
+     * The maximum number of days that can be predicted.
+     */
+    public static final int MAX_PREDICTION_HORIZON = 30;
+
+    /**
+     * The minimum and maximum number of latest days the predictions can be based on. A regression fitted to less than
+     * three days has no residuals to estimate its prediction intervals from.
+     */
+    public static final int MIN_PREDICTION_WINDOW = 3;
+    public static final int MAX_PREDICTION_WINDOW = 365;
+
+    /**
+     * The confidence of the prediction intervals.
+     */
+    public static final double PREDICTION_CONFIDENCE = 0.95;
+
+    /**
+     * The indexes of the arrays returned by the forecast functions.
+     */
+    public static final int PREDICTED = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
     /**
      * Make a new prediction for total cases of a certain stat for the next day,
      * based on the trend of growth of the latest 15 days.
@@ -19,25 +51,28 @@ public class VirusPredictionUtils {
      * @return The prediction of total stat cases for the next day.
      */
     public static int totalStatCasesPredict(List<VirusStatistic<Integer>> stats) {
-        SimpleRegression regression = new SimpleRegression();
-        List<VirusStatistic<Integer>> stats15days = stats.subList(stats.size() - 15, stats.size());
-
-        int day = 1;
-        for (VirusStatistic<Integer> stat : stats15days) {
-            double y;
+        List<VirusStatistic<Integer>> latestStats =
+                stats.subList(Math.max(0, stats.size() - PREDICTION_DAYS), stats.size());
+        int[] latest = new int[latestStats.size()];
 
-            if (stat.getStat() == 0) {
-                y = 0.0;
-            } else {
-                y = Math.log10(stat.getStat());
-            }
-
-            regression.addData(day, y);
-            day++;
+        for (int i = 0; i < latest.length; i++) {
+            latest[i] = latestStats.get(i).getStat();
         }
 
-        return stats15days.get(stats15days.size() - 1).getStat() +
-                ((int) Math.pow(10, regression.predict(day)) - (int) Math.pow(10, regression.predict(day - 1)));
+        return totalStatCasesPredict(latest);
+    }
+
+    /**
+     * Make a new prediction for total cases of a certain stat for the next day, based on the trend of growth of the
+     * passed stats.
+     *
+     * @param latestStats The latest stats, oldest first (should be the stats of the latest 15 days).
+     * @return The prediction of total stat cases for the next day.
+     */
+    public static int totalStatCasesPredict(int[] latestStats) {
+        SlidingWindowRegression regression =
+                LogLinearRegressionForecaster.fit(latestStats, latestStats.length, latestStats.length);
+        return totalStatCasesForecast(regression, latestStats[latestStats.length - 1], 1, PREDICTION_CONFIDENCE)[PREDICTED][0];
     }
 
     /**
@@ -51,4 +86,113 @@ public class VirusPredictionUtils {
     public static int newStatCasesPredict(List<VirusStatistic<Integer>> stats) {
         return totalStatCasesPredict(stats) - stats.get(stats.size() - 1).getStat();
     }
+
+    /**
+     * Make a new prediction for the new cases of a certain stat for the next day, based on the trend of growth of the
+     * passed stats.
+     *
+     * @param latestStats The latest total stats, oldest first (should be the stats of the latest 15 days).
+     * @return The prediction of new stat cases for the next day.
+     */
+    public static int newStatCasesPredict(int[] latestStats) {
+        return totalStatCasesPredict(latestStats) - latestStats[latestStats.length - 1];
+    }
+
+    /**
+     * Make new predictions for the total cases of a certain stat for the next days.
+     *
+     * @param regression The regression fitted to the logarithm of the latest total stats (see {@link #toLogStat}).
+     * @param lastStat   The latest total stat.
+     * @param horizon    The number of days to predict.
+     * @param confidence The confidence of the prediction intervals.
+     * @return The predictions, indexed by {@link #PREDICTED}, {@link #LOWER_BOUND} and {@link #UPPER_BOUND}, each
+     * one with a value for each of the next days.
+     */
+    public static int[][] totalStatCasesForecast(SlidingWindowRegression regression, int lastStat, int horizon,
+                                                 double confidence) {
+        int[][] forecast = new int[3][horizon];
+        totalStatCasesForecast(regression, lastStat, horizon, confidence, forecast);
+        return forecast;
+    }
+
+    /**
+     * Make new predictions for the total cases of a certain stat for the next days, writing them to an existing array.
+     * The predictions are computed as doubles and capped at the biggest int, so a fast growing stat doesn't overflow.
+     * If the regression has too few points to estimate the prediction intervals, the bounds are as wide as they can
+     * be: from no growth at all up to the biggest int.
+     *
+     * @param regression The regression fitted to the logarithm of the latest total stats (see {@link #toLogStat}).
+     * @param lastStat   The latest total stat.
+     * @param horizon    The number of days to predict.
+     * @param confidence The confidence of the prediction intervals.
+     * @param forecast   The array the predictions are written to, indexed by {@link #PREDICTED},
+     *                   {@link #LOWER_BOUND} and {@link #UPPER_BOUND}.
+     */
+    public static void totalStatCasesForecast(SlidingWindowRegression regression, int lastStat, int horizon,
+                                              double confidence, int[][] forecast) {
+        long lastDay = regression.getLastX();
+        double lastDayGrowthBase = Math.pow(10, regression.predict(lastDay));
+        boolean hasIntervals = regression.getSize() >= MIN_PREDICTION_WINDOW;
+
+        for (int i = 0; i < horizon; i++) {
+            long day = lastDay + i + 1;
+            double predicted = regression.predict(day);
+            double halfWidth = regression.predictionHalfWidth(day, confidence);
+
+            forecast[PREDICTED][i] = toStat(lastStat + (Math.pow(10, predicted) - lastDayGrowthBase));
+            if (hasIntervals) {
+                forecast[LOWER_BOUND][i] = Math.max(lastStat,
+                        toStat(lastStat + (Math.pow(10, predicted - halfWidth) - lastDayGrowthBase)));
+                forecast[UPPER_BOUND][i] = toStat(lastStat + (Math.pow(10, predicted + halfWidth) - lastDayGrowthBase));
+            } else {
+                forecast[LOWER_BOUND][i] = Math.min(lastStat, forecast[PREDICTED][i]);
+                forecast[UPPER_BOUND][i] = Integer.MAX_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Rounds down a predicted stat, capping it at the biggest and the smallest int, so that a forecast that outgrows
+     * an int doesn't wrap around to a negative stat.
+     *
+     * @param stat The predicted stat.
+     * @return The stat as an int.
+     */
+    public static int toStat(double stat) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, stat));
+    }
+
+    /**
+     * Make new predictions for the new cases of a certain stat for the next days, from the predictions of the total
+     * cases of that stat.
+     *
+     * @param totalForecast The predictions of the total cases (see {@link #totalStatCasesForecast}).
+     * @param lastStat      The latest total stat.
+     * @return The predictions, indexed by {@link #PREDICTED}, {@link #LOWER_BOUND} and {@link #UPPER_BOUND}, each
+     * one with a value for each of the next days.
+     */
+    public static int[][] newStatCasesForecast(int[][] totalForecast, int lastStat) {
+        int horizon = totalForecast[PREDICTED].length;
+        int[][] forecast = new int[3][horizon];
+
+        for (int i = 0; i < horizon; i++) {
+            int previousTotal = i == 0 ? lastStat : totalForecast[PREDICTED][i - 1];
+            forecast[PREDICTED][i] = totalForecast[PREDICTED][i] - previousTotal;
+            forecast[LOWER_BOUND][i] = Math.max(0, totalForecast[LOWER_BOUND][i] - previousTotal);
+            forecast[UPPER_BOUND][i] = Math.max(0, totalForecast[UPPER_BOUND][i] - previousTotal);
+        }
+
+        return forecast;
+    }
+
+    /**
+     * Converts a stat to the value the regressions are fitted to: the base 10 logarithm of the stat, or 0 if the stat
+     * is 0.
+     *
+     * @param stat The stat.
+     * @return The converted stat.
+     */
+    public static double toLogStat(int stat) {
+        return stat == 0 ? 0.0 : Math.log10(stat);
+    }
 }
@@ -0,0 +1,24 @@
+package pt.ipsantarem.esgts.covid19tracker.server.websocket;
+
+/**
+ * What to do with a message for a websocket session whose outbound queue is full, which happens when a client reads
+ * its messages slower than the updates come.
+ */
+public enum OverflowPolicy {
+    /**
+     * Discards the new message, keeping the queued ones.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discards the oldest queued message to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Discards every queued message, queueing a resync message followed by the new one. The resync message tells the
+     * client that changes were lost and that it should reload the records it's subscribed to. Since the changes hold
+     * the new values of the records, and not increments, applying the new changes after reloading is harmless.
+     */
+    COALESCE
+}
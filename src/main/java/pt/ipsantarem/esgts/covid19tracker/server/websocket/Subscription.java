@@ -0,0 +1,124 @@
+package pt.ipsantarem.esgts.covid19tracker.server.websocket;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+
+import java.util.ArrayDeque;
+
+/**
+ * A websocket session and what it's subscribed to, together with its bounded outbound queue. The messages are written
+ * to the socket asynchronously, one at a time: the next message is only written after the previous one was, so a slow
+ * client makes its own queue grow, and once the queue is full the overflow policy decides which messages get lost.
+ * Whoever queues a message never waits for the socket.
+ *
+ * @author José Simões
+ */
+public class Subscription implements WriteCallback {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Subscription.class);
+
+    /**
+     * The message that tells the client to reload the records it's subscribed to, since some changes were lost.
+     */
+    public static final String RESYNC_MESSAGE = "{\"type\":\"resync\"}";
+
+    private final Session session;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final ArrayDeque<String> queue;
+
+    private volatile SubscriptionFilter filter = SubscriptionFilter.ALL;
+    private boolean writing = false; // is a message being written to the socket? guarded by the queue lock.
+
+    /**
+     * @param session        The websocket session.
+     * @param capacity       The maximum number of messages waiting to be written (at least two).
+     * @param overflowPolicy What to do with the messages that come when the queue is full.
+     */
+    public Subscription(Session session, int capacity, OverflowPolicy overflowPolicy) {
+        this.session = session;
+        this.capacity = Math.max(2, capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayDeque<>(this.capacity);
+    }
+
+    public SubscriptionFilter getFilter() {
+        return filter;
+    }
+
+    public void setFilter(SubscriptionFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Queues a message to be written to the socket, starting the writing if no message is being written.
+     *
+     * @param message The message.
+     */
+    public void send(String message) {
+        synchronized (queue) {
+            if (queue.size() >= capacity) {
+                switch (overflowPolicy) {
+                    case DROP_NEWEST:
+                        ServerMetrics.increment("websocket.messages.dropped");
+                        return;
+                    case DROP_OLDEST:
+                        queue.poll();
+                        ServerMetrics.increment("websocket.messages.dropped");
+                        break;
+                    case COALESCE:
+                        queue.clear();
+                        queue.add(RESYNC_MESSAGE);
+                        ServerMetrics.increment("websocket.messages.coalesced");
+                        break;
+                }
+            }
+
+            queue.add(message);
+            if (writing) return;
+            writing = true;
+        }
+
+        writeNext();
+    }
+
+    /**
+     * @return The number of messages waiting to be written.
+     */
+    public int getQueuedMessages() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    @Override
+    public void writeSuccess() {
+        ServerMetrics.increment("websocket.messages.sent");
+        writeNext();
+    }
+
+    @Override
+    public void writeFailed(Throwable x) {
+        ServerMetrics.increment("websocket.messages.failed");
+        LOGGER.debug("Could not send a message to the websocket session!", x);
+        writeNext();
+    }
+
+    // writes the next queued message, or stops writing if there's none (or if the session was closed).
+    private void writeNext() {
+        String message;
+
+        synchronized (queue) {
+            message = session.isOpen() ? queue.poll() : null;
+            if (message == null) {
+                queue.clear();
+                writing = false;
+                return;
+            }
+        }
+
+        session.getRemote().sendString(message, this);
+    }
+}
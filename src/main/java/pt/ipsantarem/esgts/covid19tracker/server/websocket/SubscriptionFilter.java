@@ -0,0 +1,73 @@
+package pt.ipsantarem.esgts.covid19tracker.server.websocket;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+
+import static pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager.*;
+
+/**
+ * What a websocket session is subscribed to: a set of (lower case) countries and the indexes of the trees of the
+ * subscribed stats. Sessions with equal filters get the same update messages, so the messages are built once per
+ * filter.
+ */
+public class SubscriptionFilter {
+    public static final SubscriptionFilter ALL = new SubscriptionFilter(null,
+            new int[]{NEW_CASES_TREE_IDX, TOTAL_CASES_TREE_IDX, NEW_DEATHS_TREE_IDX, TOTAL_DEATHS_TREE_IDX});
+
+    private final Set<String> countries;
+    private final int[] treeIdxs;
+
+    /**
+     * @param countries The subscribed countries, or null for every country.
+     * @param treeIdxs  The indexes of the trees of the subscribed stats, in ascending order.
+     */
+    public SubscriptionFilter(Set<String> countries, int[] treeIdxs) {
+        this.countries = countries;
+        this.treeIdxs = treeIdxs;
+    }
+
+    /**
+     * @return The subscribed countries, or null for every country.
+     */
+    public Set<String> getCountries() {
+        return countries;
+    }
+
+    public int[] getTreeIdxs() {
+        return treeIdxs;
+    }
+
+    public boolean includes(String country) {
+        return countries == null || countries.contains(country);
+    }
+
+    public boolean includesTree(int treeIdx) {
+        for (int subscribedTreeIdx : treeIdxs) {
+            if (subscribedTreeIdx == treeIdx) return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SubscriptionFilter that = (SubscriptionFilter) o;
+        return Objects.equals(countries, that.countries) && Arrays.equals(treeIdxs, that.treeIdxs);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(countries) + Arrays.hashCode(treeIdxs);
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriptionFilter{" +
+                "countries=" + countries +
+                ", treeIdxs=" + Arrays.toString(treeIdxs) +
+                '}';
+    }
+}
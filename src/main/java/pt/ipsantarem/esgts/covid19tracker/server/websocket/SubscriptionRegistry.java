@@ -0,0 +1,230 @@
+package pt.ipsantarem.esgts.covid19tracker.server.websocket;
+
+import io.javalin.plugin.json.JavalinJson;
+import io.javalin.websocket.WsCloseContext;
+import io.javalin.websocket.WsConnectContext;
+import io.javalin.websocket.WsContext;
+import io.javalin.websocket.WsMessageContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ipsantarem.esgts.covid19tracker.server.exceptions.NonExistentCountryException;
+import pt.ipsantarem.esgts.covid19tracker.server.metrics.ServerMetrics;
+import pt.ipsantarem.esgts.covid19tracker.server.models.ChangeSet;
+import pt.ipsantarem.esgts.covid19tracker.server.models.CountryChange;
+import pt.ipsantarem.esgts.covid19tracker.server.models.StatChange;
+import pt.ipsantarem.esgts.covid19tracker.server.models.SubscriptionRequest;
+import pt.ipsantarem.esgts.covid19tracker.server.nodes.CountryDictionary;
+import pt.ipsantarem.esgts.covid19tracker.server.trees.AVLVirusStatsTreesManager;
+import pt.ipsantarem.esgts.covid19tracker.server.utils.ConfigUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of every session connected to the live updates websocket and of what each one is subscribed to. A session
+ * is subscribed to every country and every stat when it connects, unless the countries and metrics query parameters
+ * (comma separated lists) are passed, and can change its subscription at any time by sending a
+ * {@link SubscriptionRequest} as JSON. The countries are resolved when the session subscribes, so they can be called
+ * anything the other endpoints accept (a name in any case, an ISO code, an alias or an unambiguous prefix). When new
+ * records are available, each session gets only the changes (added days and revised values) of what it's subscribed to,
+ * queued on its own {@link Subscription}, so a slow client never holds the others, nor the thread that publishes the
+ * update. Every message is a JSON object with a type: "changes", with the {@link ChangeSet} under the changes key,
+ * "resync" (see {@link OverflowPolicy#COALESCE}) or "error", with the error under the message key.
+ * <p>
+ * The size of the outbound queue of each session is set by the "websocket.queueCapacity" setting, and what happens
+ * when it's full by the "websocket.overflowPolicy" setting (see {@link OverflowPolicy}).
+ *
+ * @author José Simões
+ */
+public class SubscriptionRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionRegistry.class);
+
+    private final ConcurrentMap<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final int queueCapacity = ConfigUtils.getInt("websocket.queueCapacity", 8);
+    private final OverflowPolicy overflowPolicy =
+            OverflowPolicy.valueOf(ConfigUtils.getString("websocket.overflowPolicy", "COALESCE").toUpperCase());
+
+    // the tree manager of the records being served, which resolves the subscribed countries.
+    private final Supplier<AVLVirusStatsTreesManager> treeManager;
+
+    /**
+     * @param treeManager Supplies the tree manager of the records being served, or null while there are none.
+     */
+    public SubscriptionRegistry(Supplier<AVLVirusStatsTreesManager> treeManager) {
+        this.treeManager = treeManager;
+
+        ServerMetrics.registerGauge("websocket.sessions", subscriptions::size);
+        ServerMetrics.registerGauge("websocket.queuedMessages", () ->
+                subscriptions.values().stream().mapToInt(Subscription::getQueuedMessages).sum());
+    }
+
+    // ------------------------------------- WEBSOCKET HANDLERS ------------------------------------- //
+
+    public void onConnect(WsConnectContext ctx) {
+        Subscription subscription = new Subscription(ctx.session, queueCapacity, overflowPolicy);
+        subscriptions.put(ctx.getSessionId(), subscription);
+
+        try {
+            subscription.setFilter(toFilter(splitQueryParam(ctx, "countries"), splitQueryParam(ctx, "metrics")));
+        } catch (IllegalArgumentException e) {
+            subscription.send(toErrorMessage(e));
+        }
+    }
+
+    public void onMessage(WsMessageContext ctx) {
+        Subscription subscription = subscriptions.get(ctx.getSessionId());
+        if (subscription == null) return;
+
+        try {
+            SubscriptionRequest request = ctx.message(SubscriptionRequest.class);
+            subscription.setFilter(toFilter(request.getCountries(), request.getMetrics()));
+        } catch (RuntimeException e) {
+            subscription.send(toErrorMessage(e));
+        }
+    }
+
+    public void onClose(WsCloseContext ctx) {
+        subscriptions.remove(ctx.getSessionId());
+    }
+
+    // ------------------------------------- WEBSOCKET HANDLERS ------------------------------------- //
+
+    /**
+     * Sends the changes each session is subscribed to. The message of each distinct subscription is built only once,
+     * and the messages are only queued here, so this never waits for the sockets.
+     *
+     * @param changes The changes between the previous and the new records.
+     */
+    public void publish(ChangeSet changes) {
+        if (subscriptions.isEmpty() || changes.isEmpty()) return;
+
+        Map<SubscriptionFilter, String> messages = new HashMap<>();
+
+        for (Subscription subscription : subscriptions.values()) {
+            String message = messages.computeIfAbsent(subscription.getFilter(), filter -> {
+                // an empty message means nothing the session is subscribed to changed.
+                ChangeSet filteredChanges = filter(changes, filter);
+                return filteredChanges.isEmpty() ? "" : toMessage("changes", "changes", filteredChanges);
+            });
+
+            if (!message.isEmpty()) subscription.send(message);
+        }
+
+        LOGGER.info("Published the changes to {} websocket sessions, with {} distinct subscriptions!",
+                subscriptions.size(), messages.size());
+    }
+
+    // gets the changes of the countries and stat types of a subscription.
+    private static ChangeSet filter(ChangeSet changes, SubscriptionFilter filter) {
+        if (filter.equals(SubscriptionFilter.ALL)) return changes;
+
+        List<CountryChange> countries = new ArrayList<>();
+        int addedDays = 0;
+        int revisedValues = 0;
+        int removedDays = 0;
+
+        for (CountryChange change : changes.getCountries()) {
+            if (!filter.includes(change.getCountry().toLowerCase())) continue;
+
+            Map<String, List<StatChange<?>>> added = filter(change.getAdded(), filter);
+            Map<String, List<StatChange<?>>> revised = filter(change.getRevised(), filter);
+            Map<String, List<StatChange<?>>> removed = filter(change.getRemoved(), filter);
+            if (added.isEmpty() && revised.isEmpty() && removed.isEmpty()) continue;
+
+            countries.add(new CountryChange(change.getCountry(), added, revised, removed));
+            for (List<StatChange<?>> stats : added.values()) addedDays = Math.max(addedDays, stats.size());
+            for (List<StatChange<?>> stats : revised.values()) revisedValues += stats.size();
+            for (List<StatChange<?>> stats : removed.values()) removedDays = Math.max(removedDays, stats.size());
+        }
+
+        List<String> removedCountries = new ArrayList<>();
+        for (String country : changes.getRemovedCountries()) {
+            if (filter.includes(country)) removedCountries.add(country);
+        }
+
+        return new ChangeSet(countries, removedCountries, addedDays, revisedValues, removedDays);
+    }
+
+    // gets the changes of the stat types of a subscription.
+    private static Map<String, List<StatChange<?>>> filter(Map<String, List<StatChange<?>>> stats,
+                                                           SubscriptionFilter filter) {
+        Map<String, List<StatChange<?>>> filteredStats = new LinkedHashMap<>();
+
+        stats.forEach((statType, statChanges) -> {
+            if (filter.includesTree(AVLVirusStatsTreesManager.getTreeIdx(statType))) {
+                filteredStats.put(statType, statChanges);
+            }
+        });
+
+        return filteredStats;
+    }
+
+    /**
+     * Creates the filter of a subscription. The countries are resolved by the tree manager of the records being
+     * served, to the (lower case) names the changes have. While no records are served, they're kept as they are.
+     *
+     * @param countries The subscribed countries, null or empty for every country.
+     * @param metrics   The subscribed stat types, null or empty for every stat type.
+     * @return The filter.
+     * @throws IllegalArgumentException If a stat type is unknown, or a country has no records.
+     */
+    private SubscriptionFilter toFilter(List<String> countries, List<String> metrics) {
+        if ((countries == null || countries.isEmpty()) && (metrics == null || metrics.isEmpty())) {
+            return SubscriptionFilter.ALL;
+        }
+
+        Set<String> countrySet = null;
+        if (countries != null && !countries.isEmpty()) {
+            countrySet = new HashSet<>();
+            AVLVirusStatsTreesManager treeManager = this.treeManager.get();
+
+            for (String country : countries) {
+                countrySet.add(treeManager != null ? resolveCountry(treeManager, country.trim())
+                        : country.trim().toLowerCase());
+            }
+        }
+
+        int[] treeIdxs = SubscriptionFilter.ALL.getTreeIdxs();
+        if (metrics != null && !metrics.isEmpty()) {
+            treeIdxs = metrics.stream().mapToInt(metric -> {
+                int treeIdx = AVLVirusStatsTreesManager.getTreeIdx(metric.trim());
+                if (treeIdx < 0) {
+                    throw new IllegalArgumentException("Unknown metric " + metric + ", the available metrics are " +
+                            "newCases, totalCases, newDeaths and totalDeaths");
+                }
+                return treeIdx;
+            }).distinct().sorted().toArray();
+        }
+
+        return new SubscriptionFilter(countrySet, treeIdxs);
+    }
+
+    // resolves a subscribed country to the lower case name of its records.
+    private static String resolveCountry(AVLVirusStatsTreesManager treeManager, String country) {
+        try {
+            return CountryDictionary.getName(treeManager.resolveCountry(country)).toLowerCase();
+        } catch (NonExistentCountryException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    // splits a comma separated query parameter, null if it's missing.
+    private static List<String> splitQueryParam(WsContext ctx, String key) {
+        String value = ctx.queryParam(key);
+        return value == null || value.isEmpty() ? null : Arrays.asList(value.split(","));
+    }
+
+    private static String toErrorMessage(Exception e) {
+        return toMessage("error", "message", e.getMessage());
+    }
+
+    // every message has a type, and the content of the message under a key.
+    private static String toMessage(String type, String key, Object content) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", type);
+        message.put(key, content);
+        return JavalinJson.toJson(message);
+    }
+}